@@ -59,6 +59,23 @@ uint32_t new_posture_state_timestamp = 0; // timestamp which stores timestamp wh
 uint16_t new_posture_minimum_duration = 5000; // minimum time of new posture for trigger event
 float stretched_angle_treshold = 66.0; // threshold after where person is in stretch posture
 
+// Streaming of raw pitch, turned on by the phone with command written to the characteristic.
+// Samples are sent in binary frames, see PostureFrameDecoder in the mobile app for the layout.
+#define COMMAND_STREAMING 0x01
+#define COMMAND_BATCHING 0x02
+#define FRAME_MAGIC 0xA5
+#define FRAME_VERSION 1
+#define FRAME_FLAG_PITCH 0x01
+#define FRAME_HEADER_SIZE 10
+#define FRAME_SAMPLE_SIZE 5
+#define FRAME_MAX_SAMPLES 40
+bool streaming = false;
+uint8_t batch_samples = FRAME_MAX_SAMPLES; // maximum samples per frame, set by the phone for its connection profile
+uint16_t sample_sequence = 0;
+uint8_t frame[FRAME_HEADER_SIZE + FRAME_MAX_SAMPLES * FRAME_SAMPLE_SIZE];
+uint8_t frame_samples = 0;
+uint32_t frame_timestamp = 0;
+
 // Server Callbacks class, for detection if host connects / disconnects.
 class MyServerCallbacks: public BLEServerCallbacks {
   void onConnect(BLEServer* pServer) {
@@ -70,6 +87,65 @@ class MyServerCallbacks: public BLEServerCallbacks {
   }
 };
 
+// Characteristic callbacks, for commands written by the phone.
+class MyCharacteristicCallbacks: public BLECharacteristicCallbacks {
+  void onWrite(BLECharacteristic* pCharacteristic) {
+    std::string value = pCharacteristic->getValue();
+    if (value.length() >= 2 && value[0] == COMMAND_STREAMING) {
+      streaming = value[1] != 0;
+      frame_samples = 0;
+    } else if (value.length() >= 2 && value[0] == COMMAND_BATCHING) {
+      batch_samples = value[1] < 1 ? 1 : value[1];
+    }
+    // Restore current posture, written command replaced characteristic value
+    pCharacteristic->setValue(last_posture_state ? "ok" : "bad");
+  }
+};
+
+// Number of samples which fit into one notification with current MTU, limited by requested batching
+uint8_t samples_per_frame() {
+  uint16_t mtu = pServer->getPeerMTU(pServer->getConnId());
+  int samples = (mtu - 3 - FRAME_HEADER_SIZE) / FRAME_SAMPLE_SIZE;
+  if (samples > batch_samples) samples = batch_samples;
+  if (samples < 1) return 1;
+  if (samples > FRAME_MAX_SAMPLES) return FRAME_MAX_SAMPLES;
+  return samples;
+}
+
+// Adds pitch sample to the frame and sends the frame when it is full
+void stream_sample() {
+  uint32_t now = millis();
+  if (frame_samples == 0) {
+    frame_timestamp = now;
+    frame[0] = FRAME_MAGIC;
+    frame[1] = FRAME_VERSION;
+    frame[2] = FRAME_FLAG_PITCH;
+    frame[4] = sample_sequence & 0xFF;
+    frame[5] = sample_sequence >> 8;
+    frame[6] = frame_timestamp & 0xFF;
+    frame[7] = (frame_timestamp >> 8) & 0xFF;
+    frame[8] = (frame_timestamp >> 16) & 0xFF;
+    frame[9] = frame_timestamp >> 24;
+  }
+  uint8_t *sample = frame + FRAME_HEADER_SIZE + frame_samples * FRAME_SAMPLE_SIZE;
+  uint16_t offset = now - frame_timestamp;
+  int16_t centidegrees = (int16_t) (pitch * 100);
+  sample[0] = offset & 0xFF;
+  sample[1] = offset >> 8;
+  sample[2] = last_posture_state ? 1 : 2;
+  sample[3] = centidegrees & 0xFF;
+  sample[4] = (centidegrees >> 8) & 0xFF;
+  frame_samples++;
+  sample_sequence++;
+
+  if (frame_samples >= samples_per_frame()) {
+    frame[3] = frame_samples;
+    pCharacteristic->setValue(frame, FRAME_HEADER_SIZE + frame_samples * FRAME_SAMPLE_SIZE);
+    pCharacteristic->notify();
+    frame_samples = 0;
+  }
+}
+
 void setup() {
   // Disable brownout detector
   WRITE_PERI_REG(RTC_CNTL_BROWN_OUT_REG, 0);
@@ -143,6 +219,7 @@ void setup() {
                                         BLECharacteristic::PROPERTY_NOTIFY
                                       );
   pCharacteristic->addDescriptor(new BLE2902());
+  pCharacteristic->setCallbacks(new MyCharacteristicCallbacks());
 
   pService->start();
   BLEAdvertising *pAdvertising = pServer->getAdvertising(); 
@@ -159,6 +236,9 @@ void setup() {
 void loop() {
   // Handle Bluetooth host connection / disconnection
   if (!deviceConnected && oldDeviceConnected) { // Host disconnected
+    streaming = false;
+    frame_samples = 0;
+    batch_samples = FRAME_MAX_SAMPLES;
     delay(500); // Give the bluetooth stack the chance to get things ready
     pServer->startAdvertising(); // Start advertising
     Serial.println("Advertising...");
@@ -224,6 +304,9 @@ void loop() {
       new_posture_state_timestamp = 0;
     }
   }
+  if (deviceConnected && streaming) {
+    stream_sample();
+  }
   // Wait for 10ms
   delay(10);
 }
@@ -0,0 +1,85 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.StrictMode;
+import android.os.strictmode.Violation;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fails when the database is touched from the main thread.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MainThreadDiskAccessTest {
+    private final List<Violation> violations = new CopyOnWriteArrayList<>();
+    private StrictMode.ThreadPolicy originalPolicy;
+
+    @Before
+    public void setUp() {
+        // Listener penalty is available from Android 9
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.P);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            originalPolicy = StrictMode.getThreadPolicy();
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyListener(Runnable::run, violations::add)
+                    .build());
+        });
+    }
+
+    @After
+    public void tearDown() {
+        if (originalPolicy != null) {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> StrictMode.setThreadPolicy(originalPolicy));
+        }
+    }
+
+    @Test
+    public void mainActivityDoesNotAccessDatabaseOnMainThread() {
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+            InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        }
+        assertNoDatabaseViolations();
+    }
+
+    @Test
+    public void repositoryReadsOffMainThread() throws InterruptedException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        CountDownLatch latch = new CountDownLatch(1);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                StatisticsRepository.getInstance(context).getDaysBetween(LocalDate.now().minusDays(6), LocalDate.now(),
+                        statistics -> latch.countDown()));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertNoDatabaseViolations();
+    }
+
+    private void assertNoDatabaseViolations() {
+        for (Violation violation : violations) {
+            StringWriter trace = new StringWriter();
+            violation.printStackTrace(new PrintWriter(trace));
+            String stackTrace = trace.toString();
+            assertFalse("Database accessed on main thread:\n" + stackTrace,
+                    stackTrace.contains("android.database.sqlite") || stackTrace.contains("androidx.room"));
+        }
+    }
+}
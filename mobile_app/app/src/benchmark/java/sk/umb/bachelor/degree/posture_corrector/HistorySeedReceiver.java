@@ -0,0 +1,66 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the stored history with generated days, so startup can be measured with different history sizes.
+ * <pre>adb shell am broadcast -n sk.umb.bachelor.degree.posture_corrector/.HistorySeedReceiver --ei days 730</pre>
+ */
+public class HistorySeedReceiver extends BroadcastReceiver {
+    public static final String EXTRA_DAYS = "days";
+    private static final String DEVICE_ADDRESS = "00:00:00:00:00:00";
+    private static final long STRETCHED_INTERVAL = 10 * 60 * 1000L;
+    private static final long HUNCHED_INTERVAL = 2 * 60 * 1000L;
+    // Every generated day is used 8 hours from 9:00
+    private static final int INTERVALS_PER_DAY = 40;
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        int days = intent.getIntExtra(EXTRA_DAYS, 0);
+        PendingResult result = goAsync();
+        StatisticsRepository repository = StatisticsRepository.getInstance(context);
+        repository.getWriteExecutor().execute(() -> {
+            try {
+                AppDatabase db = repository.getDatabase();
+                db.clearAllTables();
+                repository.getArchive().clear();
+                LocalDate today = LocalDate.now();
+                LocalDate first = today.minusDays(days - 1);
+                for (LocalDate date = first; !date.isAfter(today); date = date.plusDays(1)) {
+                    db.postureEventDao().insertAll(generateDay(date));
+                }
+                if (days > 0) {
+                    repository.compactArchive();
+                    new DayStatisticRebuilder(db, repository.getArchive(), repository.getReadExecutor()).rebuild(first, today);
+                }
+                // Cleared days are not in the change feed
+                repository.invalidateTrends();
+                Log.i("HistorySeedReceiver", "Seeded " + days + " days");
+            } catch (Exception e) {
+                Log.e("HistorySeedReceiver", "Seeding failed", e);
+            } finally {
+                result.finish();
+            }
+        });
+    }
+
+    private static List<PostureEvent> generateDay(LocalDate date) {
+        List<PostureEvent> events = new ArrayList<>(2 * INTERVALS_PER_DAY);
+        long timestamp = date.atTime(9, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        for (int i = 0; i < INTERVALS_PER_DAY; i++) {
+            events.add(new PostureEvent(DEVICE_ADDRESS, timestamp, PostureCorrectorDevice.Posture.POSTURE_STRETCHED, STRETCHED_INTERVAL));
+            timestamp += STRETCHED_INTERVAL;
+            events.add(new PostureEvent(DEVICE_ADDRESS, timestamp, PostureCorrectorDevice.Posture.POSTURE_HUNCHED, HUNCHED_INTERVAL));
+            timestamp += HUNCHED_INTERVAL;
+        }
+        return events;
+    }
+}
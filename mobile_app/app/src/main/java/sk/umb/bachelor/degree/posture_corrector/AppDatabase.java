@@ -2,23 +2,114 @@ package sk.umb.bachelor.degree.posture_corrector;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
-@Database(entities = {DayStatistic.class}, version = 1)
+@Database(entities = {DayStatistic.class, PostureEvent.class, WeekStatistic.class, MonthStatistic.class}, version = 7)
 @TypeConverters({Converters.class})
 public abstract class AppDatabase extends RoomDatabase {
     private static volatile AppDatabase instance;
 
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Posture is a nullable enum field, Room expects the column without NOT NULL
+            database.execSQL("CREATE TABLE IF NOT EXISTS `PostureEvent` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `timestamp` INTEGER NOT NULL, `posture` INTEGER, `duration` INTEGER NOT NULL)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_PostureEvent_timestamp` ON `PostureEvent` (`timestamp`)");
+        }
+    };
+
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `WeekStatistic` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `weekStart` TEXT, `usageDuration` INTEGER NOT NULL, `hunchedPostureDuration` INTEGER NOT NULL, `hunchedCount` INTEGER NOT NULL)");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_WeekStatistic_weekStart` ON `WeekStatistic` (`weekStart`)");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `MonthStatistic` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `monthStart` TEXT, `usageDuration` INTEGER NOT NULL, `hunchedPostureDuration` INTEGER NOT NULL, `hunchedCount` INTEGER NOT NULL)");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_MonthStatistic_monthStart` ON `MonthStatistic` (`monthStart`)");
+            // Fill rollups from existing days, weeks start on Monday
+            database.execSQL("INSERT INTO `WeekStatistic` (`weekStart`, `usageDuration`, `hunchedPostureDuration`, `hunchedCount`) " +
+                    "SELECT date(`date`, 'weekday 0', '-6 days'), SUM(`usageDuration`), SUM(`hunchedPostureDuration`), SUM(`hunchedCount`) " +
+                    "FROM `DayStatistic` WHERE `date` IS NOT NULL GROUP BY date(`date`, 'weekday 0', '-6 days')");
+            database.execSQL("INSERT INTO `MonthStatistic` (`monthStart`, `usageDuration`, `hunchedPostureDuration`, `hunchedCount`) " +
+                    "SELECT date(`date`, 'start of month'), SUM(`usageDuration`), SUM(`hunchedPostureDuration`), SUM(`hunchedCount`) " +
+                    "FROM `DayStatistic` WHERE `date` IS NOT NULL GROUP BY date(`date`, 'start of month')");
+        }
+    };
+
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Existing rows belong to the single device used so far, they keep empty address
+            database.execSQL("ALTER TABLE `DayStatistic` ADD COLUMN `deviceAddress` TEXT NOT NULL DEFAULT ''");
+            database.execSQL("DROP INDEX IF EXISTS `index_DayStatistic_date`");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_DayStatistic_date_deviceAddress` ON `DayStatistic` (`date`, `deviceAddress`)");
+            database.execSQL("ALTER TABLE `PostureEvent` ADD COLUMN `deviceAddress` TEXT NOT NULL DEFAULT ''");
+        }
+    };
+
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Durations of rollups are stored in milliseconds instead of seconds
+            database.execSQL("UPDATE `DayStatistic` SET `usageDuration` = `usageDuration` * 1000, `hunchedPostureDuration` = `hunchedPostureDuration` * 1000");
+            database.execSQL("UPDATE `WeekStatistic` SET `usageDuration` = `usageDuration` * 1000, `hunchedPostureDuration` = `hunchedPostureDuration` * 1000");
+            database.execSQL("UPDATE `MonthStatistic` SET `usageDuration` = `usageDuration` * 1000, `hunchedPostureDuration` = `hunchedPostureDuration` * 1000");
+        }
+    };
+
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Dates are stored as epoch days instead of ISO text, SQLite can not change the type of a column
+            String epochDay = "CAST(julianday(`%1$s`) - julianday('1970-01-01') AS INTEGER)";
+            database.execSQL("CREATE TABLE `DayStatistic_new` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `date` INTEGER, `deviceAddress` TEXT NOT NULL DEFAULT '', `usageDuration` INTEGER NOT NULL, `hunchedPostureDuration` INTEGER NOT NULL, `hunchedCount` INTEGER NOT NULL)");
+            database.execSQL("INSERT INTO `DayStatistic_new` (`id`, `date`, `deviceAddress`, `usageDuration`, `hunchedPostureDuration`, `hunchedCount`) " +
+                    "SELECT `id`, " + String.format(epochDay, "date") + ", `deviceAddress`, `usageDuration`, `hunchedPostureDuration`, `hunchedCount` FROM `DayStatistic`");
+            database.execSQL("DROP TABLE `DayStatistic`");
+            database.execSQL("ALTER TABLE `DayStatistic_new` RENAME TO `DayStatistic`");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_DayStatistic_date_deviceAddress` ON `DayStatistic` (`date`, `deviceAddress`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_DayStatistic_date_usageDuration_hunchedPostureDuration_hunchedCount` ON `DayStatistic` (`date`, `usageDuration`, `hunchedPostureDuration`, `hunchedCount`)");
+
+            for (String[] table : new String[][] { { "WeekStatistic", "weekStart" }, { "MonthStatistic", "monthStart" } }) {
+                String name = table[0];
+                String column = table[1];
+                database.execSQL("CREATE TABLE `" + name + "_new` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `" + column + "` INTEGER, `usageDuration` INTEGER NOT NULL, `hunchedPostureDuration` INTEGER NOT NULL, `hunchedCount` INTEGER NOT NULL)");
+                database.execSQL("INSERT INTO `" + name + "_new` (`id`, `" + column + "`, `usageDuration`, `hunchedPostureDuration`, `hunchedCount`) " +
+                        "SELECT `id`, " + String.format(epochDay, column) + ", `usageDuration`, `hunchedPostureDuration`, `hunchedCount` FROM `" + name + "`");
+                database.execSQL("DROP TABLE `" + name + "`");
+                database.execSQL("ALTER TABLE `" + name + "_new` RENAME TO `" + name + "`");
+                database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_" + name + "_" + column + "` ON `" + name + "` (`" + column + "`)");
+            }
+        }
+    };
+
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Existing days are numbered in the order they were created, all of them are uploaded by the first sync
+            database.execSQL("ALTER TABLE `DayStatistic` ADD COLUMN `changeSeq` INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("UPDATE `DayStatistic` SET `changeSeq` = `id`");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_DayStatistic_changeSeq` ON `DayStatistic` (`changeSeq`)");
+        }
+    };
+
+    static final Migration[] MIGRATIONS = {
+            MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7
+    };
+
     public static AppDatabase getInstance(Context context) {
         if (instance == null) {
             synchronized (AppDatabase.class) {
                 if (instance == null) {
                     instance = Room.databaseBuilder(context.getApplicationContext(),
                                     AppDatabase.class, "posture-corrector-db")
-                            .allowMainThreadQueries()
+                            .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
+                            .addMigrations(MIGRATIONS)
                             .build();
                 }
             }
@@ -28,4 +119,10 @@ public abstract class AppDatabase extends RoomDatabase {
 
 
     public abstract DayStatisticDao dayStatisticDao();
+
+    public abstract PostureEventDao postureEventDao();
+
+    public abstract WeekStatisticDao weekStatisticDao();
+
+    public abstract MonthStatisticDao monthStatisticDao();
 }
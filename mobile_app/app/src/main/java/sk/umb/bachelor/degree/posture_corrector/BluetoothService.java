@@ -4,40 +4,138 @@ import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.Service;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
 import android.os.Binder;
 import android.os.Build;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.util.Log;
 
 import androidx.core.app.NotificationCompat;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
-import java.time.Duration;
-import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import sk.umb.bachelor.degree.posture_corrector.core.PostureClassifier;
 
 public class BluetoothService extends Service {
-    private static final String CHANNEL_ID = "BluetoothServiceChannel";
+    // Channel used before alerts had their own one, it vibrated on every update
+    private static final String LEGACY_CHANNEL_ID = "BluetoothServiceChannel";
+    private static final String CHANNEL_ID = "BluetoothServiceStatusChannel";
+    private static final String ALERT_CHANNEL_ID = "PostureAlertChannel";
     private static final int NOTIFICATION_ID = 71;
+    private static final long NOTIFICATION_COALESCE_MS = 500;
+    private static final int NOTIFICATION_MAX_UPDATES_PER_SECOND = 1;
+    private static final long ALERT_DEBOUNCE_MS = 2000;
+    private static final long ALERT_MIN_INTERVAL_MS = 60000;
     private NotificationManager notificationManager;
     private NotificationCompat.Builder notificationBuilder;
+    private NotificationUpdater notificationUpdater;
+    private PostureAlerter postureAlerter;
     private final IBinder binder = new BluetoothServiceBinder();
 
-    private AppDatabase db;
+    private DayStatisticWriter statisticWriter;
+    private DeviceRegistry deviceRegistry;
+    private MetricsDumper metricsDumper;
+    private boolean uiVisible = false;
+    private boolean streaming = false;
+
+    public DeviceRegistry getDeviceRegistry() {
+        return deviceRegistry;
+    }
+
+    /**
+     * Returns device of the first known session, used for views which show only one device.
+     */
+    public PostureCorrectorDevice getPrimaryDevice() {
+        List<DeviceSession> sessions = deviceRegistry.getSessions();
+        return sessions.isEmpty() ? null : sessions.get(0).getDevice();
+    }
+
+    /**
+     * Returns connected when any device is connected, connecting when any is connecting.
+     */
+    public PostureCorrectorDevice.State getConnectionState() {
+        PostureCorrectorDevice.State state = PostureCorrectorDevice.State.STATE_DISCONNECTED;
+        for (DeviceSession session : deviceRegistry.getOpenSessions()) {
+            if (session.getState() == PostureCorrectorDevice.State.STATE_CONNECTED) {
+                return PostureCorrectorDevice.State.STATE_CONNECTED;
+            } else if (session.getState() == PostureCorrectorDevice.State.STATE_CONNECTING) {
+                state = PostureCorrectorDevice.State.STATE_CONNECTING;
+            }
+        }
+        return state;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+        for (DeviceSession session : deviceRegistry.getOpenSessions()) {
+            session.getDevice().setStreaming(streaming);
+        }
+        updateConnectionProfile();
+    }
+
+    /**
+     * Called by the activity when it is started and stopped. Visible UI gets low latency,
+     * in background the connection saves power.
+     */
+    public void setUiVisible(boolean uiVisible) {
+        this.uiVisible = uiVisible;
+        updateConnectionProfile();
+    }
+
+    public ConnectionProfile getConnectionProfile() {
+        if (uiVisible) return ConnectionProfile.LOW_LATENCY;
+        // Classification on the phone needs the stream of pitch just like the live chart
+        return streaming || ClassifierSettings.isEnabled(this) ? ConnectionProfile.BALANCED : ConnectionProfile.LOW_POWER;
+    }
+
+    private void updateClassification() {
+        boolean enabled = ClassifierSettings.isEnabled(this);
+        PostureClassifier.Thresholds thresholds = ClassifierSettings.getThresholds(this);
+        for (DeviceSession session : deviceRegistry.getSessions()) {
+            session.getDevice().setPhoneClassification(enabled, thresholds);
+        }
+    }
+
+    private final SharedPreferences.OnSharedPreferenceChangeListener classifierSettingsListener = (preferences, key) -> {
+        updateClassification();
+        updateConnectionProfile();
+    };
 
-    private PostureCorrectorDevice.Posture lastPosture = null;
-    private LocalDateTime lastPostureChangeTime = null;
+    private void updateConnectionProfile() {
+        ConnectionProfile profile = getConnectionProfile();
+        for (DeviceSession session : deviceRegistry.getSessions()) {
+            session.getDevice().setConnectionProfile(profile);
+        }
+    }
 
-    private PostureCorrectorDevice device;
+    public void addDevice(String address) {
+        deviceRegistry.addAddress(address);
+        deviceRegistry.getSession(address).getDevice().setConnectionProfile(getConnectionProfile());
+        deviceRegistry.getSession(address).getDevice().setPhoneClassification(
+                ClassifierSettings.isEnabled(this), ClassifierSettings.getThresholds(this));
+        deviceRegistry.getSession(address).connect();
+        publishConnectionState();
+    }
 
-    public PostureCorrectorDevice getDevice() {
-        return device;
+    public void removeDevice(String address) {
+        deviceRegistry.removeAddress(address);
+        publishConnectionState();
     }
 
     public void disconnect() {
-        device.disconnect();
+        for (DeviceSession session : deviceRegistry.getOpenSessions()) {
+            session.disconnect();
+        }
+        publishConnectionState();
     }
 
     public class BluetoothServiceBinder extends Binder {
@@ -46,40 +144,86 @@ public class BluetoothService extends Service {
         }
     }
 
-    public static boolean isRunning(Context context) {
-        return Utils.isServiceRunningInForeground(context, BluetoothService.class);
+    public static boolean isRunning() {
+        return ServiceStateRegistry.getInstance().isRunning();
     }
 
     @Override
     public void onCreate() {
         super.onCreate();
+        TodayStatistics todayStatistics = TodayStatistics.getInstance(this);
+        statisticWriter = new DayStatisticWriter(StatisticsRepository.getInstance(this), todayStatistics,
+                this::broadcastDataChange);
+        todayStatistics.setWriter(statisticWriter);
+        deviceRegistry = new DeviceRegistry(this, statisticWriter, sessionListener);
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(Intent.ACTION_TIME_CHANGED);
+        registerReceiver(clockReceiver, filter);
+
+        metricsDumper = new MetricsDumper(this);
+        metricsDumper.update();
+        ClassifierSettings.registerListener(this, classifierSettingsListener);
     }
 
+    private final BroadcastReceiver clockReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            for (DeviceSession session : deviceRegistry.getSessions()) {
+                if (Intent.ACTION_TIMEZONE_CHANGED.equals(intent.getAction())) {
+                    session.onTimeZoneChanged(ZoneId.systemDefault());
+                } else {
+                    session.onWallClockChanged();
+                }
+            }
+        }
+    };
+
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         createNotificationChannel();
-        notificationBuilder = createNotificationBuilder();
-        notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (notificationUpdater == null) {
+            notificationBuilder = createNotificationBuilder();
+            notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+            Handler mainHandler = new Handler(Looper.getMainLooper());
+            notificationUpdater = new NotificationUpdater(notificationManager, notificationBuilder, NOTIFICATION_ID,
+                    mainHandler, NOTIFICATION_COALESCE_MS, NOTIFICATION_MAX_UPDATES_PER_SECOND);
+            postureAlerter = new PostureAlerter(this, notificationManager, ALERT_CHANNEL_ID, mainHandler,
+                    ALERT_DEBOUNCE_MS, ALERT_MIN_INTERVAL_MS);
+        }
 
         startForeground(NOTIFICATION_ID, notificationBuilder.build());
+        ServiceStateRegistry.getInstance().setRunning(true);
 
-        db = AppDatabase.getInstance(this);
         this.connect();
 
         return START_STICKY;
     }
 
     public void connect() {
-        device = new PostureCorrectorDevice(this);
-        device.connectToDevice("D4:D4:DA:44:28:86", postureCallback);
-        broadcastConnectionChange();
-
+        updateConnectionProfile();
+        updateClassification();
+        for (DeviceSession session : deviceRegistry.getSessions()) {
+            session.connect();
+        }
+        publishConnectionState();
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
+        ServiceStateRegistry.getInstance().setRunning(false);
+        unregisterReceiver(clockReceiver);
+        ClassifierSettings.unregisterListener(this, classifierSettingsListener);
+        if (notificationUpdater != null) {
+            notificationUpdater.cancel();
+            postureAlerter.cancel();
+        }
+        metricsDumper.stop();
         disconnect();
+        TodayStatistics.getInstance(this).setWriter(null);
+        statisticWriter.flush();
     }
 
     @Override
@@ -87,78 +231,59 @@ public class BluetoothService extends Service {
         return binder;
     }
 
-    private final PostureCorrectorDevice.PostureCorrectorDeviceCallback postureCallback = new PostureCorrectorDevice.PostureCorrectorDeviceCallback() {
+    private final DeviceSession.Listener sessionListener = new DeviceSession.Listener() {
         @Override
-        public void onPostureChange(PostureCorrectorDevice.Posture posture) {
-            super.onPostureChange(posture);
-            if (lastPosture != null) {
-                if (lastPosture != posture) {
-                    Duration duration = Duration.between(lastPostureChangeTime, LocalDateTime.now());
-                    DayStatisticDao dao = db.dayStatisticDao();
-                    DayStatistic statistic = dao.getOrCreateToday();
-                    if (lastPosture == PostureCorrectorDevice.Posture.POSTURE_HUNCHED) {
-                        statistic.hunchedPostureDuration += duration.getSeconds();
-                    }
-                    if (posture == PostureCorrectorDevice.Posture.POSTURE_HUNCHED) {
-                        statistic.hunchedCount++;
-                    }
-                    Log.d("onPostureChange",
-                            (lastPosture == PostureCorrectorDevice.Posture.POSTURE_HUNCHED ? "Hunched" : "Straight") +
-                            ", " + duration.getSeconds());
-                    statistic.usageDuration += duration.getSeconds();
-                    dao.insertOrUpdate(statistic);
-                    lastPostureChangeTime = LocalDateTime.now();
-                }
-            } else {
-                lastPostureChangeTime = LocalDateTime.now();
+        public void onPostureChange(DeviceSession session, PostureCorrectorDevice.Posture posture) {
+            String title = deviceRegistry.getAddresses().size() > 1 ? "Stav " + session.getAddress() : "Stav";
+            updateNotification(title, posture == PostureCorrectorDevice.Posture.POSTURE_STRETCHED ? "Vystrety" : "Zhrbeny");
+            if (postureAlerter != null) {
+                postureAlerter.onPostureChange(session.getAddress(), posture);
             }
-            lastPosture = posture;
-            updateNotification("Stav", posture == PostureCorrectorDevice.Posture.POSTURE_STRETCHED ? "Vystrety" : "Zhrbeny");
-            Intent intent = new Intent("data-change");
-            LocalBroadcastManager.getInstance(getApplicationContext()).sendBroadcast(intent);
-        }
-
-        @Override
-        public void onConnect() {
-            super.onConnect();
-            broadcastConnectionChange();
         }
 
         @Override
-        public void onDisconnect() {
-            super.onDisconnect();
-            broadcastConnectionChange();
+        public void onConnectionChange(DeviceSession session) {
+            if (postureAlerter != null && session.getState() != PostureCorrectorDevice.State.STATE_CONNECTED) {
+                postureAlerter.onPostureChange(session.getAddress(), null);
+            }
+            publishConnectionState();
         }
     };
 
-    void broadcastConnectionChange() {
-        Intent intent = new Intent("connection-change");
+    void broadcastDataChange() {
+        Intent intent = new Intent("data-change");
         LocalBroadcastManager.getInstance(getApplicationContext()).sendBroadcast(intent);
     }
 
+    void publishConnectionState() {
+        ServiceStateRegistry.getInstance().setConnectionState(getConnectionState());
+    }
+
     private void createNotificationChannel() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             NotificationChannel channel = new NotificationChannel(
                     CHANNEL_ID,
                     "Bluetooth Service Channel",
-                    NotificationManager.IMPORTANCE_DEFAULT
+                    NotificationManager.IMPORTANCE_LOW
+            );
+            channel.enableVibration(false);
+            NotificationChannel alertChannel = new NotificationChannel(
+                    ALERT_CHANNEL_ID,
+                    "Posture Alert Channel",
+                    NotificationManager.IMPORTANCE_HIGH
             );
-            channel.setVibrationPattern(new long[] { 0, 500 });
-            channel.enableVibration(true);
+            alertChannel.setVibrationPattern(new long[] { 0, 500 });
+            alertChannel.enableVibration(true);
             NotificationManager manager = getSystemService(NotificationManager.class);
+            manager.deleteNotificationChannel(LEGACY_CHANNEL_ID);
             manager.createNotificationChannel(channel);
+            manager.createNotificationChannel(alertChannel);
         }
     }
 
     public void updateNotification(String title, String message) {
-        if (notificationBuilder != null) {
-            notificationBuilder.setContentTitle(title)
-                    .setVibrate(new long[] { 0, 500 })
-                    .setContentText(message);
-
-            if (notificationManager != null) {
-                notificationManager.notify(NOTIFICATION_ID, notificationBuilder.build());
-            }
+        if (notificationUpdater != null) {
+            notificationUpdater.update(title, message);
         }
     }
 
@@ -166,7 +291,7 @@ public class BluetoothService extends Service {
         return new NotificationCompat.Builder(this, CHANNEL_ID)
                 .setContentTitle("Bluetooth Service")
                 .setContentText("Bluetooth Service is running")
-                .setVibrate(new long[] { 0, 500 })
+                .setOnlyAlertOnce(true)
                 .setSmallIcon(R.drawable.ic_launcher_foreground)
                 .setChannelId(CHANNEL_ID);
     }
@@ -177,7 +302,7 @@ public class BluetoothService extends Service {
                 .setContentTitle("Bluetooth Service")
                 .setContentText("Bluetooth Service is running")
                 .setSmallIcon(R.drawable.ic_launcher_foreground)
-                .setVibrate(new long[] { 0, 500 })
+                .setOnlyAlertOnce(true)
                 .setChannelId(CHANNEL_ID);
 
         return builder.build();
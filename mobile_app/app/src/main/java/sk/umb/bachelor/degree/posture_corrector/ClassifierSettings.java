@@ -0,0 +1,67 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import sk.umb.bachelor.degree.posture_corrector.core.PostureClassifier;
+
+/**
+ * Settings of posture classification on the phone, thresholds are set per user of the phone.
+ * When disabled, postures decided by the firmware are used.
+ */
+public class ClassifierSettings {
+    private static final String PREFERENCES = "classifier";
+    private static final String KEY_ENABLED = "enabled";
+    private static final String KEY_ALPHA = "alpha";
+    private static final String KEY_STRETCHED_ANGLE = "stretched_angle";
+    private static final String KEY_HYSTERESIS = "hysteresis";
+    private static final String KEY_MINIMUM_DURATION = "minimum_duration";
+
+    private ClassifierSettings() {}
+
+    public static boolean isEnabled(Context context) {
+        return preferences(context).getBoolean(KEY_ENABLED, false);
+    }
+
+    public static void setEnabled(Context context, boolean enabled) {
+        preferences(context).edit().putBoolean(KEY_ENABLED, enabled).apply();
+    }
+
+    /**
+     * Returns thresholds of the user, values of the firmware when they were not set or are invalid.
+     */
+    public static PostureClassifier.Thresholds getThresholds(Context context) {
+        SharedPreferences preferences = preferences(context);
+        PostureClassifier.Thresholds defaults = PostureClassifier.Thresholds.FIRMWARE;
+        try {
+            return new PostureClassifier.Thresholds(
+                    preferences.getFloat(KEY_ALPHA, defaults.alpha),
+                    preferences.getFloat(KEY_STRETCHED_ANGLE, defaults.stretchedAngle),
+                    preferences.getFloat(KEY_HYSTERESIS, defaults.hysteresis),
+                    preferences.getLong(KEY_MINIMUM_DURATION, defaults.minimumDuration));
+        } catch (IllegalArgumentException e) {
+            return defaults;
+        }
+    }
+
+    public static void setThresholds(Context context, PostureClassifier.Thresholds thresholds) {
+        preferences(context).edit()
+                .putFloat(KEY_ALPHA, thresholds.alpha)
+                .putFloat(KEY_STRETCHED_ANGLE, thresholds.stretchedAngle)
+                .putFloat(KEY_HYSTERESIS, thresholds.hysteresis)
+                .putLong(KEY_MINIMUM_DURATION, thresholds.minimumDuration)
+                .apply();
+    }
+
+    static void registerListener(Context context, SharedPreferences.OnSharedPreferenceChangeListener listener) {
+        preferences(context).registerOnSharedPreferenceChangeListener(listener);
+    }
+
+    static void unregisterListener(Context context, SharedPreferences.OnSharedPreferenceChangeListener listener) {
+        preferences(context).unregisterOnSharedPreferenceChangeListener(listener);
+    }
+
+    private static SharedPreferences preferences(Context context) {
+        return context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    }
+}
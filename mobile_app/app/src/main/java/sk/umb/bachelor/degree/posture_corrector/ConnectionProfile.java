@@ -0,0 +1,27 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.bluetooth.BluetoothGatt;
+
+/**
+ * Trade-off between latency and radio power of the connection to a posture corrector.
+ * Every profile requests its connection priority and MTU and tells the device how many
+ * streamed samples it may batch into one notification. The MTU is large enough for a full batch.
+ */
+public enum ConnectionProfile {
+    // Used while the main screen is visible
+    LOW_LATENCY(BluetoothGatt.CONNECTION_PRIORITY_HIGH, 64, 5),
+    // Used in background while pitch is streamed
+    BALANCED(BluetoothGatt.CONNECTION_PRIORITY_BALANCED, 128, 20),
+    // Used in background when only posture changes are needed
+    LOW_POWER(BluetoothGatt.CONNECTION_PRIORITY_LOW_POWER, 247, 40);
+
+    public final int connectionPriority;
+    public final int mtu;
+    public final int samplesPerFrame;
+
+    ConnectionProfile(int connectionPriority, int mtu, int samplesPerFrame) {
+        this.connectionPriority = connectionPriority;
+        this.mtu = mtu;
+        this.samplesPerFrame = samplesPerFrame;
+    }
+}
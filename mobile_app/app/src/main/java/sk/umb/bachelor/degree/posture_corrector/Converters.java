@@ -6,13 +6,24 @@ import java.time.LocalDate;
 
 
 public class Converters {
+    // Dates are stored as days since 1970-01-01, so range scans compare integers and rows are read without parsing
     @TypeConverter
-    public static LocalDate fromTimestamp(String value) {
-        return value == null ? null : LocalDate.parse(value);
+    public static LocalDate fromEpochDay(Long value) {
+        return value == null ? null : LocalDate.ofEpochDay(value);
     }
 
     @TypeConverter
-    public static String dateToTimestamp(LocalDate date) {
-        return date == null ? null : date.toString();
+    public static Long dateToEpochDay(LocalDate date) {
+        return date == null ? null : date.toEpochDay();
+    }
+
+    @TypeConverter
+    public static PostureCorrectorDevice.Posture fromPostureCode(int value) {
+        return value == 1 ? PostureCorrectorDevice.Posture.POSTURE_HUNCHED : PostureCorrectorDevice.Posture.POSTURE_STRETCHED;
+    }
+
+    @TypeConverter
+    public static int postureToPostureCode(PostureCorrectorDevice.Posture posture) {
+        return posture == PostureCorrectorDevice.Posture.POSTURE_HUNCHED ? 1 : 0;
     }
 }
\ No newline at end of file
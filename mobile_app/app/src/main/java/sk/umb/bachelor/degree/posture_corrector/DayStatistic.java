@@ -1,6 +1,7 @@
 package sk.umb.bachelor.degree.posture_corrector;
 
 import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.Ignore;
 import androidx.room.Index;
@@ -9,7 +10,14 @@ import androidx.room.PrimaryKey;
 import java.time.LocalDate;
 
 
-@Entity(indices = {@Index(value = {"date"}, unique = true)})
+/**
+ * Statistics of one day of one device. Charts read ranges of days summed over devices, the second index
+ * holds every column they need, so such range is read from the index alone.
+ * Every write of a row gives it a new change sequence number, sync uploads rows changed after the last uploaded one.
+ */
+@Entity(indices = {@Index(value = {"date", "deviceAddress"}, unique = true),
+        @Index(value = {"date", "usageDuration", "hunchedPostureDuration", "hunchedCount"}),
+        @Index(value = {"changeSeq"})})
 public class DayStatistic {
     public DayStatistic()
     {}
@@ -17,12 +25,24 @@ public class DayStatistic {
     public DayStatistic(LocalDate date) {
         this.date = date;
     }
+    @Ignore
+    public DayStatistic(LocalDate date, @NonNull String deviceAddress) {
+        this.date = date;
+        this.deviceAddress = deviceAddress;
+    }
 
     @NonNull
     @PrimaryKey(autoGenerate = true)
     public int id;
     public LocalDate date;
-    public int usageDuration;
-    public int hunchedPostureDuration;
+    // Empty for days recorded before more devices were supported
+    @NonNull
+    @ColumnInfo(defaultValue = "''")
+    public String deviceAddress = "";
+    // Durations in milliseconds
+    public long usageDuration;
+    public long hunchedPostureDuration;
     public int hunchedCount;
+    @ColumnInfo(defaultValue = "0")
+    public long changeSeq;
 }
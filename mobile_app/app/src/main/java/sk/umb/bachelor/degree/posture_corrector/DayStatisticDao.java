@@ -13,21 +13,47 @@ public interface DayStatisticDao {
     @Query("SELECT * FROM daystatistic")
     List<DayStatistic> getAll();
 
+    /**
+     * All days ordered by date for export.
+     */
+    @Query("SELECT * FROM daystatistic WHERE date IS NOT NULL ORDER BY date, deviceAddress")
+    List<DayStatistic> getAllOrdered();
+
+    @Query("SELECT COUNT(*) FROM daystatistic WHERE date IS NOT NULL")
+    long count();
+
     @Insert
     void insert(DayStatistic statistic);
 
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insertOrUpdate(DayStatistic statistic);
 
+    @Query("SELECT * FROM daystatistic WHERE date = :date AND deviceAddress = :deviceAddress")
+    DayStatistic getByDate(LocalDate date, String deviceAddress);
+
     @Query("SELECT * FROM daystatistic WHERE date = :date")
-    DayStatistic getByDate(LocalDate date);
-
-    default DayStatistic getOrCreateToday()
-    {
-        DayStatistic statistic = this.getByDate(LocalDate.now());
-        if (statistic == null) {
-            statistic = new DayStatistic(LocalDate.now());
-        }
-        return statistic;
-    }
+    List<DayStatistic> getAllByDate(LocalDate date);
+
+    /**
+     * Returns days in the range with statistics of all devices summed up.
+     */
+    @Query("SELECT MIN(id) AS id, date, '' AS deviceAddress, SUM(usageDuration) AS usageDuration, " +
+            "SUM(hunchedPostureDuration) AS hunchedPostureDuration, SUM(hunchedCount) AS hunchedCount " +
+            "FROM daystatistic WHERE date BETWEEN :from AND :to GROUP BY date ORDER BY date")
+    List<DayStatistic> getBetween(LocalDate from, LocalDate to);
+
+    @Query("SELECT MIN(date) FROM daystatistic")
+    LocalDate getFirstDate();
+
+    @Query("SELECT COALESCE(MAX(changeSeq), 0) FROM daystatistic")
+    long getLastChangeSeq();
+
+    /**
+     * Rows written after the change sequence number {@code after}, in the order they were written.
+     */
+    @Query("SELECT * FROM daystatistic WHERE changeSeq > :after AND date IS NOT NULL ORDER BY changeSeq LIMIT :limit")
+    List<DayStatistic> getChangedSince(long after, int limit);
+
+    @Query("SELECT * FROM daystatistic WHERE deviceAddress = :deviceAddress AND date BETWEEN :from AND :to ORDER BY date")
+    List<DayStatistic> getBetweenForDevice(LocalDate from, LocalDate to, String deviceAddress);
 }
@@ -0,0 +1,126 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import sk.umb.bachelor.degree.posture_corrector.core.SessionTimeline;
+
+/**
+ * Rebuilds {@link DayStatistic} rollups of every device from the {@link PostureEvent} log, archived events
+ * included. The log is read in chunks of days in parallel on the given pool, results are written in a single
+ * transaction together with the matching changes of week and month rollups.
+ * Days without any logged event are left untouched.
+ */
+public class DayStatisticRebuilder {
+    private static final int CHUNK_DAYS = 31;
+
+    private final AppDatabase db;
+    private final EventArchive archive;
+    private final ExecutorService readers;
+
+    public DayStatisticRebuilder(AppDatabase db, EventArchive archive, ExecutorService readers) {
+        this.db = db;
+        this.archive = archive;
+        this.readers = readers;
+    }
+
+    public void rebuildAll() throws InterruptedException, ExecutionException {
+        Long first = archive.getFirstTimestamp();
+        if (first == null) {
+            first = db.postureEventDao().getFirstTimestamp();
+        }
+        if (first == null) return;
+        LocalDate from = Instant.ofEpochMilli(first).atZone(ZoneId.systemDefault()).toLocalDate();
+        rebuild(from, LocalDate.now());
+    }
+
+    /**
+     * Rebuilds rollups of days from {@code from} to {@code to}, both inclusive.
+     */
+    public void rebuild(LocalDate from, LocalDate to) throws InterruptedException, ExecutionException {
+        List<Future<Map<String, DayStatistic>>> chunks = new ArrayList<>();
+        for (LocalDate start = from; !start.isAfter(to); start = start.plusDays(CHUNK_DAYS)) {
+            LocalDate end = start.plusDays(CHUNK_DAYS - 1);
+            chunks.add(readers.submit(aggregateChunk(start, end.isAfter(to) ? to : end)));
+        }
+
+        List<Map<String, DayStatistic>> results = new ArrayList<>();
+        for (Future<Map<String, DayStatistic>> chunk : chunks) {
+            results.add(chunk.get());
+        }
+
+        db.runInTransaction(() -> {
+            for (Map<String, DayStatistic> result : results) {
+                for (DayStatistic statistic : result.values()) {
+                    DayStatisticWriter.replaceDay(db, statistic);
+                }
+            }
+        });
+    }
+
+    private Callable<Map<String, DayStatistic>> aggregateChunk(LocalDate from, LocalDate to) {
+        return () -> {
+            // Events logged before they were split at midnight may start a day earlier
+            ZoneId zone = ZoneId.systemDefault();
+            long fromMillis = from.minusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            long toMillis = to.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+
+            // Keyed by date and device address
+            Map<String, DayStatistic> days = new HashMap<>();
+            Map<String, PostureEvent> lastEvents = new HashMap<>();
+            List<PostureEvent> pieces = new ArrayList<>();
+            for (PostureEvent event : readEvents(fromMillis, toMillis)) {
+                // Hunched piece which continues previous one at midnight or time zone change is not a new hunch
+                boolean newHunch = DayStatisticWriter.startsHunch(lastEvents.put(event.deviceAddress, event), event);
+
+                pieces.clear();
+                SessionTimeline.split(PostureCorrectorDevice.toPostureCode(event.posture), event.timestamp, event.duration, zone,
+                        (posture, timestamp, duration, lastPiece) ->
+                                pieces.add(new PostureEvent(event.deviceAddress, timestamp, event.posture, duration)));
+                for (PostureEvent piece : pieces) {
+                    LocalDate date = piece.getDate();
+                    if (date.isBefore(from) || date.isAfter(to)) continue;
+                    String key = date + "/" + piece.deviceAddress;
+                    DayStatistic statistic = days.get(key);
+                    if (statistic == null) {
+                        statistic = new DayStatistic(date, piece.deviceAddress);
+                        days.put(key, statistic);
+                    }
+                    DayStatisticWriter.addToRollup(statistic, piece);
+                    if (newHunch && piece == pieces.get(0)) {
+                        statistic.hunchedCount++;
+                    }
+                }
+            }
+            return days;
+        };
+    }
+
+    /**
+     * Events starting in {@code [from, to)} in the order they happened, the archived ones first.
+     */
+    private List<PostureEvent> readEvents(long from, long to) {
+        List<PostureEvent> events = new ArrayList<>();
+        archive.readLock().lock();
+        try {
+            long boundary = archive.getBoundary();
+            archive.forEachEvent(from, Math.min(to, boundary), (address, timestamp, posture, duration) ->
+                    events.add(new PostureEvent(address, timestamp, PostureCorrectorDevice.fromPostureCode(posture), duration)));
+            if (to > boundary) {
+                events.addAll(db.postureEventDao().getBetween(Math.max(from, boundary), to));
+            }
+        } finally {
+            archive.readLock().unlock();
+        }
+        return events;
+    }
+}
@@ -0,0 +1,249 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.os.SystemClock;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects posture events in memory and writes them to the database in batches on the
+ * writer thread of {@link StatisticsRepository}, so the bluetooth callback thread never waits for disk.
+ * Every batch appends the events to the log and adds them to the day, week and month rollups in one transaction.
+ * Each device has its own buffer and lock, so callbacks of different devices do not block each other.
+ */
+public class DayStatisticWriter {
+    private static final long FLUSH_INTERVAL_SECONDS = 30;
+    private static final int FLUSH_EVENT_COUNT = 20;
+
+    private static class DeviceBuffer {
+        List<PostureEvent> events = new ArrayList<>();
+        // Rollup deltas which are not yet written, one per day
+        final Map<LocalDate, DayStatistic> days = new HashMap<>();
+        // Previous event of the device, a hunched event continuing it is not a new hunch
+        PostureEvent lastEvent;
+    }
+
+    private final AppDatabase db;
+    private final TodayStatistics todayStatistics;
+    private final ScheduledExecutorService executor;
+    private final Runnable onFlushed;
+
+    private final ConcurrentHashMap<String, DeviceBuffer> buffers = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingEvents = new AtomicInteger(0);
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    public DayStatisticWriter(StatisticsRepository repository, TodayStatistics todayStatistics, Runnable onFlushed) {
+        this.db = repository.getDatabase();
+        this.executor = repository.getWriteExecutor();
+        this.todayStatistics = todayStatistics;
+        this.onFlushed = onFlushed;
+    }
+
+    /**
+     * Adds finished posture interval, or its piece when the interval was split at midnight.
+     */
+    public void addEvent(PostureEvent event) {
+        event.createdNanos = SystemClock.elapsedRealtimeNanos();
+        DeviceBuffer buffer = buffers.get(event.deviceAddress);
+        if (buffer == null) {
+            buffers.putIfAbsent(event.deviceAddress, new DeviceBuffer());
+            buffer = buffers.get(event.deviceAddress);
+        }
+
+        DayStatistic eventDelta = new DayStatistic(event.getDate(), event.deviceAddress);
+        addToRollup(eventDelta, event);
+
+        synchronized (buffer) {
+            if (startsHunch(buffer.lastEvent, event)) {
+                eventDelta.hunchedCount++;
+            }
+            buffer.lastEvent = event;
+            buffer.events.add(event);
+            DayStatistic delta = buffer.days.get(eventDelta.date);
+            if (delta == null) {
+                delta = new DayStatistic(eventDelta.date, event.deviceAddress);
+                buffer.days.put(delta.date, delta);
+            }
+            delta.usageDuration += eventDelta.usageDuration;
+            delta.hunchedPostureDuration += eventDelta.hunchedPostureDuration;
+            delta.hunchedCount += eventDelta.hunchedCount;
+            publishSnapshot(eventDelta);
+        }
+
+        if (pendingEvents.incrementAndGet() >= FLUSH_EVENT_COUNT) {
+            flush();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            executor.schedule(this::writePending, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    public void flush() {
+        executor.execute(this::writePending);
+    }
+
+    /**
+     * Loads today's snapshots on the writer thread. Flushes run on the same thread, so every snapshot
+     * is the written row plus what is still pending for the device.
+     */
+    public void loadSnapshot() {
+        executor.execute(() -> {
+            LocalDate today = LocalDate.now();
+            Map<String, StatisticsSnapshot> written = new HashMap<>();
+            for (DayStatistic statistic : db.dayStatisticDao().getAllByDate(today)) {
+                written.put(statistic.deviceAddress, StatisticsSnapshot.of(statistic));
+            }
+
+            todayStatistics.startLoad();
+            for (Map.Entry<String, StatisticsSnapshot> entry : written.entrySet()) {
+                if (!buffers.containsKey(entry.getKey())) {
+                    todayStatistics.update(entry.getKey(), entry.getValue());
+                }
+            }
+            for (Map.Entry<String, DeviceBuffer> entry : buffers.entrySet()) {
+                synchronized (entry.getValue()) {
+                    StatisticsSnapshot snapshot = written.get(entry.getKey());
+                    if (snapshot == null) snapshot = StatisticsSnapshot.empty(today);
+                    DayStatistic delta = entry.getValue().days.get(today);
+                    todayStatistics.update(entry.getKey(), delta == null ? snapshot : snapshot.plus(delta));
+                }
+            }
+            todayStatistics.finishLoad(today);
+        });
+    }
+
+    private void publishSnapshot(DayStatistic eventDelta) {
+        if (!todayStatistics.isHot()) {
+            // Pending events are included when the snapshot is loaded
+            loadSnapshot();
+            return;
+        }
+        StatisticsSnapshot snapshot = todayStatistics.getDevice(eventDelta.deviceAddress);
+        if (!snapshot.date.equals(eventDelta.date)) return;
+        todayStatistics.update(eventDelta.deviceAddress, snapshot.plus(eventDelta));
+    }
+
+    static void addToRollup(DayStatistic statistic, PostureEvent event) {
+        if (event.posture == PostureCorrectorDevice.Posture.POSTURE_HUNCHED) {
+            statistic.hunchedPostureDuration += event.duration;
+        }
+        statistic.usageDuration += event.duration;
+    }
+
+    /**
+     * Whether the event is a new hunch, i.e. a hunched event which does not directly continue a hunched
+     * {@code last} event of the same device, as pieces of an interval split at midnight do. The writer and
+     * {@link DayStatisticRebuilder} count hunches by this rule, so a rebuild keeps the written counts.
+     */
+    static boolean startsHunch(PostureEvent last, PostureEvent event) {
+        return event.posture == PostureCorrectorDevice.Posture.POSTURE_HUNCHED
+                && (last == null || last.posture != event.posture || last.timestamp + last.duration != event.timestamp);
+    }
+
+    /**
+     * Stores the day in place of the stored one of the same device and moves week and month rollups
+     * by the difference. Has to run in a transaction.
+     */
+    static void replaceDay(AppDatabase db, DayStatistic statistic) {
+        DayStatisticDao dao = db.dayStatisticDao();
+        DayStatistic existing = dao.getByDate(statistic.date, statistic.deviceAddress);
+        DayStatistic delta = new DayStatistic(statistic.date, statistic.deviceAddress);
+        delta.usageDuration = statistic.usageDuration;
+        delta.hunchedPostureDuration = statistic.hunchedPostureDuration;
+        delta.hunchedCount = statistic.hunchedCount;
+        if (existing != null) {
+            statistic.id = existing.id;
+            delta.usageDuration -= existing.usageDuration;
+            delta.hunchedPostureDuration -= existing.hunchedPostureDuration;
+            delta.hunchedCount -= existing.hunchedCount;
+        }
+        statistic.changeSeq = nextChangeSeq(dao);
+        dao.insertOrUpdate(statistic);
+        addToPeriodRollups(db, delta);
+    }
+
+    /**
+     * Change sequence number for a row written in the current transaction. Numbers never go back, not even
+     * after the benchmark seeding cleared all days, otherwise new days would stay below the sync watermark.
+     */
+    static long nextChangeSeq(DayStatisticDao dao) {
+        return Math.max(dao.getLastChangeSeq() + 1, System.currentTimeMillis());
+    }
+
+    /**
+     * Adds day delta to its week and month rollups. Has to run inside a transaction.
+     */
+    static void addToPeriodRollups(AppDatabase db, DayStatistic delta) {
+        LocalDate weekStart = delta.date.with(DayOfWeek.MONDAY);
+        WeekStatistic week = db.weekStatisticDao().getByWeekStart(weekStart);
+        if (week == null) {
+            week = new WeekStatistic(weekStart);
+        }
+        week.usageDuration += delta.usageDuration;
+        week.hunchedPostureDuration += delta.hunchedPostureDuration;
+        week.hunchedCount += delta.hunchedCount;
+        db.weekStatisticDao().insertOrUpdate(week);
+
+        LocalDate monthStart = delta.date.withDayOfMonth(1);
+        MonthStatistic month = db.monthStatisticDao().getByMonthStart(monthStart);
+        if (month == null) {
+            month = new MonthStatistic(monthStart);
+        }
+        month.usageDuration += delta.usageDuration;
+        month.hunchedPostureDuration += delta.hunchedPostureDuration;
+        month.hunchedCount += delta.hunchedCount;
+        db.monthStatisticDao().insertOrUpdate(month);
+    }
+
+    private void writePending() {
+        flushScheduled.set(false);
+        pendingEvents.set(0);
+        final List<PostureEvent> events = new ArrayList<>();
+        final List<DayStatistic> deltas = new ArrayList<>();
+        for (DeviceBuffer buffer : buffers.values()) {
+            synchronized (buffer) {
+                events.addAll(buffer.events);
+                buffer.events = new ArrayList<>();
+                deltas.addAll(buffer.days.values());
+                buffer.days.clear();
+            }
+        }
+        if (events.isEmpty()) return;
+
+        DayStatisticDao dao = db.dayStatisticDao();
+        long start = SystemClock.elapsedRealtimeNanos();
+        db.runInTransaction(() -> {
+            db.postureEventDao().insertAll(events);
+            for (DayStatistic delta : deltas) {
+                DayStatistic statistic = dao.getByDate(delta.date, delta.deviceAddress);
+                if (statistic == null) {
+                    statistic = new DayStatistic(delta.date, delta.deviceAddress);
+                }
+                statistic.usageDuration += delta.usageDuration;
+                statistic.hunchedPostureDuration += delta.hunchedPostureDuration;
+                statistic.hunchedCount += delta.hunchedCount;
+                statistic.changeSeq = nextChangeSeq(dao);
+                dao.insertOrUpdate(statistic);
+                addToPeriodRollups(db, delta);
+            }
+        });
+        long committed = SystemClock.elapsedRealtimeNanos();
+        Metrics metrics = Metrics.getInstance();
+        metrics.dbWriteLatency.record(Metrics.nanosToMicros(committed - start));
+        for (PostureEvent event : events) {
+            metrics.commitLatency.record(Metrics.nanosToMicros(committed - event.createdNanos));
+        }
+        metrics.eventsWritten.add(events.size());
+        if (onFlushed != null) {
+            onFlushed.run();
+        }
+    }
+}
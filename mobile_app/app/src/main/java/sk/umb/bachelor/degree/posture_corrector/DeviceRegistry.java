@@ -0,0 +1,109 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Known posture correctors and their sessions. Addresses are kept in shared preferences,
+ * the device used before more devices were supported is known by default.
+ */
+public class DeviceRegistry {
+    /**
+     * Creates the session of a device, tests pass sessions of simulated devices.
+     */
+    interface SessionFactory {
+        DeviceSession create(String address, DayStatisticWriter writer, DeviceSession.Listener listener);
+    }
+
+    static final String DEFAULT_DEVICE_ADDRESS = "D4:D4:DA:44:28:86";
+    private static final String PREFERENCES_NAME = "devices";
+    private static final String KEY_ADDRESSES = "addresses";
+
+    private final Context context;
+    private final DayStatisticWriter writer;
+    private final DeviceSession.Listener listener;
+    private final ConcurrentHashMap<String, DeviceSession> sessions = new ConcurrentHashMap<>();
+    private volatile SessionFactory sessionFactory;
+
+    public DeviceRegistry(Context context, DayStatisticWriter writer, DeviceSession.Listener listener) {
+        this.context = context;
+        this.writer = writer;
+        this.listener = listener;
+        this.sessionFactory = (address, sessionWriter, sessionListener) ->
+                new DeviceSession(context, address, sessionWriter, sessionListener);
+    }
+
+    /**
+     * Replaces the factory of sessions, has to be called before any session is created.
+     */
+    void setSessionFactory(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    public Set<String> getAddresses() {
+        return getAddresses(context);
+    }
+
+    public void addAddress(String address) {
+        addAddress(context, address);
+    }
+
+    public void removeAddress(String address) {
+        removeAddress(context, address);
+        DeviceSession session = sessions.remove(address);
+        if (session != null) {
+            session.disconnect();
+        }
+    }
+
+    public DeviceSession getSession(String address) {
+        return sessions.computeIfAbsent(address, a -> sessionFactory.create(a, writer, listener));
+    }
+
+    /**
+     * Returns sessions of all known devices, ordered by address.
+     */
+    public List<DeviceSession> getSessions() {
+        List<DeviceSession> result = new ArrayList<>();
+        for (String address : getAddresses()) {
+            result.add(getSession(address));
+        }
+        return result;
+    }
+
+    public Collection<DeviceSession> getOpenSessions() {
+        return sessions.values();
+    }
+
+    /**
+     * Returns known addresses ordered, also used by the settings when the service is not running.
+     */
+    public static Set<String> getAddresses(Context context) {
+        return new TreeSet<>(preferences(context).getStringSet(KEY_ADDRESSES, Collections.singleton(DEFAULT_DEVICE_ADDRESS)));
+    }
+
+    public static synchronized void addAddress(Context context, String address) {
+        Set<String> addresses = new HashSet<>(getAddresses(context));
+        addresses.add(address);
+        preferences(context).edit().putStringSet(KEY_ADDRESSES, addresses).apply();
+    }
+
+    public static synchronized void removeAddress(Context context, String address) {
+        Set<String> addresses = new HashSet<>(getAddresses(context));
+        addresses.remove(address);
+        preferences(context).edit().putStringSet(KEY_ADDRESSES, addresses).apply();
+    }
+
+    private static SharedPreferences preferences(Context context) {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,114 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.content.Context;
+import android.util.Log;
+
+import android.os.SystemClock;
+
+import java.time.ZoneId;
+
+import sk.umb.bachelor.degree.posture_corrector.core.SessionTimeline;
+
+/**
+ * Connection to one posture corrector with its own posture state machine.
+ * Every session is driven only by callbacks of its device, so sessions do not share any lock.
+ */
+public class DeviceSession extends PostureCorrectorDevice.PostureCorrectorDeviceCallback {
+    public interface Listener {
+        void onPostureChange(DeviceSession session, PostureCorrectorDevice.Posture posture);
+        void onConnectionChange(DeviceSession session);
+    }
+
+    private final String address;
+    private final PostureCorrectorDevice device;
+    private final DayStatisticWriter writer;
+    private final Listener listener;
+
+    private static final SessionTimeline.Clock SYSTEM_CLOCK = new SessionTimeline.Clock() {
+        @Override
+        public long elapsedRealtimeNanos() {
+            return SystemClock.elapsedRealtimeNanos();
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private final SessionTimeline timeline;
+    private final SessionTimeline.IntervalListener intervalListener = (posture, timestamp, duration, last) ->
+            writer.addEvent(new PostureEvent(address, timestamp, PostureCorrectorDevice.fromPostureCode(posture), duration));
+
+    public DeviceSession(Context context, String address, DayStatisticWriter writer, Listener listener) {
+        this(address, new PostureCorrectorDevice(context), SYSTEM_CLOCK, writer, listener);
+    }
+
+    /**
+     * Session of given device, simulated devices pass their virtual clock.
+     */
+    public DeviceSession(String address, PostureCorrectorDevice device, SessionTimeline.Clock clock,
+                         DayStatisticWriter writer, Listener listener) {
+        this.address = address;
+        this.device = device;
+        this.writer = writer;
+        this.listener = listener;
+        this.timeline = new SessionTimeline(clock, ZoneId.systemDefault());
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public PostureCorrectorDevice getDevice() {
+        return device;
+    }
+
+    public PostureCorrectorDevice.State getState() {
+        return device.getState();
+    }
+
+    public void connect() {
+        if (device.getState() == PostureCorrectorDevice.State.STATE_DISCONNECTED) {
+            device.connectToDevice(address, this);
+        }
+    }
+
+    public void disconnect() {
+        if (device.getState() != PostureCorrectorDevice.State.STATE_DISCONNECTED) {
+            device.disconnect();
+        }
+    }
+
+    public void onTimeZoneChanged(ZoneId zone) {
+        timeline.onTimeZoneChanged(zone, intervalListener);
+    }
+
+    public void onWallClockChanged() {
+        timeline.onWallClockChanged();
+    }
+
+    @Override
+    public void onPostureChange(PostureCorrectorDevice.Posture posture) {
+        super.onPostureChange(posture);
+        if (timeline.transition(PostureCorrectorDevice.toPostureCode(posture), intervalListener)) {
+            Log.d("onPostureChange", address + ": " + posture);
+        }
+        if (posture != null) {
+            listener.onPostureChange(this, posture);
+        }
+    }
+
+    @Override
+    public void onConnect() {
+        super.onConnect();
+        listener.onConnectionChange(this);
+    }
+
+    @Override
+    public void onDisconnect() {
+        super.onDisconnect();
+        writer.flush();
+        listener.onConnectionChange(this);
+    }
+}
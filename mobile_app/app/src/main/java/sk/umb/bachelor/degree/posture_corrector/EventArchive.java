@@ -0,0 +1,245 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import sk.umb.bachelor.degree.posture_corrector.core.EventSegment;
+import sk.umb.bachelor.degree.posture_corrector.core.PostureFrameDecoder;
+
+/**
+ * Cold part of the {@link PostureEvent} log. Events of closed months are moved out of the database into
+ * one {@link EventSegment} file per month, read through memory mapped buffers. Months are in UTC, so
+ * files do not depend on the time zone of the phone.
+ *
+ * <p>Everything before {@link #getBoundary()} is read from the archive, the rest from the database. Rows
+ * left in the database before the boundary, after an interrupted compaction or an import of old history,
+ * are not read and are merged into the archive by the next {@link #compact}.
+ * Readers which combine both parts hold {@link #readLock()}, compaction deletes moved rows only after
+ * the segment is written and while holding the write lock, so readers never miss or count twice an event.
+ * The lock is always taken before a database transaction.
+ */
+public class EventArchive {
+    private static final String PREFIX = "events-";
+    private static final String SUFFIX = ".seg";
+
+    private final Path directory;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Mapped segments by month, guarded by the lock, buffers are only read through duplicates
+    private final TreeMap<YearMonth, ByteBuffer> segments = new TreeMap<>();
+    private volatile boolean loaded = false;
+
+    public EventArchive(Path directory) {
+        this.directory = directory;
+    }
+
+    public Lock readLock() {
+        return lock.readLock();
+    }
+
+    /**
+     * End of the last archived month in epoch milliseconds, 0 when nothing is archived.
+     */
+    public long getBoundary() {
+        lock.readLock().lock();
+        try {
+            Map.Entry<YearMonth, ByteBuffer> last = segments().lastEntry();
+            return last == null ? 0 : start(last.getKey().plusMonths(1));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Long getFirstTimestamp() {
+        lock.readLock().lock();
+        try {
+            for (ByteBuffer segment : segments().values()) {
+                if (EventSegment.count(segment) > 0) return EventSegment.firstTimestamp(segment);
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long count() {
+        lock.readLock().lock();
+        try {
+            long count = 0;
+            for (ByteBuffer segment : segments().values()) {
+                count += EventSegment.count(segment);
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Passes archived events starting in {@code [from, to)} to the listener in the order of their timestamps.
+     * Postures are {@code PostureFrameDecoder} codes.
+     *
+     * @return number of passed events
+     */
+    public long forEachEvent(long from, long to, EventSegment.Listener listener) {
+        lock.readLock().lock();
+        try {
+            long passed = 0;
+            for (Map.Entry<YearMonth, ByteBuffer> entry : segments().entrySet()) {
+                YearMonth month = entry.getKey();
+                if (start(month.plusMonths(1)) <= from || start(month) >= to) continue;
+                passed += EventSegment.read(entry.getValue(), from, to, listener);
+            }
+            return passed;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Milliseconds spent hunched in {@code [from, to)} by archived events, clipped to the range.
+     */
+    public long getHunchedDurationBetween(long from, long to) {
+        long[] sum = new long[1];
+        forEachEvent(from - PostureEvent.MAX_DURATION, to, (address, timestamp, posture, duration) -> {
+            if (posture != PostureFrameDecoder.POSTURE_HUNCHED) return;
+            long overlap = Math.min(timestamp + duration, to) - Math.max(timestamp, from);
+            if (overlap > 0) {
+                sum[0] += overlap;
+            }
+        });
+        return sum[0];
+    }
+
+    /**
+     * Moves events of every month which ended before {@code before}, epoch milliseconds, from the database
+     * into the archive. Runs on the writer thread.
+     *
+     * @return number of moved rows
+     */
+    public int compact(AppDatabase db, long before) throws IOException {
+        Long first = db.postureEventDao().getFirstTimestamp();
+        if (first == null) return 0;
+        int moved = 0;
+        for (YearMonth month = month(first); start(month.plusMonths(1)) <= before; month = month.plusMonths(1)) {
+            moved += compactMonth(db, month);
+        }
+        return moved;
+    }
+
+    private int compactMonth(AppDatabase db, YearMonth month) throws IOException {
+        long from = start(month);
+        long to = start(month.plusMonths(1));
+        List<PostureEvent> events = db.postureEventDao().getBetween(from, to);
+        if (events.isEmpty()) return 0;
+
+        lock.writeLock().lock();
+        try {
+            EventSegment.Builder builder = new EventSegment.Builder();
+            ByteBuffer existing = segments().get(month);
+            if (existing != null) {
+                builder.addAll(existing);
+            }
+            for (PostureEvent event : events) {
+                builder.add(event.deviceAddress, event.timestamp, PostureCorrectorDevice.toPostureCode(event.posture),
+                        event.duration);
+            }
+
+            // The segment is complete on disk before it replaces the old one and before rows are deleted
+            Files.createDirectories(directory);
+            Path file = file(month);
+            Path temporary = directory.resolve(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                builder.writeTo(channel);
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            segments.put(month, map(file));
+
+            db.postureEventDao().deleteBetween(from, to);
+            return events.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes all archived events.
+     */
+    public void clear() throws IOException {
+        lock.writeLock().lock();
+        try {
+            segments();
+            for (YearMonth month : segments.keySet()) {
+                Files.deleteIfExists(file(month));
+            }
+            segments.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Segments by month, maps the files on first use. Callers hold the lock.
+     */
+    private TreeMap<YearMonth, ByteBuffer> segments() {
+        if (loaded) return segments;
+        synchronized (segments) {
+            if (loaded) return segments;
+            if (Files.isDirectory(directory)) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+                    for (Path file : files) {
+                        String name = file.getFileName().toString();
+                        YearMonth month;
+                        try {
+                            month = YearMonth.parse(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+                        } catch (DateTimeParseException e) {
+                            continue;
+                        }
+                        segments.put(month, map(file));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            loaded = true;
+        }
+        return segments;
+    }
+
+    private Path file(YearMonth month) {
+        return directory.resolve(PREFIX + month + SUFFIX);
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        // The mapping stays valid after the channel is closed and after the file is replaced
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static YearMonth month(long timestamp) {
+        return YearMonth.from(Instant.ofEpochMilli(timestamp).atOffset(ZoneOffset.UTC));
+    }
+
+    private static long start(YearMonth month) {
+        return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,194 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.graphics.Color;
+import android.os.Bundle;
+import android.view.MotionEvent;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.github.mikephil.charting.charts.BarChart;
+import com.github.mikephil.charting.components.XAxis;
+import com.github.mikephil.charting.data.BarData;
+import com.github.mikephil.charting.data.BarDataSet;
+import com.github.mikephil.charting.data.BarEntry;
+import com.github.mikephil.charting.formatter.ValueFormatter;
+import com.github.mikephil.charting.listener.ChartTouchListener;
+import com.github.mikephil.charting.listener.OnChartGestureListener;
+import com.google.android.material.color.MaterialColors;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import sk.umb.bachelor.degree.posture_corrector.core.PageWindow;
+import sk.umb.bachelor.degree.posture_corrector.core.PostureStatistics;
+
+/**
+ * Whole history of days in a horizontally scrollable chart. The x axis spans all days, but only pages
+ * of days around the visible ones are loaded and drawn, pages scrolled away are dropped. Memory and
+ * drawing cost do not depend on the length of the history.
+ */
+public class HistoryActivity extends AppCompatActivity {
+    private static final int PAGE_DAYS = 30;
+    private static final int VISIBLE_DAYS = 30;
+
+    private final PageWindow<List<BarEntry>> pages = new PageWindow<>(PAGE_DAYS, 1);
+    private final ArrayList<BarEntry> entries = new ArrayList<>();
+    private StatisticsRepository repository;
+    private BarChart chart;
+    private BarDataSet dataSet;
+    private TextView rangeTextView;
+    // Range of days with statistics in epoch days, known after the first load
+    private long firstDay;
+    private long lastDay;
+    private boolean rangeLoaded = false;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_history);
+        repository = StatisticsRepository.getInstance(this);
+        rangeTextView = findViewById(R.id.historyRangeTextView);
+        chart = findViewById(R.id.historyChart);
+        setupChart();
+
+        repository.getFirstDate(first -> {
+            if (isDestroyed()) return;
+            lastDay = LocalDate.now().toEpochDay();
+            firstDay = first == null ? lastDay : Math.min(first.toEpochDay(), lastDay);
+            rangeLoaded = true;
+            chart.getXAxis().setAxisMinimum(firstDay - 0.5f);
+            chart.getXAxis().setAxisMaximum(lastDay + 0.5f);
+            loadPages(Math.max(firstDay, lastDay - VISIBLE_DAYS + 1), lastDay);
+        });
+    }
+
+    private void setupChart() {
+        dataSet = new BarDataSet(entries, "% času vystierania");
+        dataSet.setColor(MaterialColors.getColor(this, androidx.appcompat.R.attr.colorPrimary, Color.BLACK));
+        dataSet.setDrawValues(false);
+
+        XAxis xAxis = chart.getXAxis();
+        xAxis.setPosition(XAxis.XAxisPosition.BOTTOM);
+        xAxis.setGranularity(1.0f);
+        xAxis.setValueFormatter(new ValueFormatter() {
+            @Override
+            public String getFormattedValue(float value) {
+                LocalDate date = LocalDate.ofEpochDay(Math.round(value));
+                return date.getDayOfMonth() + "." + date.getMonthValue() + ".";
+            }
+        });
+        chart.getAxisLeft().setAxisMinimum(0f);
+        chart.getAxisLeft().setAxisMaximum(100f);
+        chart.getAxisRight().setEnabled(false);
+        chart.getDescription().setEnabled(false);
+        chart.setScaleEnabled(false);
+        // Pages are loaded when a drag ends, a fling would move the view without notifying
+        chart.setDragDecelerationEnabled(false);
+        chart.setOnChartGestureListener(new OnChartGestureListener() {
+            @Override
+            public void onChartTranslate(MotionEvent me, float dX, float dY) {
+                onScrolled();
+            }
+
+            @Override
+            public void onChartGestureEnd(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+                onScrolled();
+            }
+
+            @Override
+            public void onChartGestureStart(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+            }
+
+            @Override
+            public void onChartLongPressed(MotionEvent me) {
+            }
+
+            @Override
+            public void onChartDoubleTapped(MotionEvent me) {
+            }
+
+            @Override
+            public void onChartSingleTapped(MotionEvent me) {
+            }
+
+            @Override
+            public void onChartFling(MotionEvent me1, MotionEvent me2, float velocityX, float velocityY) {
+            }
+
+            @Override
+            public void onChartScale(MotionEvent me, float scaleX, float scaleY) {
+            }
+        });
+    }
+
+    private void onScrolled() {
+        if (chart.getData() == null) return;
+        loadPages(Math.round(chart.getLowestVisibleX()), Math.round(chart.getHighestVisibleX()));
+    }
+
+    /**
+     * Moves the page window to the visible days, drops pages scrolled away and loads the missing ones.
+     */
+    private void loadPages(long from, long to) {
+        if (!rangeLoaded) return;
+        rangeTextView.setText(format(Math.max(from, firstDay)) + " – " + format(Math.min(to, lastDay)));
+        int size = pages.size();
+        for (long page : pages.update(from, to)) {
+            long pageFrom = Math.max(pages.firstKey(page), firstDay);
+            long pageTo = Math.min(pages.firstKey(page) + PAGE_DAYS - 1, lastDay);
+            if (pageFrom > pageTo) {
+                pages.put(page, new ArrayList<>());
+                continue;
+            }
+            repository.getDaysBetween(LocalDate.ofEpochDay(pageFrom), LocalDate.ofEpochDay(pageTo), statistics -> {
+                if (isDestroyed()) return;
+                if (pages.put(page, toEntries(pageFrom, pageTo, statistics))) {
+                    showPages();
+                }
+            });
+        }
+        if (pages.size() != size) {
+            showPages();
+        }
+    }
+
+    private static String format(long day) {
+        LocalDate date = LocalDate.ofEpochDay(day);
+        return date.getDayOfMonth() + "." + date.getMonthValue() + "." + date.getYear();
+    }
+
+    private static List<BarEntry> toEntries(long from, long to, List<DayStatistic> statistics) {
+        List<BarEntry> pageEntries = new ArrayList<>((int) (to - from + 1));
+        int next = 0;
+        for (long day = from; day <= to; day++) {
+            DayStatistic statistic = null;
+            if (next < statistics.size() && statistics.get(next).date.toEpochDay() == day) {
+                statistic = statistics.get(next++);
+            }
+            pageEntries.add(new BarEntry(day, statistic == null ? 0.0f :
+                    PostureStatistics.percentOfStretch(statistic.usageDuration, statistic.hunchedPostureDuration)));
+        }
+        return pageEntries;
+    }
+
+    private void showPages() {
+        entries.clear();
+        for (List<BarEntry> page : pages.values()) {
+            entries.addAll(page);
+        }
+        dataSet.setValues(entries);
+        if (entries.isEmpty()) return;
+        if (chart.getData() == null) {
+            // Data is set with the first loaded page, an empty data set has no bounds
+            chart.setData(new BarData(dataSet));
+            chart.setVisibleXRangeMaximum(VISIBLE_DAYS);
+            chart.moveViewToX(lastDay - VISIBLE_DAYS + 1);
+            return;
+        }
+        chart.getData().notifyDataChanged();
+        chart.notifyDataSetChanged();
+        chart.invalidate();
+    }
+}
@@ -0,0 +1,286 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import sk.umb.bachelor.degree.posture_corrector.core.HistoryReader;
+import sk.umb.bachelor.degree.posture_corrector.core.HistoryWriter;
+
+/**
+ * Export of the whole history into a file and its import on another phone. Events are written into
+ * {@link HistoryWriter} one day at a time and read from {@link HistoryReader} into the database in batches,
+ * so memory use does not grow with years of events, only the day rollups are held at once.
+ *
+ * <p>Export does not hold a transaction or a lock while it writes. Days and the id of the last event are
+ * read in one short transaction at the start, events are then read one day at a time and events recorded
+ * later are left out, so writes of new events and compaction of the {@link EventArchive} go on during
+ * a long export. Archived events are read from the archive, the rest from the database.
+ *
+ * <p>Import runs in one transaction and is all or nothing, a cancelled or damaged import leaves the
+ * database untouched. Imported days replace days of the same device already stored, imported events are
+ * added unless the same event is already stored, so a backup can be imported again or into a phone which
+ * has a part of it. Events before the archive boundary are merged into the {@link EventArchive} by its
+ * next compaction, which drops duplicates too.
+ */
+public class HistoryTransfer {
+    public enum Format {
+        CSV,
+        BINARY
+    }
+
+    public interface ProgressListener {
+        /**
+         * Called on the thread of the transfer, total is -1 when not known.
+         */
+        void onProgress(long done, long total);
+    }
+
+    private static final int PROGRESS_STEP = 1000;
+    private static final int IMPORT_BATCH = 500;
+
+    private final AppDatabase db;
+    private final EventArchive archive;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    public HistoryTransfer(AppDatabase db, EventArchive archive) {
+        this.db = db;
+        this.archive = archive;
+    }
+
+    /**
+     * Stops the running transfer, it fails with {@link CancellationException}.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * Writes all days and events into the channel. Progress is reported in records.
+     * When the export fails or is cancelled, the end record is not written, so the file can not be imported.
+     *
+     * @return number of written records
+     */
+    public long export(WritableByteChannel channel, Format format, ProgressListener listener) throws IOException {
+        // Days and the last event are read together, so the days are rollups of exactly the exported events
+        ExportSnapshot snapshot = db.runInTransaction(() -> new ExportSnapshot(
+                db.dayStatisticDao().getAllOrdered(),
+                db.postureEventDao().getLastId(),
+                db.postureEventDao().getLastTimestamp(),
+                db.postureEventDao().getFirstTimestamp()));
+        long total = snapshot.days.size() + archive.count() + db.postureEventDao().countSince(archive.getBoundary());
+        long done = 0;
+        listener.onProgress(0, total);
+        HistoryWriter writer = format == Format.CSV ? HistoryWriter.csv(channel) : HistoryWriter.binary(channel);
+
+        for (DayStatistic day : snapshot.days) {
+            checkCancelled();
+            writer.writeDay(day.date.toEpochDay(), day.deviceAddress, day.usageDuration, day.hunchedPostureDuration,
+                    day.hunchedCount);
+            report(++done, total, listener);
+        }
+
+        Long first = min(archive.getFirstTimestamp(), snapshot.firstTimestamp);
+        Long last = snapshot.lastTimestamp;
+        long boundary = archive.getBoundary();
+        if (boundary > 0 && (last == null || last < boundary)) {
+            last = boundary - 1;
+        }
+        if (first != null) {
+            for (LocalDate day = utcDay(first); !day.isAfter(utcDay(last)); day = day.plusDays(1)) {
+                for (PostureEvent event : readEvents(day, snapshot.lastId)) {
+                    checkCancelled();
+                    writer.writeEvent(event.deviceAddress, event.timestamp,
+                            PostureCorrectorDevice.toPostureCode(event.posture), event.duration);
+                    report(++done, total, listener);
+                }
+            }
+        }
+
+        writer.close();
+        listener.onProgress(total, total);
+        return done;
+    }
+
+    /**
+     * Events of one UTC day, from the archive when the day is archived, otherwise database rows up to
+     * {@code lastId}. Days are read one by one and written without holding any lock, the archive lock is
+     * only held while the day is read, so compaction moving it meanwhile does not lose or repeat events.
+     */
+    private List<PostureEvent> readEvents(LocalDate day, long lastId) {
+        long from = day.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        long to = day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        archive.readLock().lock();
+        try {
+            // Archived months end at UTC midnight, so a day is either archived or not
+            if (to > archive.getBoundary()) {
+                return db.postureEventDao().getBetweenUpTo(from, to, lastId);
+            }
+            List<PostureEvent> events = new ArrayList<>();
+            archive.forEachEvent(from, to, (address, timestamp, posture, duration) -> events.add(
+                    new PostureEvent(address, timestamp, PostureCorrectorDevice.fromPostureCode(posture), duration)));
+            return events;
+        } finally {
+            archive.readLock().unlock();
+        }
+    }
+
+    private static LocalDate utcDay(long timestamp) {
+        return Instant.ofEpochMilli(timestamp).atOffset(ZoneOffset.UTC).toLocalDate();
+    }
+
+    private static Long min(Long a, Long b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return Math.min(a, b);
+    }
+
+    /**
+     * Reads history from the channel into the database. Progress is reported in bytes of the file.
+     *
+     * @param size size of the file in bytes, -1 when not known
+     * @return number of imported records
+     */
+    public long importFrom(ReadableByteChannel channel, long size, ProgressListener listener) throws IOException {
+        CountingChannel counting = new CountingChannel(channel);
+        List<PostureEvent> batch = new ArrayList<>(IMPORT_BATCH);
+        long[] done = new long[1];
+        try {
+            db.runInTransaction(() -> {
+                try {
+                    HistoryReader.read(counting, new HistoryReader.Listener() {
+                        @Override
+                        public void onDay(long epochDay, String address, long usageDuration, long hunchedDuration,
+                                          int hunchedCount) {
+                            checkCancelled();
+                            DayStatistic statistic = new DayStatistic(LocalDate.ofEpochDay(epochDay), address);
+                            statistic.usageDuration = usageDuration;
+                            statistic.hunchedPostureDuration = hunchedDuration;
+                            statistic.hunchedCount = hunchedCount;
+                            DayStatisticWriter.replaceDay(db, statistic);
+                            reportBytes(++done[0], counting.bytes, size, listener);
+                        }
+
+                        @Override
+                        public void onEvent(String address, long timestamp, int posture, long duration) {
+                            checkCancelled();
+                            batch.add(new PostureEvent(address, timestamp, PostureCorrectorDevice.fromPostureCode(posture), duration));
+                            if (batch.size() == IMPORT_BATCH) {
+                                insertNewEvents(batch);
+                                batch.clear();
+                            }
+                            reportBytes(++done[0], counting.bytes, size, listener);
+                        }
+                    });
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (!batch.isEmpty()) {
+                    insertNewEvents(batch);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        listener.onProgress(counting.bytes, size);
+        return done[0];
+    }
+
+    /**
+     * Inserts events of the batch which are not stored yet. Files list events ordered by time, so stored
+     * events of the batch are read with one range query.
+     */
+    private void insertNewEvents(List<PostureEvent> batch) {
+        long from = Long.MAX_VALUE;
+        long to = Long.MIN_VALUE;
+        for (PostureEvent event : batch) {
+            from = Math.min(from, event.timestamp);
+            to = Math.max(to, event.timestamp);
+        }
+        Set<String> stored = new HashSet<>();
+        for (PostureEvent event : db.postureEventDao().getBetween(from, to + 1)) {
+            stored.add(key(event));
+        }
+        List<PostureEvent> added = new ArrayList<>(batch.size());
+        for (PostureEvent event : batch) {
+            // Also drops events repeated in the file
+            if (stored.add(key(event))) {
+                added.add(event);
+            }
+        }
+        db.postureEventDao().insertAll(added);
+    }
+
+    private static String key(PostureEvent event) {
+        return event.deviceAddress + '/' + event.timestamp + '/' + event.posture + '/' + event.duration;
+    }
+
+    private void checkCancelled() {
+        if (cancelled.get()) throw new CancellationException("History transfer cancelled");
+    }
+
+    private static void report(long records, long total, ProgressListener listener) {
+        if (records % PROGRESS_STEP == 0) {
+            listener.onProgress(records, total);
+        }
+    }
+
+    private static void reportBytes(long records, long bytes, long size, ProgressListener listener) {
+        if (records % PROGRESS_STEP == 0) {
+            listener.onProgress(bytes, size);
+        }
+    }
+
+    private static final class ExportSnapshot {
+        final List<DayStatistic> days;
+        final long lastId;
+        final Long lastTimestamp;
+        final Long firstTimestamp;
+
+        ExportSnapshot(List<DayStatistic> days, long lastId, Long lastTimestamp, Long firstTimestamp) {
+            this.days = days;
+            this.lastId = lastId;
+            this.lastTimestamp = lastTimestamp;
+            this.firstTimestamp = firstTimestamp;
+        }
+    }
+
+    private static final class CountingChannel implements ReadableByteChannel {
+        private final ReadableByteChannel channel;
+        long bytes = 0;
+
+        CountingChannel(ReadableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            int read = channel.read(destination);
+            if (read > 0) {
+                bytes += read;
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
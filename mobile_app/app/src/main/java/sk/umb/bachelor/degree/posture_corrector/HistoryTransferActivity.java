@@ -0,0 +1,78 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
+
+/**
+ * Backup of the history into a file chosen by the user and its restore, for moving to a new phone.
+ * Transfers run in {@link HistoryTransferViewModel} and go on when the activity is recreated.
+ */
+public class HistoryTransferActivity extends AppCompatActivity {
+    private HistoryTransferViewModel model;
+
+    private Button exportCsvButton;
+    private Button exportBinaryButton;
+    private Button importButton;
+    private Button cancelButton;
+    private ProgressBar progressBar;
+    private TextView statusTextView;
+
+    private final ActivityResultLauncher<String> createCsv = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("text/csv"), uri -> model.exportTo(uri));
+    private final ActivityResultLauncher<String> createBinary = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("application/octet-stream"), uri -> model.exportTo(uri));
+    private final ActivityResultLauncher<String[]> openDocument = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), uri -> model.importFrom(uri));
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_history_transfer);
+        model = new ViewModelProvider(this).get(HistoryTransferViewModel.class);
+
+        exportCsvButton = findViewById(R.id.exportCsvButton);
+        exportBinaryButton = findViewById(R.id.exportBinaryButton);
+        importButton = findViewById(R.id.importButton);
+        cancelButton = findViewById(R.id.cancelButton);
+        progressBar = findViewById(R.id.transferProgressBar);
+        statusTextView = findViewById(R.id.transferStatusTextView);
+
+        exportCsvButton.setOnClickListener(v -> {
+            model.exportFormat = HistoryTransfer.Format.CSV;
+            createCsv.launch("posture_history.csv");
+        });
+        exportBinaryButton.setOnClickListener(v -> {
+            model.exportFormat = HistoryTransfer.Format.BINARY;
+            createBinary.launch("posture_history.pch");
+        });
+        importButton.setOnClickListener(v -> openDocument.launch(new String[] { "*/*" }));
+        cancelButton.setOnClickListener(v -> model.cancel());
+
+        model.isRunning().observe(this, this::setRunning);
+        model.getProgress().observe(this, this::showProgress);
+        model.getStatus().observe(this, statusTextView::setText);
+    }
+
+    private void showProgress(int progress) {
+        if (progress == HistoryTransferViewModel.PROGRESS_UNKNOWN) {
+            progressBar.setIndeterminate(true);
+        } else {
+            progressBar.setIndeterminate(false);
+            progressBar.setProgress(progress);
+        }
+    }
+
+    private void setRunning(boolean running) {
+        exportCsvButton.setEnabled(!running);
+        exportBinaryButton.setEnabled(!running);
+        importButton.setEnabled(!running);
+        cancelButton.setEnabled(running);
+    }
+}
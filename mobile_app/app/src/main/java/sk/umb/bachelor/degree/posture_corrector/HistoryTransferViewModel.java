@@ -0,0 +1,151 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.app.Application;
+import android.content.ContentResolver;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the transfers of {@link HistoryTransferActivity}. It outlives configuration changes, so rotating
+ * the phone does not abort a long export or import, the transfer is cancelled only when the activity finishes.
+ */
+public class HistoryTransferViewModel extends AndroidViewModel {
+    /** Progress in thousandths, -1 when the total is not known. */
+    static final int PROGRESS_UNKNOWN = -1;
+
+    private final ExecutorService exportExecutor = Executors.newSingleThreadExecutor();
+    private final StatisticsRepository repository;
+    private final MutableLiveData<Boolean> running = new MutableLiveData<>(false);
+    private final MutableLiveData<Integer> progress = new MutableLiveData<>(0);
+    private final MutableLiveData<String> status = new MutableLiveData<>();
+    private volatile HistoryTransfer transfer;
+    // Chosen before the document picker is shown, the picker may return to a recreated activity
+    HistoryTransfer.Format exportFormat;
+
+    public HistoryTransferViewModel(@NonNull Application application) {
+        super(application);
+        repository = StatisticsRepository.getInstance(application);
+    }
+
+    LiveData<Boolean> isRunning() {
+        return running;
+    }
+
+    LiveData<Integer> getProgress() {
+        return progress;
+    }
+
+    LiveData<String> getStatus() {
+        return status;
+    }
+
+    void exportTo(Uri uri) {
+        if (uri == null || transfer != null) return;
+        HistoryTransfer.Format format = exportFormat;
+        HistoryTransfer current = start("Exportovanie...");
+        ContentResolver resolver = getApplication().getContentResolver();
+        // Export only reads, so it does not wait for the writer thread
+        exportExecutor.execute(() -> {
+            String result;
+            boolean success = false;
+            try (ParcelFileDescriptor descriptor = resolver.openFileDescriptor(uri, "wt");
+                 FileChannel channel = new FileOutputStream(descriptor.getFileDescriptor()).getChannel()) {
+                long records = current.export(channel, format, this::postProgress);
+                result = "Exportovaných záznamov: " + records;
+                success = true;
+            } catch (CancellationException e) {
+                result = "Export bol zrušený";
+            } catch (Exception e) {
+                Log.e("HistoryTransfer", "Export failed", e);
+                result = "Export zlyhal: " + e.getMessage();
+            }
+            if (!success) {
+                deleteDocument(resolver, uri);
+            }
+            finish(result);
+        });
+    }
+
+    void importFrom(Uri uri) {
+        if (uri == null || transfer != null) return;
+        HistoryTransfer current = start("Importovanie...");
+        Application application = getApplication();
+        // Import writes on the writer thread, so it does not interleave with newly recorded events
+        repository.getWriteExecutor().execute(() -> {
+            String result;
+            try (ParcelFileDescriptor descriptor = application.getContentResolver().openFileDescriptor(uri, "r");
+                 FileChannel channel = new FileInputStream(descriptor.getFileDescriptor()).getChannel()) {
+                long records = current.importFrom(channel, descriptor.getStatSize(), this::postProgress);
+                result = "Importovaných záznamov: " + records;
+                // Imported events of archived months are moved into the archive right away
+                repository.compactArchive();
+                TodayStatistics.getInstance(application).load();
+                LocalBroadcastManager.getInstance(application).sendBroadcast(new Intent("data-change"));
+            } catch (CancellationException e) {
+                result = "Import bol zrušený, história sa nezmenila";
+            } catch (Exception e) {
+                Log.e("HistoryTransfer", "Import failed", e);
+                result = "Import zlyhal, história sa nezmenila: " + e.getMessage();
+            }
+            finish(result);
+        });
+    }
+
+    void cancel() {
+        HistoryTransfer current = transfer;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    private HistoryTransfer start(String message) {
+        HistoryTransfer current = new HistoryTransfer(repository.getDatabase(), repository.getArchive());
+        transfer = current;
+        running.setValue(true);
+        progress.setValue(0);
+        status.setValue(message);
+        return current;
+    }
+
+    private void finish(String result) {
+        transfer = null;
+        progress.postValue(0);
+        status.postValue(result);
+        running.postValue(false);
+    }
+
+    private void postProgress(long done, long total) {
+        progress.postValue(total > 0 ? (int) (1000 * Math.min(done, total) / total) : PROGRESS_UNKNOWN);
+    }
+
+    private static void deleteDocument(ContentResolver resolver, Uri uri) {
+        try {
+            DocumentsContract.deleteDocument(resolver, uri);
+        } catch (FileNotFoundException | RuntimeException e) {
+            Log.w("HistoryTransfer", "Unfinished export not deleted", e);
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        cancel();
+        exportExecutor.shutdown();
+    }
+}
@@ -14,8 +14,11 @@ import android.content.ServiceConnection;
 import android.content.res.Configuration;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.util.Log;
+import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
 
@@ -30,34 +33,91 @@ import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.formatter.IndexAxisValueFormatter;
+import com.google.android.material.button.MaterialButtonToggleGroup;
 import com.google.android.material.color.MaterialColors;
+import com.google.android.material.switchmaterial.SwitchMaterial;
 
+import sk.umb.bachelor.degree.posture_corrector.core.Downsampler;
+import sk.umb.bachelor.degree.posture_corrector.core.PitchRingBuffer;
+import sk.umb.bachelor.degree.posture_corrector.core.PostureStatistics;
+import sk.umb.bachelor.degree.posture_corrector.core.TrendState;
+
+import java.time.DayOfWeek;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 
 public class MainActivity extends AppCompatActivity {
+    enum ChartRange {
+        RANGE_WEEK,
+        RANGE_MONTH,
+        RANGE_QUARTER,
+        RANGE_YEAR
+    }
+
+    // Number of points drawn in the live pitch chart, independent of the sample rate
+    private static final int LIVE_CHART_POINTS = 300;
+    private static final long LIVE_CHART_REFRESH_MS = 100;
+
     private boolean isServiceRunning = false;
+    private ChartRange chartRange = ChartRange.RANGE_WEEK;
     private Button connectButton;
     private TextView stateTextView;
-    private AppDatabase db;
+    // Opened only after the first frame, null until then
+    private StatisticsRepository repository;
+    private UiSnapshotStore snapshotStore;
+    // Last values loaded from the database, saved as the snapshot for the next start
+    private StatisticsSnapshot lastStatistics;
+    private UiSnapshotStore.Chart lastWeekChart;
+    private boolean fullyDrawnReported = false;
+
+    // The bar chart keeps one data set, a range switch replaces its entries, new events update only the last bar
+    private BarChart barChart;
+    private BarDataSet chartDataSet;
+    private IndexAxisValueFormatter chartLabelFormatter;
+    // Range and day of the shown entries, null before the first load
+    private ChartRange shownRange;
+    private LocalDate shownToday;
 
     TextView percentOfStretchTextView;
     TextView usageTimeTextView;
     TextView hunchTimeTextView;
     TextView hunchCountTextView;
+    TextView averageTextView;
+    TextView streakTextView;
+    TextView bestTextView;
 
     static class BluetoothServiceConnection implements ServiceConnection {
         public BluetoothService bluetoothService;
+        // Activity is between onStart and onStop
+        boolean uiVisible = false;
+        // Live chart is shown, also set before the service is bound
+        boolean streaming = false;
+
+        void setUiVisible(boolean uiVisible) {
+            this.uiVisible = uiVisible;
+            if (bluetoothService != null) {
+                bluetoothService.setUiVisible(uiVisible);
+            }
+        }
+
+        void setStreaming(boolean streaming) {
+            this.streaming = streaming;
+            if (bluetoothService != null) {
+                bluetoothService.setStreaming(streaming);
+            }
+        }
 
         @Override
         public void onServiceConnected(ComponentName name, IBinder service) {
             Log.i("aaa", "onServiceConnected: ");
             BluetoothService.BluetoothServiceBinder binder = (BluetoothService.BluetoothServiceBinder) service;
             this.bluetoothService = binder.getService();
-
+            bluetoothService.setUiVisible(uiVisible);
+            bluetoothService.setStreaming(streaming);
         }
 
         @Override
@@ -68,15 +128,33 @@ public class MainActivity extends AppCompatActivity {
 
     BluetoothServiceConnection serviceConnection = new BluetoothServiceConnection();
 
+    private final Handler liveChartHandler = new Handler(Looper.getMainLooper());
+    private LineChart pitchChart;
+    private LineDataSet pitchDataSet;
+    private boolean liveChartRunning = false;
+    // Buffers reused for every frame of the live chart
+    private long[] pitchTimestamps;
+    private float[] pitchValues;
+    private final long[] sampledTimestamps = new long[LIVE_CHART_POINTS];
+    private final float[] sampledValues = new float[LIVE_CHART_POINTS];
+    private final Entry[] pitchEntryPool = new Entry[LIVE_CHART_POINTS];
+    private final ArrayList<Entry> pitchEntries = new ArrayList<>(LIVE_CHART_POINTS);
+
+    private final Runnable liveChartUpdater = new Runnable() {
+        @Override
+        public void run() {
+            updateLiveChart();
+            liveChartHandler.postDelayed(this, LIVE_CHART_REFRESH_MS);
+        }
+    };
+
 
     private final BroadcastReceiver receiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
-            if (intent.getAction().equals("connection-change")) {
-                Log.d("AAA", "ConnectionChange");
-                updateConnectedStateAndElements();
-            } else if (intent.getAction().equals("data-change")) {
-                updateStatistics();
+            if (intent.getAction().equals("data-change")) {
+                updateTodayBar();
+                updateTrends();
             }
         }
     };
@@ -87,17 +165,23 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        if (db == null) db = AppDatabase.getInstance(this);
-
         stateTextView = findViewById(R.id.stateTextView);
+        stateTextView.setOnLongClickListener(v -> {
+            startActivity(new Intent(this, MetricsActivity.class));
+            return true;
+        });
         connectButton = findViewById(R.id.connectButton);
         percentOfStretchTextView = findViewById(R.id.percentOfStretchTextView);
         usageTimeTextView = findViewById(R.id.usageTimeTextView);
         hunchTimeTextView = findViewById(R.id.hunchTimeTextView);
         hunchCountTextView = findViewById(R.id.hunchCountTextView);
+        averageTextView = findViewById(R.id.averageTextView);
+        streakTextView = findViewById(R.id.streakTextView);
+        bestTextView = findViewById(R.id.bestTextView);
 
-        isServiceRunning = BluetoothService.isRunning(this);
-        updateConnectedStateAndElements();
+        ServiceStateRegistry serviceState = ServiceStateRegistry.getInstance();
+        serviceState.getConnectionStateData().observe(this, this::updateConnectedStateAndElements);
+        isServiceRunning = BluetoothService.isRunning();
         if (isServiceRunning) {
             bindService(new Intent(this, BluetoothService.class),
                     serviceConnection,
@@ -106,7 +190,7 @@ public class MainActivity extends AppCompatActivity {
         }
 
         connectButton.setOnClickListener(v -> {
-            isServiceRunning = BluetoothService.isRunning(this);
+            isServiceRunning = BluetoothService.isRunning();
             if (!isServiceRunning) {
                 Intent serviceIntent = new Intent(this, BluetoothService.class);
                 startForegroundService(serviceIntent);
@@ -116,42 +200,204 @@ public class MainActivity extends AppCompatActivity {
                         Context.BIND_AUTO_CREATE
                 );
             } else if (serviceConnection.bluetoothService != null) {
-                if (serviceConnection.bluetoothService.getDevice() != null && serviceConnection.bluetoothService.getDevice().getState() == PostureCorrectorDevice.State.STATE_CONNECTED) {
+                if (serviceState.getConnectionState() != PostureCorrectorDevice.State.STATE_DISCONNECTED) {
                     serviceConnection.bluetoothService.disconnect();
                 } else {
                     serviceConnection.bluetoothService.connect();
                 }
             }
         });
-        updateStatistics();
+        MaterialButtonToggleGroup chartRangeToggleGroup = findViewById(R.id.chartRangeToggleGroup);
+        chartRangeToggleGroup.addOnButtonCheckedListener((group, checkedId, isChecked) -> {
+            if (!isChecked) return;
+            if (checkedId == R.id.yearRangeButton) {
+                chartRange = ChartRange.RANGE_YEAR;
+            } else if (checkedId == R.id.quarterRangeButton) {
+                chartRange = ChartRange.RANGE_QUARTER;
+            } else if (checkedId == R.id.monthRangeButton) {
+                chartRange = ChartRange.RANGE_MONTH;
+            } else {
+                chartRange = ChartRange.RANGE_WEEK;
+            }
+            updateChart();
+        });
+
+        barChart = findViewById(R.id.chart);
+        setupChart();
+        findViewById(R.id.historyButton).setOnClickListener(v -> startActivity(new Intent(this, HistoryActivity.class)));
+        findViewById(R.id.historyTransferButton).setOnClickListener(v -> startActivity(new Intent(this, HistoryTransferActivity.class)));
+        findViewById(R.id.settingsButton).setOnClickListener(v -> startActivity(new Intent(this, SettingsActivity.class)));
+
+        SwitchMaterial streamingSwitch = findViewById(R.id.streamingSwitch);
+        pitchChart = findViewById(R.id.pitchChart);
+        setupLiveChart();
+        streamingSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            serviceConnection.setStreaming(isChecked);
+            pitchChart.setVisibility(isChecked ? View.VISIBLE : View.GONE);
+            if (isChecked) {
+                startLiveChart();
+            } else {
+                stopLiveChart();
+            }
+        });
+
+        snapshotStore = new UiSnapshotStore(this);
+        showSnapshot();
+        // View.post runs within the first traversal, the nested post runs after the first frame is drawn
+        getWindow().getDecorView().post(() -> new Handler(Looper.getMainLooper()).post(this::loadFromDatabase));
+    }
+
+    /**
+     * Shows values saved when the activity was stopped last time, the snapshot does not grow with the history.
+     */
+    private void showSnapshot() {
+        LocalDate today = LocalDate.now();
+        StatisticsSnapshot statistics = snapshotStore.getToday(today);
+        if (statistics != null) {
+            updateStatistics(statistics);
+        }
+        UiSnapshotStore.Chart chart = snapshotStore.getChart(today);
+        if (chart != null) {
+            ArrayList<BarEntry> entries = new ArrayList<>();
+            for (int i = 0; i < chart.values.length; i++) {
+                entries.add(new BarEntry(i, chart.values[i]));
+            }
+            showChart(ChartRange.RANGE_WEEK, today, entries, chart.labels);
+        }
+    }
+
+    private void loadFromDatabase() {
+        if (isDestroyed()) return;
+        repository = StatisticsRepository.getInstance(this);
+        TodayStatistics.getInstance(this).getSnapshot().observe(this, statistics -> {
+            lastStatistics = statistics;
+            updateStatistics(statistics);
+        });
         updateChart();
+        updateTrends();
+        // After the first frame, WorkManager is initialized on first use
+        SyncWorker.schedule(this);
     }
 
     private void updateChart() {
-        DayStatisticDao dao = db.dayStatisticDao();
-        BarChart barChart = findViewById(R.id.chart);
-
-        ArrayList<BarEntry> entries = new ArrayList<>();
-        List<String> xAxisLabels = new ArrayList<>();
-        LocalDate currentDate = LocalDate.now().minusDays(4);
-        for (int i = 0; i < 5; i++) {
-            DayStatistic statistic = dao.getByDate(currentDate);
-            if (statistic == null) statistic = new DayStatistic();
-            entries.add(new BarEntry(i, calculatePercentOfStretch(statistic)));
-            xAxisLabels.add(currentDate.getDayOfMonth() + "." + currentDate.getMonthValue() + ".");
-            currentDate = currentDate.plusDays(1);
+        // Range switched before the database was opened is loaded by loadFromDatabase
+        if (repository == null) return;
+        ChartRange range = chartRange;
+        LocalDate today = LocalDate.now();
+        if (range == ChartRange.RANGE_YEAR) {
+            LocalDate firstMonth = today.withDayOfMonth(1).minusMonths(11);
+            repository.getMonthsBetween(firstMonth, today, statistics -> {
+                ArrayList<BarEntry> entries = new ArrayList<>();
+                List<String> xAxisLabels = new ArrayList<>();
+                LocalDate currentMonth = firstMonth;
+                int next = 0;
+                for (int i = 0; i < 12; i++) {
+                    MonthStatistic statistic = null;
+                    if (next < statistics.size() && statistics.get(next).monthStart.equals(currentMonth)) {
+                        statistic = statistics.get(next++);
+                    }
+                    entries.add(new BarEntry(i, statistic == null ? 0.0f :
+                            PostureStatistics.percentOfStretch(statistic.usageDuration, statistic.hunchedPostureDuration)));
+                    xAxisLabels.add(currentMonth.getMonthValue() + "." + (currentMonth.getYear() % 100));
+                    currentMonth = currentMonth.plusMonths(1);
+                }
+                showChart(range, today, entries, xAxisLabels);
+                reportFullyDrawnOnce();
+            });
+        } else if (range == ChartRange.RANGE_QUARTER) {
+            LocalDate firstWeek = today.with(DayOfWeek.MONDAY).minusWeeks(11);
+            repository.getWeeksBetween(firstWeek, today, statistics -> {
+                ArrayList<BarEntry> entries = new ArrayList<>();
+                List<String> xAxisLabels = new ArrayList<>();
+                LocalDate currentWeek = firstWeek;
+                int next = 0;
+                for (int i = 0; i < 12; i++) {
+                    WeekStatistic statistic = null;
+                    if (next < statistics.size() && statistics.get(next).weekStart.equals(currentWeek)) {
+                        statistic = statistics.get(next++);
+                    }
+                    entries.add(new BarEntry(i, statistic == null ? 0.0f :
+                            PostureStatistics.percentOfStretch(statistic.usageDuration, statistic.hunchedPostureDuration)));
+                    xAxisLabels.add(currentWeek.getDayOfMonth() + "." + currentWeek.getMonthValue() + ".");
+                    currentWeek = currentWeek.plusWeeks(1);
+                }
+                showChart(range, today, entries, xAxisLabels);
+                reportFullyDrawnOnce();
+            });
+        } else {
+            int days = range == ChartRange.RANGE_MONTH ? 30 : 7;
+            LocalDate firstDate = today.minusDays(days - 1);
+            repository.getDaysBetween(firstDate, today, statistics -> {
+                ArrayList<BarEntry> entries = new ArrayList<>();
+                List<String> xAxisLabels = new ArrayList<>();
+                float[] values = new float[days];
+                LocalDate currentDate = firstDate;
+                int next = 0;
+                for (int i = 0; i < days; i++) {
+                    DayStatistic statistic = null;
+                    if (next < statistics.size() && statistics.get(next).date.equals(currentDate)) {
+                        statistic = statistics.get(next++);
+                    }
+                    values[i] = statistic == null ? 0.0f :
+                            PostureStatistics.percentOfStretch(statistic.usageDuration, statistic.hunchedPostureDuration);
+                    entries.add(new BarEntry(i, values[i]));
+                    xAxisLabels.add(currentDate.getDayOfMonth() + "." + currentDate.getMonthValue() + ".");
+                    currentDate = currentDate.plusDays(1);
+                }
+                if (range == ChartRange.RANGE_WEEK) {
+                    lastWeekChart = new UiSnapshotStore.Chart(today, values, xAxisLabels);
+                }
+                showChart(range, today, entries, xAxisLabels);
+                reportFullyDrawnOnce();
+            });
         }
+    }
 
-        BarDataSet dataSet = new BarDataSet(entries, "% času vystierania");
-
-        dataSet.setColor(MaterialColors.getColor(this, androidx.appcompat.R.attr.colorPrimary, Color.BLACK));
+    /**
+     * Reloads only the bar of today, or of this week or month in the ranges of weeks and months. The whole range is loaded again
+     * when another range is shown or the day changed.
+     */
+    private void updateTodayBar() {
+        if (repository == null) return;
+        ChartRange range = chartRange;
+        LocalDate today = LocalDate.now();
+        if (range != shownRange || !today.equals(shownToday)) {
+            updateChart();
+            return;
+        }
+        if (range == ChartRange.RANGE_YEAR) {
+            LocalDate month = today.withDayOfMonth(1);
+            repository.getMonthsBetween(month, month, statistics -> setTodayBar(range, today, statistics.isEmpty() ? 0.0f :
+                    PostureStatistics.percentOfStretch(statistics.get(0).usageDuration, statistics.get(0).hunchedPostureDuration)));
+        } else if (range == ChartRange.RANGE_QUARTER) {
+            LocalDate week = today.with(DayOfWeek.MONDAY);
+            repository.getWeeksBetween(week, week, statistics -> setTodayBar(range, today, statistics.isEmpty() ? 0.0f :
+                    PostureStatistics.percentOfStretch(statistics.get(0).usageDuration, statistics.get(0).hunchedPostureDuration)));
+        } else {
+            repository.getDaysBetween(today, today, statistics -> setTodayBar(range, today, statistics.isEmpty() ? 0.0f :
+                    PostureStatistics.percentOfStretch(statistics.get(0).usageDuration, statistics.get(0).hunchedPostureDuration)));
+        }
+    }
 
-        BarData barData = new BarData(dataSet);
+    private void setTodayBar(ChartRange range, LocalDate today, float value) {
+        if (range != shownRange || !today.equals(shownToday) || isDestroyed() || chartDataSet.getEntryCount() == 0) return;
+        chartDataSet.getEntryForIndex(chartDataSet.getEntryCount() - 1).setY(value);
+        if (range == ChartRange.RANGE_WEEK && lastWeekChart != null) {
+            lastWeekChart.values[lastWeekChart.values.length - 1] = value;
+        }
+        // The y axis is fixed, recalculating bounds of the data is enough
+        chartDataSet.calcMinMax();
+        barChart.getData().notifyDataChanged();
+        barChart.invalidate();
+    }
 
-        barChart.setData(barData);
+    private void setupChart() {
+        chartDataSet = new BarDataSet(new ArrayList<>(), "% času vystierania");
+        chartDataSet.setColor(MaterialColors.getColor(this, androidx.appcompat.R.attr.colorPrimary, Color.BLACK));
 
+        chartLabelFormatter = new IndexAxisValueFormatter();
         XAxis xAxis = barChart.getXAxis();
-        xAxis.setValueFormatter(new IndexAxisValueFormatter(xAxisLabels));
+        xAxis.setValueFormatter(chartLabelFormatter);
         xAxis.setPosition(XAxis.XAxisPosition.BOTTOM);
         xAxis.setGranularity(1.0f);
         xAxis.setCenterAxisLabels(false);
@@ -161,7 +407,6 @@ public class MainActivity extends AppCompatActivity {
         yAxis.setAxisMaximum(100f);
 
         barChart.getDescription().setEnabled(false);
-        barChart.getBarData().setValueTextSize(15.0f);
 
         int nightModeFlags = getResources().getConfiguration().uiMode & Configuration.UI_MODE_NIGHT_MASK;
         if (nightModeFlags == Configuration.UI_MODE_NIGHT_YES) {
@@ -170,32 +415,125 @@ public class MainActivity extends AppCompatActivity {
             barChart.getDescription().setTextColor(Color.BLACK);
             barChart.getLegend().setTextColor(Color.BLACK);
         }
+    }
 
-        // Refresh the chart
+    private void showChart(ChartRange range, LocalDate today, ArrayList<BarEntry> entries, List<String> xAxisLabels) {
+        // Range was switched while loading, newer load will show the chart
+        if (range != chartRange || isDestroyed()) return;
+        shownRange = range;
+        shownToday = today;
+
+        chartDataSet.setValues(entries);
+        chartLabelFormatter.setValues(xAxisLabels.toArray(new String[0]));
+        // Data is set with the first entries, an empty data set has no bounds
+        if (barChart.getData() == null) {
+            barChart.setData(new BarData(chartDataSet));
+        }
+        BarData barData = barChart.getBarData();
+        barData.setValueTextSize(range == ChartRange.RANGE_WEEK ? 15.0f : 8.0f);
+        barData.setDrawValues(range != ChartRange.RANGE_MONTH);
+        barData.notifyDataChanged();
+        barChart.notifyDataSetChanged();
         barChart.invalidate();
     }
 
-    private void updateStatistics() {
-        DayStatisticDao dao = db.dayStatisticDao();
-        DayStatistic dayStatistic = dao.getOrCreateToday();
-        float percentOfStretch = calculatePercentOfStretch(dayStatistic);
+    private void reportFullyDrawnOnce() {
+        if (fullyDrawnReported || isDestroyed()) return;
+        fullyDrawnReported = true;
+        reportFullyDrawn();
+    }
+
+    private void setupLiveChart() {
+        for (int i = 0; i < LIVE_CHART_POINTS; i++) {
+            pitchEntryPool[i] = new Entry();
+        }
+        pitchDataSet = new LineDataSet(pitchEntries, "Sklon (°)");
+        pitchDataSet.setDrawCircles(false);
+        pitchDataSet.setDrawValues(false);
+        pitchDataSet.setColor(MaterialColors.getColor(this, androidx.appcompat.R.attr.colorPrimary, Color.BLACK));
+        pitchChart.setData(new LineData(pitchDataSet));
+        pitchChart.getDescription().setEnabled(false);
+        pitchChart.getXAxis().setDrawLabels(false);
+        pitchChart.getAxisRight().setEnabled(false);
+        pitchChart.setTouchEnabled(false);
+    }
+
+    private void startLiveChart() {
+        if (liveChartRunning) return;
+        liveChartRunning = true;
+        liveChartHandler.post(liveChartUpdater);
+    }
+
+    private void stopLiveChart() {
+        liveChartRunning = false;
+        liveChartHandler.removeCallbacks(liveChartUpdater);
+    }
+
+    private void updateLiveChart() {
+        if (serviceConnection.bluetoothService == null || serviceConnection.bluetoothService.getPrimaryDevice() == null) return;
+        PitchRingBuffer buffer = serviceConnection.bluetoothService.getPrimaryDevice().getPitchBuffer();
+        if (pitchValues == null || pitchValues.length < buffer.getCapacity()) {
+            pitchTimestamps = new long[buffer.getCapacity()];
+            pitchValues = new float[buffer.getCapacity()];
+        }
+        int size = buffer.copyTo(pitchTimestamps, pitchValues);
+        int points = Downsampler.lttb(pitchTimestamps, pitchValues, size, LIVE_CHART_POINTS, sampledTimestamps, sampledValues);
+
+        pitchEntries.clear();
+        for (int i = 0; i < points; i++) {
+            Entry entry = pitchEntryPool[i];
+            // Seconds relative to the newest sample keep the values small for float
+            entry.setX((sampledTimestamps[i] - sampledTimestamps[points - 1]) / 1000.0f);
+            entry.setY(sampledValues[i]);
+            pitchEntries.add(entry);
+        }
+        pitchDataSet.notifyDataSetChanged();
+        pitchChart.getData().notifyDataChanged();
+        pitchChart.notifyDataSetChanged();
+        pitchChart.invalidate();
+    }
+
+    private void updateStatistics(StatisticsSnapshot dayStatistic) {
+        float percentOfStretch = PostureStatistics.percentOfStretch(dayStatistic.usageDuration, dayStatistic.hunchedPostureDuration);
         percentOfStretchTextView.setText("Približné % času vystierania: " + (int)Math.round(percentOfStretch) + "%");
-        usageTimeTextView.setText("Počet minút používania dnes: " + (int)Math.floor(dayStatistic.usageDuration / 60) + " minút");
-        hunchTimeTextView.setText("Počet minút zhrbenia dnes: " + (int)Math.floor(dayStatistic.hunchedPostureDuration / 60) + " minút");
+        usageTimeTextView.setText("Počet minút používania dnes: " + (int)Math.floor(dayStatistic.usageDuration / 60000) + " minút");
+        hunchTimeTextView.setText("Počet minút zhrbenia dnes: " + (int)Math.floor(dayStatistic.hunchedPostureDuration / 60000) + " minút");
         hunchCountTextView.setText("Počet zhrbení dnes: " + dayStatistic.hunchedCount);
     }
 
-    private float calculatePercentOfStretch(DayStatistic dayStatistic) {
-        float val = ((float)(dayStatistic.usageDuration - dayStatistic.hunchedPostureDuration) / dayStatistic.usageDuration) * 100;
-        if (Float.isNaN(val)) return 0.0f;
-        return val;
+
+    /**
+     * Trends are kept incrementally, the repository reads only days changed since the last call.
+     */
+    private void updateTrends() {
+        if (repository == null) return;
+        repository.getTrends(this::showTrends);
     }
 
-    private void updateConnectedStateAndElements() {
-        PostureCorrectorDevice.State state = PostureCorrectorDevice.State.STATE_DISCONNECTED;
-        if (serviceConnection.bluetoothService != null && serviceConnection.bluetoothService.getDevice() != null) {
-            state = serviceConnection.bluetoothService.getDevice().getState();
-        }
+    private void showTrends(TrendState.Trends trends) {
+        if (isDestroyed()) return;
+        String weekOverWeek = Float.isNaN(trends.weekOverWeek) ? "" :
+                String.format(Locale.ROOT, " (%+d oproti minulému týždňu)", Math.round(trends.weekOverWeek));
+        averageTextView.setText("Priemer 7 dní: " + formatPercent(trends.average7) + weekOverWeek
+                + ", 30 dní: " + formatPercent(trends.average30));
+        streakTextView.setText("Dobré dni za sebou: " + trends.currentStreak + " (najviac: " + trends.bestStreak + ")");
+        String bestDay = Float.isNaN(trends.bestDayPercent) ? "–" :
+                formatPercent(trends.bestDayPercent) + " " + formatDay(trends.bestDay);
+        String bestWeek = Float.isNaN(trends.bestWeekPercent) ? "–" :
+                formatPercent(trends.bestWeekPercent) + " do " + formatDay(trends.bestWeekEnd);
+        bestTextView.setText("Najlepší deň: " + bestDay + ", najlepší týždeň: " + bestWeek);
+    }
+
+    private static String formatPercent(float percent) {
+        return Float.isNaN(percent) ? "–" : Math.round(percent) + "%";
+    }
+
+    private static String formatDay(long epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        return date.getDayOfMonth() + "." + date.getMonthValue() + "." + date.getYear();
+    }
+
+    private void updateConnectedStateAndElements(PostureCorrectorDevice.State state) {
         if (state == PostureCorrectorDevice.State.STATE_CONNECTED) {
             stateTextView.setText("Stav: Pripojené");
             connectButton.setEnabled(true);
@@ -206,8 +544,27 @@ public class MainActivity extends AppCompatActivity {
             connectButton.setText("Pripojiť");
         } else if (state == PostureCorrectorDevice.State.STATE_CONNECTING) {
             stateTextView.setText("Stav: Pripájanie");
-            connectButton.setEnabled(false);
-            connectButton.setText("Pripojiť");
+            // Reconnecting to an absent device goes on until the user cancels it
+            connectButton.setEnabled(true);
+            connectButton.setText("Zrušiť");
+        }
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        serviceConnection.setUiVisible(true);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        serviceConnection.setUiVisible(false);
+        if (lastStatistics != null) {
+            snapshotStore.putToday(lastStatistics);
+        }
+        if (lastWeekChart != null) {
+            snapshotStore.putChart(lastWeekChart);
         }
     }
 
@@ -215,14 +572,17 @@ public class MainActivity extends AppCompatActivity {
     protected void onResume() {
         super.onResume();
         IntentFilter filter = new IntentFilter();
-        filter.addAction("connection-change");
         filter.addAction("data-change");
         LocalBroadcastManager.getInstance(this).registerReceiver(receiver, filter);
+        if (pitchChart.getVisibility() == View.VISIBLE) {
+            startLiveChart();
+        }
     }
 
     @Override
     protected void onPause() {
         super.onPause();
+        stopLiveChart();
         LocalBroadcastManager.getInstance(this).unregisterReceiver(receiver);
     }
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.os.SystemClock;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.LongAdder;
+
+import sk.umb.bachelor.degree.posture_corrector.core.LatencyHistogram;
+
+/**
+ * Counters and latency histograms of the ingestion pipeline, from BLE notification to database commit.
+ * Recording does not allocate, so it can stay enabled in release builds. Latencies are in microseconds.
+ */
+public final class Metrics {
+    private static final Metrics instance = new Metrics();
+
+    public final LongAdder notifications = new LongAdder();
+    public final LongAdder decodeErrors = new LongAdder();
+    public final LongAdder reconnects = new LongAdder();
+    public final LongAdder notificationUpdates = new LongAdder();
+    // Updates merged with a later one or equal to the shown content
+    public final LongAdder notificationUpdatesSkipped = new LongAdder();
+    public final LongAdder eventsWritten = new LongAdder();
+
+    // Decoding of one notification including listener callbacks
+    public final LatencyHistogram decodeLatency = new LatencyHistogram();
+    // From the posture change callback to commit of the batch containing its event
+    public final LatencyHistogram commitLatency = new LatencyHistogram();
+    // Duration of one batch transaction
+    public final LatencyHistogram dbWriteLatency = new LatencyHistogram();
+
+    private final long startTime = SystemClock.elapsedRealtime();
+
+    private Metrics() {}
+
+    public static Metrics getInstance() {
+        return instance;
+    }
+
+    public static long nanosToMicros(long nanos) {
+        return nanos / 1000;
+    }
+
+    public void reset() {
+        notifications.reset();
+        decodeErrors.reset();
+        reconnects.reset();
+        notificationUpdates.reset();
+        notificationUpdatesSkipped.reset();
+        eventsWritten.reset();
+        decodeLatency.reset();
+        commitLatency.reset();
+        dbWriteLatency.reset();
+    }
+
+    public long getUptimeMillis() {
+        return SystemClock.elapsedRealtime() - startTime;
+    }
+
+    public void print(PrintWriter out) {
+        out.println("notifications: " + notifications.sum());
+        out.println("decode errors: " + decodeErrors.sum());
+        out.println("reconnects: " + reconnects.sum());
+        out.println("notification updates: " + notificationUpdates.sum());
+        out.println("notification updates skipped: " + notificationUpdatesSkipped.sum());
+        out.println("events written: " + eventsWritten.sum());
+        printHistogram(out, "decode latency", decodeLatency);
+        printHistogram(out, "callback to commit latency", commitLatency);
+        printHistogram(out, "db write latency", dbWriteLatency);
+    }
+
+    private static void printHistogram(PrintWriter out, String name, LatencyHistogram histogram) {
+        out.println(name + " [us]: count " + histogram.getCount()
+                + ", mean " + Math.round(histogram.getMean())
+                + ", p50 " + histogram.getPercentile(50)
+                + ", p99 " + histogram.getPercentile(99)
+                + ", max " + histogram.getMax());
+    }
+}
@@ -0,0 +1,90 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.Button;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.google.android.material.switchmaterial.SwitchMaterial;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Debug screen with metrics of the ingestion pipeline, opened by long press on the connection state.
+ */
+public class MetricsActivity extends AppCompatActivity {
+    private static final long REFRESH_MS = 1000;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private TextView metricsTextView;
+    private long lastNotifications = 0;
+    private long lastNotificationUpdates = 0;
+    private long lastRefreshTime = 0;
+
+    private final Runnable refresher = new Runnable() {
+        @Override
+        public void run() {
+            refresh();
+            handler.postDelayed(this, REFRESH_MS);
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics);
+
+        metricsTextView = findViewById(R.id.metricsTextView);
+
+        SwitchMaterial dumpSwitch = findViewById(R.id.dumpSwitch);
+        dumpSwitch.setChecked(MetricsDumper.isEnabled(this));
+        dumpSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> MetricsDumper.setEnabled(this, isChecked));
+
+        Button resetButton = findViewById(R.id.resetButton);
+        resetButton.setOnClickListener(v -> {
+            Metrics.getInstance().reset();
+            lastNotifications = 0;
+            lastNotificationUpdates = 0;
+            refresh();
+        });
+    }
+
+    private void refresh() {
+        Metrics metrics = Metrics.getInstance();
+        long now = metrics.getUptimeMillis();
+        long notifications = metrics.notifications.sum();
+        long notificationUpdates = metrics.notificationUpdates.sum();
+        StringWriter text = new StringWriter();
+        PrintWriter out = new PrintWriter(text);
+        if (lastRefreshTime != 0 && now > lastRefreshTime) {
+            double seconds = (now - lastRefreshTime) / 1000.0;
+            out.println(String.format("notifications/s: %.1f", (notifications - lastNotifications) / seconds));
+            out.println(String.format("notification updates/s: %.1f", (notificationUpdates - lastNotificationUpdates) / seconds));
+        }
+        metrics.print(out);
+        out.println("dump file: " + MetricsDumper.getFile(this).getAbsolutePath());
+        out.println("sync watermark: " + SyncSettings.getWatermark(this));
+        out.flush();
+        metricsTextView.setText(text.toString());
+
+        lastNotifications = notifications;
+        lastNotificationUpdates = notificationUpdates;
+        lastRefreshTime = now;
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        handler.post(refresher);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        handler.removeCallbacks(refresher);
+    }
+}
@@ -0,0 +1,85 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically appends {@link Metrics} to a file in the app storage when enabled on the debug screen.
+ */
+public class MetricsDumper implements SharedPreferences.OnSharedPreferenceChangeListener {
+    private static final String PREFERENCES = "metrics";
+    private static final String KEY_DUMP_ENABLED = "dump_enabled";
+    private static final long DUMP_INTERVAL_SECONDS = 60;
+    public static final String FILE_NAME = "metrics.txt";
+
+    private final Context context;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledFuture<?> task;
+
+    public MetricsDumper(Context context) {
+        this.context = context.getApplicationContext();
+        preferences(this.context).registerOnSharedPreferenceChangeListener(this);
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        if (KEY_DUMP_ENABLED.equals(key)) {
+            update();
+        }
+    }
+
+    public static boolean isEnabled(Context context) {
+        return preferences(context).getBoolean(KEY_DUMP_ENABLED, false);
+    }
+
+    public static void setEnabled(Context context, boolean enabled) {
+        preferences(context).edit().putBoolean(KEY_DUMP_ENABLED, enabled).apply();
+    }
+
+    public static File getFile(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    private static SharedPreferences preferences(Context context) {
+        return context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Starts or stops dumping according to the saved setting.
+     */
+    public synchronized void update() {
+        boolean enabled = isEnabled(context);
+        if (enabled && task == null) {
+            task = executor.scheduleWithFixedDelay(this::dump, DUMP_INTERVAL_SECONDS, DUMP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        } else if (!enabled && task != null) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+
+    public synchronized void stop() {
+        preferences(context).unregisterOnSharedPreferenceChangeListener(this);
+        executor.shutdown();
+        task = null;
+    }
+
+    private void dump() {
+        try (PrintWriter out = new PrintWriter(new FileWriter(getFile(context), true))) {
+            out.println("--- " + LocalDateTime.now());
+            Metrics.getInstance().print(out);
+        } catch (IOException e) {
+            Log.w("MetricsDumper", "Dump of metrics failed", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import java.time.LocalDate;
+
+
+/**
+ * Rollup of {@link DayStatistic} rows of one month, kept up to date by {@link DayStatisticWriter}.
+ */
+@Entity(indices = {@Index(value = {"monthStart"}, unique = true)})
+public class MonthStatistic {
+    public MonthStatistic()
+    {}
+    @Ignore
+    public MonthStatistic(LocalDate monthStart) {
+        this.monthStart = monthStart;
+    }
+
+    @NonNull
+    @PrimaryKey(autoGenerate = true)
+    public int id;
+    public LocalDate monthStart;
+    public long usageDuration;
+    public long hunchedPostureDuration;
+    public int hunchedCount;
+}
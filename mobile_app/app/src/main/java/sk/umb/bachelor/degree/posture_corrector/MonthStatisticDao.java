@@ -0,0 +1,21 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Dao
+public interface MonthStatisticDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertOrUpdate(MonthStatistic statistic);
+
+    @Query("SELECT * FROM monthstatistic WHERE monthStart = :monthStart")
+    MonthStatistic getByMonthStart(LocalDate monthStart);
+
+    @Query("SELECT * FROM monthstatistic WHERE monthStart BETWEEN :from AND :to ORDER BY monthStart")
+    List<MonthStatistic> getBetween(LocalDate from, LocalDate to);
+}
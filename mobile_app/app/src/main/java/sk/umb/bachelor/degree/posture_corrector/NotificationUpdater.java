@@ -0,0 +1,87 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.app.NotificationManager;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import androidx.core.app.NotificationCompat;
+
+/**
+ * Posts content of the ongoing notification. Updates within the coalescing window are merged into
+ * the latest one, content which is already shown is not posted again and posts are spaced to at most
+ * the given rate, so a flapping sensor does not flood the system with notifications.
+ * May be called from any thread, notifications are posted on the handler thread.
+ */
+public class NotificationUpdater {
+    private final NotificationManager notificationManager;
+    private final NotificationCompat.Builder builder;
+    private final int notificationId;
+    private final Handler handler;
+    private final long coalesceMillis;
+    private final long minIntervalMillis;
+
+    private String pendingTitle;
+    private String pendingText;
+    private boolean scheduled = false;
+    private String postedTitle;
+    private String postedText;
+    private long lastPostTime = Long.MIN_VALUE / 2;
+
+    private final Runnable poster = this::post;
+
+    public NotificationUpdater(NotificationManager notificationManager, NotificationCompat.Builder builder, int notificationId,
+                               Handler handler, long coalesceMillis, int maxUpdatesPerSecond) {
+        this.notificationManager = notificationManager;
+        this.builder = builder;
+        this.notificationId = notificationId;
+        this.handler = handler;
+        this.coalesceMillis = coalesceMillis;
+        this.minIntervalMillis = 1000 / maxUpdatesPerSecond;
+    }
+
+    public synchronized void update(String title, String text) {
+        pendingTitle = title;
+        pendingText = text;
+        if (scheduled) {
+            Metrics.getInstance().notificationUpdatesSkipped.increment();
+            return;
+        }
+        if (isPosted(title, text)) {
+            Metrics.getInstance().notificationUpdatesSkipped.increment();
+            return;
+        }
+        scheduled = true;
+        long now = SystemClock.elapsedRealtime();
+        handler.postDelayed(poster, Math.max(coalesceMillis, lastPostTime + minIntervalMillis - now));
+    }
+
+    public synchronized void cancel() {
+        handler.removeCallbacks(poster);
+        scheduled = false;
+    }
+
+    private boolean isPosted(String title, String text) {
+        return title.equals(postedTitle) && text.equals(postedText);
+    }
+
+    private void post() {
+        String title;
+        String text;
+        synchronized (this) {
+            scheduled = false;
+            // Updates merged in the window may have returned to what is shown
+            if (isPosted(pendingTitle, pendingText)) {
+                Metrics.getInstance().notificationUpdatesSkipped.increment();
+                return;
+            }
+            title = pendingTitle;
+            text = pendingText;
+            postedTitle = title;
+            postedText = text;
+            lastPostTime = SystemClock.elapsedRealtime();
+        }
+        builder.setContentTitle(title).setContentText(text);
+        Metrics.getInstance().notificationUpdates.increment();
+        notificationManager.notify(notificationId, builder.build());
+    }
+}
@@ -0,0 +1,94 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import androidx.core.app.NotificationCompat;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Vibrating alert about hunched posture, separate from the ongoing notification. The alert is shown
+ * only when some device still reports hunched posture after the debounce time, and not more often
+ * than once per minimal interval, so a flapping sensor does not vibrate the phone repeatedly. Hunch which
+ * lasts past the end of the interval is alerted then.
+ * Posture changes may come from any thread, alerts are posted on the handler thread.
+ */
+public class PostureAlerter {
+    private static final int ALERT_NOTIFICATION_ID = 72;
+    private static final long ALERT_TIMEOUT_MS = 10000;
+
+    private final Context context;
+    private final NotificationManager notificationManager;
+    private final String channelId;
+    private final Handler handler;
+    private final long debounceMillis;
+    private final long minIntervalMillis;
+
+    private final Set<String> hunchedDevices = new HashSet<>();
+    private boolean scheduled = false;
+    private long lastAlertTime = Long.MIN_VALUE / 2;
+
+    private final Runnable alert = this::alert;
+
+    public PostureAlerter(Context context, NotificationManager notificationManager, String channelId, Handler handler,
+                          long debounceMillis, long minIntervalMillis) {
+        this.context = context;
+        this.notificationManager = notificationManager;
+        this.channelId = channelId;
+        this.handler = handler;
+        this.debounceMillis = debounceMillis;
+        this.minIntervalMillis = minIntervalMillis;
+    }
+
+    /**
+     * @param posture new posture of the device, null when it disconnected
+     */
+    public synchronized void onPostureChange(String deviceAddress, PostureCorrectorDevice.Posture posture) {
+        if (posture != PostureCorrectorDevice.Posture.POSTURE_HUNCHED) {
+            hunchedDevices.remove(deviceAddress);
+            if (hunchedDevices.isEmpty() && scheduled) {
+                handler.removeCallbacks(alert);
+                scheduled = false;
+            }
+            return;
+        }
+        hunchedDevices.add(deviceAddress);
+        if (!scheduled) {
+            scheduled = true;
+            handler.postDelayed(alert, debounceMillis);
+        }
+    }
+
+    public synchronized void cancel() {
+        handler.removeCallbacks(alert);
+        scheduled = false;
+        hunchedDevices.clear();
+    }
+
+    private void alert() {
+        synchronized (this) {
+            scheduled = false;
+            if (hunchedDevices.isEmpty()) return;
+            long now = SystemClock.elapsedRealtime();
+            if (now - lastAlertTime < minIntervalMillis) {
+                // Posture does not change while the user stays hunched, so the alert waits for the interval
+                scheduled = true;
+                handler.postDelayed(alert, lastAlertTime + minIntervalMillis - now);
+                return;
+            }
+            lastAlertTime = now;
+        }
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, channelId)
+                .setContentTitle("Zhrbenie")
+                .setContentText("Vystri sa")
+                .setSmallIcon(R.drawable.ic_launcher_foreground)
+                .setVibrate(new long[] { 0, 500 })
+                .setAutoCancel(true)
+                .setTimeoutAfter(ALERT_TIMEOUT_MS);
+        notificationManager.notify(ALERT_NOTIFICATION_ID, builder.build());
+    }
+}
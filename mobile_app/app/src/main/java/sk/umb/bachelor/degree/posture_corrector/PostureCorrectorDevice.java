@@ -11,11 +11,17 @@ import android.bluetooth.BluetoothGattService;
 import android.bluetooth.BluetoothManager;
 import android.content.Context;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 
-import java.nio.charset.StandardCharsets;
+import sk.umb.bachelor.degree.posture_corrector.core.PitchRingBuffer;
+import sk.umb.bachelor.degree.posture_corrector.core.PostureClassifier;
+import sk.umb.bachelor.degree.posture_corrector.core.PostureFrameDecoder;
+import sk.umb.bachelor.degree.posture_corrector.core.ReconnectPolicy;
+
+import java.util.ArrayDeque;
 import java.util.UUID;
 
 
@@ -35,12 +41,36 @@ public class PostureCorrectorDevice {
         POSTURE_HUNCHED
     }
 
+    /**
+     * Converts posture to the code used by {@link PostureFrameDecoder}, null is {@code POSTURE_UNKNOWN}.
+     */
+    public static int toPostureCode(Posture posture) {
+        if (posture == null) return PostureFrameDecoder.POSTURE_UNKNOWN;
+        return posture == Posture.POSTURE_HUNCHED ? PostureFrameDecoder.POSTURE_HUNCHED : PostureFrameDecoder.POSTURE_STRETCHED;
+    }
+
+    public static Posture fromPostureCode(int code) {
+        if (code == PostureFrameDecoder.POSTURE_UNKNOWN) return null;
+        return code == PostureFrameDecoder.POSTURE_HUNCHED ? Posture.POSTURE_HUNCHED : Posture.POSTURE_STRETCHED;
+    }
+
     public enum State {
         STATE_DISCONNECTED,
         STATE_CONNECTED,
         STATE_CONNECTING
     }
 
+    // Commands written to the data characteristic, first byte is command, rest are arguments
+    private static final byte COMMAND_STREAMING = 0x01;
+    private static final byte COMMAND_BATCHING = 0x02;
+    // Latest minute of pitch at 100 Hz
+    private static final int PITCH_BUFFER_CAPACITY = 6000;
+    private static final long RECONNECT_INITIAL_DELAY_MS = 500;
+    private static final long RECONNECT_MAX_DELAY_MS = 60000;
+    private static final int RECONNECT_AUTO_CONNECT_AFTER = 5;
+    // Direct connection attempts which did not connect by then are abandoned and retried after a backoff
+    private static final long CONNECT_TIMEOUT_MS = 10000;
+
     private State state = State.STATE_DISCONNECTED;
     private static final UUID SERVICE_UUID = UUID.fromString("4fafc201-1fb5-459e-8fcc-c5c9c331914b");
     private static final UUID CHARACTERISTIC_UUID = UUID.fromString("beb5483e-36e1-4688-b7f5-ea07361b26a8");
@@ -54,6 +84,40 @@ public class PostureCorrectorDevice {
 
     private PostureCorrectorDeviceCallback callback;
 
+    private final PitchRingBuffer pitchBuffer = new PitchRingBuffer(PITCH_BUFFER_CAPACITY);
+    private boolean streaming = false;
+
+    // Classification on the phone from streamed pitch, used instead of postures of the firmware while enabled
+    private final PostureClassifier classifier = new PostureClassifier(PostureClassifier.Thresholds.FIRMWARE);
+    private volatile boolean phoneClassification = false;
+    // Set from other threads, the classifier is reset on the thread receiving samples
+    private volatile boolean classifierResetRequested = false;
+    // Firmware without streaming sends no pitch, its postures are used then
+    private boolean pitchReceived = false;
+
+    private String deviceAddress;
+    private final ReconnectPolicy reconnectPolicy = new ReconnectPolicy(
+            RECONNECT_INITIAL_DELAY_MS, RECONNECT_MAX_DELAY_MS, RECONNECT_AUTO_CONNECT_AFTER);
+    // False once the user asks to disconnect, lost links are reconnected only while true
+    private volatile boolean keepConnected = false;
+    private int reconnectCount = 0;
+    private long connectionStartTime = 0;
+    private boolean waitingForFirstNotification = false;
+    private volatile long timeToFirstNotification = -1;
+    private final Runnable reconnectRunnable = this::reconnect;
+    private final Runnable connectTimeoutRunnable = this::onConnectTimeout;
+
+    private volatile ConnectionProfile profile = ConnectionProfile.BALANCED;
+    private volatile int mtu = 23;
+
+    // Android allows only one outstanding GATT operation, others wait here
+    private interface GattOperation {
+        /** Returns false when the operation could not be started, its callback will not come. */
+        boolean start();
+    }
+    private final ArrayDeque<GattOperation> gattOperations = new ArrayDeque<>();
+    private boolean gattOperationRunning = false;
+
     public PostureCorrectorDevice(Context context) {
         this.context = context;
         bluetoothManager = (BluetoothManager) context.getSystemService(Context.BLUETOOTH_SERVICE);
@@ -66,44 +130,312 @@ public class PostureCorrectorDevice {
     @SuppressLint("MissingPermission")
     public boolean connectToDevice(String deviceAddress, PostureCorrectorDeviceCallback callback) {
         this.callback = callback;
-        this.state = State.STATE_CONNECTING;
+        this.deviceAddress = deviceAddress;
+        this.keepConnected = true;
+        reconnectPolicy.reset();
+        return openConnection(false);
+    }
+
+    /**
+     * Milliseconds from the start of the last connection attempt to the first received
+     * notification, -1 until the first notification arrives.
+     */
+    public long getTimeToFirstNotification() {
+        return timeToFirstNotification;
+    }
+
+    public int getReconnectCount() {
+        return reconnectCount;
+    }
+
+    /**
+     * Opens a new GATT connection. {@code BluetoothGatt.connect()} on the previous object would always wait
+     * in the background like autoConnect, so direct attempts create a new one and give up after
+     * {@link #CONNECT_TIMEOUT_MS}. Services of the new object are discovered from the cache of the stack.
+     */
+    @SuppressLint("MissingPermission")
+    private boolean openConnection(boolean autoConnect) {
+        state = State.STATE_CONNECTING;
+        connectionStartTime = SystemClock.elapsedRealtime();
+        waitingForFirstNotification = true;
+        closeGatt();
         BluetoothDevice device = bluetoothAdapter.getRemoteDevice(deviceAddress);
-        bluetoothGatt = device.connectGatt(context, false, gattCallback);
-        return bluetoothGatt != null;
+        bluetoothGatt = device.connectGatt(context, autoConnect, gattCallback, BluetoothDevice.TRANSPORT_LE);
+        if (bluetoothGatt == null) return false;
+        if (!autoConnect) {
+            handler.removeCallbacks(connectTimeoutRunnable);
+            handler.postDelayed(connectTimeoutRunnable, CONNECT_TIMEOUT_MS);
+        }
+        return true;
+    }
+
+    @SuppressLint("MissingPermission")
+    private void closeGatt() {
+        if (bluetoothGatt != null) {
+            bluetoothGatt.close();
+            bluetoothGatt = null;
+            dataCharacteristic = null;
+        }
+    }
+
+    private void onConnectTimeout() {
+        if (!keepConnected || state != State.STATE_CONNECTING) return;
+        Log.i("BLEManager", "Connection attempt timed out");
+        // A closed GATT object reports nothing more, the next attempt is scheduled here
+        closeGatt();
+        scheduleReconnect();
+    }
+
+    private void reconnect() {
+        if (!keepConnected) return;
+        reconnectCount++;
+        Metrics.getInstance().reconnects.increment();
+        boolean autoConnect = reconnectPolicy.shouldUseAutoConnect();
+        Log.i("BLEManager", "Reconnecting, attempt " + reconnectPolicy.getAttempts() + (autoConnect ? " with autoConnect" : ""));
+        if (!openConnection(autoConnect)) {
+            scheduleReconnect();
+        }
+    }
+
+    private void scheduleReconnect() {
+        handler.removeCallbacks(reconnectRunnable);
+        handler.postDelayed(reconnectRunnable, reconnectPolicy.nextDelayMillis());
+    }
+
+    /**
+     * Link was lost without user asking for it. Data of the current posture are saved
+     * and the connection is opened again after a backoff delay.
+     */
+    private void onConnectionLost() {
+        state = State.STATE_CONNECTING;
+        handler.removeCallbacks(connectTimeoutRunnable);
+        clearGattOperations();
+        lastPostureCode = PostureFrameDecoder.POSTURE_UNKNOWN;
+        PostureCorrectorDeviceCallback currentCallback = callback;
+        if (currentCallback != null) {
+            currentCallback.onPostureChange(null); // Trigger onPostureChange to save data
+            currentCallback.onDisconnect();
+        }
+        scheduleReconnect();
+    }
+
+    private synchronized void enqueueGattOperation(GattOperation operation) {
+        gattOperations.add(operation);
+        if (!gattOperationRunning) {
+            startNextGattOperation();
+        }
+    }
+
+    private synchronized void completeGattOperation() {
+        gattOperationRunning = false;
+        startNextGattOperation();
+    }
+
+    private synchronized void clearGattOperations() {
+        gattOperations.clear();
+        gattOperationRunning = false;
+    }
+
+    private void startNextGattOperation() {
+        while (!gattOperations.isEmpty()) {
+            if (gattOperations.poll().start()) {
+                gattOperationRunning = true;
+                return;
+            }
+        }
+    }
+
+    public ConnectionProfile getConnectionProfile() {
+        return profile;
+    }
+
+    public int getMtu() {
+        return mtu;
+    }
+
+    /**
+     * Switches connection priority, MTU and batching of notifications. When connection is not
+     * ready yet, the profile is applied once it is.
+     */
+    public void setConnectionProfile(ConnectionProfile profile) {
+        if (this.profile == profile) return;
+        this.profile = profile;
+        if (state == State.STATE_CONNECTED && bluetoothGatt != null) {
+            applyConnectionProfile();
+            if (dataCharacteristic != null) {
+                enqueueGattOperation(this::writeBatchingCommand);
+            }
+        }
+    }
+
+    @SuppressLint("MissingPermission")
+    private void applyConnectionProfile() {
+        final BluetoothGatt gatt = bluetoothGatt;
+        final ConnectionProfile current = profile;
+        Log.i("BLEManager", "Connection profile " + current);
+        gatt.requestConnectionPriority(current.connectionPriority);
+        enqueueGattOperation(() -> current.mtu != mtu && gatt.requestMtu(current.mtu));
+    }
+
+    public PitchRingBuffer getPitchBuffer() {
+        return pitchBuffer;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Turns on or off streaming of raw pitch samples. When connection is not ready yet,
+     * the mode is sent once notifications are enabled.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+        if (!streaming) {
+            pitchBuffer.clear();
+        }
+        if (state == State.STATE_CONNECTED && dataCharacteristic != null) {
+            enqueueGattOperation(this::writeStreamingCommand);
+        }
+    }
+
+    /**
+     * Turns on or off classification on the phone with given thresholds. The device streams pitch
+     * while it is on, even when the pitch is not shown.
+     */
+    public void setPhoneClassification(boolean enabled, PostureClassifier.Thresholds thresholds) {
+        classifier.setThresholds(thresholds);
+        if (enabled == phoneClassification) return;
+        phoneClassification = enabled;
+        classifierResetRequested = true;
+        if (state == State.STATE_CONNECTED && dataCharacteristic != null) {
+            enqueueGattOperation(this::writeStreamingCommand);
+        }
+    }
+
+    public boolean isPhoneClassification() {
+        return phoneClassification;
+    }
+
+    private boolean writeStreamingCommand() {
+        return writeCommand(new byte[] { COMMAND_STREAMING, (byte) (streaming || phoneClassification ? 1 : 0) });
+    }
+
+    private boolean writeBatchingCommand() {
+        return writeCommand(new byte[] { COMMAND_BATCHING, (byte) profile.samplesPerFrame });
+    }
+
+    @SuppressLint("MissingPermission")
+    private boolean writeCommand(byte[] command) {
+        BluetoothGatt gatt = bluetoothGatt;
+        if (gatt == null || dataCharacteristic == null) return false;
+        dataCharacteristic.setValue(command);
+        dataCharacteristic.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+        return gatt.writeCharacteristic(dataCharacteristic);
     }
 
     @SuppressLint("MissingPermission")
     public void disconnect() {
+        keepConnected = false;
+        handler.removeCallbacks(reconnectRunnable);
+        handler.removeCallbacks(connectTimeoutRunnable);
+        clearGattOperations();
         state = State.STATE_DISCONNECTED;
-        callback.onPostureChange(null); // Trigger onPostureChange to save data
-        callback.onDisconnect();
-        this.callback = null;
+        lastPostureCode = PostureFrameDecoder.POSTURE_UNKNOWN;
+        if (callback != null) {
+            callback.onPostureChange(null); // Trigger onPostureChange to save data
+            callback.onDisconnect();
+            this.callback = null;
+        }
         if (bluetoothGatt != null) {
             bluetoothGatt.disconnect();
-            bluetoothGatt.close();
-            bluetoothGatt = null;
         }
+        closeGatt();
     }
 
     private BluetoothGattCharacteristic dataCharacteristic;
+    private int lastPostureCode = PostureFrameDecoder.POSTURE_UNKNOWN;
+
+    private final PostureFrameDecoder.SampleListener sampleListener = (sequence, timestamp, posture, pitch) -> {
+        if (waitingForFirstNotification) {
+            waitingForFirstNotification = false;
+            timeToFirstNotification = SystemClock.elapsedRealtime() - connectionStartTime;
+            Log.i("BLEManager", "Time to first notification: " + timeToFirstNotification + " ms");
+        }
+        if (streaming && !Float.isNaN(pitch)) {
+            pitchBuffer.add(timestamp, pitch);
+        }
+        if (phoneClassification) {
+            if (classifierResetRequested) {
+                classifierResetRequested = false;
+                classifier.reset();
+                pitchReceived = false;
+            }
+            if (!Float.isNaN(pitch)) {
+                pitchReceived = true;
+                posture = classifier.addPitch(timestamp, pitch);
+            } else if (pitchReceived) {
+                // Posture notifications of the firmware would override the phone
+                return;
+            }
+        }
+        // Frames repeat the current posture in every sample, report only changes
+        if (posture == PostureFrameDecoder.POSTURE_UNKNOWN || posture == lastPostureCode) return;
+        lastPostureCode = posture;
+        if (callback != null) {
+            callback.onPostureChange(fromPostureCode(posture));
+        }
+    };
+
     @SuppressLint("MissingPermission")
     private final BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
         @Override
         public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
             if (newState == BluetoothGatt.STATE_CONNECTED) {
-                // Device connected, discover services
-                Log.i("BLEManager", "Connected! Finding services");
+                Log.i("BLEManager", "Connected!");
                 state = State.STATE_CONNECTED;
-                callback.onConnect();
-                gatt.discoverServices();
+                handler.removeCallbacks(connectTimeoutRunnable);
+                reconnectPolicy.reset();
+                classifierResetRequested = true;
+                if (callback != null) {
+                    callback.onConnect();
+                }
+                clearGattOperations();
+                mtu = 23;
+                applyConnectionProfile();
+                enqueueGattOperation(() -> {
+                    Log.i("BLEManager", "Finding services");
+                    return gatt.discoverServices();
+                });
             } else if (newState == BluetoothGatt.STATE_DISCONNECTED) {
                 Log.i("BLEManager", "Disconnected :-(");
-                bluetoothGatt.close();
-                disconnect();
-                // Device disconnected
+                if (keepConnected) {
+                    onConnectionLost();
+                } else {
+                    disconnect();
+                }
             }
         }
 
+        private boolean enableNotifications(BluetoothGatt gatt) {
+            if (!gatt.setCharacteristicNotification(dataCharacteristic, true)) return false;
+            Log.i("BLEManager", "Set notification");
+            BluetoothGattDescriptor descriptor = dataCharacteristic.getDescriptor(DESCRIPTOR_UUID);
+            if (descriptor == null) return false;
+            descriptor.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
+            Log.i("BLEManager", "Enable notification");
+            return gatt.writeDescriptor(descriptor);
+        }
+
+        @Override
+        public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                Log.i("BLEManager", "MTU " + mtu);
+                PostureCorrectorDevice.this.mtu = mtu;
+            }
+            completeGattOperation();
+        }
+
         @Override
         public void onServicesDiscovered(BluetoothGatt gatt, int status) {
             if (status == BluetoothGatt.GATT_SUCCESS) {
@@ -114,35 +446,48 @@ public class PostureCorrectorDevice {
                     dataCharacteristic = service.getCharacteristic(CHARACTERISTIC_UUID);
                     if (dataCharacteristic != null) {
                         Log.i("BLEManager", "Characteristic found");
-                        boolean success = gatt.setCharacteristicNotification(dataCharacteristic, true);
-                        if (success) {
-                            Log.i("BLEManager", "Set notification");
-                            BluetoothGattDescriptor descriptor = dataCharacteristic.getDescriptor(DESCRIPTOR_UUID);
-                            if (descriptor != null) {
-                                descriptor.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
-                                gatt.writeDescriptor(descriptor);
-                                Log.i("BLEManager", "Enable notification");
-                            }
-                        }
+                        enqueueGattOperation(() -> enableNotifications(gatt));
                     }
                 }
             }
+            completeGattOperation();
         }
 
         @Override
         public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
             if (status == BluetoothGatt.GATT_SUCCESS && descriptor.getUuid().equals(DESCRIPTOR_UUID)) {
-                boolean success = gatt.readCharacteristic(dataCharacteristic);
-                Log.i("BLEManager", "readCharacteristic success: " + success);
+                enqueueGattOperation(() -> gatt.readCharacteristic(dataCharacteristic));
+                enqueueGattOperation(PostureCorrectorDevice.this::writeBatchingCommand);
+                if (streaming || phoneClassification) {
+                    enqueueGattOperation(PostureCorrectorDevice.this::writeStreamingCommand);
+                }
+            } else if (descriptor.getUuid().equals(DESCRIPTOR_UUID)) {
+                // Handles from the cache of the stack are no longer valid, discover services again
+                enqueueGattOperation(gatt::discoverServices);
             }
+            completeGattOperation();
         }
 
         @Override
         public void onCharacteristicRead(@NonNull BluetoothGatt gatt, @NonNull BluetoothGattCharacteristic characteristic, @NonNull byte[] value, int status) {
-            super.onCharacteristicRead(gatt, characteristic, value, status);
             if (status == BluetoothGatt.GATT_SUCCESS && characteristic.getUuid().equals(CHARACTERISTIC_UUID)) {
                 processDataCharacteristicChange(value);
             }
+            completeGattOperation();
+        }
+
+        @Override
+        public void onCharacteristicRead(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            // Called instead of the variant with value before Android 13
+            onCharacteristicRead(gatt, characteristic, characteristic.getValue(), status);
+        }
+
+        @Override
+        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            if (status != BluetoothGatt.GATT_SUCCESS) {
+                Log.w("BLEManager", "Command write failed, status " + status);
+            }
+            completeGattOperation();
         }
 
         @Override
@@ -152,12 +497,14 @@ public class PostureCorrectorDevice {
         }
 
         private void processDataCharacteristicChange(byte[] data) {
-            String stringData = (new String(data, StandardCharsets.US_ASCII));
-            Log.i("BLEManager", "Descriptor changed: " + stringData);
-            if (stringData.equals("ok")) {
-                callback.onPostureChange(Posture.POSTURE_STRETCHED);
-            } else if (stringData.equals("bad")) {
-                callback.onPostureChange(Posture.POSTURE_HUNCHED);
+            Metrics metrics = Metrics.getInstance();
+            metrics.notifications.increment();
+            long start = System.nanoTime();
+            int result = PostureFrameDecoder.decode(data, sampleListener);
+            metrics.decodeLatency.record(Metrics.nanosToMicros(System.nanoTime() - start));
+            if (result < 0) {
+                metrics.decodeErrors.increment();
+                Log.w("BLEManager", "Invalid notification, error " + result);
             }
         }
     };
@@ -0,0 +1,54 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+
+/**
+ * One finished interval of a single posture. Rows are only ever appended,
+ * {@link DayStatistic} rows are rollups of these.
+ */
+@Entity(indices = {@Index(value = {"timestamp"})})
+public class PostureEvent {
+    // Events are split at midnight, a day is at most 25 hours long
+    public static final long MAX_DURATION = 25 * 60 * 60 * 1000L;
+
+    public PostureEvent()
+    {}
+    @Ignore
+    public PostureEvent(@NonNull String deviceAddress, long timestamp, PostureCorrectorDevice.Posture posture, long duration) {
+        this.deviceAddress = deviceAddress;
+        this.timestamp = timestamp;
+        this.posture = posture;
+        this.duration = duration;
+    }
+
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+    @NonNull
+    @ColumnInfo(defaultValue = "''")
+    public String deviceAddress = "";
+    // Start of the interval in epoch milliseconds
+    public long timestamp;
+    public PostureCorrectorDevice.Posture posture;
+    // Length of the interval in milliseconds
+    public long duration;
+    // When the event was handed to the writer, elapsedRealtimeNanos, not stored
+    @Ignore
+    public long createdNanos;
+
+    /**
+     * Day of the event, events are split at midnight so the whole event lies in this day.
+     */
+    public LocalDate getDate() {
+        return Instant.ofEpochMilli(timestamp).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+}
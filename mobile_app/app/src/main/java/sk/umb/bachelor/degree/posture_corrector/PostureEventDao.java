@@ -0,0 +1,48 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface PostureEventDao {
+    @Insert
+    void insertAll(List<PostureEvent> events);
+
+    @Query("SELECT * FROM postureevent WHERE timestamp >= :from AND timestamp < :to ORDER BY timestamp")
+    List<PostureEvent> getBetween(long from, long to);
+
+    /**
+     * Sums hunched time overlapping {@code [from, to)}. Events are never longer than {@code maxDuration},
+     * so only the timestamp index range from {@code from - maxDuration} to {@code to} is read.
+     */
+    @Query("SELECT COALESCE(SUM(MIN(timestamp + duration, :to) - MAX(timestamp, :from)), 0) FROM postureevent " +
+            "WHERE timestamp >= :from - :maxDuration AND timestamp < :to AND timestamp + duration > :from AND posture = 1")
+    long getHunchedDurationBetween(long from, long to, long maxDuration);
+
+    /**
+     * Events in {@code [from, to)} stored not later than the event {@code lastId}, for export.
+     */
+    @Query("SELECT * FROM postureevent WHERE timestamp >= :from AND timestamp < :to AND id <= :lastId ORDER BY timestamp")
+    List<PostureEvent> getBetweenUpTo(long from, long to, long lastId);
+
+    @Query("SELECT COALESCE(MAX(id), 0) FROM postureevent")
+    long getLastId();
+
+    @Query("SELECT MAX(timestamp) FROM postureevent")
+    Long getLastTimestamp();
+
+    @Query("SELECT COUNT(*) FROM postureevent")
+    long count();
+
+    @Query("SELECT COUNT(*) FROM postureevent WHERE timestamp >= :from")
+    long countSince(long from);
+
+    @Query("DELETE FROM postureevent WHERE timestamp >= :from AND timestamp < :to")
+    int deleteBetween(long from, long to);
+
+    @Query("SELECT MIN(timestamp) FROM postureevent")
+    Long getFirstTimestamp();
+}
@@ -0,0 +1,59 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+/**
+ * In-process state of {@link BluetoothService}, updated by the service when it starts, stops and when
+ * connection of its devices changes. Reading it is a field access, no call to the system is made.
+ */
+public class ServiceStateRegistry {
+    private static final ServiceStateRegistry instance = new ServiceStateRegistry();
+
+    private volatile boolean running = false;
+    private volatile PostureCorrectorDevice.State connectionState = PostureCorrectorDevice.State.STATE_DISCONNECTED;
+    private final MutableLiveData<PostureCorrectorDevice.State> connectionStateData =
+            new MutableLiveData<>(PostureCorrectorDevice.State.STATE_DISCONNECTED);
+
+    private ServiceStateRegistry() {}
+
+    public static ServiceStateRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * True between start of the service in foreground and its destruction.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Aggregated connection state of all devices, disconnected when the service does not run.
+     */
+    public PostureCorrectorDevice.State getConnectionState() {
+        return connectionState;
+    }
+
+    /**
+     * Connection state observable on the main thread.
+     */
+    public LiveData<PostureCorrectorDevice.State> getConnectionStateData() {
+        return connectionStateData;
+    }
+
+    void setRunning(boolean running) {
+        this.running = running;
+        if (!running) {
+            setConnectionState(PostureCorrectorDevice.State.STATE_DISCONNECTED);
+        }
+    }
+
+    /**
+     * May be called from any thread.
+     */
+    void setConnectionState(PostureCorrectorDevice.State state) {
+        connectionState = state;
+        connectionStateData.postValue(state);
+    }
+}
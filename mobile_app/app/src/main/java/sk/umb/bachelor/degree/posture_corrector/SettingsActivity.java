@@ -0,0 +1,166 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.bluetooth.BluetoothAdapter;
+import android.content.ComponentName;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Bundle;
+import android.os.IBinder;
+import android.view.Gravity;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.google.android.material.switchmaterial.SwitchMaterial;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Locale;
+
+import sk.umb.bachelor.degree.posture_corrector.core.PostureClassifier;
+
+/**
+ * Settings of the user, opened from the main screen. Posture correctors are added by their Bluetooth address.
+ */
+public class SettingsActivity extends AppCompatActivity {
+    // Running service connects added devices at once, otherwise only the list of addresses is changed
+    private BluetoothService bluetoothService;
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            bluetoothService = ((BluetoothService.BluetoothServiceBinder) service).getService();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            bluetoothService = null;
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_settings);
+        // Without BIND_AUTO_CREATE the service is not started by the settings
+        bindService(new Intent(this, BluetoothService.class), serviceConnection, 0);
+        setupDevices();
+        setupClassification();
+        setupSync();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        unbindService(serviceConnection);
+    }
+
+    private void setupDevices() {
+        EditText deviceAddressEditText = findViewById(R.id.deviceAddressEditText);
+        findViewById(R.id.addDeviceButton).setOnClickListener(v -> {
+            String address = deviceAddressEditText.getText().toString().trim().toUpperCase(Locale.ROOT);
+            if (!BluetoothAdapter.checkBluetoothAddress(address)) {
+                Toast.makeText(this, "Neplatná adresa zariadenia", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            if (bluetoothService != null) {
+                bluetoothService.addDevice(address);
+            } else {
+                DeviceRegistry.addAddress(this, address);
+            }
+            deviceAddressEditText.setText("");
+            showDevices();
+        });
+        showDevices();
+    }
+
+    private void showDevices() {
+        LinearLayout devicesLayout = findViewById(R.id.devicesLayout);
+        devicesLayout.removeAllViews();
+        for (String address : DeviceRegistry.getAddresses(this)) {
+            LinearLayout row = new LinearLayout(this);
+            row.setOrientation(LinearLayout.HORIZONTAL);
+            row.setGravity(Gravity.CENTER_VERTICAL);
+            TextView addressTextView = new TextView(this);
+            addressTextView.setText(address);
+            addressTextView.setTextSize(16);
+            row.addView(addressTextView, new LinearLayout.LayoutParams(0, LinearLayout.LayoutParams.WRAP_CONTENT, 1));
+            Button removeButton = new Button(this);
+            removeButton.setText("Odstrániť");
+            removeButton.setOnClickListener(v -> {
+                if (bluetoothService != null) {
+                    bluetoothService.removeDevice(address);
+                } else {
+                    DeviceRegistry.removeAddress(this, address);
+                }
+                showDevices();
+            });
+            row.addView(removeButton);
+            devicesLayout.addView(row);
+        }
+    }
+
+    private void setupClassification() {
+        SwitchMaterial phoneClassificationSwitch = findViewById(R.id.phoneClassificationSwitch);
+        phoneClassificationSwitch.setChecked(ClassifierSettings.isEnabled(this));
+        phoneClassificationSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> ClassifierSettings.setEnabled(this, isChecked));
+
+        EditText alphaEditText = findViewById(R.id.alphaEditText);
+        EditText stretchedAngleEditText = findViewById(R.id.stretchedAngleEditText);
+        EditText hysteresisEditText = findViewById(R.id.hysteresisEditText);
+        EditText minimumDurationEditText = findViewById(R.id.minimumDurationEditText);
+        showThresholds(ClassifierSettings.getThresholds(this));
+
+        findViewById(R.id.thresholdsButton).setOnClickListener(v -> {
+            PostureClassifier.Thresholds thresholds;
+            try {
+                thresholds = new PostureClassifier.Thresholds(
+                        parseFloat(alphaEditText),
+                        parseFloat(stretchedAngleEditText),
+                        parseFloat(hysteresisEditText),
+                        Long.parseLong(minimumDurationEditText.getText().toString().trim()));
+            } catch (IllegalArgumentException e) {
+                Toast.makeText(this, "Neplatné hodnoty prahov", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            ClassifierSettings.setThresholds(this, thresholds);
+            Toast.makeText(this, "Prahy uložené", Toast.LENGTH_SHORT).show();
+        });
+        findViewById(R.id.defaultThresholdsButton).setOnClickListener(v -> {
+            ClassifierSettings.setThresholds(this, PostureClassifier.Thresholds.FIRMWARE);
+            showThresholds(PostureClassifier.Thresholds.FIRMWARE);
+        });
+    }
+
+    private void showThresholds(PostureClassifier.Thresholds thresholds) {
+        ((EditText) findViewById(R.id.alphaEditText)).setText(String.valueOf(thresholds.alpha));
+        ((EditText) findViewById(R.id.stretchedAngleEditText)).setText(String.valueOf(thresholds.stretchedAngle));
+        ((EditText) findViewById(R.id.hysteresisEditText)).setText(String.valueOf(thresholds.hysteresis));
+        ((EditText) findViewById(R.id.minimumDurationEditText)).setText(String.valueOf(thresholds.minimumDuration));
+    }
+
+    private static float parseFloat(EditText editText) {
+        // Keyboards of some locales type a decimal comma
+        return Float.parseFloat(editText.getText().toString().trim().replace(',', '.'));
+    }
+
+    private void setupSync() {
+        EditText syncEndpointEditText = findViewById(R.id.syncEndpointEditText);
+        URL endpoint = SyncSettings.getEndpoint(this);
+        syncEndpointEditText.setText(endpoint == null ? "" : endpoint.toString());
+        Button syncEndpointButton = findViewById(R.id.syncEndpointButton);
+        syncEndpointButton.setOnClickListener(v -> {
+            try {
+                SyncSettings.setEndpoint(this, syncEndpointEditText.getText().toString().trim());
+            } catch (MalformedURLException e) {
+                Toast.makeText(this, "Neplatná adresa servera, musí začínať https://", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            SyncWorker.schedule(this);
+            Toast.makeText(this, "Synchronizácia nastavená", Toast.LENGTH_SHORT).show();
+        });
+    }
+}
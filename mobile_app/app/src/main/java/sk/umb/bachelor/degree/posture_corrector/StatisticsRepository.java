@@ -0,0 +1,171 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import sk.umb.bachelor.degree.posture_corrector.core.TrendState;
+
+/**
+ * Asynchronous access to statistics. All writes go through one writer thread,
+ * reads run on a small pool and results are delivered on the main thread.
+ * Once a day events older than {@link #ARCHIVE_AFTER_DAYS} days are moved into the {@link EventArchive}.
+ * Trends are kept by a {@link TrendTracker} on the writer thread, it reads only days changed since the last call.
+ */
+public class StatisticsRepository {
+    private static final int READ_THREADS = 2;
+    private static final long ARCHIVE_AFTER_DAYS = 31;
+    private static final long COMPACTION_DELAY_MINUTES = 5;
+    private static volatile StatisticsRepository instance;
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    private final AppDatabase db;
+    private final EventArchive archive;
+    private final TrendTracker trendTracker;
+    private final ScheduledExecutorService writeExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService readExecutor = Executors.newFixedThreadPool(READ_THREADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private StatisticsRepository(AppDatabase db, EventArchive archive, TrendTracker trendTracker) {
+        this.db = db;
+        this.archive = archive;
+        this.trendTracker = trendTracker;
+        // Not at startup, the first frame does not wait for the database
+        writeExecutor.scheduleWithFixedDelay(this::compactArchive, COMPACTION_DELAY_MINUTES,
+                TimeUnit.DAYS.toMinutes(1), TimeUnit.MINUTES);
+    }
+
+    public static StatisticsRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (StatisticsRepository.class) {
+                if (instance == null) {
+                    AppDatabase db = AppDatabase.getInstance(context);
+                    EventArchive archive = new EventArchive(new File(context.getFilesDir(), "archive").toPath());
+                    TrendTracker trendTracker = new TrendTracker(db, new File(context.getFilesDir(), "trends.bin"));
+                    instance = new StatisticsRepository(db, archive, trendTracker);
+                }
+            }
+        }
+        return instance;
+    }
+
+    AppDatabase getDatabase() {
+        return db;
+    }
+
+    EventArchive getArchive() {
+        return archive;
+    }
+
+    ScheduledExecutorService getWriteExecutor() {
+        return writeExecutor;
+    }
+
+    ExecutorService getReadExecutor() {
+        return readExecutor;
+    }
+
+    public void getDaysBetween(LocalDate from, LocalDate to, Callback<List<DayStatistic>> callback) {
+        read(() -> db.dayStatisticDao().getBetween(from, to), callback);
+    }
+
+    /**
+     * First day with statistics, null when there are none.
+     */
+    public void getFirstDate(Callback<LocalDate> callback) {
+        read(() -> db.dayStatisticDao().getFirstDate(), callback);
+    }
+
+    public void getWeeksBetween(LocalDate from, LocalDate to, Callback<List<WeekStatistic>> callback) {
+        read(() -> db.weekStatisticDao().getBetween(from, to), callback);
+    }
+
+    public void getMonthsBetween(LocalDate from, LocalDate to, Callback<List<MonthStatistic>> callback) {
+        read(() -> db.monthStatisticDao().getBetween(from, to), callback);
+    }
+
+    /**
+     * Milliseconds spent hunched in {@code [from, to)}, epoch milliseconds, events are clipped to the range.
+     */
+    public void getHunchedDurationBetween(long from, long to, Callback<Long> callback) {
+        read(() -> {
+            archive.readLock().lock();
+            try {
+                long boundary = archive.getBoundary();
+                long archived = archive.getHunchedDurationBetween(from, to);
+                if (to <= boundary) return archived;
+                // Database rows start at the boundary, so the index range starts there when it is later
+                long maxDuration = Math.min(PostureEvent.MAX_DURATION, from - boundary);
+                return archived + db.postureEventDao().getHunchedDurationBetween(from, to, maxDuration);
+            } finally {
+                archive.readLock().unlock();
+            }
+        }, callback);
+    }
+
+    /**
+     * Trends of all devices up to today. Runs on the writer thread, which owns the tracker.
+     */
+    public void getTrends(Callback<TrendState.Trends> callback) {
+        writeExecutor.execute(() -> {
+            TrendState.Trends trends = trendTracker.update(LocalDate.now());
+            mainHandler.post(() -> callback.onResult(trends));
+        });
+    }
+
+    /**
+     * Drops saved trends after the benchmark seeding cleared the days, deletions are not in the change feed.
+     */
+    void invalidateTrends() {
+        writeExecutor.execute(trendTracker::invalidate);
+    }
+
+    public void rebuildRollups() {
+        writeExecutor.execute(() -> {
+            try {
+                compactArchive();
+                new DayStatisticRebuilder(db, archive, readExecutor).rebuildAll();
+            } catch (Exception e) {
+                Log.e("StatisticsRepository", "Rebuild of rollups failed", e);
+            }
+        });
+    }
+
+    /**
+     * Moves events of months older than {@link #ARCHIVE_AFTER_DAYS} days into the archive, on the writer thread.
+     */
+    void compactArchive() {
+        try {
+            long before = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(ARCHIVE_AFTER_DAYS);
+            int moved = archive.compact(db, before);
+            if (moved > 0) {
+                Log.i("StatisticsRepository", "Archived " + moved + " events");
+            }
+        } catch (Exception e) {
+            Log.e("StatisticsRepository", "Compaction of events failed", e);
+        }
+    }
+
+    private interface Query<T> {
+        T run();
+    }
+
+    private <T> void read(Query<T> query, Callback<T> callback) {
+        readExecutor.execute(() -> {
+            T result = query.run();
+            mainHandler.post(() -> callback.onResult(result));
+        });
+    }
+}
@@ -0,0 +1,40 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import java.time.LocalDate;
+
+
+/**
+ * Immutable copy of statistics of one day, published to the UI by {@link TodayStatistics}.
+ */
+public final class StatisticsSnapshot {
+    public final LocalDate date;
+    public final long usageDuration;
+    public final long hunchedPostureDuration;
+    public final int hunchedCount;
+
+    public StatisticsSnapshot(LocalDate date, long usageDuration, long hunchedPostureDuration, int hunchedCount) {
+        this.date = date;
+        this.usageDuration = usageDuration;
+        this.hunchedPostureDuration = hunchedPostureDuration;
+        this.hunchedCount = hunchedCount;
+    }
+
+    public static StatisticsSnapshot empty(LocalDate date) {
+        return new StatisticsSnapshot(date, 0, 0, 0);
+    }
+
+    public static StatisticsSnapshot of(DayStatistic statistic) {
+        return new StatisticsSnapshot(statistic.date, statistic.usageDuration,
+                statistic.hunchedPostureDuration, statistic.hunchedCount);
+    }
+
+    public StatisticsSnapshot plus(DayStatistic delta) {
+        return new StatisticsSnapshot(date, usageDuration + delta.usageDuration,
+                hunchedPostureDuration + delta.hunchedPostureDuration, hunchedCount + delta.hunchedCount);
+    }
+
+    public StatisticsSnapshot plus(StatisticsSnapshot other) {
+        return new StatisticsSnapshot(date, usageDuration + other.usageDuration,
+                hunchedPostureDuration + other.hunchedPostureDuration, hunchedCount + other.hunchedCount);
+    }
+}
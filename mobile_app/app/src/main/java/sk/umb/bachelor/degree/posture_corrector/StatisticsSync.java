@@ -0,0 +1,50 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.content.Context;
+
+import java.util.List;
+
+import sk.umb.bachelor.degree.posture_corrector.core.SyncBatch;
+import sk.umb.bachelor.degree.posture_corrector.core.SyncClient;
+
+/**
+ * Uploads days changed since the watermark in batches ordered by their change sequence numbers.
+ * The watermark moves only after the backend accepts a batch, a failed or interrupted upload is sent again
+ * with the same content and the backend ignores what it already has.
+ */
+class StatisticsSync {
+    static final int BATCH_DAYS = 500;
+
+    private final Context context;
+    private final AppDatabase db;
+    private final SyncClient client;
+
+    StatisticsSync(Context context, AppDatabase db, SyncClient client) {
+        this.context = context;
+        this.db = db;
+        this.client = client;
+    }
+
+    /**
+     * Uploads all changed days, stops at the first batch which was not accepted.
+     *
+     * @return ACCEPTED when everything was uploaded, otherwise result of the failed batch
+     */
+    SyncClient.Result run() {
+        String install = SyncSettings.getInstallId(context);
+        while (true) {
+            List<DayStatistic> days = db.dayStatisticDao().getChangedSince(SyncSettings.getWatermark(context), BATCH_DAYS);
+            if (days.isEmpty()) return SyncClient.Result.ACCEPTED;
+
+            SyncBatch batch = new SyncBatch(install);
+            for (DayStatistic day : days) {
+                batch.addDay(day.date.toEpochDay(), day.deviceAddress, day.usageDuration, day.hunchedPostureDuration,
+                        day.hunchedCount, day.changeSeq);
+            }
+            SyncClient.Result result = client.upload(batch);
+            if (result != SyncClient.Result.ACCEPTED) return result;
+            SyncSettings.setWatermark(context, batch.getLastSeq());
+            if (days.size() < BATCH_DAYS) return SyncClient.Result.ACCEPTED;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Settings and state of the statistics sync. The watermark is the change sequence number of the last day
+ * accepted by the backend, it is written synchronously, so a sync killed with the process continues
+ * after the last accepted batch.
+ */
+public class SyncSettings {
+    private static final String PREFERENCES = "sync";
+    private static final String KEY_ENDPOINT = "endpoint";
+    private static final String KEY_INSTALL = "install";
+    private static final String KEY_WATERMARK = "watermark";
+    // Hosts of res/xml/network_security_config.xml, a backend on the phone or on the host of the emulator
+    static final List<String> LOCAL_HOSTS = Arrays.asList("localhost", "127.0.0.1", "10.0.2.2");
+
+    private SyncSettings() {}
+
+    /**
+     * Returns address of the backend, null when sync is disabled.
+     */
+    public static URL getEndpoint(Context context) {
+        String endpoint = preferences(context).getString(KEY_ENDPOINT, null);
+        if (endpoint == null) return null;
+        try {
+            return new URL(endpoint);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Sets address of the backend, empty disables sync. A new backend gets the whole history.
+     * Cleartext traffic is allowed by the network security config only to {@link #LOCAL_HOSTS}, other
+     * backends have to use https, otherwise every upload would fail and be retried forever.
+     *
+     * @throws MalformedURLException when the address is not a https URL or a http URL of a local host
+     */
+    public static void setEndpoint(Context context, String endpoint) throws MalformedURLException {
+        SharedPreferences.Editor editor = preferences(context).edit();
+        if (endpoint.isEmpty()) {
+            editor.remove(KEY_ENDPOINT);
+        } else {
+            URL url = new URL(endpoint);
+            boolean local = url.getProtocol().equals("http") && LOCAL_HOSTS.contains(url.getHost());
+            if (!url.getProtocol().equals("https") && !local) {
+                throw new MalformedURLException("Unsupported protocol " + url.getProtocol());
+            }
+            if (!endpoint.equals(preferences(context).getString(KEY_ENDPOINT, null))) {
+                editor.putLong(KEY_WATERMARK, 0);
+            }
+            editor.putString(KEY_ENDPOINT, endpoint);
+        }
+        editor.apply();
+    }
+
+    /**
+     * Random identifier of this installation, created on first use.
+     */
+    public static synchronized String getInstallId(Context context) {
+        SharedPreferences preferences = preferences(context);
+        String install = preferences.getString(KEY_INSTALL, null);
+        if (install == null) {
+            install = UUID.randomUUID().toString();
+            preferences.edit().putString(KEY_INSTALL, install).commit();
+        }
+        return install;
+    }
+
+    public static long getWatermark(Context context) {
+        return preferences(context).getLong(KEY_WATERMARK, 0);
+    }
+
+    static void setWatermark(Context context, long watermark) {
+        preferences(context).edit().putLong(KEY_WATERMARK, watermark).commit();
+    }
+
+    private static SharedPreferences preferences(Context context) {
+        return context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,73 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import sk.umb.bachelor.degree.posture_corrector.core.SyncClient;
+
+/**
+ * Periodic upload of changed statistics. Days change with every posture change, but they are uploaded only
+ * a few times a day in one run, when the phone is online and the battery is not low, and the system
+ * can run it together with other jobs, so the radio wakes up rarely. Scheduled work survives process death
+ * and reboot, failed uploads are retried with exponential backoff.
+ */
+public class SyncWorker extends Worker {
+    private static final String WORK_NAME = "statistics-sync";
+    private static final long INTERVAL_HOURS = 6;
+    private static final long FLEX_HOURS = 2;
+
+    public SyncWorker(@NonNull Context context, @NonNull WorkerParameters parameters) {
+        super(context, parameters);
+    }
+
+    /**
+     * Schedules the sync when a backend is set and cancels it otherwise, called on start of the app
+     * from {@link MainActivity} and when the backend changes in {@link SettingsActivity}.
+     */
+    public static void schedule(Context context) {
+        WorkManager workManager = WorkManager.getInstance(context);
+        if (SyncSettings.getEndpoint(context) == null) {
+            workManager.cancelUniqueWork(WORK_NAME);
+            return;
+        }
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .setRequiresBatteryNotLow(true)
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(SyncWorker.class,
+                INTERVAL_HOURS, TimeUnit.HOURS, FLEX_HOURS, TimeUnit.HOURS)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 1, TimeUnit.MINUTES)
+                .build();
+        workManager.enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        URL endpoint = SyncSettings.getEndpoint(context);
+        if (endpoint == null) return Result.success();
+        AppDatabase db = StatisticsRepository.getInstance(context).getDatabase();
+        switch (new StatisticsSync(context, db, new SyncClient(endpoint)).run()) {
+            case ACCEPTED:
+                return Result.success();
+            case RETRY:
+                return Result.retry();
+            default:
+                return Result.failure();
+        }
+    }
+}
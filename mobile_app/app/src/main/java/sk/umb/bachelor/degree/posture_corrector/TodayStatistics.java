@@ -0,0 +1,131 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Holds in-memory snapshot of today's statistics, one per device. The snapshots are updated by
+ * {@link DayStatisticWriter} on every posture event, database is read only when they are cold.
+ * The published total is summed on the main thread, so devices never wait for each other.
+ */
+public class TodayStatistics {
+    private static volatile TodayStatistics instance;
+
+    private final StatisticsRepository repository;
+    private final MutableLiveData<StatisticsSnapshot> snapshot = new MutableLiveData<>();
+    private final ConcurrentHashMap<String, StatisticsSnapshot> devices = new ConcurrentHashMap<>();
+    // Day of loaded snapshots, null while they are cold
+    private volatile LocalDate loadedDate = null;
+    private volatile DayStatisticWriter writer = null;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean publishScheduled = new AtomicBoolean(false);
+
+    private TodayStatistics(StatisticsRepository repository) {
+        this.repository = repository;
+    }
+
+    public static TodayStatistics getInstance(Context context) {
+        if (instance == null) {
+            synchronized (TodayStatistics.class) {
+                if (instance == null) {
+                    instance = new TodayStatistics(StatisticsRepository.getInstance(context));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Returns statistics of all devices summed up.
+     */
+    public LiveData<StatisticsSnapshot> getSnapshot() {
+        if (!isHot()) {
+            load();
+        }
+        return snapshot;
+    }
+
+    public boolean isHot() {
+        LocalDate date = loadedDate;
+        return date != null && date.equals(LocalDate.now());
+    }
+
+    /**
+     * Returns snapshot of the device, only valid while {@link #isHot()}.
+     */
+    StatisticsSnapshot getDevice(String deviceAddress) {
+        StatisticsSnapshot value = devices.get(deviceAddress);
+        return value != null ? value : StatisticsSnapshot.empty(loadedDate);
+    }
+
+    void update(String deviceAddress, StatisticsSnapshot value) {
+        devices.put(deviceAddress, value);
+        schedulePublish();
+    }
+
+    /**
+     * Starts loading of a new day, snapshots stay cold until {@link #finishLoad(LocalDate)}.
+     */
+    void startLoad() {
+        loadedDate = null;
+        devices.clear();
+    }
+
+    void finishLoad(LocalDate date) {
+        loadedDate = date;
+        schedulePublish();
+    }
+
+    /**
+     * While the writer is set, it loads the snapshots itself, so events which are not written yet are not lost.
+     */
+    void setWriter(DayStatisticWriter writer) {
+        this.writer = writer;
+    }
+
+    void load() {
+        DayStatisticWriter activeWriter = writer;
+        if (activeWriter != null) {
+            activeWriter.loadSnapshot();
+        } else {
+            repository.getReadExecutor().execute(() -> {
+                LocalDate today = LocalDate.now();
+                List<DayStatistic> statistics = repository.getDatabase().dayStatisticDao().getAllByDate(today);
+                startLoad();
+                for (DayStatistic statistic : statistics) {
+                    devices.put(statistic.deviceAddress, StatisticsSnapshot.of(statistic));
+                }
+                finishLoad(today);
+            });
+        }
+    }
+
+    private void schedulePublish() {
+        if (publishScheduled.compareAndSet(false, true)) {
+            mainHandler.post(this::publish);
+        }
+    }
+
+    private void publish() {
+        publishScheduled.set(false);
+        LocalDate date = loadedDate;
+        if (date == null) return;
+        StatisticsSnapshot total = StatisticsSnapshot.empty(date);
+        for (StatisticsSnapshot value : devices.values()) {
+            if (value.date.equals(date)) {
+                total = total.plus(value);
+            }
+        }
+        snapshot.setValue(total);
+    }
+}
@@ -0,0 +1,141 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import sk.umb.bachelor.degree.posture_corrector.core.TrendState;
+
+/**
+ * Keeps the {@link TrendState} of all devices together up to date and saved in a file. It follows change
+ * sequence numbers of {@link DayStatistic} rows, every update reads only days written since the previous one,
+ * so the work does not depend on the length of the history. All days are read only when the state is missing
+ * or a day older than its mutable days changed, e.g. by an import. Runs on the writer thread.
+ */
+class TrendTracker {
+    private static final int CHANGED_DAYS_BATCH = 500;
+    private static final int BUILD_DAYS_BATCH = 366;
+
+    private final AppDatabase db;
+    private final AtomicFile file;
+    private TrendState state;
+
+    TrendTracker(AppDatabase db, File file) {
+        this.db = db;
+        this.file = new AtomicFile(file);
+    }
+
+    TrendState.Trends update(LocalDate today) {
+        if (state == null) {
+            state = load();
+        }
+        boolean changed;
+        if (state == null) {
+            state = build(today);
+            changed = true;
+        } else {
+            long changeSeq = state.getChangeSeq();
+            if (!catchUp()) {
+                state = build(today);
+            }
+            changed = state.getChangeSeq() != changeSeq;
+        }
+        long lastDay = state.getLastDay();
+        state.advanceTo(today.toEpochDay());
+        if (changed || state.getLastDay() != lastDay) {
+            save();
+        }
+        return state.getTrends();
+    }
+
+    /**
+     * Drops the state, the next update reads all days. Days are deleted only by the history seeding
+     * of the benchmark build, which calls this after clearing the tables.
+     */
+    void invalidate() {
+        state = null;
+        file.delete();
+    }
+
+    /**
+     * Applies days changed since the state was updated.
+     *
+     * @return false when a changed day is older than the mutable days
+     */
+    private boolean catchUp() {
+        DayStatisticDao dao = db.dayStatisticDao();
+        while (true) {
+            List<DayStatistic> changed = dao.getChangedSince(state.getChangeSeq(), CHANGED_DAYS_BATCH);
+            if (changed.isEmpty()) return true;
+            Set<LocalDate> dates = new LinkedHashSet<>();
+            for (DayStatistic statistic : changed) {
+                dates.add(statistic.date);
+            }
+            for (LocalDate date : dates) {
+                // Totals of all devices, the row itself is of one device
+                DayStatistic total = dao.getBetween(date, date).get(0);
+                if (!state.setDay(date.toEpochDay(), total.usageDuration, total.hunchedPostureDuration)) return false;
+            }
+            state.setChangeSeq(changed.get(changed.size() - 1).changeSeq);
+        }
+    }
+
+    private TrendState build(LocalDate today) {
+        long start = System.currentTimeMillis();
+        TrendState built = db.runInTransaction(() -> {
+            DayStatisticDao dao = db.dayStatisticDao();
+            TrendState days = new TrendState();
+            days.setChangeSeq(dao.getLastChangeSeq());
+            LocalDate first = dao.getFirstDate();
+            if (first == null) return days;
+            for (LocalDate from = first; !from.isAfter(today); from = from.plusDays(BUILD_DAYS_BATCH)) {
+                LocalDate to = from.plusDays(BUILD_DAYS_BATCH - 1);
+                for (DayStatistic statistic : dao.getBetween(from, to.isAfter(today) ? today : to)) {
+                    days.setDay(statistic.date.toEpochDay(), statistic.usageDuration, statistic.hunchedPostureDuration);
+                }
+            }
+            return days;
+        });
+        Log.i("TrendTracker", "Trends built from all days in " + (System.currentTimeMillis() - start) + " ms");
+        return built;
+    }
+
+    private TrendState load() {
+        try (FileInputStream in = file.openRead()) {
+            return TrendState.readFrom(new DataInputStream(in));
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.w("TrendTracker", "Saved trends are not readable", e);
+            return null;
+        }
+    }
+
+    private void save() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        FileOutputStream out = null;
+        try {
+            state.writeTo(new DataOutputStream(bytes));
+            out = file.startWrite();
+            out.write(bytes.toByteArray());
+            file.finishWrite(out);
+        } catch (IOException e) {
+            Log.w("TrendTracker", "Trends were not saved", e);
+            if (out != null) {
+                file.failWrite(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Last values shown on the main screen, kept in shared preferences so the first frame after a cold start
+ * is drawn without opening the database. The snapshot has a fixed size no matter how long the history is.
+ */
+public class UiSnapshotStore {
+    private static final String PREFERENCES = "ui_snapshot";
+    private static final String KEY_TODAY_DATE = "today_date";
+    private static final String KEY_USAGE = "usage";
+    private static final String KEY_HUNCHED = "hunched";
+    private static final String KEY_HUNCHED_COUNT = "hunched_count";
+    private static final String KEY_CHART_END = "chart_end";
+    private static final String KEY_CHART_VALUES = "chart_values";
+    private static final String KEY_CHART_LABELS = "chart_labels";
+    private static final String SEPARATOR = ";";
+
+    /**
+     * Bars of the default week chart ending with {@link #end}.
+     */
+    public static final class Chart {
+        public final LocalDate end;
+        public final float[] values;
+        public final List<String> labels;
+
+        public Chart(LocalDate end, float[] values, List<String> labels) {
+            this.end = end;
+            this.values = values;
+            this.labels = labels;
+        }
+    }
+
+    private final SharedPreferences preferences;
+
+    public UiSnapshotStore(Context context) {
+        preferences = context.getApplicationContext().getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Returns statistics of today, null when the stored ones are from another day.
+     */
+    public StatisticsSnapshot getToday(LocalDate today) {
+        String date = preferences.getString(KEY_TODAY_DATE, null);
+        if (date == null || !date.equals(today.toString())) return null;
+        return new StatisticsSnapshot(today,
+                preferences.getLong(KEY_USAGE, 0),
+                preferences.getLong(KEY_HUNCHED, 0),
+                preferences.getInt(KEY_HUNCHED_COUNT, 0));
+    }
+
+    public void putToday(StatisticsSnapshot snapshot) {
+        if (snapshot.date == null) return;
+        preferences.edit()
+                .putString(KEY_TODAY_DATE, snapshot.date.toString())
+                .putLong(KEY_USAGE, snapshot.usageDuration)
+                .putLong(KEY_HUNCHED, snapshot.hunchedPostureDuration)
+                .putInt(KEY_HUNCHED_COUNT, snapshot.hunchedCount)
+                .apply();
+    }
+
+    /**
+     * Returns the week chart ending today, null when the stored one ends on another day.
+     */
+    public Chart getChart(LocalDate today) {
+        String end = preferences.getString(KEY_CHART_END, null);
+        String values = preferences.getString(KEY_CHART_VALUES, null);
+        String labels = preferences.getString(KEY_CHART_LABELS, null);
+        if (end == null || values == null || labels == null || !end.equals(today.toString())) return null;
+
+        String[] valueParts = values.split(SEPARATOR);
+        List<String> labelParts = Arrays.asList(labels.split(SEPARATOR));
+        if (valueParts.length != labelParts.size()) return null;
+        float[] parsed = new float[valueParts.length];
+        try {
+            for (int i = 0; i < valueParts.length; i++) {
+                parsed[i] = Float.parseFloat(valueParts[i]);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return new Chart(today, parsed, new ArrayList<>(labelParts));
+    }
+
+    public void putChart(Chart chart) {
+        StringBuilder values = new StringBuilder();
+        StringBuilder labels = new StringBuilder();
+        for (int i = 0; i < chart.values.length; i++) {
+            if (i > 0) {
+                values.append(SEPARATOR);
+                labels.append(SEPARATOR);
+            }
+            values.append(chart.values[i]);
+            labels.append(chart.labels.get(i));
+        }
+        preferences.edit()
+                .putString(KEY_CHART_END, chart.end.toString())
+                .putString(KEY_CHART_VALUES, values.toString())
+                .putString(KEY_CHART_LABELS, labels.toString())
+                .apply();
+    }
+}
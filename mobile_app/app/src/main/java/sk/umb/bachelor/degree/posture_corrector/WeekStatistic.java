@@ -0,0 +1,31 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import java.time.LocalDate;
+
+
+/**
+ * Rollup of {@link DayStatistic} rows of one week starting on Monday, kept up to date by {@link DayStatisticWriter}.
+ */
+@Entity(indices = {@Index(value = {"weekStart"}, unique = true)})
+public class WeekStatistic {
+    public WeekStatistic()
+    {}
+    @Ignore
+    public WeekStatistic(LocalDate weekStart) {
+        this.weekStart = weekStart;
+    }
+
+    @NonNull
+    @PrimaryKey(autoGenerate = true)
+    public int id;
+    public LocalDate weekStart;
+    public long usageDuration;
+    public long hunchedPostureDuration;
+    public int hunchedCount;
+}
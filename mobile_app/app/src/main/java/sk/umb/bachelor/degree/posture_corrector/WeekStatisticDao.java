@@ -0,0 +1,21 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Dao
+public interface WeekStatisticDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertOrUpdate(WeekStatistic statistic);
+
+    @Query("SELECT * FROM weekstatistic WHERE weekStart = :weekStart")
+    WeekStatistic getByWeekStart(LocalDate weekStart);
+
+    @Query("SELECT * FROM weekstatistic WHERE weekStart BETWEEN :from AND :to ORDER BY weekStart")
+    List<WeekStatistic> getBetween(LocalDate from, LocalDate to);
+}
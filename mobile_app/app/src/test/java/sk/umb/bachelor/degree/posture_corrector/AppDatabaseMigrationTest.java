@@ -0,0 +1,128 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class AppDatabaseMigrationTest {
+    private static final String NAME = "migration-test-db";
+    // Schema of the first released version, as Room created it, durations in seconds and dates as ISO text
+    private static final String[] VERSION_1 = {
+            "CREATE TABLE IF NOT EXISTS `DayStatistic` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `date` TEXT, `usageDuration` INTEGER NOT NULL, `hunchedPostureDuration` INTEGER NOT NULL, `hunchedCount` INTEGER NOT NULL)",
+            "CREATE UNIQUE INDEX IF NOT EXISTS `index_DayStatistic_date` ON `DayStatistic` (`date`)"
+    };
+    private Context context;
+    private AppDatabase db;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (db != null) {
+            db.close();
+        }
+        context.deleteDatabase(NAME);
+    }
+
+    @Test
+    public void opensVersion1WithAllMigrations() {
+        createVersion1("INSERT INTO `DayStatistic` (`date`, `usageDuration`, `hunchedPostureDuration`, `hunchedCount`) VALUES ('2024-02-29', 3600, 600, 4)");
+
+        db = Room.databaseBuilder(context, AppDatabase.class, NAME)
+                .allowMainThreadQueries()
+                .addMigrations(AppDatabase.MIGRATIONS)
+                .build();
+
+        // Room validates the migrated schema against the entities when the database is opened
+        assertEquals(1, db.dayStatisticDao().count());
+        long timestamp = LocalDate.of(2024, 3, 1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        db.postureEventDao().insertAll(Collections.singletonList(
+                new PostureEvent("A", timestamp, PostureCorrectorDevice.Posture.POSTURE_HUNCHED, 1000)));
+        List<PostureEvent> events = db.postureEventDao().getBetween(timestamp, timestamp + 1);
+        assertEquals(1, events.size());
+        assertEquals(PostureCorrectorDevice.Posture.POSTURE_HUNCHED, events.get(0).posture);
+    }
+
+    @Test
+    public void keepsDaysAndRollupsOfVersion1() {
+        createVersion1("INSERT INTO `DayStatistic` (`date`, `usageDuration`, `hunchedPostureDuration`, `hunchedCount`) VALUES " +
+                "('2024-02-29', 3600, 600, 4), ('2024-03-01', 1, 0, 1), ('2024-03-04', 2, 1, 0)");
+
+        db = Room.databaseBuilder(context, AppDatabase.class, NAME)
+                .allowMainThreadQueries()
+                .addMigrations(AppDatabase.MIGRATIONS)
+                .build();
+
+        // Days of the single device used so far keep an empty address, durations are in milliseconds now
+        DayStatistic leapDay = db.dayStatisticDao().getByDate(LocalDate.of(2024, 2, 29), "");
+        assertEquals(3600000, leapDay.usageDuration);
+        assertEquals(600000, leapDay.hunchedPostureDuration);
+        assertEquals(4, leapDay.hunchedCount);
+        // Migrated days are all waiting for the first sync
+        assertEquals(3, db.dayStatisticDao().getChangedSince(0, 10).size());
+        assertEquals(leapDay.id, leapDay.changeSeq);
+        List<DayStatistic> days = db.dayStatisticDao().getBetween(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 3, 31));
+        assertEquals(3, days.size());
+        assertEquals(LocalDate.of(2024, 3, 4), days.get(2).date);
+        assertEquals(2000, days.get(2).usageDuration);
+
+        // Week and month rollups are built from the days of version 1
+        WeekStatistic week = db.weekStatisticDao().getByWeekStart(LocalDate.of(2024, 2, 26));
+        assertEquals(3601000, week.usageDuration);
+        assertEquals(5, week.hunchedCount);
+        assertEquals(2000, db.weekStatisticDao().getByWeekStart(LocalDate.of(2024, 3, 4)).usageDuration);
+        List<MonthStatistic> months = db.monthStatisticDao().getBetween(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 1));
+        assertEquals(2, months.size());
+        assertEquals(3600000, months.get(0).usageDuration);
+        assertEquals(3000, months.get(1).usageDuration);
+        assertEquals(1000, months.get(1).hunchedPostureDuration);
+
+        // Migrated rollups keep following changes of their days
+        DayStatistic changed = new DayStatistic(LocalDate.of(2024, 3, 1), "");
+        changed.usageDuration = 5000;
+        changed.hunchedCount = 1;
+        db.runInTransaction(() -> DayStatisticWriter.replaceDay(db, changed));
+        assertEquals(3605000, db.weekStatisticDao().getByWeekStart(LocalDate.of(2024, 2, 26)).usageDuration);
+
+        // New rows continue after the migrated ones
+        db.dayStatisticDao().insert(new DayStatistic(LocalDate.of(2024, 3, 5), "A"));
+        assertEquals(4, db.dayStatisticDao().getAll().size());
+    }
+
+    private void createVersion1(String... inserts) {
+        File file = context.getDatabasePath(NAME);
+        file.getParentFile().mkdirs();
+        try (SQLiteDatabase old = SQLiteDatabase.openOrCreateDatabase(file, null)) {
+            for (String statement : VERSION_1) {
+                old.execSQL(statement);
+            }
+            for (String insert : inserts) {
+                old.execSQL(insert);
+            }
+            old.setVersion(1);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class EventArchiveTest {
+    private static final String ADDRESS = "AA:BB:CC:DD:EE:FF";
+    private static final long INTERVAL = 60_000;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private AppDatabase db;
+    private EventArchive archive;
+    private final ExecutorService readers = Executors.newFixedThreadPool(2);
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).allowMainThreadQueries().build();
+        archive = new EventArchive(folder.getRoot().toPath());
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        readers.shutdown();
+    }
+
+    @Test
+    public void movesClosedMonthsOutOfDatabase() throws IOException {
+        long january = fill(LocalDate.of(2024, 1, 10), 100);
+        long february = fill(LocalDate.of(2024, 2, 10), 100);
+        fill(LocalDate.of(2024, 3, 10), 100);
+
+        assertEquals(200, archive.compact(db, millis(LocalDate.of(2024, 3, 20))));
+        assertEquals(100, db.postureEventDao().count());
+        assertEquals(200, archive.count());
+        assertEquals(millis(LocalDate.of(2024, 3, 1)), archive.getBoundary());
+        assertEquals(Long.valueOf(january), archive.getFirstTimestamp());
+
+        // Segments are found again after restart
+        EventArchive reopened = new EventArchive(folder.getRoot().toPath());
+        List<Long> timestamps = new ArrayList<>();
+        reopened.forEachEvent(millis(LocalDate.of(2024, 2, 1)), Long.MAX_VALUE, (address, timestamp, posture, duration) -> {
+            assertEquals(ADDRESS, address);
+            timestamps.add(timestamp);
+        });
+        assertEquals(100, timestamps.size());
+        assertEquals(Long.valueOf(february), timestamps.get(0));
+    }
+
+    @Test
+    public void mergesRowsIntoArchivedMonth() throws IOException {
+        fill(LocalDate.of(2024, 1, 10), 100);
+        archive.compact(db, millis(LocalDate.of(2024, 3, 1)));
+        // Import of old history and a repeated compaction after a crash before rows were deleted
+        fill(LocalDate.of(2024, 1, 10), 100);
+        fill(LocalDate.of(2024, 1, 20), 10);
+
+        assertEquals(110, archive.compact(db, millis(LocalDate.of(2024, 3, 1))));
+        assertEquals(0, db.postureEventDao().count());
+        assertEquals(110, archive.count());
+    }
+
+    @Test
+    public void archivedEventsKeepRollupsAndHunchedTime() throws Exception {
+        LocalDate day = LocalDate.of(2024, 1, 10);
+        long january = fill(day, 100);
+        long february = fill(LocalDate.of(2024, 2, 10), 100);
+        long from = january + 30 * INTERVAL + INTERVAL / 2;
+        long to = february + 10 * INTERVAL;
+        long hunched = db.postureEventDao().getHunchedDurationBetween(from, to, PostureEvent.MAX_DURATION);
+
+        archive.compact(db, millis(LocalDate.of(2024, 2, 1)));
+        assertEquals(100, archive.count());
+        new DayStatisticRebuilder(db, archive, readers).rebuild(day.minusDays(1), LocalDate.of(2024, 2, 11));
+
+        long archived = archive.getHunchedDurationBetween(from, to);
+        long recent = db.postureEventDao().getHunchedDurationBetween(from, to, PostureEvent.MAX_DURATION);
+        assertEquals(hunched, archived + recent);
+        assertEquals(100 * INTERVAL, db.dayStatisticDao().getByDate(day, ADDRESS).usageDuration);
+        assertEquals(50 * INTERVAL, db.dayStatisticDao().getByDate(day, ADDRESS).hunchedPostureDuration);
+        assertEquals(100 * INTERVAL, db.dayStatisticDao().getByDate(LocalDate.of(2024, 2, 10), ADDRESS).usageDuration);
+    }
+
+    /**
+     * Inserts events around noon in UTC, so they stay in the same local day in time zones up to 11 hours away.
+     * Returns the timestamp of the first event.
+     */
+    private long fill(LocalDate day, int events) {
+        long start = millis(day) + 12 * 60 * 60 * 1000L - events * INTERVAL / 2;
+        List<PostureEvent> batch = new ArrayList<>();
+        for (int i = 0; i < events; i++) {
+            PostureCorrectorDevice.Posture posture = i % 2 == 0
+                    ? PostureCorrectorDevice.Posture.POSTURE_STRETCHED : PostureCorrectorDevice.Posture.POSTURE_HUNCHED;
+            batch.add(new PostureEvent(ADDRESS, start + i * INTERVAL, posture, INTERVAL));
+        }
+        db.postureEventDao().insertAll(batch);
+        return start;
+    }
+
+    private static long millis(LocalDate day) {
+        return day.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+}
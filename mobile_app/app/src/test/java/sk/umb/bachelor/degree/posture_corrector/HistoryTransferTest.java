@@ -0,0 +1,206 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class HistoryTransferTest {
+    private static final String ADDRESS = "AA:BB:CC:DD:EE:FF";
+    private final LocalDate day = LocalDate.of(2024, 3, 6);
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private AppDatabase db;
+    private EventArchive archive;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).allowMainThreadQueries().build();
+        archive = new EventArchive(folder.getRoot().toPath());
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void restoresExportedHistory() throws IOException {
+        fill(2500);
+        for (HistoryTransfer.Format format : HistoryTransfer.Format.values()) {
+            byte[] exported = export(format);
+            db.clearAllTables();
+
+            List<Long> progress = new ArrayList<>();
+            long records = new HistoryTransfer(db, archive).importFrom(Channels.newChannel(new ByteArrayInputStream(exported)),
+                    exported.length, (done, total) -> progress.add(done));
+            assertEquals(2501, records);
+            assertEquals(Long.valueOf(exported.length), progress.get(progress.size() - 1));
+
+            assertEquals(2500, db.postureEventDao().count());
+            DayStatistic statistic = db.dayStatisticDao().getByDate(day, ADDRESS);
+            assertEquals(2500 * 1000L, statistic.usageDuration);
+            assertEquals(1250 * 1000L, statistic.hunchedPostureDuration);
+            assertEquals(1250, statistic.hunchedCount);
+            assertEquals(2500 * 1000L, db.weekStatisticDao().getBetween(day.minusDays(7), day).get(0).usageDuration);
+        }
+    }
+
+    @Test
+    public void exportsArchivedEvents() throws IOException {
+        fill(2500);
+        long later = day.plusMonths(2).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        assertEquals(2500, archive.compact(db, later));
+        assertEquals(0, db.postureEventDao().count());
+        byte[] exported = export(HistoryTransfer.Format.BINARY);
+        db.clearAllTables();
+        archive.clear();
+
+        new HistoryTransfer(db, archive).importFrom(Channels.newChannel(new ByteArrayInputStream(exported)),
+                exported.length, (done, total) -> {});
+        assertEquals(2500, db.postureEventDao().count());
+    }
+
+    @Test
+    public void exportDoesNotBlockWritesAndCompaction() throws Exception {
+        fill(2500);
+        long later = day.plusMonths(2).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long records;
+        try {
+            records = new HistoryTransfer(db, archive).export(Channels.newChannel(out), HistoryTransfer.Format.BINARY,
+                    (done, total) -> {
+                        if (done != 1000) return;
+                        // Both would wait for the end of the export if it held a transaction or the archive lock
+                        try {
+                            writer.submit(() -> {
+                                db.postureEventDao().insertAll(Collections.singletonList(new PostureEvent(ADDRESS, later,
+                                        PostureCorrectorDevice.Posture.POSTURE_STRETCHED, 1000)));
+                                return archive.compact(db, later);
+                            }).get(10, TimeUnit.SECONDS);
+                        } catch (Exception e) {
+                            throw new AssertionError(e);
+                        }
+                    });
+        } finally {
+            writer.shutdown();
+        }
+        // The event recorded during the export is left out
+        assertEquals(2501, records);
+        assertEquals(2500, archive.count());
+
+        byte[] exported = out.toByteArray();
+        db.clearAllTables();
+        archive.clear();
+        new HistoryTransfer(db, archive).importFrom(Channels.newChannel(new ByteArrayInputStream(exported)),
+                exported.length, (done, total) -> {});
+        assertEquals(2500, db.postureEventDao().count());
+    }
+
+    @Test
+    public void importingSameFileTwiceAddsEventsOnce() throws IOException {
+        fill(2500);
+        byte[] exported = export(HistoryTransfer.Format.BINARY);
+        db.clearAllTables();
+
+        for (int i = 0; i < 2; i++) {
+            new HistoryTransfer(db, archive).importFrom(Channels.newChannel(new ByteArrayInputStream(exported)),
+                    exported.length, (done, total) -> {});
+            assertEquals(2500, db.postureEventDao().count());
+            assertEquals(1, db.dayStatisticDao().count());
+        }
+        long start = day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        assertEquals(1250 * 1000L, db.postureEventDao().getHunchedDurationBetween(start, start + 2500 * 1000L,
+                PostureEvent.MAX_DURATION));
+        assertEquals(2500 * 1000L, db.monthStatisticDao().getByMonthStart(day.withDayOfMonth(1)).usageDuration);
+    }
+
+    @Test
+    public void cancelledImportLeavesDatabaseUntouched() throws IOException {
+        fill(2500);
+        byte[] exported = export(HistoryTransfer.Format.BINARY);
+        db.clearAllTables();
+
+        HistoryTransfer transfer = new HistoryTransfer(db, archive);
+        try {
+            transfer.importFrom(Channels.newChannel(new ByteArrayInputStream(exported)), exported.length,
+                    (done, total) -> transfer.cancel());
+            fail("Import was not cancelled");
+        } catch (CancellationException expected) {
+        }
+        assertEquals(0, db.postureEventDao().count());
+        assertEquals(0, db.dayStatisticDao().count());
+    }
+
+    @Test
+    public void truncatedFileIsNotImported() throws IOException {
+        fill(10);
+        byte[] exported = export(HistoryTransfer.Format.CSV);
+        db.clearAllTables();
+        byte[] truncated = Arrays.copyOf(exported, exported.length - 10);
+        try {
+            new HistoryTransfer(db, archive).importFrom(Channels.newChannel(new ByteArrayInputStream(truncated)),
+                    truncated.length, (done, total) -> {});
+            fail("Truncated file was imported");
+        } catch (IOException expected) {
+        }
+        assertEquals(0, db.postureEventDao().count());
+    }
+
+    private void fill(int events) {
+        long start = day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        List<PostureEvent> batch = new ArrayList<>();
+        DayStatistic statistic = new DayStatistic(day, ADDRESS);
+        for (int i = 0; i < events; i++) {
+            PostureCorrectorDevice.Posture posture = i % 2 == 0
+                    ? PostureCorrectorDevice.Posture.POSTURE_STRETCHED : PostureCorrectorDevice.Posture.POSTURE_HUNCHED;
+            PostureEvent event = new PostureEvent(ADDRESS, start + i * 1000L, posture, 1000);
+            batch.add(event);
+            DayStatisticWriter.addToRollup(statistic, event);
+            if (posture == PostureCorrectorDevice.Posture.POSTURE_HUNCHED) {
+                statistic.hunchedCount++;
+            }
+        }
+        db.runInTransaction(() -> {
+            db.postureEventDao().insertAll(batch);
+            DayStatisticWriter.replaceDay(db, statistic);
+        });
+    }
+
+    private byte[] export(HistoryTransfer.Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long records = new HistoryTransfer(db, archive).export(Channels.newChannel(out), format, (done, total) -> {});
+        assertEquals(archive.count() + db.postureEventDao().count() + db.dayStatisticDao().count(), records);
+        return out.toByteArray();
+    }
+}
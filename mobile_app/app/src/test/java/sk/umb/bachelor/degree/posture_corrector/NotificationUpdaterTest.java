@@ -0,0 +1,110 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.core.app.NotificationCompat;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class NotificationUpdaterTest {
+    private static final int NOTIFICATION_ID = 71;
+
+    private NotificationManager notificationManager;
+    private NotificationUpdater updater;
+    private long posts;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, "test")
+                .setSmallIcon(R.drawable.ic_launcher_foreground);
+        updater = new NotificationUpdater(notificationManager, builder, NOTIFICATION_ID,
+                new Handler(Looper.getMainLooper()), 500, 1);
+        posts = Metrics.getInstance().notificationUpdates.sum();
+    }
+
+    @Test
+    public void coalescesUpdatesWithinWindow() {
+        updater.update("Stav", "Vystrety");
+        updater.update("Stav", "Zhrbeny");
+        updater.update("Stav", "Vystrety");
+        updater.update("Stav", "Zhrbeny");
+        idle(499);
+        assertEquals(0, newPosts());
+        idle(1);
+        assertEquals(1, newPosts());
+        assertEquals("Zhrbeny", shownText());
+    }
+
+    @Test
+    public void dropsContentWhichIsShown() {
+        updater.update("Stav", "Vystrety");
+        idle(500);
+        assertEquals(1, newPosts());
+
+        updater.update("Stav", "Vystrety");
+        idle(5000);
+        assertEquals(1, newPosts());
+
+        // Flapped within the window back to what is shown
+        updater.update("Stav", "Zhrbeny");
+        updater.update("Stav", "Vystrety");
+        idle(5000);
+        assertEquals(1, newPosts());
+    }
+
+    @Test
+    public void capsRateOfPosts() {
+        updater.update("Stav", "Vystrety");
+        idle(500);
+        assertEquals(1, newPosts());
+
+        // One post per second, so the next one waits longer than the coalescing window
+        updater.update("Stav", "Zhrbeny");
+        idle(999);
+        assertEquals(1, newPosts());
+        idle(1);
+        assertEquals(2, newPosts());
+        assertEquals("Zhrbeny", shownText());
+    }
+
+    @Test
+    public void cancelDropsPendingUpdate() {
+        updater.update("Stav", "Vystrety");
+        updater.cancel();
+        idle(5000);
+        assertEquals(0, newPosts());
+    }
+
+    private long newPosts() {
+        return Metrics.getInstance().notificationUpdates.sum() - posts;
+    }
+
+    private String shownText() {
+        Notification notification = shadowOf(notificationManager).getNotification(NOTIFICATION_ID);
+        return notification.extras.getCharSequence(Notification.EXTRA_TEXT).toString();
+    }
+
+    private static void idle(long millis) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(millis));
+    }
+}
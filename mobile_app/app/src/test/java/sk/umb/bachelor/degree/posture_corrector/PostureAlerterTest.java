@@ -0,0 +1,127 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class PostureAlerterTest {
+    private static final String FIRST = "00:00:00:00:00:01";
+    private static final String SECOND = "00:00:00:00:00:02";
+
+    private NotificationManager notificationManager;
+    private PostureAlerter alerter;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        alerter = new PostureAlerter(context, notificationManager, "test", new Handler(Looper.getMainLooper()),
+                2000, 60000);
+    }
+
+    @Test
+    public void alertsAfterDebounce() {
+        alerter.onPostureChange(FIRST, PostureCorrectorDevice.Posture.POSTURE_HUNCHED);
+        idle(1999);
+        assertEquals(0, alerts());
+        idle(1);
+        assertEquals(1, alerts());
+    }
+
+    @Test
+    public void shortHunchDoesNotAlert() {
+        alerter.onPostureChange(FIRST, PostureCorrectorDevice.Posture.POSTURE_HUNCHED);
+        idle(1000);
+        alerter.onPostureChange(FIRST, PostureCorrectorDevice.Posture.POSTURE_STRETCHED);
+        idle(5000);
+        assertEquals(0, alerts());
+
+        alerter.onPostureChange(FIRST, PostureCorrectorDevice.Posture.POSTURE_HUNCHED);
+        idle(1000);
+        // Disconnected device is not hunched any more
+        alerter.onPostureChange(FIRST, null);
+        idle(5000);
+        assertEquals(0, alerts());
+    }
+
+    @Test
+    public void alertsWhileAnyDeviceIsHunched() {
+        alerter.onPostureChange(FIRST, PostureCorrectorDevice.Posture.POSTURE_HUNCHED);
+        alerter.onPostureChange(SECOND, PostureCorrectorDevice.Posture.POSTURE_HUNCHED);
+        idle(1000);
+        alerter.onPostureChange(FIRST, PostureCorrectorDevice.Posture.POSTURE_STRETCHED);
+        idle(1000);
+        assertEquals(1, alerts());
+    }
+
+    @Test
+    public void keepsMinimumIntervalBetweenAlerts() {
+        alerter.onPostureChange(FIRST, PostureCorrectorDevice.Posture.POSTURE_HUNCHED);
+        idle(2000);
+        assertEquals(1, alerts());
+        notificationManager.cancelAll();
+
+        alerter.onPostureChange(FIRST, PostureCorrectorDevice.Posture.POSTURE_STRETCHED);
+        idle(10000);
+        alerter.onPostureChange(FIRST, PostureCorrectorDevice.Posture.POSTURE_HUNCHED);
+        idle(2000);
+        assertEquals(0, alerts());
+
+        alerter.onPostureChange(FIRST, PostureCorrectorDevice.Posture.POSTURE_STRETCHED);
+        idle(50000);
+        alerter.onPostureChange(FIRST, PostureCorrectorDevice.Posture.POSTURE_HUNCHED);
+        idle(2000);
+        assertEquals(1, alerts());
+    }
+
+    @Test
+    public void alertsHunchHeldPastMinimumInterval() {
+        alerter.onPostureChange(FIRST, PostureCorrectorDevice.Posture.POSTURE_HUNCHED);
+        idle(2000);
+        assertEquals(1, alerts());
+        notificationManager.cancelAll();
+
+        alerter.onPostureChange(FIRST, PostureCorrectorDevice.Posture.POSTURE_STRETCHED);
+        idle(10000);
+        alerter.onPostureChange(FIRST, PostureCorrectorDevice.Posture.POSTURE_HUNCHED);
+        // Held until a minute after the first alert
+        idle(49999);
+        assertEquals(0, alerts());
+        idle(1);
+        assertEquals(1, alerts());
+    }
+
+    @Test
+    public void cancelDropsScheduledAlert() {
+        alerter.onPostureChange(FIRST, PostureCorrectorDevice.Posture.POSTURE_HUNCHED);
+        alerter.cancel();
+        idle(5000);
+        assertEquals(0, alerts());
+    }
+
+    private int alerts() {
+        return shadowOf(notificationManager).size();
+    }
+
+    private static void idle(long millis) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(millis));
+    }
+}
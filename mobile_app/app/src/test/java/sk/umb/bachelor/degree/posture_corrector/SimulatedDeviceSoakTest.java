@@ -0,0 +1,144 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import sk.umb.bachelor.degree.posture_corrector.core.PostureTrace;
+import sk.umb.bachelor.degree.posture_corrector.core.TraceReplayer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays hours of usage of several simulated devices through {@link BluetoothService}, its sessions,
+ * the writer and Room, and checks that nothing is lost or counted twice on the way, and that a rebuild
+ * from the log agrees.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class SimulatedDeviceSoakTest {
+    private static final int DEVICES = 3;
+    private static final long DURATION = 12 * 60 * 60 * 1000L;
+    private static final long MEAN_STEP = 20 * 1000L;
+
+    @Test
+    public void aggregatesHoursOfUsageOfSeveralDevices() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        StatisticsRepository repository = StatisticsRepository.getInstance(context);
+
+        // Starts in the evening, so usage is split over two days
+        LocalDateTime startTime = LocalDateTime.of(2024, 3, 1, 18, 0);
+        long start = startTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        DeviceRegistry.removeAddress(context, DeviceRegistry.DEFAULT_DEVICE_ADDRESS);
+        Map<String, PostureTrace> traces = new HashMap<>();
+        for (int i = 0; i < DEVICES; i++) {
+            traces.put(address(i), PostureTrace.synthetic(i, DURATION, MEAN_STEP));
+            DeviceRegistry.addAddress(context, address(i));
+        }
+
+        // The service creates sessions of the known addresses and aggregates them with its own writer
+        ServiceController<BluetoothService> controller = Robolectric.buildService(BluetoothService.class).create();
+        List<SimulatedPostureDevice> devices = new ArrayList<>();
+        controller.get().getDeviceRegistry().setSessionFactory((address, writer, listener) -> {
+            SimulatedPostureDevice device = new SimulatedPostureDevice(context, traces.get(address), start,
+                    TraceReplayer.AS_FAST_AS_POSSIBLE);
+            devices.add(device);
+            return new DeviceSession(address, device, device.getClock(), writer, listener);
+        });
+        controller.startCommand(0, 1);
+        assertEquals(DEVICES, devices.size());
+        for (SimulatedPostureDevice device : devices) {
+            device.awaitFinished();
+        }
+        controller.destroy();
+        repository.getWriteExecutor().submit(() -> {}).get();
+
+        AppDatabase db = repository.getDatabase();
+        LocalDate from = startTime.toLocalDate();
+        LocalDate to = from.plusDays(1);
+        long totalUsage = 0;
+        long totalHunched = 0;
+        int totalHunchCount = 0;
+        for (int i = 0; i < DEVICES; i++) {
+            String address = address(i);
+            PostureTrace trace = traces.get(address);
+            List<DayStatistic> days = read(repository, () -> db.dayStatisticDao().getBetweenForDevice(from, to, address));
+            assertEquals(2, days.size());
+            long usage = 0;
+            long hunched = 0;
+            int hunchCount = 0;
+            for (DayStatistic day : days) {
+                usage += day.usageDuration;
+                hunched += day.hunchedPostureDuration;
+                hunchCount += day.hunchedCount;
+            }
+            assertEquals(trace.getUsageDuration(), usage);
+            assertEquals(trace.getHunchedDuration(), hunched);
+            assertEquals(trace.getHunchCount(), hunchCount);
+            assertEquals(6 * 60 * 60 * 1000L - trace.getOffset(0), days.get(0).usageDuration);
+
+            long logged = 0;
+            for (PostureEvent event : read(repository, () -> db.postureEventDao().getBetween(start, start + DURATION))) {
+                if (event.deviceAddress.equals(address)) logged += event.duration;
+            }
+            assertEquals(trace.getUsageDuration(), logged);
+
+            totalUsage += usage;
+            totalHunched += hunched;
+            totalHunchCount += hunchCount;
+        }
+
+        long monthUsage = 0;
+        long monthHunched = 0;
+        int monthHunchCount = 0;
+        for (MonthStatistic month : read(repository, () -> db.monthStatisticDao().getBetween(from.withDayOfMonth(1), to))) {
+            monthUsage += month.usageDuration;
+            monthHunched += month.hunchedPostureDuration;
+            monthHunchCount += month.hunchedCount;
+        }
+        assertEquals(totalUsage, monthUsage);
+        assertEquals(totalHunched, monthHunched);
+        assertEquals(totalHunchCount, monthHunchCount);
+        long hunchedInRange = read(repository, () -> db.postureEventDao().getHunchedDurationBetween(start, start + DURATION, PostureEvent.MAX_DURATION));
+        assertEquals(totalHunched, hunchedInRange);
+
+        // Rebuilding rollups from the logged events keeps what the writer counted
+        List<DayStatistic> written = read(repository, () -> db.dayStatisticDao().getAll());
+        repository.getWriteExecutor().submit(() -> {
+            new DayStatisticRebuilder(db, repository.getArchive(), repository.getReadExecutor()).rebuild(from, to);
+            return null;
+        }).get();
+        for (DayStatistic day : written) {
+            DayStatistic rebuilt = read(repository, () -> db.dayStatisticDao().getByDate(day.date, day.deviceAddress));
+            assertEquals(day.usageDuration, rebuilt.usageDuration);
+            assertEquals(day.hunchedPostureDuration, rebuilt.hunchedPostureDuration);
+            assertEquals(day.hunchedCount, rebuilt.hunchedCount);
+        }
+    }
+
+    private static String address(int i) {
+        return "00:00:00:00:00:0" + i;
+    }
+
+    // Room does not allow queries on the main thread, which runs the test
+    private static <T> T read(StatisticsRepository repository, Callable<T> query) throws Exception {
+        return repository.getReadExecutor().submit(query).get();
+    }
+}
@@ -0,0 +1,103 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.content.Context;
+
+import sk.umb.bachelor.degree.posture_corrector.core.PostureTrace;
+import sk.umb.bachelor.degree.posture_corrector.core.TraceReplayer;
+import sk.umb.bachelor.degree.posture_corrector.core.VirtualClock;
+
+/**
+ * Device without bluetooth which replays a posture trace through the same callbacks as a real
+ * posture corrector. Time of its session runs on the device's virtual clock, so hours of usage can
+ * be replayed in seconds. Every device replays on its own thread.
+ */
+public class SimulatedPostureDevice extends PostureCorrectorDevice {
+    private final PostureTrace trace;
+    private final VirtualClock clock;
+    private final double speed;
+
+    private volatile State state = State.STATE_DISCONNECTED;
+    private PostureCorrectorDeviceCallback callback;
+    private TraceReplayer replayer;
+    private Thread thread;
+
+    public SimulatedPostureDevice(Context context, PostureTrace trace, long startWallMillis, double speed) {
+        super(context);
+        this.trace = trace;
+        this.clock = new VirtualClock(startWallMillis);
+        this.speed = speed;
+    }
+
+    public VirtualClock getClock() {
+        return clock;
+    }
+
+    @Override
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public synchronized boolean connectToDevice(String deviceAddress, PostureCorrectorDeviceCallback callback) {
+        if (state != State.STATE_DISCONNECTED) return false;
+        this.callback = callback;
+        state = State.STATE_CONNECTED;
+        callback.onConnect();
+        replayer = new TraceReplayer(trace, clock, speed, new TraceReplayer.Listener() {
+            @Override
+            public void onPosture(int posture) {
+                callback.onPostureChange(fromPostureCode(posture));
+            }
+
+            @Override
+            public void onFinished() {
+                finish();
+            }
+        });
+        thread = new Thread(replayer, "SimulatedPostureDevice " + deviceAddress);
+        thread.start();
+        return true;
+    }
+
+    @Override
+    public void disconnect() {
+        TraceReplayer currentReplayer;
+        Thread currentThread;
+        synchronized (this) {
+            currentReplayer = replayer;
+            currentThread = thread;
+        }
+        if (currentReplayer == null) return;
+        currentReplayer.stop();
+        if (currentThread != Thread.currentThread()) {
+            try {
+                currentThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        finish();
+    }
+
+    /**
+     * Waits until the trace is replayed and the device disconnected.
+     */
+    public void awaitFinished() throws InterruptedException {
+        Thread currentThread;
+        synchronized (this) {
+            currentThread = thread;
+        }
+        if (currentThread != null) {
+            currentThread.join();
+        }
+    }
+
+    private synchronized void finish() {
+        if (state == State.STATE_DISCONNECTED) return;
+        state = State.STATE_DISCONNECTED;
+        replayer = null;
+        callback.onPostureChange(null); // Trigger onPostureChange to save data
+        callback.onDisconnect();
+        callback = null;
+    }
+}
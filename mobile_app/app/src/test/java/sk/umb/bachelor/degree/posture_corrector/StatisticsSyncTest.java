@@ -0,0 +1,97 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.time.LocalDate;
+
+import sk.umb.bachelor.degree.posture_corrector.core.SyncClient;
+import sk.umb.bachelor.degree.posture_corrector.core.SyncStandInServer;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class StatisticsSyncTest {
+    private static final String ADDRESS = "AA:BB:CC:DD:EE:FF";
+    private final LocalDate day = LocalDate.of(2024, 3, 6);
+    private Context context;
+    private AppDatabase db;
+    private SyncStandInServer server;
+    private StatisticsSync sync;
+
+    @Before
+    public void setUp() throws IOException {
+        context = ApplicationProvider.getApplicationContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).allowMainThreadQueries().build();
+        server = new SyncStandInServer();
+        SyncSettings.setEndpoint(context, server.getUrl().toString());
+        sync = new StatisticsSync(context, db, new SyncClient(server.getUrl()));
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+        db.close();
+    }
+
+    @Test
+    public void uploadsOnlyChangedDaysInBatches() {
+        for (int i = 0; i < StatisticsSync.BATCH_DAYS + 10; i++) {
+            writeDay(day.minusDays(i), 1000);
+        }
+        assertEquals(SyncClient.Result.ACCEPTED, sync.run());
+        assertEquals(StatisticsSync.BATCH_DAYS + 10, server.getDays().size());
+        assertEquals(2, server.getRequestCount());
+        assertEquals(db.dayStatisticDao().getLastChangeSeq(), SyncSettings.getWatermark(context));
+
+        writeDay(day, 5000);
+        assertEquals(SyncClient.Result.ACCEPTED, sync.run());
+        assertEquals(3, server.getRequestCount());
+        assertEquals(5000, server.getDay(ADDRESS, day.toString()).usage);
+
+        // Nothing changed, nothing is sent
+        assertEquals(SyncClient.Result.ACCEPTED, sync.run());
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void failedBatchIsSentAgain() {
+        writeDay(day, 1000);
+        server.failNext(1, 503);
+        assertEquals(SyncClient.Result.RETRY, sync.run());
+        assertEquals(0, SyncSettings.getWatermark(context));
+
+        assertEquals(SyncClient.Result.ACCEPTED, sync.run());
+        assertEquals(1000, server.getDay(ADDRESS, day.toString()).usage);
+    }
+
+    @Test
+    public void acceptsCleartextEndpointOnlyOnLocalHost() throws MalformedURLException {
+        try {
+            SyncSettings.setEndpoint(context, "http://example.com/v1/days");
+            fail("Cleartext endpoint was accepted");
+        } catch (MalformedURLException expected) {
+        }
+        assertEquals(server.getUrl().toString(), SyncSettings.getEndpoint(context).toString());
+        SyncSettings.setEndpoint(context, "https://example.com/v1/days");
+        assertEquals("https://example.com/v1/days", SyncSettings.getEndpoint(context).toString());
+    }
+
+    private void writeDay(LocalDate date, long usage) {
+        DayStatistic statistic = new DayStatistic(date, ADDRESS);
+        statistic.usageDuration = usage;
+        db.runInTransaction(() -> DayStatisticWriter.replaceDay(db, statistic));
+    }
+}
@@ -0,0 +1,99 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+
+import sk.umb.bachelor.degree.posture_corrector.core.TrendState;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class TrendTrackerTest {
+    private static final long HOUR = 60 * 60 * 1000L;
+    private final LocalDate today = LocalDate.of(2024, 3, 6);
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private AppDatabase db;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = ApplicationProvider.getApplicationContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).allowMainThreadQueries().build();
+        file = new File(folder.getRoot(), "trends.bin");
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void followsChangedDaysOfAllDevices() {
+        for (int i = 0; i < 10; i++) {
+            writeDay(today.minusDays(i), "AA:AA:AA:AA:AA:AA", HOUR, HOUR / 10);
+        }
+        TrendTracker tracker = new TrendTracker(db, file);
+        TrendState.Trends trends = tracker.update(today);
+        assertEquals(10, trends.currentStreak);
+        assertEquals(90.0f, trends.average7, 0.01f);
+
+        // Hunched the whole hour with the second device yesterday, 45 % for the day
+        writeDay(today.minusDays(1), "BB:BB:BB:BB:BB:BB", HOUR, HOUR);
+        trends = tracker.update(today);
+        assertEquals(1, trends.currentStreak);
+        assertEquals(8, trends.bestStreak);
+
+        // Saved state continues without reading all days
+        assertTrue(file.exists());
+        assertEquals(1, new TrendTracker(db, file).update(today).currentStreak);
+    }
+
+    @Test
+    public void changeOfFinalDayBuildsAgain() {
+        for (int i = 0; i < 60; i++) {
+            writeDay(today.minusDays(i), "AA:AA:AA:AA:AA:AA", HOUR, HOUR / 10);
+        }
+        TrendTracker tracker = new TrendTracker(db, file);
+        assertEquals(60, tracker.update(today).bestStreak);
+
+        writeDay(today.minusDays(45), "AA:AA:AA:AA:AA:AA", HOUR, HOUR);
+        TrendState.Trends trends = tracker.update(today);
+        assertEquals(45, trends.currentStreak);
+        assertEquals(45, trends.bestStreak);
+    }
+
+    @Test
+    public void invalidatedStateForgetsDeletedDays() {
+        writeDay(today, "AA:AA:AA:AA:AA:AA", HOUR, 0);
+        TrendTracker tracker = new TrendTracker(db, file);
+        assertEquals(100.0f, tracker.update(today).average7, 0.01f);
+
+        db.clearAllTables();
+        tracker.invalidate();
+        assertTrue(Float.isNaN(tracker.update(today).average7));
+    }
+
+    private void writeDay(LocalDate date, String address, long usage, long hunched) {
+        DayStatistic statistic = new DayStatistic(date, address);
+        statistic.usageDuration = usage;
+        statistic.hunchedPostureDuration = hunched;
+        db.runInTransaction(() -> DayStatisticWriter.replaceDay(db, statistic));
+    }
+}
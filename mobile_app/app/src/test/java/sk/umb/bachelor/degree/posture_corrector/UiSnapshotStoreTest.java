@@ -0,0 +1,45 @@
+package sk.umb.bachelor.degree.posture_corrector;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class UiSnapshotStoreTest {
+    private final LocalDate today = LocalDate.of(2024, 3, 7);
+
+    @Test
+    public void restoresStatisticsOfToday() {
+        UiSnapshotStore store = new UiSnapshotStore(ApplicationProvider.getApplicationContext());
+        store.putToday(new StatisticsSnapshot(today, 3_600_000, 600_000, 4));
+
+        StatisticsSnapshot restored = store.getToday(today);
+        assertNotNull(restored);
+        assertEquals(3_600_000, restored.usageDuration);
+        assertEquals(600_000, restored.hunchedPostureDuration);
+        assertEquals(4, restored.hunchedCount);
+        assertNull(store.getToday(today.plusDays(1)));
+    }
+
+    @Test
+    public void restoresChartEndingToday() {
+        UiSnapshotStore store = new UiSnapshotStore(ApplicationProvider.getApplicationContext());
+        float[] values = {0.0f, 12.5f, 100.0f};
+        store.putChart(new UiSnapshotStore.Chart(today, values, Arrays.asList("5.3.", "6.3.", "7.3.")));
+
+        UiSnapshotStore.Chart restored = store.getChart(today);
+        assertNotNull(restored);
+        assertArrayEquals(values, restored.values, 0.0f);
+        assertEquals(Arrays.asList("5.3.", "6.3.", "7.3."), restored.labels);
+        assertNull(store.getChart(today.plusDays(1)));
+    }
+}
@@ -0,0 +1,58 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classification of one sample. Several devices at 100 Hz are a few hundred samples per second,
+ * the gc profiler shows that nothing is allocated per sample.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ClassifierBenchmark {
+    private static final int SAMPLES = 4096;
+
+    private final PostureClassifier classifier = new PostureClassifier(PostureClassifier.Thresholds.FIRMWARE);
+    private final float[] pitches = new float[SAMPLES];
+    private final float[] accelY = new float[SAMPLES];
+    private final float[] accelZ = new float[SAMPLES];
+    private final float[] gyroX = new float[SAMPLES];
+    private int next = 0;
+    private long time = 0;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(18);
+        for (int i = 0; i < SAMPLES; i++) {
+            // Slow movement around the threshold with noise, so the posture keeps changing
+            double angle = 66 + 15 * Math.sin(i / 300.0) + random.nextGaussian();
+            pitches[i] = (float) angle;
+            accelY[i] = (float) Math.sin(Math.toRadians(angle));
+            accelZ[i] = (float) Math.cos(Math.toRadians(angle));
+            gyroX[i] = (float) random.nextGaussian();
+        }
+    }
+
+    @Benchmark
+    public int pitchSample() {
+        int i = next++ & (SAMPLES - 1);
+        time += 10;
+        return classifier.addPitch(time, pitches[i]);
+    }
+
+    @Benchmark
+    public int imuSample() {
+        int i = next++ & (SAMPLES - 1);
+        time += 10;
+        return classifier.addImu(time, 0.0f, accelY[i], accelZ[i], gyroX[i]);
+    }
+}
@@ -0,0 +1,115 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read of five years of day statistics of two devices summed by date, the query of the history chart,
+ * with dates stored as ISO text (database version 5) and as epoch days with the covering index (version 6).
+ * Every row is converted to a date like the Room type converter does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DateColumnBenchmark {
+    private static final int DAYS = 5 * 365;
+    private static final LocalDate FIRST = LocalDate.of(2020, 1, 1);
+
+    @Param({"TEXT", "EPOCH_DAY"})
+    String storage;
+
+    private Connection connection;
+    private PreparedStatement range;
+
+    @Setup
+    public void setUp() throws SQLException {
+        boolean text = storage.equals("TEXT");
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE `DayStatistic` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `date` "
+                    + (text ? "TEXT" : "INTEGER") + ", `deviceAddress` TEXT NOT NULL DEFAULT '', `usageDuration` INTEGER NOT NULL, "
+                    + "`hunchedPostureDuration` INTEGER NOT NULL, `hunchedCount` INTEGER NOT NULL)");
+            statement.execute("CREATE UNIQUE INDEX `index_DayStatistic_date_deviceAddress` ON `DayStatistic` (`date`, `deviceAddress`)");
+            if (!text) {
+                statement.execute("CREATE INDEX `index_DayStatistic_date_usageDuration_hunchedPostureDuration_hunchedCount` "
+                        + "ON `DayStatistic` (`date`, `usageDuration`, `hunchedPostureDuration`, `hunchedCount`)");
+            }
+        }
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO `DayStatistic` (`date`, `deviceAddress`, "
+                + "`usageDuration`, `hunchedPostureDuration`, `hunchedCount`) VALUES (?, ?, ?, ?, ?)")) {
+            for (int day = 0; day < DAYS; day++) {
+                LocalDate date = FIRST.plusDays(day);
+                for (String address : new String[] { "AA:BB:CC:DD:EE:01", "AA:BB:CC:DD:EE:02" }) {
+                    if (text) {
+                        insert.setString(1, date.toString());
+                    } else {
+                        insert.setLong(1, date.toEpochDay());
+                    }
+                    insert.setString(2, address);
+                    insert.setLong(3, 8 * 3600_000L);
+                    insert.setLong(4, (day % 60) * 60_000L);
+                    insert.setInt(5, day % 20);
+                    insert.addBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+
+        range = connection.prepareStatement("SELECT MIN(id) AS id, date, '' AS deviceAddress, SUM(usageDuration) AS usageDuration, "
+                + "SUM(hunchedPostureDuration) AS hunchedPostureDuration, SUM(hunchedCount) AS hunchedCount "
+                + "FROM daystatistic WHERE date BETWEEN ? AND ? GROUP BY date ORDER BY date");
+        LocalDate last = FIRST.plusDays(DAYS - 1);
+        if (text) {
+            range.setString(1, FIRST.toString());
+            range.setString(2, last.toString());
+        } else {
+            range.setLong(1, FIRST.toEpochDay());
+            range.setLong(2, last.toEpochDay());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public int readFiveYears(Blackhole blackhole) throws SQLException {
+        boolean text = storage.equals("TEXT");
+        int rows = 0;
+        try (ResultSet result = range.executeQuery()) {
+            while (result.next()) {
+                LocalDate date = text ? LocalDate.parse(result.getString(2)) : LocalDate.ofEpochDay(result.getLong(2));
+                blackhole.consume(date);
+                blackhole.consume(result.getLong(4));
+                blackhole.consume(result.getLong(5));
+                blackhole.consume(result.getInt(6));
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
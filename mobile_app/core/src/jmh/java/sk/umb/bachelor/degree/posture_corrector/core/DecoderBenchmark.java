@@ -0,0 +1,61 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of one notification. One sample per frame is the extreme case of a 100 Hz stream
+ * without batching, 40 samples is a full frame of the low power profile.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DecoderBenchmark {
+    @Param({"1", "5", "40"})
+    int samplesPerFrame;
+
+    private byte[] frame;
+    private final byte[] legacy = "bad".getBytes(StandardCharsets.US_ASCII);
+    private PostureFrameDecoder.SampleListener listener;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        frame = new byte[PostureFrameDecoder.HEADER_SIZE
+                + samplesPerFrame * (PostureFrameDecoder.SAMPLE_SIZE + PostureFrameDecoder.PITCH_SIZE)];
+        frame[0] = (byte) PostureFrameDecoder.MAGIC;
+        frame[1] = PostureFrameDecoder.VERSION;
+        frame[2] = PostureFrameDecoder.FLAG_PITCH;
+        frame[3] = (byte) samplesPerFrame;
+        for (int i = 0; i < samplesPerFrame; i++) {
+            int offset = PostureFrameDecoder.HEADER_SIZE + i * (PostureFrameDecoder.SAMPLE_SIZE + PostureFrameDecoder.PITCH_SIZE);
+            frame[offset] = (byte) (i * 10);
+            frame[offset + 2] = (byte) (i % 2 == 0 ? PostureFrameDecoder.POSTURE_STRETCHED : PostureFrameDecoder.POSTURE_HUNCHED);
+            frame[offset + 3] = (byte) i;
+            frame[offset + 4] = 0x19;
+        }
+        listener = (sequence, timestamp, posture, pitch) -> {
+            blackhole.consume(timestamp);
+            blackhole.consume(pitch);
+        };
+    }
+
+    @Benchmark
+    public int binaryFrame() {
+        return PostureFrameDecoder.decode(frame, listener);
+    }
+
+    @Benchmark
+    public int legacyAscii() {
+        return PostureFrameDecoder.decode(legacy, listener);
+    }
+}
@@ -0,0 +1,42 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording metrics on the hot path, alone and with the BLE and writer threads recording together.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HistogramBenchmark {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @State(Scope.Thread)
+    public static class Values {
+        long value = 1;
+
+        long next() {
+            value = (value * 31 + 7) & 0xFFFFF;
+            return value;
+        }
+    }
+
+    @Benchmark
+    public void record(Values values) {
+        histogram.record(values.next());
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void recordContended(Values values) {
+        histogram.record(values.next());
+    }
+}
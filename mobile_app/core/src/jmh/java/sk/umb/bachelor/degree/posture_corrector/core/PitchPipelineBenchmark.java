@@ -0,0 +1,56 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Path of streamed pitch from the ring buffer to the live chart. The chart copies the buffer and
+ * downsamples it every 100 ms, the buffer receives 100 samples per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PitchPipelineBenchmark {
+    private static final int CHART_POINTS = 300;
+
+    // One minute at 100 Hz and ten minutes at 100 Hz
+    @Param({"6000", "60000"})
+    int capacity;
+
+    private PitchRingBuffer buffer;
+    private long[] timestamps;
+    private float[] values;
+    private final long[] sampledTimestamps = new long[CHART_POINTS];
+    private final float[] sampledValues = new float[CHART_POINTS];
+    private long time = 0;
+
+    @Setup
+    public void setUp() {
+        buffer = new PitchRingBuffer(capacity);
+        timestamps = new long[capacity];
+        values = new float[capacity];
+        for (int i = 0; i < capacity; i++) {
+            buffer.add(i * 10L, (float) (60 + 10 * Math.sin(i / 50.0)));
+        }
+    }
+
+    @Benchmark
+    public void addSample() {
+        time += 10;
+        buffer.add(time, 65.0f);
+    }
+
+    @Benchmark
+    public int copyAndDownsample() {
+        int size = buffer.copyTo(timestamps, values);
+        return Downsampler.lttb(timestamps, values, size, CHART_POINTS, sampledTimestamps, sampledValues);
+    }
+}
@@ -0,0 +1,61 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of one archived month, a device worn eight hours a day with a posture change every minute.
+ * Rebuilding rollups of old days reads every event of the month once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SegmentBenchmark {
+    private static final long START = 1_709_251_200_000L;
+    private static final long DAY = 24 * 3600 * 1000L;
+
+    private ByteBuffer segment;
+    private long middle;
+
+    @Setup
+    public void setUp() throws IOException {
+        EventSegment.Builder builder = new EventSegment.Builder();
+        for (int day = 0; day < 31; day++) {
+            long timestamp = START + day * DAY + 9 * 3600 * 1000L;
+            for (int i = 0; i < 480; i++) {
+                builder.add("AA:BB:CC:DD:EE:FF", timestamp, i % 2 == 0
+                        ? PostureFrameDecoder.POSTURE_STRETCHED : PostureFrameDecoder.POSTURE_HUNCHED, 60_000);
+                timestamp += 60_000;
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        builder.writeTo(Channels.newChannel(out));
+        segment = ByteBuffer.allocateDirect(out.size());
+        segment.put(out.toByteArray()).flip();
+        middle = START + 15 * DAY;
+    }
+
+    @Benchmark
+    public int readMonth(Blackhole blackhole) {
+        return EventSegment.read(segment, Long.MIN_VALUE, Long.MAX_VALUE,
+                (address, timestamp, posture, duration) -> blackhole.consume(duration));
+    }
+
+    @Benchmark
+    public int readDay(Blackhole blackhole) {
+        return EventSegment.read(segment, middle, middle + DAY,
+                (address, timestamp, posture, duration) -> blackhole.consume(duration));
+    }
+}
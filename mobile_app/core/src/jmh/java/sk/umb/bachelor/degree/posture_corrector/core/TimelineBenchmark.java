@@ -0,0 +1,69 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Posture state machine and splitting of intervals at midnight. Firmware reports a posture change
+ * at most every 5 s, 10 ms is the extreme of a device reporting every sample.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TimelineBenchmark {
+    private static final ZoneId ZONE = ZoneId.of("Europe/Bratislava");
+
+    @Param({"10", "5000"})
+    long intervalMillis;
+
+    private long elapsedNanos = 0;
+    private int posture = PostureFrameDecoder.POSTURE_STRETCHED;
+    private SessionTimeline timeline;
+    private SessionTimeline.IntervalListener listener;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        SessionTimeline.Clock clock = new SessionTimeline.Clock() {
+            @Override
+            public long elapsedRealtimeNanos() {
+                return elapsedNanos;
+            }
+
+            @Override
+            public long currentTimeMillis() {
+                return 1_700_000_000_000L;
+            }
+        };
+        timeline = new SessionTimeline(clock, ZONE);
+        listener = (posture, timestamp, duration, last) -> blackhole.consume(duration);
+        timeline.transition(posture, listener);
+    }
+
+    @Benchmark
+    public boolean transition() {
+        elapsedNanos += intervalMillis * 1_000_000;
+        posture = posture == PostureFrameDecoder.POSTURE_STRETCHED
+                ? PostureFrameDecoder.POSTURE_HUNCHED : PostureFrameDecoder.POSTURE_STRETCHED;
+        return timeline.transition(posture, listener);
+    }
+
+    @Benchmark
+    public void splitWeekLongInterval() {
+        SessionTimeline.split(PostureFrameDecoder.POSTURE_HUNCHED, 1_700_000_000_000L, 7 * 24 * 3600 * 1000L, ZONE, listener);
+    }
+
+    @Benchmark
+    public float percentOfStretch() {
+        return PostureStatistics.percentOfStretch(elapsedNanos + 3_600_000, 1_200_000);
+    }
+}
@@ -0,0 +1,68 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling. Keeps the visual shape of a series
+ * while reducing it to a fixed number of points, so drawing cost does not depend on sample rate.
+ */
+public final class Downsampler {
+    private Downsampler() {}
+
+    /**
+     * Downsamples first {@code length} points into output arrays.
+     *
+     * @param threshold maximum number of output points, output arrays need to be at least this long
+     * @return number of output points
+     */
+    public static int lttb(long[] x, float[] y, int length, int threshold, long[] outX, float[] outY) {
+        if (threshold >= length || threshold < 3) {
+            int count = Math.min(length, threshold);
+            System.arraycopy(x, 0, outX, 0, count);
+            System.arraycopy(y, 0, outY, 0, count);
+            return count;
+        }
+
+        double bucketSize = (double) (length - 2) / (threshold - 2);
+        int selected = 0;
+        outX[0] = x[0];
+        outY[0] = y[0];
+        int out = 1;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket is the third point of the triangle
+            int nextStart = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, length);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += x[i];
+                averageY += y[i];
+            }
+            int nextCount = nextEnd - nextStart;
+            averageX /= nextCount;
+            averageY /= nextCount;
+
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+            double selectedX = x[selected];
+            double selectedY = y[selected];
+            double maxArea = -1;
+            int maxIndex = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((selectedX - averageX) * (y[i] - selectedY)
+                        - (selectedX - x[i]) * (averageY - selectedY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxIndex = i;
+                }
+            }
+            outX[out] = x[maxIndex];
+            outY[out] = y[maxIndex];
+            out++;
+            selected = maxIndex;
+        }
+
+        outX[out] = x[length - 1];
+        outY[out] = y[length - 1];
+        return out + 1;
+    }
+}
@@ -0,0 +1,323 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar segment of archived posture events, usually one month of all devices. Every column is stored
+ * separately and compressed for its content, so a month takes a few bytes per event:
+ * <pre>
+ * header     "PCS", version 1, u32 number of events, i64 first and i64 last timestamp,
+ *            u16 number of addresses, each u16 length and UTF-8 bytes,
+ *            u32 byte length of each of the four columns
+ * timestamps varint of zigzag gap from the end of the previous event, the first one from zero,
+ *            usually zero because a device logs contiguous intervals
+ * durations  varint
+ * postures   one bit per event, set for hunched, least significant bit first
+ * addresses  runs of varint address index and varint run length
+ * </pre>
+ * Events are sorted by timestamp. Readers decode all columns side by side straight from a buffer,
+ * usually a memory mapped file, without copying it.
+ */
+public final class EventSegment {
+    static final byte[] MAGIC = { 'P', 'C', 'S' };
+    static final int VERSION = 1;
+    private static final int MAX_ADDRESS_LENGTH = 1024;
+
+    public interface Listener {
+        void onEvent(String address, long timestamp, int posture, long duration);
+    }
+
+    private EventSegment() {}
+
+    /**
+     * Collects events of a segment, they may be added in any order. Events equal in all fields are stored once,
+     * so merging a segment with rows which were already archived does not count them twice.
+     */
+    public static final class Builder {
+        private final List<String> addresses = new ArrayList<>();
+        private final Map<String, Integer> addressIndexes = new HashMap<>();
+        private long[] timestamps = new long[256];
+        private long[] durations = new long[256];
+        private byte[] postures = new byte[256];
+        private int[] addressColumn = new int[256];
+        private int size = 0;
+
+        public Builder add(String address, long timestamp, int posture, long duration) {
+            if (posture != PostureFrameDecoder.POSTURE_STRETCHED && posture != PostureFrameDecoder.POSTURE_HUNCHED) {
+                throw new IllegalArgumentException("Unknown posture " + posture);
+            }
+            if (timestamp < 0 || duration < 0) throw new IllegalArgumentException("Negative time");
+            if (size == timestamps.length) {
+                int capacity = size * 2;
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                durations = Arrays.copyOf(durations, capacity);
+                postures = Arrays.copyOf(postures, capacity);
+                addressColumn = Arrays.copyOf(addressColumn, capacity);
+            }
+            Integer index = addressIndexes.get(address);
+            if (index == null) {
+                if (address.getBytes(StandardCharsets.UTF_8).length > MAX_ADDRESS_LENGTH) {
+                    throw new IllegalArgumentException("Address too long");
+                }
+                index = addresses.size();
+                addresses.add(address);
+                addressIndexes.put(address, index);
+            }
+            timestamps[size] = timestamp;
+            durations[size] = duration;
+            postures[size] = (byte) posture;
+            addressColumn[size] = index;
+            size++;
+            return this;
+        }
+
+        public Builder addAll(ByteBuffer segment) {
+            read(segment, Long.MIN_VALUE, Long.MAX_VALUE, this::add);
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Writes the segment and returns the number of stored events.
+         */
+        public int writeTo(WritableByteChannel channel) throws IOException {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> {
+                int result = Long.compare(timestamps[a], timestamps[b]);
+                if (result == 0) result = Integer.compare(addressColumn[a], addressColumn[b]);
+                if (result == 0) result = Long.compare(durations[a], durations[b]);
+                if (result == 0) result = Integer.compare(postures[a], postures[b]);
+                return result;
+            });
+
+            ByteSink timestampColumn = new ByteSink();
+            ByteSink durationColumn = new ByteSink();
+            ByteSink postureColumn = new ByteSink();
+            ByteSink addressRuns = new ByteSink();
+            int count = 0;
+            long previousEnd = 0;
+            long first = 0;
+            long last = 0;
+            int previous = -1;
+            int postureBits = 0;
+            int addressRun = 0;
+            int runAddress = -1;
+            for (int i : order) {
+                if (previous >= 0 && timestamps[i] == timestamps[previous] && addressColumn[i] == addressColumn[previous]
+                        && durations[i] == durations[previous] && postures[i] == postures[previous]) {
+                    continue;
+                }
+                previous = i;
+                if (count == 0) first = timestamps[i];
+                last = timestamps[i];
+                count++;
+
+                timestampColumn.putVarLong(zigzag(timestamps[i] - previousEnd));
+                previousEnd = timestamps[i] + durations[i];
+                durationColumn.putVarLong(durations[i]);
+
+                if (postures[i] == PostureFrameDecoder.POSTURE_HUNCHED) {
+                    postureBits |= 1 << ((count - 1) & 7);
+                }
+                if ((count & 7) == 0) {
+                    postureColumn.put(postureBits);
+                    postureBits = 0;
+                }
+
+                if (addressColumn[i] != runAddress) {
+                    if (addressRun > 0) {
+                        addressRuns.putVarLong(runAddress);
+                        addressRuns.putVarLong(addressRun);
+                    }
+                    runAddress = addressColumn[i];
+                    addressRun = 0;
+                }
+                addressRun++;
+            }
+            if ((count & 7) != 0) {
+                postureColumn.put(postureBits);
+            }
+            if (addressRun > 0) {
+                addressRuns.putVarLong(runAddress);
+                addressRuns.putVarLong(addressRun);
+            }
+
+            int headerSize = MAGIC.length + 1 + 4 + 8 + 8 + 2 + 4 * 4;
+            List<byte[]> addressBytes = new ArrayList<>();
+            for (String address : addresses) {
+                byte[] bytes = address.getBytes(StandardCharsets.UTF_8);
+                addressBytes.add(bytes);
+                headerSize += 2 + bytes.length;
+            }
+            ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC).put((byte) VERSION).putInt(count).putLong(first).putLong(last).putShort((short) addresses.size());
+            for (byte[] bytes : addressBytes) {
+                header.putShort((short) bytes.length).put(bytes);
+            }
+            header.putInt(timestampColumn.size).putInt(durationColumn.size)
+                    .putInt(postureColumn.size).putInt(addressRuns.size);
+            header.flip();
+            writeFully(channel, header);
+            writeFully(channel, timestampColumn.toBuffer());
+            writeFully(channel, durationColumn.toBuffer());
+            writeFully(channel, postureColumn.toBuffer());
+            writeFully(channel, addressRuns.toBuffer());
+            return count;
+        }
+    }
+
+    /**
+     * Number of events in the segment.
+     */
+    public static int count(ByteBuffer segment) {
+        ByteBuffer buffer = header(segment);
+        return buffer.getInt();
+    }
+
+    /**
+     * Start of the first event in the segment, epoch milliseconds.
+     */
+    public static long firstTimestamp(ByteBuffer segment) {
+        ByteBuffer buffer = header(segment);
+        buffer.getInt();
+        return buffer.getLong();
+    }
+
+    /**
+     * Passes events starting in {@code [from, to)} to the listener in the order of their timestamps.
+     * The buffer is not modified.
+     *
+     * @return number of passed events
+     */
+    public static int read(ByteBuffer segment, long from, long to, Listener listener) {
+        ByteBuffer buffer = header(segment);
+        int count = buffer.getInt();
+        long first = buffer.getLong();
+        long last = buffer.getLong();
+        int addressCount = buffer.getShort() & 0xFFFF;
+        String[] addresses = new String[addressCount];
+        for (int i = 0; i < addressCount; i++) {
+            byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(bytes);
+            addresses[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        int timestampLength = buffer.getInt();
+        int durationLength = buffer.getInt();
+        int postureLength = buffer.getInt();
+        buffer.getInt();
+        if (count == 0 || last < from || first >= to) return 0;
+
+        ByteBuffer timestampColumn = buffer.duplicate();
+        ByteBuffer durationColumn = buffer.duplicate();
+        durationColumn.position(buffer.position() + timestampLength);
+        ByteBuffer postureColumn = buffer.duplicate();
+        postureColumn.position(durationColumn.position() + durationLength);
+        ByteBuffer addressColumn = buffer.duplicate();
+        addressColumn.position(postureColumn.position() + postureLength);
+
+        long previousEnd = 0;
+        int postureBits = 0;
+        int address = 0;
+        int addressRun = 0;
+        int passed = 0;
+        for (int i = 0; i < count; i++) {
+            long timestamp = previousEnd + unzigzag(getVarLong(timestampColumn));
+            long duration = getVarLong(durationColumn);
+            previousEnd = timestamp + duration;
+            if ((i & 7) == 0) {
+                postureBits = postureColumn.get() & 0xFF;
+            }
+            int posture = (postureBits & (1 << (i & 7))) != 0
+                    ? PostureFrameDecoder.POSTURE_HUNCHED : PostureFrameDecoder.POSTURE_STRETCHED;
+            if (addressRun == 0) {
+                address = (int) getVarLong(addressColumn);
+                addressRun = (int) getVarLong(addressColumn);
+            }
+            addressRun--;
+            if (timestamp >= to) break;
+            if (timestamp >= from) {
+                listener.onEvent(addresses[address], timestamp, posture, duration);
+                passed++;
+            }
+        }
+        return passed;
+    }
+
+    private static ByteBuffer header(ByteBuffer segment) {
+        ByteBuffer buffer = segment.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        for (byte b : MAGIC) {
+            if (buffer.get() != b) throw new IllegalArgumentException("Not an event segment");
+        }
+        int version = buffer.get() & 0xFF;
+        if (version != VERSION) throw new IllegalArgumentException("Unsupported segment version " + version);
+        return buffer;
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+            shift += 7;
+            if (shift > 63) throw new IllegalArgumentException("Varint too long");
+        }
+    }
+
+    /**
+     * Growable byte array for one column.
+     */
+    private static final class ByteSink {
+        private byte[] bytes = new byte[1024];
+        private int size = 0;
+
+        void put(int value) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void putVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                put((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            put((int) value);
+        }
+
+        ByteBuffer toBuffer() {
+            return ByteBuffer.wrap(bytes, 0, size);
+        }
+    }
+}
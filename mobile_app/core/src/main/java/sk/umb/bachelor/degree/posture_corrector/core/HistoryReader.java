@@ -0,0 +1,227 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads history exported by {@link HistoryWriter} record by record, the format is detected from the first bytes.
+ * Records are passed to the listener as they are read, a file which ends without the end record or whose
+ * end record does not match the number of records fails with {@link IOException} after all records were passed.
+ *
+ * <p>Text format, one record per line:
+ * <pre>
+ * # posture_corrector history v1
+ * day,2024-03-01,AA:BB:CC:DD:EE:FF,3600000,600000,4
+ * event,AA:BB:CC:DD:EE:FF,1709280000000,bad,5000
+ * end,1,1
+ * </pre>
+ * Binary format, all values little endian, starts with "PCH" and version byte 1, followed by records:
+ * <pre>
+ * type  fields
+ * 1     u16 address index, u16 length, UTF-8 address, defines the next free index
+ * 2     u16 address index, i32 epoch day, i64 usage, i64 hunched duration, i32 hunched count
+ * 3     u16 address index, i64 timestamp, u8 posture, i64 duration
+ * 0     i64 number of days, i64 number of events, last record
+ * </pre>
+ */
+public final class HistoryReader {
+    private static final int MAX_LINE_LENGTH = 4096;
+
+    public interface Listener {
+        void onDay(long epochDay, String address, long usageDuration, long hunchedDuration, int hunchedCount);
+
+        void onEvent(String address, long timestamp, int posture, long duration);
+    }
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(HistoryWriter.BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private boolean endOfInput = false;
+    private long days = 0;
+    private long events = 0;
+
+    private HistoryReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.limit(0);
+    }
+
+    public static void read(ReadableByteChannel channel, Listener listener) throws IOException {
+        new HistoryReader(channel).read(listener);
+    }
+
+    private void read(Listener listener) throws IOException {
+        if (!fill(HistoryWriter.MAGIC.length)) throw new IOException("Empty history");
+        boolean binary = true;
+        for (int i = 0; i < HistoryWriter.MAGIC.length; i++) {
+            if (buffer.get(buffer.position() + i) != HistoryWriter.MAGIC[i]) {
+                binary = false;
+                break;
+            }
+        }
+        if (binary) {
+            readBinary(listener);
+        } else {
+            readCsv(listener);
+        }
+    }
+
+    private void readBinary(Listener listener) throws IOException {
+        buffer.position(buffer.position() + HistoryWriter.MAGIC.length);
+        require(1);
+        int version = buffer.get() & 0xFF;
+        if (version != HistoryWriter.VERSION) throw new IOException("Unsupported version " + version);
+        List<String> addresses = new ArrayList<>();
+        while (true) {
+            require(1);
+            int type = buffer.get() & 0xFF;
+            if (type == HistoryWriter.RECORD_END) {
+                require(16);
+                checkEnd(buffer.getLong(), buffer.getLong());
+                return;
+            } else if (type == HistoryWriter.RECORD_ADDRESS) {
+                require(4);
+                int index = buffer.getShort() & 0xFFFF;
+                int length = buffer.getShort() & 0xFFFF;
+                if (index != addresses.size() || length > HistoryWriter.MAX_ADDRESS_LENGTH) {
+                    throw new IOException("Invalid address record");
+                }
+                require(length);
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                addresses.add(new String(bytes, StandardCharsets.UTF_8));
+            } else if (type == HistoryWriter.RECORD_DAY) {
+                require(26);
+                String address = address(addresses, buffer.getShort() & 0xFFFF);
+                long epochDay = buffer.getInt();
+                long usage = buffer.getLong();
+                long hunched = buffer.getLong();
+                int count = buffer.getInt();
+                days++;
+                listener.onDay(epochDay, address, usage, hunched, count);
+            } else if (type == HistoryWriter.RECORD_EVENT) {
+                require(19);
+                String address = address(addresses, buffer.getShort() & 0xFFFF);
+                long timestamp = buffer.getLong();
+                int posture = buffer.get() & 0xFF;
+                long duration = buffer.getLong();
+                checkPosture(posture);
+                events++;
+                listener.onEvent(address, timestamp, posture, duration);
+            } else {
+                throw new IOException("Unknown record " + type);
+            }
+        }
+    }
+
+    private void readCsv(Listener listener) throws IOException {
+        byte[] line = new byte[256];
+        int length = 0;
+        int lineNumber = 0;
+        while (true) {
+            if (!buffer.hasRemaining() && !fill(1)) {
+                throw new IOException("History ends without end record");
+            }
+            byte b = buffer.get();
+            if (b != '\n') {
+                if (length == line.length) {
+                    if (length >= MAX_LINE_LENGTH) throw new IOException("Line " + (lineNumber + 1) + " too long");
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = b;
+                continue;
+            }
+            lineNumber++;
+            if (length > 0 && line[length - 1] == '\r') length--;
+            String text = new String(line, 0, length, StandardCharsets.UTF_8);
+            length = 0;
+            if (text.isEmpty() || text.startsWith("#")) continue;
+            if (parseLine(text, lineNumber, listener)) return;
+        }
+    }
+
+    /**
+     * Returns true for the end record.
+     */
+    private boolean parseLine(String text, int lineNumber, Listener listener) throws IOException {
+        String[] fields = text.split(",", -1);
+        try {
+            switch (fields[0]) {
+                case HistoryWriter.CSV_DAY:
+                    checkFields(fields, 6, lineNumber);
+                    days++;
+                    listener.onDay(LocalDate.parse(fields[1]).toEpochDay(), fields[2], Long.parseLong(fields[3]),
+                            Long.parseLong(fields[4]), Integer.parseInt(fields[5]));
+                    return false;
+                case HistoryWriter.CSV_EVENT:
+                    checkFields(fields, 5, lineNumber);
+                    int posture;
+                    if (fields[3].equals("ok")) {
+                        posture = PostureFrameDecoder.POSTURE_STRETCHED;
+                    } else if (fields[3].equals("bad")) {
+                        posture = PostureFrameDecoder.POSTURE_HUNCHED;
+                    } else {
+                        throw new IOException("Unknown posture on line " + lineNumber);
+                    }
+                    events++;
+                    listener.onEvent(fields[1], Long.parseLong(fields[2]), posture, Long.parseLong(fields[4]));
+                    return false;
+                case HistoryWriter.CSV_END:
+                    checkFields(fields, 3, lineNumber);
+                    checkEnd(Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+                    return true;
+                default:
+                    throw new IOException("Unknown record on line " + lineNumber);
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IOException("Invalid value on line " + lineNumber, e);
+        }
+    }
+
+    private static void checkFields(String[] fields, int expected, int lineNumber) throws IOException {
+        if (fields.length != expected) throw new IOException("Expected " + expected + " fields on line " + lineNumber);
+    }
+
+    private static void checkPosture(int posture) throws IOException {
+        if (posture != PostureFrameDecoder.POSTURE_STRETCHED && posture != PostureFrameDecoder.POSTURE_HUNCHED) {
+            throw new IOException("Unknown posture " + posture);
+        }
+    }
+
+    private static String address(List<String> addresses, int index) throws IOException {
+        if (index >= addresses.size()) throw new IOException("Undefined address " + index);
+        return addresses.get(index);
+    }
+
+    private void checkEnd(long expectedDays, long expectedEvents) throws IOException {
+        if (expectedDays != days || expectedEvents != events) {
+            throw new IOException("History is incomplete, read " + days + " of " + expectedDays + " days and "
+                    + events + " of " + expectedEvents + " events");
+        }
+    }
+
+    private void require(int bytes) throws IOException {
+        if (!fill(bytes)) throw new IOException("History is truncated");
+    }
+
+    /**
+     * Reads until at least the given number of bytes is buffered, returns false at the end of input.
+     */
+    private boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) return true;
+        buffer.compact();
+        while (buffer.position() < bytes && !endOfInput) {
+            if (channel.read(buffer) < 0) {
+                endOfInput = true;
+            }
+        }
+        buffer.flip();
+        return buffer.remaining() >= bytes;
+    }
+}
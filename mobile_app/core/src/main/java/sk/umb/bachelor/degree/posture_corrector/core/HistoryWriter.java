@@ -0,0 +1,206 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes exported history record by record into a channel through one fixed buffer, so memory use
+ * does not depend on the length of the history. See {@link HistoryReader} for both formats.
+ * {@link #close()} writes the end record, a file without it is reported as truncated on import.
+ */
+public abstract class HistoryWriter implements Closeable {
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    // Binary format
+    static final byte[] MAGIC = { 'P', 'C', 'H' };
+    static final int VERSION = 1;
+    static final int RECORD_END = 0;
+    static final int RECORD_ADDRESS = 1;
+    static final int RECORD_DAY = 2;
+    static final int RECORD_EVENT = 3;
+    static final int MAX_ADDRESSES = 0xFFFF;
+    static final int MAX_ADDRESS_LENGTH = 1024;
+
+    // Text format
+    static final String CSV_HEADER = "# posture_corrector history v1";
+    static final String CSV_DAY = "day";
+    static final String CSV_EVENT = "event";
+    static final String CSV_END = "end";
+
+    protected final WritableByteChannel channel;
+    protected final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long days = 0;
+    private long events = 0;
+    private boolean closed = false;
+
+    HistoryWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    public static HistoryWriter csv(WritableByteChannel channel) throws IOException {
+        return new Csv(channel);
+    }
+
+    public static HistoryWriter binary(WritableByteChannel channel) throws IOException {
+        return new Binary(channel);
+    }
+
+    /**
+     * Writes statistics of one day of one device, durations in milliseconds.
+     */
+    public void writeDay(long epochDay, String address, long usageDuration, long hunchedDuration, int hunchedCount)
+            throws IOException {
+        days++;
+        day(epochDay, address, usageDuration, hunchedDuration, hunchedCount);
+    }
+
+    /**
+     * Writes one posture interval, timestamp in epoch milliseconds, posture one of
+     * {@code PostureFrameDecoder.POSTURE_STRETCHED} or {@code POSTURE_HUNCHED}.
+     */
+    public void writeEvent(String address, long timestamp, int posture, long duration) throws IOException {
+        if (posture != PostureFrameDecoder.POSTURE_STRETCHED && posture != PostureFrameDecoder.POSTURE_HUNCHED) {
+            throw new IllegalArgumentException("Unknown posture " + posture);
+        }
+        events++;
+        event(address, timestamp, posture, duration);
+    }
+
+    /**
+     * Writes the end record and flushes the buffer, the channel is left open.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        end(days, events);
+        flush();
+    }
+
+    abstract void day(long epochDay, String address, long usageDuration, long hunchedDuration, int hunchedCount)
+            throws IOException;
+
+    abstract void event(String address, long timestamp, int posture, long duration) throws IOException;
+
+    abstract void end(long days, long events) throws IOException;
+
+    void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static final class Csv extends HistoryWriter {
+        private final StringBuilder line = new StringBuilder(128);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+        Csv(WritableByteChannel channel) throws IOException {
+            super(channel);
+            line.append(CSV_HEADER);
+            writeLine();
+        }
+
+        @Override
+        void day(long epochDay, String address, long usageDuration, long hunchedDuration, int hunchedCount)
+                throws IOException {
+            line.append(CSV_DAY).append(',').append(LocalDate.ofEpochDay(epochDay)).append(',')
+                    .append(address).append(',').append(usageDuration).append(',')
+                    .append(hunchedDuration).append(',').append(hunchedCount);
+            writeLine();
+        }
+
+        @Override
+        void event(String address, long timestamp, int posture, long duration) throws IOException {
+            line.append(CSV_EVENT).append(',').append(address).append(',').append(timestamp).append(',')
+                    .append(posture == PostureFrameDecoder.POSTURE_HUNCHED ? "bad" : "ok").append(',').append(duration);
+            writeLine();
+        }
+
+        @Override
+        void end(long days, long events) throws IOException {
+            line.append(CSV_END).append(',').append(days).append(',').append(events);
+            writeLine();
+        }
+
+        private void writeLine() throws IOException {
+            line.append('\n');
+            CharBuffer chars = CharBuffer.wrap(line);
+            encoder.reset();
+            while (true) {
+                CoderResult result = encoder.encode(chars, buffer, true);
+                if (result.isOverflow()) {
+                    flush();
+                } else if (result.isError()) {
+                    result.throwException();
+                } else {
+                    break;
+                }
+            }
+            line.setLength(0);
+        }
+    }
+
+    private static final class Binary extends HistoryWriter {
+        // Addresses are written once and then referenced by index
+        private final Map<String, Integer> addresses = new HashMap<>();
+
+        Binary(WritableByteChannel channel) throws IOException {
+            super(channel);
+            buffer.put(MAGIC).put((byte) VERSION);
+        }
+
+        @Override
+        void day(long epochDay, String address, long usageDuration, long hunchedDuration, int hunchedCount)
+                throws IOException {
+            int index = addressIndex(address);
+            ensure(27);
+            buffer.put((byte) RECORD_DAY).putShort((short) index).putInt((int) epochDay)
+                    .putLong(usageDuration).putLong(hunchedDuration).putInt(hunchedCount);
+        }
+
+        @Override
+        void event(String address, long timestamp, int posture, long duration) throws IOException {
+            int index = addressIndex(address);
+            ensure(20);
+            buffer.put((byte) RECORD_EVENT).putShort((short) index).putLong(timestamp)
+                    .put((byte) posture).putLong(duration);
+        }
+
+        @Override
+        void end(long days, long events) throws IOException {
+            ensure(17);
+            buffer.put((byte) RECORD_END).putLong(days).putLong(events);
+        }
+
+        private int addressIndex(String address) throws IOException {
+            Integer index = addresses.get(address);
+            if (index != null) return index;
+            if (addresses.size() >= MAX_ADDRESSES) throw new IOException("Too many devices");
+            byte[] bytes = address.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_ADDRESS_LENGTH) throw new IOException("Device address too long");
+            int newIndex = addresses.size();
+            addresses.put(address, newIndex);
+            ensure(5 + bytes.length);
+            buffer.put((byte) RECORD_ADDRESS).putShort((short) newIndex).putShort((short) bytes.length).put(bytes);
+            return newIndex;
+        }
+    }
+}
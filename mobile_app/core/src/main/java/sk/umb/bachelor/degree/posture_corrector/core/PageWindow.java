@@ -0,0 +1,89 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Pages of a long scrollable series, only pages around the visible range are kept. Keys are positions
+ * on the x axis, e.g. epoch days, a page holds {@code pageSize} consecutive keys. Pages are loaded
+ * asynchronously: {@link #update} returns pages to load, {@link #put} stores a loaded page unless it
+ * was scrolled away meanwhile. Memory does not depend on the length of the series.
+ * Not thread safe, used from the main thread.
+ */
+public final class PageWindow<T> {
+    private final int pageSize;
+    private final int marginPages;
+    private final TreeMap<Long, T> pages = new TreeMap<>();
+    private final TreeSet<Long> loading = new TreeSet<>();
+    private long firstPage = 0;
+    private long lastPage = -1;
+
+    /**
+     * @param marginPages pages kept on each side of the visible ones, so scrolling does not show empty pages
+     */
+    public PageWindow(int pageSize, int marginPages) {
+        if (pageSize <= 0 || marginPages < 0) throw new IllegalArgumentException("Invalid page size or margin");
+        this.pageSize = pageSize;
+        this.marginPages = marginPages;
+    }
+
+    public long pageOf(long key) {
+        return Math.floorDiv(key, pageSize);
+    }
+
+    public long firstKey(long page) {
+        return page * pageSize;
+    }
+
+    /**
+     * Moves the window to the visible keys {@code [from, to]}, evicts pages outside of it and returns pages
+     * which are neither loaded nor loading, the caller loads them and passes them to {@link #put}.
+     */
+    public List<Long> update(long from, long to) {
+        firstPage = pageOf(from) - marginPages;
+        lastPage = pageOf(to) + marginPages;
+        pages.headMap(firstPage).clear();
+        pages.tailMap(lastPage, false).clear();
+        loading.headSet(firstPage).clear();
+        loading.tailSet(lastPage, false).clear();
+
+        List<Long> missing = new ArrayList<>();
+        for (long page = firstPage; page <= lastPage; page++) {
+            if (!pages.containsKey(page) && loading.add(page)) {
+                missing.add(page);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Stores a loaded page, returns false when it is no longer in the window and was dropped.
+     */
+    public boolean put(long page, T value) {
+        if (!loading.remove(page)) return false;
+        pages.put(page, value);
+        return true;
+    }
+
+    /**
+     * Forgets all pages, e.g. when the stored data changed, the next {@link #update} loads them again.
+     */
+    public void clear() {
+        pages.clear();
+        loading.clear();
+    }
+
+    /**
+     * Loaded pages in the order of keys.
+     */
+    public Collection<T> values() {
+        return pages.values();
+    }
+
+    public int size() {
+        return pages.size();
+    }
+}
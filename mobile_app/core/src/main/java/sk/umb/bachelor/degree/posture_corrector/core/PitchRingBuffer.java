@@ -0,0 +1,49 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+/**
+ * Fixed size buffer of the latest pitch samples. Memory use does not change however
+ * long the stream runs, oldest samples are overwritten.
+ */
+public final class PitchRingBuffer {
+    private final long[] timestamps;
+    private final float[] values;
+    private int next = 0;
+    private int size = 0;
+
+    public PitchRingBuffer(int capacity) {
+        timestamps = new long[capacity];
+        values = new float[capacity];
+    }
+
+    public int getCapacity() {
+        return values.length;
+    }
+
+    public synchronized void add(long timestamp, float value) {
+        timestamps[next] = timestamp;
+        values[next] = value;
+        next = (next + 1) % values.length;
+        if (size < values.length) size++;
+    }
+
+    public synchronized void clear() {
+        next = 0;
+        size = 0;
+    }
+
+    /**
+     * Copies samples from the oldest to the newest into given arrays, which need
+     * to be at least as long as the capacity.
+     *
+     * @return number of copied samples
+     */
+    public synchronized int copyTo(long[] timestampsOut, float[] valuesOut) {
+        int start = (next - size + values.length) % values.length;
+        int firstPart = Math.min(size, values.length - start);
+        System.arraycopy(timestamps, start, timestampsOut, 0, firstPart);
+        System.arraycopy(values, start, valuesOut, 0, firstPart);
+        System.arraycopy(timestamps, 0, timestampsOut, firstPart, size - firstPart);
+        System.arraycopy(values, 0, valuesOut, firstPart, size - firstPart);
+        return size;
+    }
+}
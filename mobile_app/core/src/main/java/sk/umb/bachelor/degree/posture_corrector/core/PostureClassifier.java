@@ -0,0 +1,147 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+/**
+ * Posture classification of one device, the same algorithm as the firmware runs. Pitch is estimated
+ * with a complementary filter from raw IMU samples, or given directly when the device already sends it.
+ * A new posture is reported once pitch stays on its side of the threshold for the minimum duration.
+ *
+ * <p>Samples of one device must come from one thread at a time. Nothing is allocated per sample,
+ * thresholds may be replaced from any thread and apply from the next sample.
+ */
+public final class PostureClassifier {
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    // Sample interval of the firmware, used when the interval can not be computed
+    private static final float DEFAULT_INTERVAL_SECONDS = 0.01f;
+
+    /**
+     * Parameters of the classifier, can differ per user.
+     */
+    public static final class Thresholds {
+        /** Values hardcoded in the firmware. */
+        public static final Thresholds FIRMWARE = new Thresholds(0.5f, 66.0f, 0.0f, 5000);
+
+        /** Weight of the integrated gyroscope in the complementary filter, 0 to 1. */
+        public final float alpha;
+        /** Pitch in degrees above which the user is stretched. */
+        public final float stretchedAngle;
+        /** Width of the band around the threshold in degrees, pitch has to cross the whole band to change posture. */
+        public final float hysteresis;
+        /** Milliseconds the new posture has to last before it is reported. */
+        public final long minimumDuration;
+
+        public Thresholds(float alpha, float stretchedAngle, float hysteresis, long minimumDuration) {
+            if (!(alpha >= 0 && alpha <= 1)) throw new IllegalArgumentException("alpha must be between 0 and 1");
+            if (!(hysteresis >= 0)) throw new IllegalArgumentException("hysteresis must not be negative");
+            if (minimumDuration < 0) throw new IllegalArgumentException("minimumDuration must not be negative");
+            if (Float.isNaN(stretchedAngle)) throw new IllegalArgumentException("stretchedAngle must be a number");
+            this.alpha = alpha;
+            this.stretchedAngle = stretchedAngle;
+            this.hysteresis = hysteresis;
+            this.minimumDuration = minimumDuration;
+        }
+    }
+
+    private volatile Thresholds thresholds;
+
+    private float pitch = 0;
+    private boolean hasPitch = false;
+    private long lastImuTimestamp = NO_TIMESTAMP;
+    private long lastTimestamp = NO_TIMESTAMP;
+    // The firmware starts stretched, so does the classifier
+    private int posture = PostureFrameDecoder.POSTURE_STRETCHED;
+    private long newPostureSince = NO_TIMESTAMP;
+
+    public PostureClassifier(Thresholds thresholds) {
+        this.thresholds = thresholds;
+    }
+
+    public Thresholds getThresholds() {
+        return thresholds;
+    }
+
+    public void setThresholds(Thresholds thresholds) {
+        this.thresholds = thresholds;
+    }
+
+    /**
+     * Forgets the filter state and the posture, used when a new session of the device starts.
+     */
+    public void reset() {
+        pitch = 0;
+        hasPitch = false;
+        lastImuTimestamp = NO_TIMESTAMP;
+        lastTimestamp = NO_TIMESTAMP;
+        posture = PostureFrameDecoder.POSTURE_STRETCHED;
+        newPostureSince = NO_TIMESTAMP;
+    }
+
+    /**
+     * Adds raw IMU sample, accelerations in any unit, rotation around the X axis in degrees per second.
+     *
+     * @param timestamp device time in milliseconds
+     * @return posture after the sample, one of {@code PostureFrameDecoder.POSTURE_*}
+     */
+    public int addImu(long timestamp, float accelX, float accelY, float accelZ, float gyroX) {
+        Thresholds current = thresholds;
+        float accelPitch = (float) Math.toDegrees(Math.atan2(accelY, Math.sqrt(accelX * accelX + accelZ * accelZ)));
+        if (!hasPitch) {
+            // Starting from the accelerometer avoids the slow rise from zero the firmware has after boot
+            pitch = accelPitch;
+            hasPitch = true;
+        } else {
+            float dt = lastImuTimestamp == NO_TIMESTAMP || timestamp <= lastImuTimestamp
+                    ? DEFAULT_INTERVAL_SECONDS : (timestamp - lastImuTimestamp) / 1000.0f;
+            pitch = current.alpha * (pitch + gyroX * dt) + (1 - current.alpha) * accelPitch;
+        }
+        lastImuTimestamp = timestamp;
+        return classify(timestamp, pitch, current);
+    }
+
+    /**
+     * Adds pitch which was already filtered by the device.
+     *
+     * @param timestamp device time in milliseconds
+     * @param pitch pitch in degrees, NaN is ignored
+     * @return posture after the sample, one of {@code PostureFrameDecoder.POSTURE_*}
+     */
+    public int addPitch(long timestamp, float pitch) {
+        if (Float.isNaN(pitch)) return posture;
+        this.pitch = pitch;
+        hasPitch = true;
+        return classify(timestamp, pitch, thresholds);
+    }
+
+    /**
+     * Filtered pitch in degrees, NaN before the first sample.
+     */
+    public float getPitch() {
+        return hasPitch ? pitch : Float.NaN;
+    }
+
+    public int getPosture() {
+        return posture;
+    }
+
+    private int classify(long timestamp, float pitch, Thresholds current) {
+        // Device time restarts with the device, a pending change is measured again from now
+        if (lastTimestamp != NO_TIMESTAMP && timestamp < lastTimestamp) {
+            newPostureSince = NO_TIMESTAMP;
+        }
+        lastTimestamp = timestamp;
+
+        float halfBand = current.hysteresis / 2;
+        boolean otherSide = posture == PostureFrameDecoder.POSTURE_STRETCHED
+                ? pitch <= current.stretchedAngle - halfBand
+                : pitch > current.stretchedAngle + halfBand;
+        if (!otherSide) {
+            newPostureSince = NO_TIMESTAMP;
+        } else if (newPostureSince == NO_TIMESTAMP) {
+            newPostureSince = timestamp;
+        } else if (timestamp - newPostureSince >= current.minimumDuration) {
+            posture = posture == PostureFrameDecoder.POSTURE_STRETCHED
+                    ? PostureFrameDecoder.POSTURE_HUNCHED : PostureFrameDecoder.POSTURE_STRETCHED;
+            newPostureSince = NO_TIMESTAMP;
+        }
+        return posture;
+    }
+}
@@ -0,0 +1,115 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+/**
+ * Decodes notifications of the data characteristic straight from the received bytes,
+ * without allocating anything per notification.
+ *
+ * <p>Binary frame, all values little endian:
+ * <pre>
+ * offset  size  field
+ * 0       1     magic 0xA5
+ * 1       1     protocol version, currently 1
+ * 2       1     flags, bit 0 set when samples contain pitch
+ * 3       1     number of samples, at least 1
+ * 4       2     sequence number of the first sample, increments by one per sample
+ * 6       4     device timestamp of the first sample in milliseconds
+ * 10      ...   samples
+ * </pre>
+ * Sample:
+ * <pre>
+ * 0       2     offset from the frame timestamp in milliseconds
+ * 2       1     posture code, see POSTURE_* constants
+ * 3       2     pitch in hundredths of a degree, signed, only when flag is set
+ * </pre>
+ * Older firmware sends ASCII "ok" or "bad", which is decoded as one sample without
+ * sequence number, timestamp and pitch.
+ */
+public final class PostureFrameDecoder {
+    public static final int POSTURE_UNKNOWN = 0;
+    public static final int POSTURE_STRETCHED = 1;
+    public static final int POSTURE_HUNCHED = 2;
+
+    public static final int ERROR_MALFORMED = -1;
+    public static final int ERROR_TRUNCATED = -2;
+    public static final int ERROR_UNSUPPORTED_VERSION = -3;
+
+    public static final int NO_SEQUENCE = -1;
+    public static final long NO_TIMESTAMP = -1;
+
+    static final int MAGIC = 0xA5;
+    static final int VERSION = 1;
+    static final int FLAG_PITCH = 0x01;
+    static final int HEADER_SIZE = 10;
+    static final int SAMPLE_SIZE = 3;
+    static final int PITCH_SIZE = 2;
+
+    public interface SampleListener {
+        /**
+         * @param sequence sequence number of the sample, {@link #NO_SEQUENCE} for legacy notifications
+         * @param timestamp device timestamp in milliseconds, {@link #NO_TIMESTAMP} for legacy notifications
+         * @param posture one of POSTURE_* constants
+         * @param pitch pitch in degrees, NaN when not present
+         */
+        void onSample(int sequence, long timestamp, int posture, float pitch);
+    }
+
+    private PostureFrameDecoder() {}
+
+    /**
+     * Decodes one notification. Samples are passed to the listener only when the whole
+     * notification is valid.
+     *
+     * @return number of decoded samples or one of ERROR_* constants
+     */
+    public static int decode(byte[] data, SampleListener listener) {
+        if (data == null || data.length == 0) return ERROR_MALFORMED;
+        if ((data[0] & 0xFF) != MAGIC) return decodeLegacy(data, listener);
+        if (data.length < HEADER_SIZE) return ERROR_TRUNCATED;
+        if ((data[1] & 0xFF) != VERSION) return ERROR_UNSUPPORTED_VERSION;
+
+        int flags = data[2] & 0xFF;
+        int count = data[3] & 0xFF;
+        if (count == 0 || (flags & ~FLAG_PITCH) != 0) return ERROR_MALFORMED;
+        boolean hasPitch = (flags & FLAG_PITCH) != 0;
+        int sampleSize = hasPitch ? SAMPLE_SIZE + PITCH_SIZE : SAMPLE_SIZE;
+        int expectedLength = HEADER_SIZE + count * sampleSize;
+        if (data.length < expectedLength) return ERROR_TRUNCATED;
+        if (data.length > expectedLength) return ERROR_MALFORMED;
+
+        // Validate all samples first, so a bad frame does not produce partial results
+        for (int offset = HEADER_SIZE + 2; offset < expectedLength; offset += sampleSize) {
+            if ((data[offset] & 0xFF) > POSTURE_HUNCHED) return ERROR_MALFORMED;
+        }
+
+        int sequence = readUnsignedShort(data, 4);
+        long timestamp = readUnsignedInt(data, 6);
+        for (int i = 0, offset = HEADER_SIZE; i < count; i++, offset += sampleSize) {
+            long sampleTimestamp = timestamp + readUnsignedShort(data, offset);
+            int posture = data[offset + 2] & 0xFF;
+            float pitch = hasPitch ? ((short) readUnsignedShort(data, offset + SAMPLE_SIZE)) / 100.0f : Float.NaN;
+            listener.onSample((sequence + i) & 0xFFFF, sampleTimestamp, posture, pitch);
+        }
+        return count;
+    }
+
+    private static int decodeLegacy(byte[] data, SampleListener listener) {
+        int posture;
+        if (data.length == 2 && data[0] == 'o' && data[1] == 'k') {
+            posture = POSTURE_STRETCHED;
+        } else if (data.length == 3 && data[0] == 'b' && data[1] == 'a' && data[2] == 'd') {
+            posture = POSTURE_HUNCHED;
+        } else {
+            return ERROR_MALFORMED;
+        }
+        listener.onSample(NO_SEQUENCE, NO_TIMESTAMP, posture, Float.NaN);
+        return 1;
+    }
+
+    private static int readUnsignedShort(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8);
+    }
+
+    private static long readUnsignedInt(byte[] data, int offset) {
+        return ((long) readUnsignedShort(data, offset)) | ((long) readUnsignedShort(data, offset + 2) << 16);
+    }
+}
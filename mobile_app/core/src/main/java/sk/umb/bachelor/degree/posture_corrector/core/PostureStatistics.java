@@ -0,0 +1,16 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+/**
+ * Statistics computed from posture durations, shared by the app screens.
+ */
+public final class PostureStatistics {
+    private PostureStatistics() {}
+
+    /**
+     * Percent of usage time spent stretched, 0 when there is no usage.
+     */
+    public static float percentOfStretch(long usageDuration, long hunchedPostureDuration) {
+        if (usageDuration <= 0) return 0.0f;
+        return ((float) (usageDuration - hunchedPostureDuration) / usageDuration) * 100;
+    }
+}
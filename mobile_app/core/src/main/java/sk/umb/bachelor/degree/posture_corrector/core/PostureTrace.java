@@ -0,0 +1,154 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Recorded or synthetic sequence of postures reported by a device. Step {@code i} starts
+ * {@code offsets[i]} milliseconds after the start of the trace and lasts until the next step,
+ * the last one until {@link #getDuration()}. Postures are codes of {@link PostureFrameDecoder}.
+ */
+public final class PostureTrace {
+    private final long[] offsets;
+    private final int[] postures;
+    private final long duration;
+
+    public PostureTrace(long[] offsets, int[] postures, long duration) {
+        if (offsets.length != postures.length) throw new IllegalArgumentException("Lengths of offsets and postures differ");
+        for (int i = 0; i < offsets.length; i++) {
+            if (offsets[i] < 0 || offsets[i] > duration || (i > 0 && offsets[i] < offsets[i - 1])) {
+                throw new IllegalArgumentException("Offsets have to be ascending and within the trace, step " + i);
+            }
+        }
+        this.offsets = offsets;
+        this.postures = postures;
+        this.duration = duration;
+    }
+
+    /**
+     * Reads trace from text, every line is {@code offset,posture} where posture is {@code ok} or {@code bad},
+     * the last line is {@code offset,end}. Empty lines and lines starting with # are skipped.
+     */
+    public static PostureTrace parse(Reader input) throws IOException {
+        BufferedReader reader = new BufferedReader(input);
+        long[] offsets = new long[64];
+        int[] postures = new int[64];
+        int size = 0;
+        long duration = -1;
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] parts = line.split(",");
+            if (parts.length != 2 || duration >= 0) throw new IOException("Invalid trace line " + lineNumber);
+            long offset;
+            try {
+                offset = Long.parseLong(parts[0].trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid offset on line " + lineNumber, e);
+            }
+            String posture = parts[1].trim();
+            if (posture.equals("end")) {
+                duration = offset;
+                continue;
+            }
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                postures = Arrays.copyOf(postures, size * 2);
+            }
+            offsets[size] = offset;
+            if (posture.equals("ok")) {
+                postures[size] = PostureFrameDecoder.POSTURE_STRETCHED;
+            } else if (posture.equals("bad")) {
+                postures[size] = PostureFrameDecoder.POSTURE_HUNCHED;
+            } else {
+                throw new IOException("Invalid posture on line " + lineNumber);
+            }
+            size++;
+        }
+        if (duration < 0) throw new IOException("Trace has no end line");
+        try {
+            return new PostureTrace(Arrays.copyOf(offsets, size), Arrays.copyOf(postures, size), duration);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Alternating postures with exponentially distributed lengths, like a person who changes posture
+     * on average every {@code meanStepMillis}. Same seed gives the same trace.
+     */
+    public static PostureTrace synthetic(long seed, long duration, long meanStepMillis) {
+        Random random = new Random(seed);
+        long[] offsets = new long[1024];
+        int[] postures = new int[offsets.length];
+        int size = 0;
+        long offset = 0;
+        int posture = random.nextBoolean() ? PostureFrameDecoder.POSTURE_STRETCHED : PostureFrameDecoder.POSTURE_HUNCHED;
+        while (offset < duration) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                postures = Arrays.copyOf(postures, size * 2);
+            }
+            offsets[size] = offset;
+            postures[size] = posture;
+            size++;
+            // At least one millisecond, so steps never share an offset
+            offset += 1 + (long) (-Math.log(1 - random.nextDouble()) * meanStepMillis);
+            posture = posture == PostureFrameDecoder.POSTURE_STRETCHED
+                    ? PostureFrameDecoder.POSTURE_HUNCHED : PostureFrameDecoder.POSTURE_STRETCHED;
+        }
+        return new PostureTrace(Arrays.copyOf(offsets, size), Arrays.copyOf(postures, size), duration);
+    }
+
+    public int size() {
+        return offsets.length;
+    }
+
+    public long getOffset(int step) {
+        return offsets[step];
+    }
+
+    public int getPosture(int step) {
+        return postures[step];
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public long getStepDuration(int step) {
+        return (step + 1 < offsets.length ? offsets[step + 1] : duration) - offsets[step];
+    }
+
+    /**
+     * Time from the first step to the end, the time the device reported any posture.
+     */
+    public long getUsageDuration() {
+        return offsets.length == 0 ? 0 : duration - offsets[0];
+    }
+
+    public long getHunchedDuration() {
+        long hunched = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            if (postures[i] == PostureFrameDecoder.POSTURE_HUNCHED) hunched += getStepDuration(i);
+        }
+        return hunched;
+    }
+
+    /**
+     * Number of hunches, a trace which starts hunched counts its first step too.
+     */
+    public int getHunchCount() {
+        int count = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            if (postures[i] == PostureFrameDecoder.POSTURE_HUNCHED && (i == 0 || postures[i - 1] != PostureFrameDecoder.POSTURE_HUNCHED)) count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,53 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with jitter for reconnect attempts. Half of the delay is fixed and half
+ * is random, so phones which lost the same device do not retry in lockstep.
+ */
+public class ReconnectPolicy {
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final int autoConnectAfterAttempts;
+    private final Random random;
+    private int attempts = 0;
+
+    public ReconnectPolicy(long initialDelayMillis, long maxDelayMillis, int autoConnectAfterAttempts) {
+        this(initialDelayMillis, maxDelayMillis, autoConnectAfterAttempts, new Random());
+    }
+
+    ReconnectPolicy(long initialDelayMillis, long maxDelayMillis, int autoConnectAfterAttempts, Random random) {
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.autoConnectAfterAttempts = autoConnectAfterAttempts;
+        this.random = random;
+    }
+
+    /**
+     * Returns delay before the next attempt and counts the attempt.
+     */
+    public long nextDelayMillis() {
+        long delay = initialDelayMillis << Math.min(attempts, 20);
+        if (delay <= 0 || delay > maxDelayMillis) delay = maxDelayMillis;
+        attempts++;
+        long half = delay / 2;
+        return half + (long) (random.nextDouble() * (delay - half));
+    }
+
+    /**
+     * After several failed attempts the connection is left to the system with autoConnect,
+     * which waits for the device without keeping the radio busy.
+     */
+    public boolean shouldUseAutoConnect() {
+        return attempts > autoConnectAfterAttempts;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void reset() {
+        attempts = 0;
+    }
+}
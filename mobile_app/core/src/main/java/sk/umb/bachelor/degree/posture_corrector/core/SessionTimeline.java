@@ -0,0 +1,120 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * Posture state machine of one device measured with a monotonic clock. Durations are exact
+ * milliseconds which do not drift or jump with the wall clock. The wall clock is only used to
+ * place intervals in time, it is read when the session starts and after the system reports a change.
+ * Finished intervals are split at local midnight, so every piece belongs to exactly one day.
+ * Postures are codes of {@link PostureFrameDecoder}, {@code POSTURE_UNKNOWN} means no interval is running.
+ */
+public class SessionTimeline {
+    public interface Clock {
+        long elapsedRealtimeNanos();
+        long currentTimeMillis();
+    }
+
+    public interface IntervalListener {
+        /**
+         * @param posture posture of the piece
+         * @param timestamp start of the piece in epoch milliseconds
+         * @param duration length of the piece in milliseconds
+         * @param last true for the last piece of the finished interval
+         */
+        void onInterval(int posture, long timestamp, long duration, boolean last);
+    }
+
+    private static final long NANOS_PER_MILLI = 1_000_000;
+
+    private final Clock clock;
+    private ZoneId zone;
+
+    // Wall time of the monotonic anchor, intervals are placed relative to it
+    private long anchorWallMillis;
+    private long anchorElapsedMillis;
+    // Wall clock is read again when the next interval starts
+    private boolean wallClockChanged = true;
+
+    private int posture = PostureFrameDecoder.POSTURE_UNKNOWN;
+    private long startElapsedMillis;
+
+    public SessionTimeline(Clock clock, ZoneId zone) {
+        this.clock = clock;
+        this.zone = zone;
+    }
+
+    public synchronized int getPosture() {
+        return posture;
+    }
+
+    /**
+     * Ends the current interval and starts interval of the new posture. Nothing happens when the posture
+     * did not change.
+     *
+     * @param next new posture, {@code POSTURE_UNKNOWN} when the device stopped reporting
+     * @param listener receives pieces of the finished interval in time order
+     * @return true when the posture changed
+     */
+    public synchronized boolean transition(int next, IntervalListener listener) {
+        if (next == posture) return false;
+        long now = elapsedMillis();
+        finishInterval(now, listener);
+        posture = next;
+        if (next != PostureFrameDecoder.POSTURE_UNKNOWN) {
+            if (wallClockChanged) {
+                anchorWallMillis = clock.currentTimeMillis();
+                anchorElapsedMillis = now;
+                wallClockChanged = false;
+            }
+            startElapsedMillis = now;
+        }
+        return true;
+    }
+
+    /**
+     * Time zone changed. The running interval is split now, so time before the change is booked
+     * to days of the old zone and time after it to days of the new one.
+     */
+    public synchronized void onTimeZoneChanged(ZoneId newZone, IntervalListener listener) {
+        long now = elapsedMillis();
+        finishInterval(now, listener);
+        startElapsedMillis = now;
+        zone = newZone;
+    }
+
+    /**
+     * Wall clock was set. The running interval keeps its place, the wall clock is read again
+     * when the next interval starts.
+     */
+    public synchronized void onWallClockChanged() {
+        wallClockChanged = true;
+    }
+
+    private void finishInterval(long now, IntervalListener listener) {
+        if (posture == PostureFrameDecoder.POSTURE_UNKNOWN) return;
+        long start = anchorWallMillis + (startElapsedMillis - anchorElapsedMillis);
+        split(posture, start, now - startElapsedMillis, zone, listener);
+    }
+
+    private long elapsedMillis() {
+        return clock.elapsedRealtimeNanos() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Splits interval at every local midnight of the zone and passes the pieces to the listener.
+     */
+    public static void split(int posture, long timestamp, long duration, ZoneId zone, IntervalListener listener) {
+        long end = timestamp + duration;
+        long start = timestamp;
+        while (true) {
+            long midnight = Instant.ofEpochMilli(start).atZone(zone).toLocalDate().plusDays(1)
+                    .atStartOfDay(zone).toInstant().toEpochMilli();
+            if (midnight >= end) break;
+            listener.onInterval(posture, start, midnight - start, false);
+            start = midnight;
+        }
+        listener.onInterval(posture, start, end - start, true);
+    }
+}
@@ -0,0 +1,96 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * One upload of changed day statistics, gzip compressed JSON:
+ * <pre>
+ * {"install":"...","days":[{"date":"2024-03-01","device":"AA:BB:CC:DD:EE:FF","usage":3600000,
+ *   "hunched":600000,"count":4,"seq":17}]}
+ * </pre>
+ * Every day carries its change sequence number. The backend keeps a day only when its sequence number is higher
+ * than the stored one, so uploading a batch again, or an older one after a newer one, changes nothing.
+ * The idempotency key names the install and the range of sequence numbers, a batch sent again has the same key.
+ */
+public final class SyncBatch {
+    private final String install;
+    private final StringBuilder days = new StringBuilder();
+    private int size = 0;
+    private long firstSeq = 0;
+    private long lastSeq = 0;
+
+    public SyncBatch(String install) {
+        this.install = install;
+    }
+
+    /**
+     * Adds a day, days have to be added in the order of their sequence numbers.
+     */
+    public SyncBatch addDay(long epochDay, String device, long usageDuration, long hunchedDuration, int hunchedCount,
+                            long seq) {
+        if (size > 0 && seq <= lastSeq) throw new IllegalArgumentException("Days out of order");
+        if (size > 0) days.append(',');
+        days.append("{\"date\":\"").append(LocalDate.ofEpochDay(epochDay)).append("\",\"device\":");
+        appendString(days, device);
+        days.append(",\"usage\":").append(usageDuration)
+                .append(",\"hunched\":").append(hunchedDuration)
+                .append(",\"count\":").append(hunchedCount)
+                .append(",\"seq\":").append(seq).append('}');
+        if (size == 0) firstSeq = seq;
+        lastSeq = seq;
+        size++;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sequence number of the last day, the new watermark once the batch is accepted.
+     */
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    public String getIdempotencyKey() {
+        return install + ":" + firstSeq + "-" + lastSeq;
+    }
+
+    public byte[] toGzip() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8)) {
+            StringBuilder json = new StringBuilder(days.length() + install.length() + 32);
+            json.append("{\"install\":");
+            appendString(json, install);
+            json.append(",\"days\":[").append(days).append("]}");
+            writer.append(json);
+        } catch (IOException e) {
+            // Memory streams do not fail
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static void appendString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,69 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Posts {@link SyncBatch} uploads to the backend. Failures which may pass on their own, network errors,
+ * timeouts, 408, 429 and 5xx, are reported as {@link Result#RETRY}, other rejections are final.
+ */
+public final class SyncClient {
+    public enum Result {
+        ACCEPTED,
+        RETRY,
+        REJECTED
+    }
+
+    private static final int TIMEOUT_MS = 30_000;
+
+    private final URL endpoint;
+
+    public SyncClient(URL endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public Result upload(SyncBatch batch) {
+        byte[] body = batch.toGzip();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            connection.setRequestProperty("Idempotency-Key", batch.getIdempotencyKey());
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            int status = connection.getResponseCode();
+            drain(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+            return resultOf(status);
+        } catch (IOException e) {
+            return Result.RETRY;
+        }
+    }
+
+    static Result resultOf(int status) {
+        if (status >= 200 && status < 300) return Result.ACCEPTED;
+        if (status == 408 || status == 429 || status >= 500) return Result.RETRY;
+        return Result.REJECTED;
+    }
+
+    /**
+     * Reads the response to the end, so the connection can be reused for the next batch.
+     */
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) return;
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[1024];
+            while (stream.read(buffer) >= 0) {
+                // Response body is not used
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a {@link PostureTrace} on a {@link VirtualClock}. Every step advances the clock by the
+ * length of the previous step and waits that time divided by the speed, speed 1000 replays an hour
+ * in 3.6 seconds. {@link #AS_FAST_AS_POSSIBLE} does not wait at all.
+ */
+public class TraceReplayer implements Runnable {
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+    public interface Listener {
+        void onPosture(int posture);
+
+        /** Called after the trace ended, the clock is at its end. Not called when stopped. */
+        void onFinished();
+    }
+
+    private final PostureTrace trace;
+    private final VirtualClock clock;
+    private final double speed;
+    private final Listener listener;
+    private volatile boolean stopped = false;
+
+    public TraceReplayer(PostureTrace trace, VirtualClock clock, double speed, Listener listener) {
+        if (!(speed > 0)) throw new IllegalArgumentException("Speed has to be positive");
+        this.trace = trace;
+        this.clock = clock;
+        this.speed = speed;
+        this.listener = listener;
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    @Override
+    public void run() {
+        long position = 0;
+        for (int i = 0; i < trace.size() && !stopped; i++) {
+            advanceTo(trace.getOffset(i), position);
+            position = trace.getOffset(i);
+            if (stopped) return;
+            listener.onPosture(trace.getPosture(i));
+        }
+        if (stopped) return;
+        advanceTo(trace.getDuration(), position);
+        if (!stopped) {
+            listener.onFinished();
+        }
+    }
+
+    private void advanceTo(long offset, long position) {
+        long delta = offset - position;
+        if (delta <= 0) return;
+        if (speed != AS_FAST_AS_POSSIBLE) {
+            long deadline = System.nanoTime() + (long) (delta * 1_000_000 / speed);
+            long remaining;
+            while (!stopped && (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+        clock.advanceMillis(delta);
+    }
+}
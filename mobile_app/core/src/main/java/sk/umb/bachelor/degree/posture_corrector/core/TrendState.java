@@ -0,0 +1,290 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Rolling averages, streaks and personal bests kept incrementally from day totals. Only the last
+ * {@link #MUTABLE_DAYS} days can still change, they are kept in a ring together with the six days before
+ * them, which complete their weeks. A day leaving the ring is final and is folded into the streak and
+ * the bests. Updates and reads take constant time and the state has a fixed size, however long the history is.
+ *
+ * <p>A change of a day older than the ring is refused, the caller then builds the state again from all days.
+ * Not thread safe.
+ */
+public final class TrendState {
+    public static final int MUTABLE_DAYS = 30;
+    public static final int WEEK = 7;
+    static final int RING = MUTABLE_DAYS + WEEK - 1;
+    /**
+     * Days with less usage are neither good nor bad, they break a streak and are not bests.
+     */
+    public static final long MIN_USAGE = 30 * 60 * 1000L;
+    /**
+     * Percent of stretched time of a good day.
+     */
+    public static final float GOAL_PERCENT = 80.0f;
+    private static final int VERSION = 1;
+    private static final long NONE = Long.MIN_VALUE;
+
+    /**
+     * Values derived from the state for the last day.
+     */
+    public static final class Trends {
+        // Stretch percentages, NaN when there was no usage
+        public final float average7;
+        public final float average30;
+        // Percentage points against the 7 days before the last 7 days
+        public final float weekOverWeek;
+        // Good days in a row up to the last day, the last day counts only when it is already good
+        public final int currentStreak;
+        public final int bestStreak;
+        public final float bestDayPercent;
+        public final long bestDay;
+        public final float bestWeekPercent;
+        // Last day of the best 7 days
+        public final long bestWeekEnd;
+
+        Trends(float average7, float average30, float weekOverWeek, int currentStreak, int bestStreak,
+               float bestDayPercent, long bestDay, float bestWeekPercent, long bestWeekEnd) {
+            this.average7 = average7;
+            this.average30 = average30;
+            this.weekOverWeek = weekOverWeek;
+            this.currentStreak = currentStreak;
+            this.bestStreak = bestStreak;
+            this.bestDayPercent = bestDayPercent;
+            this.bestDay = bestDay;
+            this.bestWeekPercent = bestWeekPercent;
+            this.bestWeekEnd = bestWeekEnd;
+        }
+    }
+
+    // Day totals by epoch day modulo RING, days after lastDay - RING
+    private final long[] usage = new long[RING];
+    private final long[] hunched = new long[RING];
+    private long lastDay = NONE;
+    // Good days in a row ending with the newest final day
+    private int finalRun = 0;
+    private int bestFinalStreak = 0;
+    private float bestFinalDayPercent = Float.NaN;
+    private long bestFinalDay = 0;
+    private float bestFinalWeekPercent = Float.NaN;
+    private long bestFinalWeekEnd = 0;
+    // Position of the caller in its feed of changes, e.g. the last change sequence number read
+    private long changeSeq = 0;
+
+    /**
+     * Newest day of the state in epoch days, {@code Long.MIN_VALUE} before the first day was set.
+     */
+    public long getLastDay() {
+        return lastDay;
+    }
+
+    public long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
+    /**
+     * Sets totals of the day, summed over devices. A later day moves the state forward.
+     *
+     * @return false when the day is older than the mutable days and the state has to be built again
+     */
+    public boolean setDay(long epochDay, long usageDuration, long hunchedDuration) {
+        advanceTo(epochDay);
+        if (epochDay <= lastDay - MUTABLE_DAYS) return false;
+        int slot = slot(epochDay);
+        usage[slot] = usageDuration;
+        hunched[slot] = hunchedDuration;
+        return true;
+    }
+
+    /**
+     * Moves the last day forward, days which stop being mutable are final from now on.
+     */
+    public void advanceTo(long epochDay) {
+        if (lastDay == NONE) {
+            lastDay = epochDay;
+            return;
+        }
+        // After RING steps the ring holds only empty days, the rest of a long gap changes nothing
+        long end = Math.min(epochDay, lastDay + RING);
+        while (lastDay < end) {
+            lastDay++;
+            finish(lastDay - MUTABLE_DAYS);
+            int slot = slot(lastDay);
+            usage[slot] = 0;
+            hunched[slot] = 0;
+        }
+        if (epochDay > lastDay) {
+            lastDay = epochDay;
+            finalRun = 0;
+        }
+    }
+
+    /**
+     * Folds a day which just became final into the streak and the bests. Its week is still in the ring.
+     */
+    private void finish(long day) {
+        int slot = slot(day);
+        if (isGood(usage[slot], hunched[slot])) {
+            finalRun++;
+            bestFinalStreak = Math.max(bestFinalStreak, finalRun);
+        } else {
+            finalRun = 0;
+        }
+        if (usage[slot] >= MIN_USAGE) {
+            float percent = PostureStatistics.percentOfStretch(usage[slot], hunched[slot]);
+            if (!(percent <= bestFinalDayPercent)) {
+                bestFinalDayPercent = percent;
+                bestFinalDay = day;
+            }
+        }
+        long weekUsage = 0;
+        long weekHunched = 0;
+        for (long d = day - WEEK + 1; d <= day; d++) {
+            weekUsage += usage[slot(d)];
+            weekHunched += hunched[slot(d)];
+        }
+        if (weekUsage >= MIN_USAGE) {
+            float percent = PostureStatistics.percentOfStretch(weekUsage, weekHunched);
+            if (!(percent <= bestFinalWeekPercent)) {
+                bestFinalWeekPercent = percent;
+                bestFinalWeekEnd = day;
+            }
+        }
+    }
+
+    /**
+     * Trends up to the last day, call {@link #advanceTo} with today first.
+     */
+    public Trends getTrends() {
+        if (lastDay == NONE) {
+            return new Trends(Float.NaN, Float.NaN, Float.NaN, 0, 0, Float.NaN, 0, Float.NaN, 0);
+        }
+        float average7 = percent(lastDay - WEEK + 1, lastDay);
+        float previous7 = percent(lastDay - 2 * WEEK + 1, lastDay - WEEK);
+        float average30 = percent(lastDay - MUTABLE_DAYS + 1, lastDay);
+
+        long firstMutable = lastDay - MUTABLE_DAYS + 1;
+        // Today is in progress, a streak does not end just because today is not good yet
+        long streakEnd = isGood(lastDay) ? lastDay : lastDay - 1;
+        int currentStreak = 0;
+        long day = streakEnd;
+        while (day >= firstMutable && isGood(day)) {
+            currentStreak++;
+            day--;
+        }
+        if (day < firstMutable) {
+            currentStreak += finalRun;
+        }
+
+        int bestStreak = bestFinalStreak;
+        int run = finalRun;
+        float bestDayPercent = bestFinalDayPercent;
+        long bestDay = bestFinalDay;
+        float bestWeekPercent = bestFinalWeekPercent;
+        long bestWeekEnd = bestFinalWeekEnd;
+        long weekUsage = 0;
+        long weekHunched = 0;
+        for (long d = firstMutable - WEEK + 1; d < firstMutable; d++) {
+            weekUsage += usage[slot(d)];
+            weekHunched += hunched[slot(d)];
+        }
+        for (long d = firstMutable; d <= lastDay; d++) {
+            int slot = slot(d);
+            run = isGood(usage[slot], hunched[slot]) ? run + 1 : 0;
+            bestStreak = Math.max(bestStreak, run);
+            if (usage[slot] >= MIN_USAGE) {
+                float percent = PostureStatistics.percentOfStretch(usage[slot], hunched[slot]);
+                if (!(percent <= bestDayPercent)) {
+                    bestDayPercent = percent;
+                    bestDay = d;
+                }
+            }
+            weekUsage += usage[slot];
+            weekHunched += hunched[slot];
+            if (weekUsage >= MIN_USAGE) {
+                float percent = PostureStatistics.percentOfStretch(weekUsage, weekHunched);
+                if (!(percent <= bestWeekPercent)) {
+                    bestWeekPercent = percent;
+                    bestWeekEnd = d;
+                }
+            }
+            int oldest = slot(d - WEEK + 1);
+            weekUsage -= usage[oldest];
+            weekHunched -= hunched[oldest];
+        }
+        return new Trends(average7, average30, average7 - previous7, currentStreak, bestStreak,
+                bestDayPercent, bestDay, bestWeekPercent, bestWeekEnd);
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+        out.writeLong(lastDay);
+        out.writeLong(changeSeq);
+        out.writeInt(finalRun);
+        out.writeInt(bestFinalStreak);
+        out.writeFloat(bestFinalDayPercent);
+        out.writeLong(bestFinalDay);
+        out.writeFloat(bestFinalWeekPercent);
+        out.writeLong(bestFinalWeekEnd);
+        for (int i = 0; i < RING; i++) {
+            out.writeLong(usage[i]);
+            out.writeLong(hunched[i]);
+        }
+    }
+
+    /**
+     * @throws IOException when the state was written by another version
+     */
+    public static TrendState readFrom(DataInput in) throws IOException {
+        int version = in.readByte();
+        if (version != VERSION) throw new IOException("Unsupported trend state version " + version);
+        TrendState state = new TrendState();
+        state.lastDay = in.readLong();
+        state.changeSeq = in.readLong();
+        state.finalRun = in.readInt();
+        state.bestFinalStreak = in.readInt();
+        state.bestFinalDayPercent = in.readFloat();
+        state.bestFinalDay = in.readLong();
+        state.bestFinalWeekPercent = in.readFloat();
+        state.bestFinalWeekEnd = in.readLong();
+        for (int i = 0; i < RING; i++) {
+            state.usage[i] = in.readLong();
+            state.hunched[i] = in.readLong();
+        }
+        return state;
+    }
+
+    public static boolean isGood(long usageDuration, long hunchedDuration) {
+        return usageDuration >= MIN_USAGE
+                && PostureStatistics.percentOfStretch(usageDuration, hunchedDuration) >= GOAL_PERCENT;
+    }
+
+    private boolean isGood(long day) {
+        int slot = slot(day);
+        return isGood(usage[slot], hunched[slot]);
+    }
+
+    /**
+     * Stretch percentage of days {@code [from, to]} inside the ring, NaN without usage.
+     */
+    private float percent(long from, long to) {
+        long usageSum = 0;
+        long hunchedSum = 0;
+        for (long day = from; day <= to; day++) {
+            usageSum += usage[slot(day)];
+            hunchedSum += hunched[slot(day)];
+        }
+        return usageSum == 0 ? Float.NaN : PostureStatistics.percentOfStretch(usageSum, hunchedSum);
+    }
+
+    private static int slot(long day) {
+        return (int) Math.floorMod(day, (long) RING);
+    }
+}
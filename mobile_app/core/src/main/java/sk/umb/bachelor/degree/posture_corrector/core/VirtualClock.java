@@ -0,0 +1,30 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+/**
+ * Clock which moves only when advanced, used to replay traces faster than real time.
+ */
+public class VirtualClock implements SessionTimeline.Clock {
+    private final long startWallMillis;
+    private volatile long elapsedNanos = 0;
+
+    public VirtualClock(long startWallMillis) {
+        this.startWallMillis = startWallMillis;
+    }
+
+    /**
+     * Only one thread may advance the clock.
+     */
+    public void advanceMillis(long millis) {
+        elapsedNanos += millis * 1_000_000;
+    }
+
+    @Override
+    public long elapsedRealtimeNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return startWallMillis + elapsedNanos / 1_000_000;
+    }
+}
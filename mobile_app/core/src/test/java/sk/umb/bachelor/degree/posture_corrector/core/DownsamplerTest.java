@@ -0,0 +1,64 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DownsamplerTest {
+    private static final int LENGTH = 1000;
+
+    @Test
+    public void returnsInputBelowThreshold() {
+        long[] x = {1, 2, 3, 4, 5};
+        float[] y = {5, -1, 3, 0, 2};
+        long[] outX = new long[10];
+        float[] outY = new float[10];
+        assertEquals(5, Downsampler.lttb(x, y, x.length, 10, outX, outY));
+        for (int i = 0; i < x.length; i++) {
+            assertEquals(x[i], outX[i]);
+            assertEquals(y[i], outY[i], 0);
+        }
+    }
+
+    @Test
+    public void keepsFirstAndLastPoints() {
+        long[] x = new long[LENGTH];
+        float[] y = new float[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            x[i] = 1000 + i * 20L;
+            y[i] = (float) Math.sin(i / 30.0) * 45;
+        }
+        long[] outX = new long[50];
+        float[] outY = new float[50];
+        assertEquals(50, Downsampler.lttb(x, y, LENGTH, 50, outX, outY));
+        assertEquals(x[0], outX[0]);
+        assertEquals(y[0], outY[0], 0);
+        assertEquals(x[LENGTH - 1], outX[49]);
+        assertEquals(y[LENGTH - 1], outY[49], 0);
+        for (int i = 1; i < 50; i++) {
+            assertTrue(outX[i] > outX[i - 1]);
+        }
+    }
+
+    @Test
+    public void keepsPeaks() {
+        long[] x = new long[LENGTH];
+        float[] y = new float[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            x[i] = i;
+        }
+        y[300] = 80;
+        y[700] = -60;
+        long[] outX = new long[20];
+        float[] outY = new float[20];
+        int count = Downsampler.lttb(x, y, LENGTH, 20, outX, outY);
+        boolean top = false;
+        boolean bottom = false;
+        for (int i = 0; i < count; i++) {
+            top |= outX[i] == 300 && outY[i] == 80;
+            bottom |= outX[i] == 700 && outY[i] == -60;
+        }
+        assertTrue(top);
+        assertTrue(bottom);
+    }
+}
@@ -0,0 +1,107 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EventSegmentTest {
+    private static final String FIRST = "AA:BB:CC:DD:EE:01";
+    private static final String SECOND = "AA:BB:CC:DD:EE:02";
+    private static final long START = 1_709_251_200_000L;
+
+    @Test
+    public void readsEventsSortedByTimestamp() throws IOException {
+        EventSegment.Builder builder = new EventSegment.Builder()
+                .add(SECOND, START + 6_000, PostureFrameDecoder.POSTURE_HUNCHED, 2_000)
+                .add(FIRST, START, PostureFrameDecoder.POSTURE_STRETCHED, 5_000)
+                .add(FIRST, START + 5_000, PostureFrameDecoder.POSTURE_HUNCHED, 60_000);
+        ByteBuffer segment = write(builder);
+
+        assertEquals(3, EventSegment.count(segment));
+        assertEquals(START, EventSegment.firstTimestamp(segment));
+        assertEquals(Arrays.asList(
+                FIRST + " " + START + " 1 5000",
+                FIRST + " " + (START + 5_000) + " 2 60000",
+                SECOND + " " + (START + 6_000) + " 2 2000"), read(segment, Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void readsOnlyEventsStartingInRange() throws IOException {
+        EventSegment.Builder builder = new EventSegment.Builder();
+        for (int i = 0; i < 100; i++) {
+            builder.add(FIRST, START + i * 1000L, i % 3 == 0 ? PostureFrameDecoder.POSTURE_HUNCHED : PostureFrameDecoder.POSTURE_STRETCHED, 1000);
+        }
+        ByteBuffer segment = write(builder);
+        List<String> events = read(segment, START + 10_000, START + 20_000);
+        assertEquals(10, events.size());
+        assertEquals(FIRST + " " + (START + 10_000) + " 1 1000", events.get(0));
+        assertEquals(FIRST + " " + (START + 19_000) + " 1 1000", events.get(9));
+        assertEquals(0, EventSegment.read(segment, START + 200_000, START + 300_000, (a, t, p, d) -> fail()));
+    }
+
+    @Test
+    public void storesDuplicatesOnce() throws IOException {
+        EventSegment.Builder builder = new EventSegment.Builder()
+                .add(FIRST, START, PostureFrameDecoder.POSTURE_STRETCHED, 5_000)
+                .add(FIRST, START, PostureFrameDecoder.POSTURE_STRETCHED, 5_000);
+        ByteBuffer segment = write(builder);
+        ByteBuffer merged = write(new EventSegment.Builder().addAll(segment)
+                .add(FIRST, START, PostureFrameDecoder.POSTURE_STRETCHED, 5_000)
+                .add(FIRST, START + 5_000, PostureFrameDecoder.POSTURE_HUNCHED, 1_000));
+        assertEquals(1, EventSegment.count(segment));
+        assertEquals(2, EventSegment.count(merged));
+    }
+
+    @Test
+    public void monthTakesFewBytesPerEvent() throws IOException {
+        // A month of one device worn eight hours a day, posture changes every few minutes
+        EventSegment.Builder builder = new EventSegment.Builder();
+        Random random = new Random(20);
+        int events = 0;
+        for (int day = 0; day < 31; day++) {
+            long timestamp = START + day * 86_400_000L + 9 * 3_600_000L;
+            int posture = PostureFrameDecoder.POSTURE_STRETCHED;
+            while (timestamp < START + day * 86_400_000L + 17 * 3_600_000L) {
+                long duration = 5_000 + random.nextInt(600_000);
+                builder.add(FIRST, timestamp, posture, duration);
+                timestamp += duration;
+                posture = posture == PostureFrameDecoder.POSTURE_STRETCHED
+                        ? PostureFrameDecoder.POSTURE_HUNCHED : PostureFrameDecoder.POSTURE_STRETCHED;
+                events++;
+            }
+        }
+        ByteBuffer segment = write(builder);
+        assertEquals(events, EventSegment.count(segment));
+        assertTrue("Bytes per event " + (double) segment.remaining() / events, segment.remaining() < events * 5);
+        assertEquals(events, EventSegment.read(segment, Long.MIN_VALUE, Long.MAX_VALUE, (a, t, p, d) -> {}));
+    }
+
+    @Test
+    public void encodesVarintsAndZigzag() {
+        for (long value : new long[] { 0, 1, -1, 63, -64, 1L << 40, Long.MAX_VALUE, Long.MIN_VALUE }) {
+            assertEquals(value, EventSegment.unzigzag(EventSegment.zigzag(value)));
+        }
+    }
+
+    private static ByteBuffer write(EventSegment.Builder builder) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        builder.writeTo(Channels.newChannel(out));
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    private static List<String> read(ByteBuffer segment, long from, long to) {
+        List<String> events = new ArrayList<>();
+        EventSegment.read(segment, from, to, (address, timestamp, posture, duration) ->
+                events.add(address + " " + timestamp + " " + posture + " " + duration));
+        return events;
+    }
+}
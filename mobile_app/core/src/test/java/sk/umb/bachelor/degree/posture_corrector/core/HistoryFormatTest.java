@@ -0,0 +1,151 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HistoryFormatTest {
+    private static final String FIRST = "AA:BB:CC:DD:EE:01";
+    private static final String SECOND = "AA:BB:CC:DD:EE:02";
+
+    @Test
+    public void csvRoundTrip() throws IOException {
+        byte[] data = export(false);
+        assertTrue(new String(data, StandardCharsets.UTF_8).startsWith("# posture_corrector history v1\n"));
+        assertEquals(expectedRecords(), importRecords(data));
+    }
+
+    @Test
+    public void binaryRoundTrip() throws IOException {
+        byte[] data = export(true);
+        assertEquals('P', data[0]);
+        assertEquals(expectedRecords(), importRecords(data));
+    }
+
+    @Test
+    public void binaryIsSmallerThanCsv() throws IOException {
+        assertTrue(export(true).length < export(false).length);
+    }
+
+    @Test
+    public void readsCsvWrittenByHand() throws IOException {
+        String csv = "# posture_corrector history v1\r\n\r\nday,2024-03-01,A,3600000,600000,4\r\nevent,A,1709280000000,bad,5000\r\nend,1,1\r\n";
+        assertEquals(Arrays.asList("day 19783 A 3600000 600000 4", "event A 1709280000000 2 5000"),
+                importRecords(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void rejectsTruncatedBinary() throws IOException {
+        byte[] data = export(true);
+        assertImportFails(Arrays.copyOf(data, data.length - 5));
+    }
+
+    @Test
+    public void rejectsCsvWithoutEnd() throws IOException {
+        byte[] data = export(false);
+        String csv = new String(data, StandardCharsets.UTF_8);
+        assertImportFails(csv.substring(0, csv.indexOf("end,")).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void rejectsCsvWithMissingLine() throws IOException {
+        String csv = new String(export(false), StandardCharsets.UTF_8);
+        assertImportFails(csv.replaceFirst("event,[^\n]*\n", "").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void streamsLongHistoryThroughFixedBuffer() throws IOException {
+        // Ten years of events, nothing is kept except the number of written bytes
+        CountingChannel counting = new CountingChannel();
+        long events = 0;
+        try (HistoryWriter writer = HistoryWriter.binary(counting)) {
+            for (long timestamp = 0; timestamp < 3650L * 86_400_000L; timestamp += 600_000) {
+                writer.writeEvent(FIRST, timestamp, PostureFrameDecoder.POSTURE_STRETCHED, 600_000);
+                events++;
+            }
+        }
+        assertEquals(4 + (5 + FIRST.length()) + events * 20 + 17, counting.bytes);
+    }
+
+    private static byte[] export(boolean binary) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(out);
+        try (HistoryWriter writer = binary ? HistoryWriter.binary(channel) : HistoryWriter.csv(channel)) {
+            writer.writeDay(LocalDate.of(2024, 3, 1).toEpochDay(), FIRST, 3_600_000, 600_000, 4);
+            writer.writeDay(LocalDate.of(2024, 3, 1).toEpochDay(), SECOND, 1_000, 0, 0);
+            writer.writeEvent(FIRST, 1_709_280_000_000L, PostureFrameDecoder.POSTURE_HUNCHED, 5_000);
+            writer.writeEvent(SECOND, 1_709_280_005_000L, PostureFrameDecoder.POSTURE_STRETCHED, 1_000);
+            writer.writeEvent(FIRST, 1_709_280_005_000L, PostureFrameDecoder.POSTURE_STRETCHED, 60_000);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<String> expectedRecords() {
+        long day = LocalDate.of(2024, 3, 1).toEpochDay();
+        return Arrays.asList(
+                "day " + day + " " + FIRST + " 3600000 600000 4",
+                "day " + day + " " + SECOND + " 1000 0 0",
+                "event " + FIRST + " 1709280000000 2 5000",
+                "event " + SECOND + " 1709280005000 1 1000",
+                "event " + FIRST + " 1709280005000 1 60000");
+    }
+
+    private static List<String> importRecords(byte[] data) throws IOException {
+        List<String> records = new ArrayList<>();
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(data));
+        HistoryReader.read(channel, new HistoryReader.Listener() {
+            @Override
+            public void onDay(long epochDay, String address, long usageDuration, long hunchedDuration, int hunchedCount) {
+                records.add("day " + epochDay + " " + address + " " + usageDuration + " " + hunchedDuration + " " + hunchedCount);
+            }
+
+            @Override
+            public void onEvent(String address, long timestamp, int posture, long duration) {
+                records.add("event " + address + " " + timestamp + " " + posture + " " + duration);
+            }
+        });
+        return records;
+    }
+
+    private static void assertImportFails(byte[] data) {
+        try {
+            importRecords(data);
+            fail("Import of damaged history succeeded");
+        } catch (IOException expected) {
+        }
+    }
+
+    private static final class CountingChannel implements WritableByteChannel {
+        long bytes = 0;
+
+        @Override
+        public int write(ByteBuffer source) {
+            int written = source.remaining();
+            source.position(source.limit());
+            bytes += written;
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+    @Test
+    public void bucketsCoverValuesContinuously() {
+        for (long value = 0; value < 100_000; value++) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(LatencyHistogram.bucketLowerBound(index) <= value);
+            assertTrue(LatencyHistogram.bucketUpperBound(index) >= value);
+        }
+    }
+
+    @Test
+    public void keepsRelativeErrorSmall() {
+        for (long value = 16; value < 1L << 40; value = value * 3 / 2) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long width = LatencyHistogram.bucketUpperBound(index) - LatencyHistogram.bucketLowerBound(index) + 1;
+            assertTrue((double) width / value <= 1.0 / 16);
+        }
+    }
+
+    @Test
+    public void computesPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500.5, histogram.getMean(), 0.001);
+        long p50 = histogram.getPercentile(50);
+        assertTrue(p50 >= 500 && p50 <= 500 * 17 / 16);
+        assertEquals(1000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void handlesEmptyAndHugeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(99));
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-5);
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+        assertEquals(0, histogram.getPercentile(50));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+}
@@ -0,0 +1,59 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class PageWindowTest {
+    @Test
+    public void loadsVisiblePagesWithMargin() {
+        PageWindow<String> window = new PageWindow<>(30, 1);
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L), window.update(35, 70));
+        // Pages being loaded are not requested twice
+        assertEquals(Collections.emptyList(), window.update(31, 65));
+        assertEquals(-1, window.pageOf(-1));
+        assertEquals(60, window.firstKey(2));
+    }
+
+    @Test
+    public void evictsPagesScrolledAway() {
+        PageWindow<String> window = new PageWindow<>(30, 1);
+        for (long page : window.update(300, 329)) {
+            window.put(page, "page " + page);
+        }
+        assertEquals(Arrays.asList("page 9", "page 10", "page 11"), new ArrayList<>(window.values()));
+
+        assertEquals(Arrays.asList(12L), window.update(330, 359));
+        assertEquals(Arrays.asList("page 10", "page 11"), new ArrayList<>(window.values()));
+        assertEquals(Arrays.asList(-1L, 0L, 1L, 2L, 3L), window.update(0, 89));
+        assertEquals(0, window.size());
+    }
+
+    @Test
+    public void dropsPagesLoadedAfterTheyLeftWindow() {
+        PageWindow<String> window = new PageWindow<>(30, 0);
+        window.update(0, 29);
+        window.update(300, 329);
+        assertFalse(window.put(0, "late"));
+        assertTrue(window.put(10, "page 10"));
+        assertEquals(1, window.size());
+
+        window.clear();
+        assertEquals(Arrays.asList(10L), window.update(300, 329));
+    }
+
+    @Test
+    public void keepsMemoryIndependentOfHistoryLength() {
+        PageWindow<String> window = new PageWindow<>(30, 1);
+        for (long day = 0; day < 10 * 365; day += 7) {
+            for (long page : window.update(day, day + 29)) {
+                window.put(page, "page " + page);
+            }
+            assertTrue(window.size() <= 4);
+        }
+    }
+}
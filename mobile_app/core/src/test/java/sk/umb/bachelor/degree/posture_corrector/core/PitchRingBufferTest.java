@@ -0,0 +1,48 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PitchRingBufferTest {
+    private final long[] timestamps = new long[4];
+    private final float[] values = new float[4];
+
+    @Test
+    public void copiesSamplesBeforeBufferIsFull() {
+        PitchRingBuffer buffer = new PitchRingBuffer(4);
+        buffer.add(10, 1);
+        buffer.add(20, 2);
+        assertEquals(2, buffer.copyTo(timestamps, values));
+        assertEquals(10, timestamps[0]);
+        assertEquals(20, timestamps[1]);
+        assertEquals(2, values[1], 0);
+    }
+
+    @Test
+    public void overwritesOldestSamples() {
+        PitchRingBuffer buffer = new PitchRingBuffer(4);
+        for (int i = 1; i <= 10; i++) {
+            buffer.add(i * 10L, i);
+        }
+        assertEquals(4, buffer.copyTo(timestamps, values));
+        for (int i = 0; i < 4; i++) {
+            assertEquals((7 + i) * 10L, timestamps[i]);
+            assertEquals(7 + i, values[i], 0);
+        }
+    }
+
+    @Test
+    public void clearDropsSamples() {
+        PitchRingBuffer buffer = new PitchRingBuffer(4);
+        for (int i = 1; i <= 6; i++) {
+            buffer.add(i * 10L, i);
+        }
+        buffer.clear();
+        assertEquals(0, buffer.copyTo(timestamps, values));
+        buffer.add(70, 7);
+        assertEquals(1, buffer.copyTo(timestamps, values));
+        assertEquals(70, timestamps[0]);
+        assertEquals(7, values[0], 0);
+    }
+}
@@ -0,0 +1,128 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class PostureClassifierTest {
+    private static final int STRETCHED = PostureFrameDecoder.POSTURE_STRETCHED;
+    private static final int HUNCHED = PostureFrameDecoder.POSTURE_HUNCHED;
+
+    @Test
+    public void matchesFirmwareOnStreamedTrace() throws IOException {
+        PostureClassifier classifier = new PostureClassifier(PostureClassifier.Thresholds.FIRMWARE);
+        int samples = 0;
+        int changes = 0;
+        int previous = STRETCHED;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                getClass().getResourceAsStream("/pitch_trace.csv"), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split(",");
+                int expected = fields[2].equals("ok") ? STRETCHED : HUNCHED;
+                int posture = classifier.addPitch(Long.parseLong(fields[0]), Float.parseFloat(fields[1]));
+                assertEquals("At " + fields[0], expected, posture);
+                if (posture != previous) changes++;
+                previous = posture;
+                samples++;
+            }
+        }
+        assertEquals(1320, samples);
+        assertEquals(2, changes);
+    }
+
+    @Test
+    public void ignoresShortDips() {
+        PostureClassifier classifier = new PostureClassifier(PostureClassifier.Thresholds.FIRMWARE);
+        long time = feed(classifier, 0, 3000, 50.0f);
+        assertEquals(STRETCHED, classifier.getPosture());
+        time = feed(classifier, time, 1000, 70.0f);
+        feed(classifier, time, 4990, 50.0f);
+        assertEquals(STRETCHED, classifier.getPosture());
+    }
+
+    @Test
+    public void reportsPostureAfterMinimumDuration() {
+        PostureClassifier classifier = new PostureClassifier(PostureClassifier.Thresholds.FIRMWARE);
+        long time = feed(classifier, 0, 5000, 50.0f);
+        assertEquals(STRETCHED, classifier.getPosture());
+        assertEquals(HUNCHED, classifier.addPitch(time, 50.0f));
+    }
+
+    @Test
+    public void hysteresisSuppressesJitterAroundThreshold() {
+        PostureClassifier.Thresholds thresholds = new PostureClassifier.Thresholds(0.5f, 66.0f, 4.0f, 1000);
+        PostureClassifier withBand = new PostureClassifier(thresholds);
+        PostureClassifier firmware = new PostureClassifier(new PostureClassifier.Thresholds(0.5f, 66.0f, 0.0f, 1000));
+        int withBandChanges = 0;
+        int firmwareChanges = 0;
+        int withBandPrevious = STRETCHED;
+        int firmwarePrevious = STRETCHED;
+        // Pitch slowly drifts 1.5 degrees around the threshold
+        for (long time = 0; time < 60_000; time += 10) {
+            float pitch = 66.0f + 1.5f * (float) Math.sin(time / 3000.0);
+            int posture = withBand.addPitch(time, pitch);
+            if (posture != withBandPrevious) withBandChanges++;
+            withBandPrevious = posture;
+            posture = firmware.addPitch(time, pitch);
+            if (posture != firmwarePrevious) firmwareChanges++;
+            firmwarePrevious = posture;
+        }
+        assertTrue(firmwareChanges > 5);
+        assertEquals(0, withBandChanges);
+    }
+
+    @Test
+    public void usesThresholdOfTheUser() {
+        PostureClassifier classifier = new PostureClassifier(PostureClassifier.Thresholds.FIRMWARE);
+        feed(classifier, 0, 6000, 60.0f);
+        assertEquals(HUNCHED, classifier.getPosture());
+
+        classifier.setThresholds(new PostureClassifier.Thresholds(0.5f, 55.0f, 0.0f, 5000));
+        feed(classifier, 6000, 6000, 60.0f);
+        assertEquals(STRETCHED, classifier.getPosture());
+    }
+
+    @Test
+    public void estimatesPitchFromImu() {
+        PostureClassifier classifier = new PostureClassifier(PostureClassifier.Thresholds.FIRMWARE);
+        // Gravity 30 degrees from the horizontal plane, the device does not rotate
+        float accelY = (float) Math.sin(Math.toRadians(30));
+        float accelZ = (float) Math.cos(Math.toRadians(30));
+        for (long time = 0; time < 10_000; time += 10) {
+            classifier.addImu(time, 0.0f, accelY, accelZ, 0.0f);
+        }
+        assertEquals(30.0f, classifier.getPitch(), 0.01f);
+        assertEquals(HUNCHED, classifier.getPosture());
+    }
+
+    @Test
+    public void restartsPendingChangeWhenDeviceTimeRestarts() {
+        PostureClassifier classifier = new PostureClassifier(PostureClassifier.Thresholds.FIRMWARE);
+        feed(classifier, 100_000, 4000, 50.0f);
+        feed(classifier, 0, 4000, 50.0f);
+        assertEquals(STRETCHED, classifier.getPosture());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidAlpha() {
+        new PostureClassifier.Thresholds(1.5f, 66.0f, 0.0f, 5000);
+    }
+
+    /**
+     * Feeds constant pitch at 100 Hz for the duration, returns time of the next sample.
+     */
+    private static long feed(PostureClassifier classifier, long from, long duration, float pitch) {
+        long time = from;
+        for (; time < from + duration; time += 10) {
+            classifier.addPitch(time, pitch);
+        }
+        return time;
+    }
+}
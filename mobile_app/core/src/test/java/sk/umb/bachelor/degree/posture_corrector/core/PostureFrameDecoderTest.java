@@ -0,0 +1,95 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PostureFrameDecoderTest {
+    private final List<float[]> samples = new ArrayList<>();
+    private final PostureFrameDecoder.SampleListener listener =
+            (sequence, timestamp, posture, pitch) -> samples.add(new float[] { sequence, timestamp, posture, pitch });
+
+    @Before
+    public void setUp() {
+        samples.clear();
+    }
+
+    @Test
+    public void decodesLegacyAscii() {
+        assertEquals(1, PostureFrameDecoder.decode("ok".getBytes(StandardCharsets.US_ASCII), listener));
+        assertEquals(1, PostureFrameDecoder.decode("bad".getBytes(StandardCharsets.US_ASCII), listener));
+        assertEquals(2, samples.size());
+        assertEquals(PostureFrameDecoder.POSTURE_STRETCHED, (int) samples.get(0)[2]);
+        assertEquals(PostureFrameDecoder.POSTURE_HUNCHED, (int) samples.get(1)[2]);
+        assertEquals(PostureFrameDecoder.NO_SEQUENCE, (int) samples.get(0)[0]);
+        assertTrue(Float.isNaN(samples.get(0)[3]));
+    }
+
+    @Test
+    public void rejectsUnknownAscii() {
+        assertEquals(PostureFrameDecoder.ERROR_MALFORMED, PostureFrameDecoder.decode("okay".getBytes(StandardCharsets.US_ASCII), listener));
+        assertEquals(PostureFrameDecoder.ERROR_MALFORMED, PostureFrameDecoder.decode(new byte[0], listener));
+        assertEquals(PostureFrameDecoder.ERROR_MALFORMED, PostureFrameDecoder.decode(null, listener));
+        assertTrue(samples.isEmpty());
+    }
+
+    @Test
+    public void decodesFrameWithPitch() {
+        byte[] frame = {
+                (byte) 0xA5, 1, 1, 2,
+                (byte) 0xFF, (byte) 0xFF,          // sequence 65535
+                0x10, 0x27, 0, 0,                  // timestamp 10000
+                0, 0, 1, 0x3C, 0x19,               // +0 ms, stretched, 64.60
+                10, 0, 2, (byte) 0xF0, (byte) 0xD8 // +10 ms, hunched, -100.00
+        };
+        assertEquals(2, PostureFrameDecoder.decode(frame, listener));
+        assertEquals(65535, (int) samples.get(0)[0]);
+        assertEquals(0, (int) samples.get(1)[0]);
+        assertEquals(10000, (long) samples.get(0)[1]);
+        assertEquals(10010, (long) samples.get(1)[1]);
+        assertEquals(PostureFrameDecoder.POSTURE_HUNCHED, (int) samples.get(1)[2]);
+        assertEquals(64.6f, samples.get(0)[3], 0.001f);
+        assertEquals(-100.0f, samples.get(1)[3], 0.001f);
+    }
+
+    @Test
+    public void decodesFrameWithoutPitch() {
+        byte[] frame = { (byte) 0xA5, 1, 0, 1, 5, 0, 0, 0, 0, 1, 0, 0, 2 };
+        assertEquals(1, PostureFrameDecoder.decode(frame, listener));
+        assertEquals(5, (int) samples.get(0)[0]);
+        assertEquals(1L << 24, (long) samples.get(0)[1]);
+        assertTrue(Float.isNaN(samples.get(0)[3]));
+    }
+
+    @Test
+    public void rejectsTruncatedFrames() {
+        byte[] frame = { (byte) 0xA5, 1, 1, 2, 0, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0 };
+        assertEquals(PostureFrameDecoder.ERROR_TRUNCATED, PostureFrameDecoder.decode(frame, listener));
+        assertEquals(PostureFrameDecoder.ERROR_TRUNCATED, PostureFrameDecoder.decode(new byte[] { (byte) 0xA5, 1, 0 }, listener));
+        assertTrue(samples.isEmpty());
+    }
+
+    @Test
+    public void rejectsMalformedFrames() {
+        // No samples
+        assertEquals(PostureFrameDecoder.ERROR_MALFORMED,
+                PostureFrameDecoder.decode(new byte[] { (byte) 0xA5, 1, 0, 0, 0, 0, 0, 0, 0, 0 }, listener));
+        // Unknown flag
+        assertEquals(PostureFrameDecoder.ERROR_MALFORMED,
+                PostureFrameDecoder.decode(new byte[] { (byte) 0xA5, 1, 4, 1, 0, 0, 0, 0, 0, 0, 0, 0, 1 }, listener));
+        // Trailing bytes
+        assertEquals(PostureFrameDecoder.ERROR_MALFORMED,
+                PostureFrameDecoder.decode(new byte[] { (byte) 0xA5, 1, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 1, 0 }, listener));
+        // Unknown posture in the second sample, first one must not be reported either
+        assertEquals(PostureFrameDecoder.ERROR_MALFORMED,
+                PostureFrameDecoder.decode(new byte[] { (byte) 0xA5, 1, 0, 2, 0, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 7 }, listener));
+        assertEquals(PostureFrameDecoder.ERROR_UNSUPPORTED_VERSION,
+                PostureFrameDecoder.decode(new byte[] { (byte) 0xA5, 2, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 1 }, listener));
+        assertTrue(samples.isEmpty());
+    }
+}
@@ -0,0 +1,88 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PostureTraceTest {
+    @Test
+    public void parsesRecordedTrace() throws IOException {
+        PostureTrace trace = PostureTrace.parse(new StringReader("# recorded\n1000,ok\n6000,bad\n\n9000,ok\n12000,bad\n15000,end\n"));
+        assertEquals(4, trace.size());
+        assertEquals(15000, trace.getDuration());
+        assertEquals(14000, trace.getUsageDuration());
+        assertEquals(6000, trace.getHunchedDuration());
+        assertEquals(2, trace.getHunchCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTraceWithoutEnd() throws IOException {
+        PostureTrace.parse(new StringReader("0,ok\n100,bad\n"));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsDescendingOffsets() throws IOException {
+        PostureTrace.parse(new StringReader("100,ok\n50,bad\n200,end\n"));
+    }
+
+    @Test
+    public void generatesSameSyntheticTraceForSameSeed() {
+        PostureTrace first = PostureTrace.synthetic(7, 3_600_000, 10_000);
+        PostureTrace second = PostureTrace.synthetic(7, 3_600_000, 10_000);
+        assertEquals(first.size(), second.size());
+        assertTrue(first.size() > 100);
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.getOffset(i), second.getOffset(i));
+            assertEquals(first.getPosture(i), second.getPosture(i));
+        }
+        assertEquals(first.getUsageDuration(), first.getDuration());
+    }
+
+    @Test
+    public void replaysTraceOnVirtualClock() {
+        PostureTrace trace = PostureTrace.synthetic(1, 8 * 3_600_000L, 30_000);
+        VirtualClock clock = new VirtualClock(1_000_000);
+        List<long[]> received = new ArrayList<>();
+        boolean[] finished = new boolean[1];
+        new TraceReplayer(trace, clock, TraceReplayer.AS_FAST_AS_POSSIBLE, new TraceReplayer.Listener() {
+            @Override
+            public void onPosture(int posture) {
+                received.add(new long[] { clock.currentTimeMillis(), posture });
+            }
+
+            @Override
+            public void onFinished() {
+                finished[0] = true;
+            }
+        }).run();
+
+        assertTrue(finished[0]);
+        assertEquals(trace.size(), received.size());
+        for (int i = 0; i < trace.size(); i++) {
+            assertEquals(1_000_000 + trace.getOffset(i), received.get(i)[0]);
+            assertEquals(trace.getPosture(i), received.get(i)[1]);
+        }
+        assertEquals(1_000_000 + trace.getDuration(), clock.currentTimeMillis());
+    }
+
+    @Test
+    public void replaysFasterThanRealTime() {
+        PostureTrace trace = PostureTrace.synthetic(2, 2_000, 100);
+        long started = System.nanoTime();
+        new TraceReplayer(trace, new VirtualClock(0), 1000, new TraceReplayer.Listener() {
+            @Override
+            public void onPosture(int posture) {}
+
+            @Override
+            public void onFinished() {}
+        }).run();
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        // Two seconds at 1000x take two milliseconds, allow for slow machines
+        assertTrue(elapsedMillis >= 2 && elapsedMillis < 1000);
+    }
+}
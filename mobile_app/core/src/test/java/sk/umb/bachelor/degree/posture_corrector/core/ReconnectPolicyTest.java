@@ -0,0 +1,56 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ReconnectPolicyTest {
+    private static Random fixed(double value) {
+        return new Random() {
+            @Override
+            public double nextDouble() {
+                return value;
+            }
+        };
+    }
+
+    @Test
+    public void doublesDelayUpToMaximum() {
+        // Upper end of the jitter, the whole delay
+        ReconnectPolicy policy = new ReconnectPolicy(500, 60000, 5, fixed(1.0));
+        long[] expected = {500, 1000, 2000, 4000, 8000, 16000, 32000, 60000, 60000};
+        for (long delay : expected) {
+            assertEquals(delay, policy.nextDelayMillis());
+        }
+        assertEquals(expected.length, policy.getAttempts());
+    }
+
+    @Test
+    public void jitterKeepsFixedHalf() {
+        assertEquals(2000, new ReconnectPolicy(4000, 60000, 5, fixed(0.0)).nextDelayMillis());
+        assertEquals(3000, new ReconnectPolicy(4000, 60000, 5, fixed(0.5)).nextDelayMillis());
+        Random random = new Random(1);
+        ReconnectPolicy policy = new ReconnectPolicy(500, 60000, 5, random);
+        for (int i = 0; i < 1000; i++) {
+            long delay = policy.nextDelayMillis();
+            long full = Math.min(500L << Math.min(i, 20), 60000);
+            assertTrue(delay >= full / 2 && delay <= full);
+        }
+    }
+
+    @Test
+    public void escalatesToAutoConnectAndResets() {
+        ReconnectPolicy policy = new ReconnectPolicy(500, 60000, 2, fixed(0.0));
+        for (int i = 0; i < 3; i++) {
+            assertFalse(policy.shouldUseAutoConnect());
+            policy.nextDelayMillis();
+        }
+        assertTrue(policy.shouldUseAutoConnect());
+
+        policy.reset();
+        assertFalse(policy.shouldUseAutoConnect());
+        assertEquals(250, policy.nextDelayMillis());
+    }
+}
@@ -0,0 +1,147 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SessionTimelineTest {
+    private static final ZoneId BRATISLAVA = ZoneId.of("Europe/Bratislava");
+    private static final ZoneId LONDON = ZoneId.of("Europe/London");
+
+    private static class FakeClock implements SessionTimeline.Clock {
+        long elapsedNanos = 5_000_000_000L;
+        long wallMillis;
+
+        void advanceMillis(long millis) {
+            elapsedNanos += millis * 1_000_000;
+            wallMillis += millis;
+        }
+
+        @Override
+        public long elapsedRealtimeNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return wallMillis;
+        }
+    }
+
+    // Piece is posture, timestamp, duration and 1 when it is the last piece
+    private final List<long[]> pieces = new ArrayList<>();
+    private final SessionTimeline.IntervalListener listener =
+            (posture, timestamp, duration, last) -> pieces.add(new long[] { posture, timestamp, duration, last ? 1 : 0 });
+
+    private FakeClock clock;
+    private SessionTimeline timeline;
+
+    private List<long[]> transition(int posture) {
+        pieces.clear();
+        timeline.transition(posture, listener);
+        return new ArrayList<>(pieces);
+    }
+
+    private static long millis(LocalDateTime time, ZoneId zone) {
+        return time.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock();
+        timeline = new SessionTimeline(clock, BRATISLAVA);
+    }
+
+    @Test
+    public void keepsSubSecondDurations() {
+        clock.wallMillis = millis(LocalDateTime.of(2024, 3, 1, 10, 0), BRATISLAVA);
+        long total = 0;
+        transition(PostureFrameDecoder.POSTURE_STRETCHED);
+        for (int i = 0; i < 10; i++) {
+            clock.advanceMillis(1500);
+            List<long[]> events = transition(i % 2 == 0 ? PostureFrameDecoder.POSTURE_HUNCHED
+                    : PostureFrameDecoder.POSTURE_STRETCHED);
+            assertEquals(1, events.size());
+            total += events.get(0)[2];
+        }
+        assertEquals(15000, total);
+        assertTrue(transition(PostureFrameDecoder.POSTURE_STRETCHED).isEmpty());
+    }
+
+    @Test
+    public void splitsAtMidnight() {
+        long start = millis(LocalDateTime.of(2024, 3, 1, 23, 30), BRATISLAVA);
+        clock.wallMillis = start;
+        transition(PostureFrameDecoder.POSTURE_HUNCHED);
+        clock.advanceMillis(60 * 60 * 1000);
+        List<long[]> events = transition(PostureFrameDecoder.POSTURE_UNKNOWN);
+
+        assertEquals(2, events.size());
+        assertEquals(start, events.get(0)[1]);
+        assertEquals(30 * 60 * 1000, events.get(0)[2]);
+        assertEquals(millis(LocalDateTime.of(2024, 3, 2, 0, 0), BRATISLAVA), events.get(1)[1]);
+        assertEquals(30 * 60 * 1000, events.get(1)[2]);
+        assertEquals(0, events.get(0)[3]);
+        assertEquals(1, events.get(1)[3]);
+        assertEquals(PostureFrameDecoder.POSTURE_UNKNOWN, timeline.getPosture());
+    }
+
+    @Test
+    public void ignoresWallClockJumpWithinInterval() {
+        long start = millis(LocalDateTime.of(2024, 3, 1, 12, 0), BRATISLAVA);
+        clock.wallMillis = start;
+        transition(PostureFrameDecoder.POSTURE_STRETCHED);
+        clock.advanceMillis(10_000);
+        clock.wallMillis -= 60 * 60 * 1000;
+        timeline.onWallClockChanged();
+        List<long[]> events = transition(PostureFrameDecoder.POSTURE_HUNCHED);
+        assertEquals(start, events.get(0)[1]);
+        assertEquals(10_000, events.get(0)[2]);
+
+        // Next interval is placed by the new wall clock
+        clock.advanceMillis(2_000);
+        events = transition(PostureFrameDecoder.POSTURE_STRETCHED);
+        assertEquals(start + 10_000 - 60 * 60 * 1000, events.get(0)[1]);
+        assertEquals(2_000, events.get(0)[2]);
+    }
+
+    @Test
+    public void splitsAtTimeZoneChange() {
+        clock.wallMillis = millis(LocalDateTime.of(2024, 3, 1, 23, 0), BRATISLAVA);
+        transition(PostureFrameDecoder.POSTURE_STRETCHED);
+        clock.advanceMillis(30 * 60 * 1000);
+        pieces.clear();
+        timeline.onTimeZoneChanged(LONDON, listener);
+        List<long[]> beforeChange = new ArrayList<>(pieces);
+        assertEquals(1, beforeChange.size());
+        assertEquals(30 * 60 * 1000, beforeChange.get(0)[2]);
+
+        // 23:30 in Bratislava is 22:30 in London, next midnight is 90 minutes later
+        clock.advanceMillis(2 * 60 * 60 * 1000);
+        List<long[]> afterChange = transition(PostureFrameDecoder.POSTURE_UNKNOWN);
+        assertEquals(2, afterChange.size());
+        assertEquals(beforeChange.get(0)[1] + beforeChange.get(0)[2], afterChange.get(0)[1]);
+        assertEquals(90 * 60 * 1000, afterChange.get(0)[2]);
+        assertEquals(millis(LocalDateTime.of(2024, 3, 2, 0, 0), LONDON), afterChange.get(1)[1]);
+    }
+
+    @Test
+    public void splitsDaylightSavingDayByItsLength() {
+        // Last Sunday of March has 23 hours
+        long start = millis(LocalDateTime.of(2024, 3, 30, 12, 0), BRATISLAVA);
+        clock.wallMillis = start;
+        transition(PostureFrameDecoder.POSTURE_STRETCHED);
+        clock.advanceMillis(48L * 60 * 60 * 1000);
+        List<long[]> events = transition(PostureFrameDecoder.POSTURE_UNKNOWN);
+        assertEquals(3, events.size());
+        assertEquals(12L * 60 * 60 * 1000, events.get(0)[2]);
+        assertEquals(23L * 60 * 60 * 1000, events.get(1)[2]);
+        assertEquals(13L * 60 * 60 * 1000, events.get(2)[2]);
+    }
+}
@@ -0,0 +1,92 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+public class SyncClientTest {
+    private static final long DAY = LocalDate.of(2024, 3, 1).toEpochDay();
+    private SyncStandInServer server;
+    private SyncClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new SyncStandInServer();
+        client = new SyncClient(server.getUrl());
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void uploadsDays() {
+        SyncBatch batch = new SyncBatch("install")
+                .addDay(DAY, "AA:BB:CC:DD:EE:FF", 3_600_000, 600_000, 4, 1)
+                .addDay(DAY + 1, "AA:BB:CC:DD:EE:FF", 1000, 0, 0, 2)
+                .addDay(DAY, "Quoted \"device\"", 5, 5, 1, 3);
+        assertEquals(SyncClient.Result.ACCEPTED, client.upload(batch));
+
+        assertEquals(3, server.getDays().size());
+        SyncStandInServer.Day day = server.getDay("AA:BB:CC:DD:EE:FF", "2024-03-01");
+        assertEquals(3_600_000, day.usage);
+        assertEquals(600_000, day.hunched);
+        assertEquals(4, day.count);
+        assertNotNull(server.getDay("Quoted \"device\"", "2024-03-01"));
+        assertEquals(3, batch.getLastSeq());
+        assertEquals("install:1-3", batch.getIdempotencyKey());
+    }
+
+    @Test
+    public void repeatedAndStaleBatchesChangeNothing() {
+        SyncBatch first = new SyncBatch("install").addDay(DAY, "A", 1000, 0, 0, 1);
+        SyncBatch second = new SyncBatch("install").addDay(DAY, "A", 2000, 0, 0, 2);
+        assertEquals(SyncClient.Result.ACCEPTED, client.upload(first));
+        assertEquals(SyncClient.Result.ACCEPTED, client.upload(second));
+        // Response to the first upload was lost and it is sent again
+        assertEquals(SyncClient.Result.ACCEPTED, client.upload(first));
+
+        assertEquals(1, server.getDuplicateCount());
+        assertEquals(2000, server.getDay("A", "2024-03-01").usage);
+    }
+
+    @Test
+    public void classifiesFailures() throws IOException {
+        SyncBatch batch = new SyncBatch("install").addDay(DAY, "A", 1000, 0, 0, 1);
+        server.failNext(1, 503);
+        assertEquals(SyncClient.Result.RETRY, client.upload(batch));
+        server.failNext(1, 429);
+        assertEquals(SyncClient.Result.RETRY, client.upload(batch));
+        server.failNext(1, 400);
+        assertEquals(SyncClient.Result.REJECTED, client.upload(batch));
+        assertTrue(server.getDays().isEmpty());
+
+        assertEquals(SyncClient.Result.ACCEPTED, client.upload(batch));
+        assertEquals(1, server.getDays().size());
+
+        URL closed = server.getUrl();
+        server.close();
+        assertEquals(SyncClient.Result.RETRY, new SyncClient(closed).upload(batch));
+    }
+
+    @Test
+    public void compressesRepetitiveDays() {
+        SyncBatch batch = new SyncBatch("install");
+        for (int i = 0; i < 500; i++) {
+            batch.addDay(DAY + i, "AA:BB:CC:DD:EE:FF", 8 * 3_600_000L, i * 1000L, i % 20, i + 1);
+        }
+        assertTrue(batch.toGzip().length < 500 * 20);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDaysOutOfOrder() {
+        new SyncBatch("install").addDay(DAY, "A", 0, 0, 0, 2).addDay(DAY, "B", 0, 0, 0, 1);
+    }
+}
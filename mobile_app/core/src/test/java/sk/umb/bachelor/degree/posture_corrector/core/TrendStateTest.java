@@ -0,0 +1,149 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TrendStateTest {
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long START = 19_000;
+
+    @Test
+    public void keepsAveragesAndStreak() {
+        TrendState state = new TrendState();
+        for (int i = 0; i < 14; i++) {
+            // First week 70 %, second week 90 % stretched
+            assertTrue(state.setDay(START + i, 10 * HOUR, i < 7 ? 3 * HOUR : HOUR));
+        }
+        TrendState.Trends trends = state.getTrends();
+        assertEquals(90.0f, trends.average7, 1e-3);
+        assertEquals(80.0f, trends.average30, 1e-3);
+        assertEquals(20.0f, trends.weekOverWeek, 1e-3);
+        assertEquals(7, trends.currentStreak);
+        assertEquals(7, trends.bestStreak);
+        assertEquals(90.0f, trends.bestDayPercent, 1e-3);
+        assertEquals(START + 7, trends.bestDay);
+
+        // Today has just started, the streak of the previous days goes on
+        state.advanceTo(START + 14);
+        assertEquals(7, state.getTrends().currentStreak);
+        state.setDay(START + 14, HOUR, HOUR / 2);
+        assertEquals(7, state.getTrends().currentStreak);
+        state.advanceTo(START + 15);
+        assertEquals(0, state.getTrends().currentStreak);
+        assertEquals(7, state.getTrends().bestStreak);
+    }
+
+    @Test
+    public void streakContinuesIntoFinalDays() {
+        TrendState state = new TrendState();
+        for (int i = 0; i < 100; i++) {
+            state.setDay(START + i, 2 * HOUR, 0);
+        }
+        assertEquals(100, state.getTrends().currentStreak);
+        // Days older than the mutable ones can not change anymore
+        assertFalse(state.setDay(START + 99 - TrendState.MUTABLE_DAYS, HOUR, HOUR));
+        assertTrue(state.setDay(START + 100 - TrendState.MUTABLE_DAYS, 2 * HOUR, 2 * HOUR));
+        TrendState.Trends trends = state.getTrends();
+        assertEquals(TrendState.MUTABLE_DAYS - 1, trends.currentStreak);
+        assertEquals(100 - TrendState.MUTABLE_DAYS, trends.bestStreak);
+
+        // A long pause breaks the streak but keeps the bests
+        state.advanceTo(START + 1000);
+        trends = state.getTrends();
+        assertEquals(0, trends.currentStreak);
+        assertEquals(100 - TrendState.MUTABLE_DAYS, trends.bestStreak);
+        assertEquals(100.0f, trends.bestDayPercent, 1e-3);
+        assertTrue(Float.isNaN(trends.average30));
+    }
+
+    @Test
+    public void matchesFullRecomputation() throws IOException {
+        Random random = new Random(3);
+        int days = 400;
+        long[] usage = new long[days];
+        long[] hunched = new long[days];
+        TrendState state = new TrendState();
+        for (int day = 0; day < days; day++) {
+            // Some days are unused, the others are changed a few times while they are mutable
+            for (int change = 0; change < 3; change++) {
+                int target = Math.max(0, day - random.nextInt(TrendState.MUTABLE_DAYS));
+                if (random.nextInt(5) == 0) continue;
+                usage[target] = random.nextInt(4) == 0 ? random.nextInt((int) HOUR) : random.nextInt((int) (8 * HOUR));
+                hunched[target] = usage[target] == 0 ? 0 : (long) (usage[target] * random.nextDouble() * 0.4);
+                assertTrue(state.setDay(START + target, usage[target], hunched[target]));
+            }
+            state.advanceTo(START + day);
+            if (day % 37 == 0) {
+                state = copy(state);
+            }
+            assertTrends(usage, hunched, day, state.getTrends());
+        }
+    }
+
+    private static void assertTrends(long[] usage, long[] hunched, int last, TrendState.Trends trends) {
+        assertEquals(percent(usage, hunched, last - 6, last), trends.average7, 1e-3);
+        assertEquals(percent(usage, hunched, last - 29, last), trends.average30, 1e-3);
+        assertEquals(percent(usage, hunched, last - 6, last) - percent(usage, hunched, last - 13, last - 7),
+                trends.weekOverWeek, 1e-3);
+
+        int streak = 0;
+        for (int day = good(usage, hunched, last) ? last : last - 1; day >= 0 && good(usage, hunched, day); day--) {
+            streak++;
+        }
+        assertEquals(streak, trends.currentStreak);
+
+        int bestStreak = 0;
+        int run = 0;
+        float bestDay = Float.NaN;
+        float bestWeek = Float.NaN;
+        for (int day = 0; day <= last; day++) {
+            run = good(usage, hunched, day) ? run + 1 : 0;
+            bestStreak = Math.max(bestStreak, run);
+            if (usage[day] >= TrendState.MIN_USAGE) {
+                float percent = PostureStatistics.percentOfStretch(usage[day], hunched[day]);
+                if (!(percent <= bestDay)) bestDay = percent;
+            }
+            long weekUsage = 0;
+            for (int d = Math.max(0, day - 6); d <= day; d++) {
+                weekUsage += usage[d];
+            }
+            if (weekUsage >= TrendState.MIN_USAGE) {
+                float percent = percent(usage, hunched, day - 6, day);
+                if (!(percent <= bestWeek)) bestWeek = percent;
+            }
+        }
+        assertEquals(bestStreak, trends.bestStreak);
+        assertEquals(bestDay, trends.bestDayPercent, 1e-3);
+        assertEquals(bestWeek, trends.bestWeekPercent, 1e-3);
+    }
+
+    private static boolean good(long[] usage, long[] hunched, int day) {
+        return day >= 0 && TrendState.isGood(usage[day], hunched[day]);
+    }
+
+    private static float percent(long[] usage, long[] hunched, int from, int to) {
+        long usageSum = 0;
+        long hunchedSum = 0;
+        for (int day = Math.max(0, from); day <= to; day++) {
+            usageSum += usage[day];
+            hunchedSum += hunched[day];
+        }
+        return usageSum == 0 ? Float.NaN : PostureStatistics.percentOfStretch(usageSum, hunchedSum);
+    }
+
+    private static TrendState copy(TrendState state) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            state.writeTo(out);
+        }
+        return TrendState.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+}
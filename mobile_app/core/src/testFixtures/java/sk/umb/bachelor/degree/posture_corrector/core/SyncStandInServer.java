@@ -0,0 +1,157 @@
+package sk.umb.bachelor.degree.posture_corrector.core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Local stand-in of the statistics backend for tests, an HTTP server on the loopback interface which accepts
+ * {@link SyncBatch} uploads on {@code /v1/days} and keeps days in memory the way the backend does:
+ * a day is replaced only by a higher sequence number. Failures can be injected for the next requests.
+ */
+public final class SyncStandInServer implements Closeable {
+    public static final String PATH = "/v1/days";
+    private static final Pattern DAY = Pattern.compile("\\{\"date\":\"([^\"]+)\",\"device\":\"((?:[^\"\\\\]|\\\\.)*)\","
+            + "\"usage\":(\\d+),\"hunched\":(\\d+),\"count\":(\\d+),\"seq\":(\\d+)}");
+
+    public static final class Day {
+        public final String date;
+        public final String device;
+        public final long usage;
+        public final long hunched;
+        public final int count;
+        public final long seq;
+
+        Day(String date, String device, long usage, long hunched, int count, long seq) {
+            this.date = date;
+            this.device = device;
+            this.usage = usage;
+            this.hunched = hunched;
+            this.count = count;
+            this.seq = seq;
+        }
+    }
+
+    private final HttpServer server;
+    // Keyed by device and date
+    private final Map<String, Day> days = new HashMap<>();
+    private final Set<String> idempotencyKeys = new HashSet<>();
+    private int requests = 0;
+    private int duplicates = 0;
+    private int failures = 0;
+    private int failureStatus = 0;
+
+    public SyncStandInServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(PATH, this::handle);
+        server.start();
+    }
+
+    public URL getUrl() {
+        try {
+            return new URL("http", server.getAddress().getHostString(), server.getAddress().getPort(), PATH);
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Answers the next {@code count} requests with {@code status} without storing anything.
+     */
+    public synchronized void failNext(int count, int status) {
+        failures = count;
+        failureStatus = status;
+    }
+
+    public synchronized Map<String, Day> getDays() {
+        return new HashMap<>(days);
+    }
+
+    public synchronized Day getDay(String device, String date) {
+        return days.get(device + "/" + date);
+    }
+
+    public synchronized int getRequestCount() {
+        return requests;
+    }
+
+    /**
+     * Number of accepted requests whose idempotency key was already seen.
+     */
+    public synchronized int getDuplicateCount() {
+        return duplicates;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status;
+        synchronized (this) {
+            requests++;
+            if (failures > 0) {
+                failures--;
+                status = failureStatus;
+            } else if (!"POST".equals(exchange.getRequestMethod())
+                    || !"gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                status = 400;
+            } else {
+                status = store(exchange) ? 204 : 400;
+            }
+        }
+        exchange.sendResponseHeaders(status, -1);
+        exchange.close();
+    }
+
+    private boolean store(HttpExchange exchange) throws IOException {
+        String key = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+        if (key == null) return false;
+        String body;
+        try (InputStream in = new GZIPInputStream(exchange.getRequestBody())) {
+            body = new String(readAll(in), StandardCharsets.UTF_8);
+        }
+        if (!body.startsWith("{\"install\":")) return false;
+        if (!idempotencyKeys.add(key)) {
+            duplicates++;
+        }
+        Matcher matcher = DAY.matcher(body);
+        while (matcher.find()) {
+            Day day = new Day(matcher.group(1), matcher.group(2).replaceAll("\\\\(.)", "$1"),
+                    Long.parseLong(matcher.group(3)), Long.parseLong(matcher.group(4)),
+                    Integer.parseInt(matcher.group(5)), Long.parseLong(matcher.group(6)));
+            Day stored = days.get(day.device + "/" + day.date);
+            if (stored == null || stored.seq < day.seq) {
+                days.put(day.device + "/" + day.date, day);
+            }
+        }
+        return true;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,82 @@
+package sk.umb.bachelor.degree.posture_corrector.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.uiautomator.UiDevice;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Cold start of the main screen with different sizes of the stored history. Time to initial display
+ * should not depend on the history, time to full display includes the first chart loaded from the database.
+ */
+@RunWith(Parameterized.class)
+public class StartupBenchmark {
+    private static final String PACKAGE_NAME = "sk.umb.bachelor.degree.posture_corrector";
+    private static final int ITERATIONS = 10;
+
+    @Parameterized.Parameters(name = "days={0},baselineProfile={1}")
+    public static Collection<Object[]> parameters() {
+        return Arrays.asList(new Object[][]{
+                {0, false},
+                {0, true},
+                {365, true},
+                {1825, false},
+                {1825, true},
+        });
+    }
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    private final int historyDays;
+    private final boolean baselineProfile;
+
+    public StartupBenchmark(int historyDays, boolean baselineProfile) {
+        this.historyDays = historyDays;
+        this.baselineProfile = baselineProfile;
+    }
+
+    @Before
+    public void seedHistory() throws IOException {
+        UiDevice device = UiDevice.getInstance(InstrumentationRegistry.getInstrumentation());
+        // The broadcast returns once the receiver has finished writing
+        device.executeShellCommand("am broadcast -n " + PACKAGE_NAME + "/.HistorySeedReceiver --ei days " + historyDays);
+    }
+
+    @Test
+    public void coldStartup() {
+        CompilationMode compilationMode = baselineProfile
+                ? new CompilationMode.Partial(BaselineProfileMode.Require, 0)
+                : new CompilationMode.None();
+        benchmarkRule.measureRepeated(
+                PACKAGE_NAME,
+                Collections.singletonList(new StartupTimingMetric()),
+                compilationMode,
+                StartupMode.COLD,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    return Unit.INSTANCE;
+                });
+    }
+}
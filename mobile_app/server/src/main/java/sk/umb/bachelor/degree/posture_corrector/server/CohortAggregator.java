@@ -0,0 +1,120 @@
+package sk.umb.bachelor.degree.posture_corrector.server;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes {@link CohortStats} by a parallel scan of the {@link DayStore}. Partitions of the range are cut into
+ * slices of rows, fork/join tasks split the list of slices in halves down to single slices and merge
+ * partial statistics on the way back, idle workers steal the other halves. A slice holds the read lock
+ * of its partition only while it is scanned, so uploads wait at most for one slice.
+ */
+public final class CohortAggregator {
+    static final int SLICE_ROWS = 16 * 1024;
+
+    private final DayStore store;
+    private final ForkJoinPool pool;
+
+    public CohortAggregator(DayStore store, ForkJoinPool pool) {
+        this.store = store;
+        this.pool = pool;
+    }
+
+    /**
+     * @param installs users of the cohort, null for all users
+     */
+    public CohortStats aggregate(LocalDate from, LocalDate to, Set<String> installs) {
+        if (to.isBefore(from)) throw new IllegalArgumentException("Empty range");
+        int fromDay = (int) from.toEpochDay();
+        int toDay = (int) to.toEpochDay();
+        BitSet cohort = installs == null ? null : store.installIndexes(installs);
+        int[] seriesInstalls = store.seriesInstalls();
+
+        List<Slice> slices = new ArrayList<>();
+        for (DayStore.Partition partition : store.partitionsBetween(fromDay, toDay)) {
+            int size;
+            partition.lock.readLock().lock();
+            try {
+                size = partition.size;
+            } finally {
+                partition.lock.readLock().unlock();
+            }
+            for (int start = 0; start < size; start += SLICE_ROWS) {
+                slices.add(new Slice(partition, start, Math.min(start + SLICE_ROWS, size)));
+            }
+        }
+        if (slices.isEmpty()) return new CohortStats(fromDay, toDay);
+        return pool.invoke(new ScanTask(slices, 0, slices.size(), fromDay, toDay, cohort, seriesInstalls));
+    }
+
+    private static final class Slice {
+        final DayStore.Partition partition;
+        final int start;
+        final int end;
+
+        Slice(DayStore.Partition partition, int start, int end) {
+            this.partition = partition;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static final class ScanTask extends RecursiveTask<CohortStats> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Slice> slices;
+        private final int from;
+        private final int to;
+        private final int fromDay;
+        private final int toDay;
+        private final BitSet cohort;
+        private final int[] seriesInstalls;
+
+        ScanTask(List<Slice> slices, int from, int to, int fromDay, int toDay, BitSet cohort, int[] seriesInstalls) {
+            this.slices = slices;
+            this.from = from;
+            this.to = to;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.cohort = cohort;
+            this.seriesInstalls = seriesInstalls;
+        }
+
+        @Override
+        protected CohortStats compute() {
+            if (to - from == 1) return scan(slices.get(from));
+            int middle = (from + to) >>> 1;
+            ScanTask left = new ScanTask(slices, from, middle, fromDay, toDay, cohort, seriesInstalls);
+            left.fork();
+            CohortStats stats = new ScanTask(slices, middle, to, fromDay, toDay, cohort, seriesInstalls).compute();
+            stats.merge(left.join());
+            return stats;
+        }
+
+        private CohortStats scan(Slice slice) {
+            CohortStats stats = new CohortStats(fromDay, toDay);
+            DayStore.Partition partition = slice.partition;
+            partition.lock.readLock().lock();
+            try {
+                for (int row = slice.start; row < slice.end; row++) {
+                    int day = partition.days[row];
+                    if (day < fromDay || day > toDay) continue;
+                    int series = partition.series[row];
+                    // Series registered after the scan started are not in the cohort
+                    if (series >= seriesInstalls.length) continue;
+                    int install = seriesInstalls[series];
+                    if (cohort != null && !cohort.get(install)) continue;
+                    stats.add(install, day, partition.usage[row], partition.hunched[row], partition.counts[row]);
+                }
+            } finally {
+                partition.lock.readLock().unlock();
+            }
+            return stats;
+        }
+    }
+}
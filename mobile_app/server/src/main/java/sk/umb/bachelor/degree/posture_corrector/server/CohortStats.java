@@ -0,0 +1,141 @@
+package sk.umb.bachelor.degree.posture_corrector.server;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import sk.umb.bachelor.degree.posture_corrector.core.PostureStatistics;
+
+/**
+ * Statistics of a cohort of users over a range of days. Every field is a sum or a union, so partial results
+ * of parallel scans are simply merged. A user is one install of the app, a device day is one day of one
+ * posture corrector of a user, so a user with two correctors has two device days per day.
+ */
+public final class CohortStats {
+    /**
+     * Lower bounds of buckets of the hunch count distribution, a bucket ends where the next one starts.
+     */
+    public static final int[] HUNCH_COUNT_BOUNDS = { 0, 1, 3, 6, 11, 21, 51 };
+
+    private final int fromDay;
+    private final BitSet users = new BitSet();
+    private long deviceDays = 0;
+    private long usageDuration = 0;
+    private long hunchedDuration = 0;
+    private double stretchPercentSum = 0;
+    private final long[] hunchCounts = new long[HUNCH_COUNT_BOUNDS.length];
+    private final long[] weekUsage;
+    private final long[] weekHunched;
+
+    CohortStats(int fromDay, int toDay) {
+        this.fromDay = fromDay;
+        int weeks = (toDay - fromDay) / 7 + 1;
+        weekUsage = new long[weeks];
+        weekHunched = new long[weeks];
+    }
+
+    void add(int install, int day, long usage, long hunched, int count) {
+        users.set(install);
+        deviceDays++;
+        usageDuration += usage;
+        hunchedDuration += hunched;
+        stretchPercentSum += PostureStatistics.percentOfStretch(usage, hunched);
+        hunchCounts[bucketOf(count)]++;
+        int week = (day - fromDay) / 7;
+        weekUsage[week] += usage;
+        weekHunched[week] += hunched;
+    }
+
+    void merge(CohortStats other) {
+        users.or(other.users);
+        deviceDays += other.deviceDays;
+        usageDuration += other.usageDuration;
+        hunchedDuration += other.hunchedDuration;
+        stretchPercentSum += other.stretchPercentSum;
+        for (int i = 0; i < hunchCounts.length; i++) {
+            hunchCounts[i] += other.hunchCounts[i];
+        }
+        for (int i = 0; i < weekUsage.length; i++) {
+            weekUsage[i] += other.weekUsage[i];
+            weekHunched[i] += other.weekHunched[i];
+        }
+    }
+
+    static int bucketOf(int count) {
+        int index = Arrays.binarySearch(HUNCH_COUNT_BOUNDS, count);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Number of installs with usage in the range.
+     */
+    public int getUsers() {
+        return users.cardinality();
+    }
+
+    public long getDeviceDays() {
+        return deviceDays;
+    }
+
+    /**
+     * Usage time of all users together in milliseconds.
+     */
+    public long getUsageDuration() {
+        return usageDuration;
+    }
+
+    /**
+     * Mean of stretch percentages of device days, every day of every corrector counts the same.
+     */
+    public double getAverageStretchPercent() {
+        return deviceDays == 0 ? Double.NaN : stretchPercentSum / deviceDays;
+    }
+
+    /**
+     * Stretch percentage of all usage time together, long days count more.
+     */
+    public double getStretchPercent() {
+        return usageDuration == 0 ? Double.NaN : PostureStatistics.percentOfStretch(usageDuration, hunchedDuration);
+    }
+
+    /**
+     * Number of device days in each bucket of {@link #HUNCH_COUNT_BOUNDS}.
+     */
+    public long[] getHunchCountDistribution() {
+        return hunchCounts.clone();
+    }
+
+    /**
+     * Stretch percentage of every week from the first day of the range, NaN for weeks without usage.
+     */
+    public double[] getWeeklyStretchPercent() {
+        double[] percents = new double[weekUsage.length];
+        for (int i = 0; i < percents.length; i++) {
+            percents[i] = weekUsage[i] == 0 ? Double.NaN : PostureStatistics.percentOfStretch(weekUsage[i], weekHunched[i]);
+        }
+        return percents;
+    }
+
+    /**
+     * Slope of the least squares line through weekly stretch percentages, in percentage points per week.
+     * NaN when less than two weeks have usage.
+     */
+    public double getTrendPerWeek() {
+        double[] percents = getWeeklyStretchPercent();
+        int n = 0;
+        double sumX = 0;
+        double sumY = 0;
+        double sumXY = 0;
+        double sumXX = 0;
+        for (int week = 0; week < percents.length; week++) {
+            if (Double.isNaN(percents[week])) continue;
+            n++;
+            sumX += week;
+            sumY += percents[week];
+            sumXY += week * percents[week];
+            sumXX += (double) week * week;
+        }
+        double denominator = n * sumXX - sumX * sumX;
+        if (n < 2 || denominator == 0) return Double.NaN;
+        return (n * sumXY - sumX * sumY) / denominator;
+    }
+}
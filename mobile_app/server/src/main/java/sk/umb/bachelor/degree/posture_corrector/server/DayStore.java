@@ -0,0 +1,431 @@
+package sk.umb.bachelor.degree.posture_corrector.server;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Day statistics of all phones in a partitioned time-series layout. A series is one device of one install.
+ * Rows are split into partitions by the month of the day and by a shard of the series, so uploads of
+ * different phones rarely wait for the same lock and a query reads only months of its range.
+ * A partition keeps its rows in columns and appends every accepted row to its own file
+ * {@code days-YYYY-MM-sNN.bin}, which is replayed and compacted on open.
+ *
+ * <p>A day is replaced only by a higher sequence number of the phone, so repeated and late uploads change nothing.
+ * Files are written on every upload and forced to disk by {@link #sync()}, a crash of the process loses
+ * nothing, a power loss what was not synced yet.
+ */
+public final class DayStore implements Closeable {
+    static final int SHARDS = 16;
+    // i32 series, i32 epoch day, i64 usage, i64 hunched, i32 count, i64 seq
+    private static final int RECORD_BYTES = 4 + 4 + 8 + 8 + 4 + 8;
+    private static final String SERIES_FILE = "series.bin";
+
+    private final Path directory;
+    private final ConcurrentHashMap<String, Integer> seriesIds = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> installIds = new ConcurrentHashMap<>();
+    // Guarded by seriesIds
+    private int[] seriesInstall = new int[1024];
+    private int seriesCount = 0;
+    private FileChannel seriesLog;
+    // Keyed by month << 8 | shard, so partitions of a month are next to each other
+    private final ConcurrentSkipListMap<Long, Partition> partitions = new ConcurrentSkipListMap<>();
+
+    /**
+     * Columns of one month of one shard of series, guarded by its lock.
+     */
+    static final class Partition {
+        final int month;
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        int size = 0;
+        int[] series = new int[256];
+        int[] days = new int[256];
+        long[] usage = new long[256];
+        long[] hunched = new long[256];
+        int[] counts = new int[256];
+        long[] seqs = new long[256];
+        private final HashMap<Long, Integer> rows = new HashMap<>();
+        private final Path file;
+        private FileChannel channel;
+        private boolean dirty = false;
+
+        Partition(int month, Path file) {
+            this.month = month;
+            this.file = file;
+        }
+
+        /**
+         * Stores the day unless a day with the same or higher sequence number is stored. Caller holds the write lock.
+         */
+        boolean upsert(int seriesId, int day, long usageDuration, long hunchedDuration, int hunchedCount, long seq) {
+            Long key = (long) seriesId << 32 | (day & 0xFFFFFFFFL);
+            Integer row = rows.get(key);
+            if (row == null) {
+                if (size == series.length) {
+                    int capacity = size * 2;
+                    series = Arrays.copyOf(series, capacity);
+                    days = Arrays.copyOf(days, capacity);
+                    usage = Arrays.copyOf(usage, capacity);
+                    hunched = Arrays.copyOf(hunched, capacity);
+                    counts = Arrays.copyOf(counts, capacity);
+                    seqs = Arrays.copyOf(seqs, capacity);
+                }
+                row = size++;
+                rows.put(key, row);
+                series[row] = seriesId;
+                days[row] = day;
+            } else if (seqs[row] >= seq) {
+                return false;
+            }
+            usage[row] = usageDuration;
+            hunched[row] = hunchedDuration;
+            counts[row] = hunchedCount;
+            seqs[row] = seq;
+            return true;
+        }
+
+        void append(ByteBuffer records) throws IOException {
+            if (file == null || !records.hasRemaining()) return;
+            if (channel == null) {
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            }
+            while (records.hasRemaining()) {
+                channel.write(records);
+            }
+            dirty = true;
+        }
+    }
+
+    /**
+     * Opens the store in the directory, null keeps it in memory only.
+     */
+    public DayStore(Path directory) throws IOException {
+        this.directory = directory;
+        if (directory == null) return;
+        Files.createDirectories(directory);
+        loadSeries();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "days-*.bin")) {
+            for (Path file : files) {
+                loadPartition(file);
+            }
+        }
+    }
+
+    /**
+     * Stores days of the upload.
+     *
+     * @return number of days which were new or newer than the stored ones
+     */
+    public int accept(DayUpload upload) throws IOException {
+        // Days of the upload grouped by partition, each partition is locked once
+        int[] daySeries = new int[upload.days.size()];
+        Map<Partition, List<Integer>> byPartition = new LinkedHashMap<>();
+        for (int i = 0; i < upload.days.size(); i++) {
+            DayUpload.Day day = upload.days.get(i);
+            daySeries[i] = seriesId(upload.install, day.device);
+            Partition partition = partition(monthOf(day.epochDay), daySeries[i] % SHARDS);
+            List<Integer> days = byPartition.get(partition);
+            if (days == null) {
+                days = new ArrayList<>();
+                byPartition.put(partition, days);
+            }
+            days.add(i);
+        }
+
+        int stored = 0;
+        for (Map.Entry<Partition, List<Integer>> entry : byPartition.entrySet()) {
+            Partition partition = entry.getKey();
+            ByteBuffer records = ByteBuffer.allocate(entry.getValue().size() * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            partition.lock.writeLock().lock();
+            try {
+                for (int i : entry.getValue()) {
+                    DayUpload.Day day = upload.days.get(i);
+                    if (partition.upsert(daySeries[i], day.epochDay, day.usageDuration, day.hunchedDuration,
+                            day.hunchedCount, day.seq)) {
+                        records.putInt(daySeries[i]).putInt(day.epochDay).putLong(day.usageDuration)
+                                .putLong(day.hunchedDuration).putInt(day.hunchedCount).putLong(day.seq);
+                        stored++;
+                    }
+                }
+                records.flip();
+                partition.append(records);
+            } finally {
+                partition.lock.writeLock().unlock();
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Partitions holding days of months which overlap {@code [fromDay, toDay]}, epoch days.
+     */
+    List<Partition> partitionsBetween(int fromDay, int toDay) {
+        return new ArrayList<>(partitions.subMap((long) monthOf(fromDay) << 8, true,
+                (long) monthOf(toDay) << 8 | 0xFF, true).values());
+    }
+
+    /**
+     * Install index of every series, indexes are assigned in the order installs uploaded first.
+     */
+    int[] seriesInstalls() {
+        synchronized (seriesIds) {
+            return Arrays.copyOf(seriesInstall, seriesCount);
+        }
+    }
+
+    /**
+     * Install indexes of the installs, unknown ones are left out.
+     */
+    BitSet installIndexes(Set<String> installs) {
+        BitSet indexes = new BitSet();
+        for (String install : installs) {
+            Integer index = installIds.get(install);
+            if (index != null) indexes.set(index);
+        }
+        return indexes;
+    }
+
+    public int getInstallCount() {
+        return installIds.size();
+    }
+
+    public long getDayCount() {
+        long count = 0;
+        for (Partition partition : partitions.values()) {
+            partition.lock.readLock().lock();
+            try {
+                count += partition.size;
+            } finally {
+                partition.lock.readLock().unlock();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Forces written days to disk.
+     */
+    public void sync() throws IOException {
+        // Series first, rows of an unknown series are dropped on open
+        synchronized (seriesIds) {
+            if (seriesLog != null) seriesLog.force(false);
+        }
+        for (Partition partition : partitions.values()) {
+            partition.lock.writeLock().lock();
+            try {
+                if (partition.dirty) {
+                    partition.channel.force(false);
+                    partition.dirty = false;
+                }
+            } finally {
+                partition.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync();
+        synchronized (seriesIds) {
+            if (seriesLog != null) {
+                seriesLog.close();
+                seriesLog = null;
+            }
+        }
+        for (Partition partition : partitions.values()) {
+            partition.lock.writeLock().lock();
+            try {
+                if (partition.channel != null) {
+                    partition.channel.close();
+                    partition.channel = null;
+                }
+            } finally {
+                partition.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    static int monthOf(int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    private Partition partition(int month, int shard) {
+        long key = (long) month << 8 | shard;
+        Partition partition = partitions.get(key);
+        if (partition != null) return partition;
+        Path file = directory == null ? null
+                : directory.resolve(String.format("days-%04d-%02d-s%02d.bin", month / 12, month % 12 + 1, shard));
+        partitions.putIfAbsent(key, new Partition(month, file));
+        return partitions.get(key);
+    }
+
+    private int seriesId(String install, String device) throws IOException {
+        String key = install + '\n' + device;
+        Integer id = seriesIds.get(key);
+        if (id != null) return id;
+        synchronized (seriesIds) {
+            id = seriesIds.get(key);
+            if (id != null) return id;
+            if (seriesLog != null) {
+                // Written before any row of the series, so ids never change on the next open
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (DataOutputStream record = new DataOutputStream(bytes)) {
+                    record.writeUTF(install);
+                    record.writeUTF(device);
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+                while (buffer.hasRemaining()) {
+                    seriesLog.write(buffer);
+                }
+            }
+            return register(key, install);
+        }
+    }
+
+    /**
+     * Assigns the next series id, caller holds the lock of series ids.
+     */
+    private int register(String key, String install) {
+        Integer installId = installIds.get(install);
+        if (installId == null) {
+            installId = installIds.size();
+            installIds.put(install, installId);
+        }
+        if (seriesCount == seriesInstall.length) {
+            seriesInstall = Arrays.copyOf(seriesInstall, seriesCount * 2);
+        }
+        int id = seriesCount++;
+        seriesInstall[id] = installId;
+        seriesIds.put(key, id);
+        return id;
+    }
+
+    private void loadSeries() throws IOException {
+        Path file = directory.resolve(SERIES_FILE);
+        long valid = 0;
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file);
+                 DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+                while (true) {
+                    String install;
+                    String device;
+                    try {
+                        install = data.readUTF();
+                        device = data.readUTF();
+                    } catch (EOFException e) {
+                        // End of the log or a series torn by a crash, it is registered again by its next upload
+                        break;
+                    }
+                    synchronized (seriesIds) {
+                        register(install + '\n' + device, install);
+                    }
+                    valid += 4 + utfLength(install) + utfLength(device);
+                }
+            }
+        }
+        seriesLog = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // Drops a torn record, new series are appended after the valid ones
+        seriesLog.truncate(valid);
+        seriesLog.position(valid);
+    }
+
+    private static int utfLength(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            length += c >= 0x0001 && c <= 0x007F ? 1 : c > 0x07FF ? 3 : 2;
+        }
+        return length;
+    }
+
+    private void loadPartition(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        int month;
+        int shard;
+        try {
+            month = Integer.parseInt(name.substring(5, 9)) * 12 + Integer.parseInt(name.substring(10, 12)) - 1;
+            shard = Integer.parseInt(name.substring(14, 16));
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            return;
+        }
+        Partition partition = partition(month, shard);
+        long records = 0;
+        boolean torn;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            torn = channel.size() % RECORD_BYTES != 0;
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            while (channel.read(buffer) >= 0 || buffer.position() > 0) {
+                buffer.flip();
+                if (buffer.remaining() < RECORD_BYTES) break;
+                while (buffer.remaining() >= RECORD_BYTES) {
+                    int seriesId = buffer.getInt();
+                    int day = buffer.getInt();
+                    long usage = buffer.getLong();
+                    long hunched = buffer.getLong();
+                    int count = buffer.getInt();
+                    long seq = buffer.getLong();
+                    if (seriesId < seriesCount) {
+                        partition.upsert(seriesId, day, usage, hunched, count, seq);
+                    }
+                    records++;
+                }
+                buffer.compact();
+            }
+        }
+        // Rows were superseded, belong to a series lost in a crash or the last one is torn
+        if (records > partition.size || torn) {
+            compact(partition);
+        }
+    }
+
+    /**
+     * Rewrites the file of the partition with current rows only, superseded versions of days are dropped.
+     */
+    private static void compact(Partition partition) throws IOException {
+        Path temporary = partition.file.resolveSibling(partition.file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            for (int row = 0; row < partition.size; row++) {
+                buffer.putInt(partition.series[row]).putInt(partition.days[row]).putLong(partition.usage[row])
+                        .putLong(partition.hunched[row]).putInt(partition.counts[row]).putLong(partition.seqs[row]);
+                if (!buffer.hasRemaining() || row == partition.size - 1) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, partition.file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
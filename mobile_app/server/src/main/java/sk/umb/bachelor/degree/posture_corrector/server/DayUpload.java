@@ -0,0 +1,208 @@
+package sk.umb.bachelor.degree.posture_corrector.server;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parsed upload of day statistics of one phone, the JSON written by {@code SyncBatch}.
+ * Only this shape is understood, keys may come in any order and unknown keys with scalar values are skipped.
+ */
+public final class DayUpload {
+    public static final class Day {
+        public final String device;
+        public final int epochDay;
+        public final long usageDuration;
+        public final long hunchedDuration;
+        public final int hunchedCount;
+        public final long seq;
+
+        public Day(String device, int epochDay, long usageDuration, long hunchedDuration, int hunchedCount, long seq) {
+            this.device = device;
+            this.epochDay = epochDay;
+            this.usageDuration = usageDuration;
+            this.hunchedDuration = hunchedDuration;
+            this.hunchedCount = hunchedCount;
+            this.seq = seq;
+        }
+    }
+
+    public final String install;
+    public final List<Day> days;
+
+    public DayUpload(String install, List<Day> days) {
+        this.install = install;
+        this.days = Collections.unmodifiableList(days);
+    }
+
+    /**
+     * @throws IllegalArgumentException when the text is not a valid upload
+     */
+    public static DayUpload parse(String json) {
+        Parser parser = new Parser(json);
+        DayUpload upload = parser.upload();
+        parser.skipWhitespace();
+        if (parser.position != json.length()) throw parser.error("Trailing characters");
+        return upload;
+    }
+
+    private static final class Parser {
+        private final String text;
+        private int position = 0;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        DayUpload upload() {
+            String install = null;
+            List<Day> days = null;
+            expect('{');
+            if (!consume('}')) {
+                do {
+                    String key = string();
+                    expect(':');
+                    if (key.equals("install")) {
+                        install = string();
+                    } else if (key.equals("days")) {
+                        days = days();
+                    } else {
+                        scalar();
+                    }
+                } while (consume(','));
+                expect('}');
+            }
+            if (install == null || install.isEmpty() || days == null) throw error("Missing install or days");
+            return new DayUpload(install, days);
+        }
+
+        private List<Day> days() {
+            List<Day> days = new ArrayList<>();
+            expect('[');
+            if (consume(']')) return days;
+            do {
+                days.add(day());
+            } while (consume(','));
+            expect(']');
+            return days;
+        }
+
+        private Day day() {
+            String device = null;
+            String date = null;
+            long usage = -1;
+            long hunched = -1;
+            long count = -1;
+            long seq = -1;
+            expect('{');
+            do {
+                String key = string();
+                expect(':');
+                switch (key) {
+                    case "device": device = string(); break;
+                    case "date": date = string(); break;
+                    case "usage": usage = number(); break;
+                    case "hunched": hunched = number(); break;
+                    case "count": count = number(); break;
+                    case "seq": seq = number(); break;
+                    default: scalar();
+                }
+            } while (consume(','));
+            expect('}');
+            if (device == null || date == null || usage < 0 || hunched < 0 || count < 0 || seq < 0) {
+                throw error("Incomplete day");
+            }
+            if (hunched > usage || count > Integer.MAX_VALUE) throw error("Invalid day");
+            long epochDay;
+            try {
+                epochDay = LocalDate.parse(date).toEpochDay();
+            } catch (DateTimeParseException e) {
+                throw error("Invalid date " + date);
+            }
+            return new Day(device, (int) epochDay, usage, hunched, (int) count, seq);
+        }
+
+        private void scalar() {
+            skipWhitespace();
+            if (peek() == '"') {
+                string();
+                return;
+            }
+            int start = position;
+            while (position < text.length() && "-+.eE0123456789truefalsn".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            if (position == start) throw error("Unsupported value");
+        }
+
+        private long number() {
+            skipWhitespace();
+            int start = position;
+            while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                position++;
+            }
+            if (position == start || position - start > 18) throw error("Invalid number");
+            return Long.parseLong(text.substring(start, position));
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                if (position >= text.length()) throw error("Unterminated string");
+                char c = text.charAt(position++);
+                if (c == '"') return value.toString();
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= text.length()) throw error("Unterminated string");
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'n': value.append('\n'); break;
+                    case 't': value.append('\t'); break;
+                    case 'r': value.append('\r'); break;
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'u':
+                        if (position + 4 > text.length()) throw error("Invalid escape");
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid escape");
+                        }
+                        position += 4;
+                        break;
+                    default: value.append(escaped);
+                }
+            }
+        }
+
+        private void expect(char c) {
+            if (!consume(c)) throw error("Expected " + c);
+        }
+
+        private boolean consume(char c) {
+            skipWhitespace();
+            if (peek() != c) return false;
+            position++;
+            return true;
+        }
+
+        private char peek() {
+            return position < text.length() ? text.charAt(position) : 0;
+        }
+
+        void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at " + position);
+        }
+    }
+}
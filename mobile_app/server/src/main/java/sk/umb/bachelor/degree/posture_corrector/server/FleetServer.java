@@ -0,0 +1,250 @@
+package sk.umb.bachelor.degree.posture_corrector.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * HTTP server collecting day statistics of many phones and answering cohort queries.
+ * <pre>
+ * POST /v1/days     upload of {@code SyncClient}, gzip or plain JSON, 204 when stored
+ * GET  /v1/cohort   ?from=2024-03-01&amp;to=2024-03-31[&amp;install=a,b] statistics of the cohort as JSON
+ * </pre>
+ * Run with {@code ./gradlew :server:run --args="8080 fleet-data"}.
+ */
+public final class FleetServer implements Closeable {
+    public static final String DAYS_PATH = "/v1/days";
+    public static final String COHORT_PATH = "/v1/cohort";
+    // Uploads have at most a few hundred days, bigger bodies are refused before they are parsed
+    private static final int MAX_UPLOAD_BYTES = 4 * 1024 * 1024;
+    private static final int MAX_RANGE_DAYS = 3660;
+
+    private final DayStore store;
+    private final CohortAggregator aggregator;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public FleetServer(DayStore store, InetSocketAddress address, int threads, ForkJoinPool pool) throws IOException {
+        this.store = store;
+        this.aggregator = new CohortAggregator(store, pool);
+        executor = Executors.newFixedThreadPool(threads);
+        server = HttpServer.create(address, 1024);
+        server.setExecutor(executor);
+        server.createContext(DAYS_PATH, this::handleUpload);
+        server.createContext(COHORT_PATH, this::handleCohort);
+        server.start();
+    }
+
+    public URL getUrl(String path) {
+        InetSocketAddress address = server.getAddress();
+        try {
+            return new URL("http", address.getHostString(), address.getPort(), path);
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private void handleUpload(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, null);
+                return;
+            }
+            InputStream raw = exchange.getRequestBody();
+            InputStream body = raw;
+            if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                body = new GZIPInputStream(raw);
+            }
+            byte[] json;
+            try {
+                json = readLimited(body);
+            } catch (ZipException e) {
+                respond(exchange, 400, null);
+                return;
+            }
+            if (json == null) {
+                respond(exchange, 413, null);
+                return;
+            }
+            // Gzip stops at its trailer, a body which is not read to the end closes the kept alive connection
+            while (raw.read() >= 0) {
+                // Nothing follows the trailer of a valid upload
+            }
+            DayUpload upload;
+            try {
+                upload = DayUpload.parse(new String(json, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, null);
+                return;
+            }
+            // Days are upserted by sequence number, so a batch sent again needs no lookup of its idempotency key
+            store.accept(upload);
+            respond(exchange, 204, null);
+        } catch (IOException e) {
+            respond(exchange, 500, null);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleCohort(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, null);
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            LocalDate from;
+            LocalDate to;
+            try {
+                from = LocalDate.parse(query.get("from"));
+                to = LocalDate.parse(query.get("to"));
+            } catch (DateTimeParseException | NullPointerException e) {
+                respond(exchange, 400, null);
+                return;
+            }
+            if (to.isBefore(from) || to.toEpochDay() - from.toEpochDay() >= MAX_RANGE_DAYS) {
+                respond(exchange, 400, null);
+                return;
+            }
+            Set<String> installs = null;
+            String install = query.get("install");
+            if (install != null) {
+                installs = new HashSet<>(Arrays.asList(install.split(",")));
+            }
+            CohortStats stats = aggregator.aggregate(from, to, installs);
+            respond(exchange, 200, toJson(from, to, stats).getBytes(StandardCharsets.UTF_8));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    static String toJson(LocalDate from, LocalDate to, CohortStats stats) {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"from\":\"").append(from).append("\",\"to\":\"").append(to)
+                .append("\",\"users\":").append(stats.getUsers())
+                .append(",\"deviceDays\":").append(stats.getDeviceDays())
+                .append(",\"averageStretchPercent\":").append(number(stats.getAverageStretchPercent()))
+                .append(",\"stretchPercent\":").append(number(stats.getStretchPercent()))
+                .append(",\"hunchCounts\":[");
+        long[] distribution = stats.getHunchCountDistribution();
+        for (int i = 0; i < distribution.length; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"min\":").append(CohortStats.HUNCH_COUNT_BOUNDS[i]);
+            if (i + 1 < distribution.length) {
+                json.append(",\"max\":").append(CohortStats.HUNCH_COUNT_BOUNDS[i + 1] - 1);
+            }
+            json.append(",\"days\":").append(distribution[i]).append('}');
+        }
+        json.append("],\"weeklyStretchPercent\":[");
+        double[] weeks = stats.getWeeklyStretchPercent();
+        for (int i = 0; i < weeks.length; i++) {
+            if (i > 0) json.append(',');
+            json.append(number(weeks[i]));
+        }
+        json.append("],\"trendPerWeek\":").append(number(stats.getTrendPerWeek())).append('}');
+        return json.toString();
+    }
+
+    private static String number(double value) {
+        return Double.isNaN(value) ? "null" : String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static Map<String, String> parseQuery(String query) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) return parameters;
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator <= 0) continue;
+            parameters.put(URLDecoder.decode(parameter.substring(0, separator), "UTF-8"),
+                    URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+        }
+        return parameters;
+    }
+
+    /**
+     * Reads the body, null when it is longer than {@link #MAX_UPLOAD_BYTES}.
+     */
+    private static byte[] readLimited(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+            if (out.size() > MAX_UPLOAD_BYTES) return null;
+        }
+        return out.toByteArray();
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        String directory = args.length > 1 ? args[1] : "fleet-data";
+        DayStore store = new DayStore(Paths.get(directory));
+        int threads = Runtime.getRuntime().availableProcessors() * 4;
+        FleetServer server = new FleetServer(store, new InetSocketAddress(port), threads, ForkJoinPool.commonPool());
+        // Uploads are forced to disk once a second instead of on every request
+        ScheduledExecutorService syncer = Executors.newSingleThreadScheduledExecutor();
+        syncer.scheduleWithFixedDelay(() -> {
+            try {
+                store.sync();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            syncer.shutdown();
+            try {
+                store.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }));
+        System.out.println("Listening on " + server.getUrl(DAYS_PATH) + ", " + store.getInstallCount()
+                + " installs, " + store.getDayCount() + " days");
+    }
+}
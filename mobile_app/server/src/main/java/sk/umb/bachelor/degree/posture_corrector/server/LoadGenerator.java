@@ -0,0 +1,201 @@
+package sk.umb.bachelor.degree.posture_corrector.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import sk.umb.bachelor.degree.posture_corrector.core.LatencyHistogram;
+import sk.umb.bachelor.degree.posture_corrector.core.SyncBatch;
+import sk.umb.bachelor.degree.posture_corrector.core.SyncClient;
+
+/**
+ * Measures ingest throughput and query latency of the {@link FleetServer} on one machine. Simulated phones
+ * upload their history the way the app does, in batches through {@link SyncClient}, then cohort queries
+ * run while a part of the phones keeps uploading.
+ * <pre>
+ * ./gradlew :server:loadTest --args="--users 5000 --days 365 --threads 64 --queries 500"
+ * </pre>
+ * Without {@code --url} the server runs in the same process on a temporary directory.
+ */
+public final class LoadGenerator {
+    private static final int BATCH_DAYS = 500;
+    private static final int DEVICES_PER_USER = 1;
+
+    private int users = 2000;
+    private int days = 365;
+    private int threads = 32;
+    private int queries = 300;
+    private URL url;
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--users": generator.users = Integer.parseInt(value); break;
+                case "--days": generator.days = Integer.parseInt(value); break;
+                case "--threads": generator.threads = Integer.parseInt(value); break;
+                case "--queries": generator.queries = Integer.parseInt(value); break;
+                case "--url": generator.url = new URL(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        generator.run();
+    }
+
+    private void run() throws Exception {
+        if (url != null) {
+            measure(url);
+            return;
+        }
+        Path directory = Files.createTempDirectory("fleet-load");
+        try (DayStore store = new DayStore(directory);
+             FleetServer server = new FleetServer(store, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                     threads, ForkJoinPool.commonPool())) {
+            measure(server.getUrl(""));
+            System.out.println(String.format("stored: %d installs, %d days", store.getInstallCount(), store.getDayCount()));
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private void measure(URL base) throws Exception {
+        URL daysUrl = new URL(base, FleetServer.DAYS_PATH);
+        LocalDate lastDay = LocalDate.now();
+        LocalDate firstDay = lastDay.minusDays(days - 1);
+        System.out.println(String.format("%d users, %d days each, %d threads, server %s", users, days, threads, base));
+
+        // Ingest: every user uploads the whole history
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        LatencyHistogram uploadLatency = new LatencyHistogram();
+        AtomicLong uploadedDays = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        long start = System.nanoTime();
+        List<Future<?>> uploads = new ArrayList<>();
+        for (int user = 0; user < users; user++) {
+            final int id = user;
+            uploads.add(executor.submit(() -> upload(new SyncClient(daysUrl), id, firstDay, days, 1,
+                    uploadLatency, uploadedDays, failures)));
+        }
+        for (Future<?> upload : uploads) {
+            upload.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("ingest: %d days in %.1f s, %.0f days/s, %.0f uploads/s, %d failed",
+                uploadedDays.get(), seconds, uploadedDays.get() / seconds, uploadLatency.getCount() / seconds,
+                failures.get()));
+        print("upload latency us", uploadLatency);
+
+        // Queries, while a quarter of the threads keeps uploading today's day
+        AtomicLong seq = new AtomicLong(days + 1L);
+        List<Future<?>> background = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, threads / 4); i++) {
+            final int offset = i;
+            background.add(executor.submit(() -> {
+                SyncClient client = new SyncClient(daysUrl);
+                Random random = new Random(offset);
+                while (!Thread.currentThread().isInterrupted()) {
+                    upload(client, random.nextInt(users), lastDay, 1, seq.getAndIncrement(),
+                            null, new AtomicLong(), new AtomicLong());
+                }
+            }));
+        }
+        Random random = new Random(42);
+        LatencyHistogram allLatency = new LatencyHistogram();
+        LatencyHistogram cohortLatency = new LatencyHistogram();
+        for (int i = 0; i < queries; i++) {
+            int length = 7 + random.nextInt(days);
+            LocalDate from = lastDay.minusDays(length - 1);
+            StringBuilder query = new StringBuilder(FleetServer.COHORT_PATH).append("?from=").append(from)
+                    .append("&to=").append(lastDay);
+            boolean cohort = i % 2 == 1;
+            if (cohort) {
+                query.append("&install=");
+                for (int member = 0; member < 100; member++) {
+                    if (member > 0) query.append(',');
+                    query.append(install(random.nextInt(users)));
+                }
+            }
+            long queryStart = System.nanoTime();
+            get(new URL(base, query.toString()));
+            long micros = (System.nanoTime() - queryStart) / 1000;
+            (cohort ? cohortLatency : allLatency).record(micros);
+        }
+        for (Future<?> future : background) {
+            future.cancel(true);
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        print("query latency of all users us", allLatency);
+        print("query latency of 100 users us", cohortLatency);
+    }
+
+    private static String install(int user) {
+        return "load-" + user;
+    }
+
+    /**
+     * Uploads {@code count} days of the user from {@code first}, with sequence numbers from {@code firstSeq}.
+     */
+    private static void upload(SyncClient client, int user, LocalDate first, int count, long firstSeq,
+                               LatencyHistogram latency, AtomicLong uploaded, AtomicLong failures) {
+        Random random = new Random(user);
+        SyncBatch batch = new SyncBatch(install(user));
+        for (int day = 0; day < count; day++) {
+            for (int device = 0; device < DEVICES_PER_USER; device++) {
+                long usage = 3_600_000L + random.nextInt(8 * 3_600_000);
+                long hunched = (long) (usage * random.nextDouble() * 0.6);
+                batch.addDay(first.toEpochDay() + day, String.format("02:00:00:%02X:%02X:%02X", user >> 16 & 0xFF,
+                        user >> 8 & 0xFF, user & 0xFF), usage, hunched, random.nextInt(40), firstSeq + day);
+            }
+            if (batch.size() >= BATCH_DAYS || day == count - 1) {
+                long start = System.nanoTime();
+                SyncClient.Result result = client.upload(batch);
+                if (latency != null) latency.record((System.nanoTime() - start) / 1000);
+                if (result == SyncClient.Result.ACCEPTED) {
+                    uploaded.addAndGet(batch.size());
+                } else {
+                    failures.incrementAndGet();
+                }
+                batch = new SyncBatch(install(user));
+            }
+        }
+    }
+
+    private static void get(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        int status = connection.getResponseCode();
+        if (status != 200) throw new IOException("Query failed with " + status);
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[4096];
+            while (in.read(buffer) >= 0) {
+                // Only the latency is measured
+            }
+        }
+    }
+
+    private static void print(String name, LatencyHistogram histogram) {
+        System.out.println(String.format("%s: mean %.1f, p50 %d, p99 %d, max %d (%d samples)", name,
+                histogram.getMean(), histogram.getPercentile(50), histogram.getPercentile(99), histogram.getMax(),
+                histogram.getCount()));
+    }
+}
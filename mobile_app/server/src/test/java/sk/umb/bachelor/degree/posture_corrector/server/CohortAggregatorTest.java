@@ -0,0 +1,115 @@
+package sk.umb.bachelor.degree.posture_corrector.server;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import sk.umb.bachelor.degree.posture_corrector.core.PostureStatistics;
+
+import static org.junit.Assert.*;
+
+public class CohortAggregatorTest {
+    private static final LocalDate FIRST = LocalDate.of(2024, 1, 1);
+
+    @Test
+    public void parallelScanMatchesSequentialSums() throws IOException {
+        int users = 300;
+        int days = 120;
+        long[][] usage = new long[users][days];
+        long[][] hunched = new long[users][days];
+        int[][] counts = new int[users][days];
+        Random random = new Random(7);
+        try (DayStore store = new DayStore(null)) {
+            for (int user = 0; user < users; user++) {
+                List<DayUpload.Day> uploaded = new ArrayList<>();
+                for (int day = 0; day < days; day++) {
+                    usage[user][day] = 1 + random.nextInt(10_000_000);
+                    hunched[user][day] = random.nextInt((int) usage[user][day]);
+                    counts[user][day] = random.nextInt(60);
+                    uploaded.add(new DayUpload.Day("A", (int) FIRST.toEpochDay() + day, usage[user][day],
+                            hunched[user][day], counts[user][day], day + 1));
+                }
+                store.accept(new DayUpload("user-" + user, uploaded));
+            }
+
+            LocalDate from = FIRST.plusDays(10);
+            LocalDate to = FIRST.plusDays(100);
+            Set<String> cohort = new HashSet<>();
+            for (int user = 0; user < users; user += 3) {
+                cohort.add("user-" + user);
+            }
+            cohort.add("unknown");
+            CohortStats stats = new CohortAggregator(store, new ForkJoinPool(4)).aggregate(from, to, cohort);
+
+            long deviceDays = 0;
+            long usageSum = 0;
+            long hunchedSum = 0;
+            double percentSum = 0;
+            long[] distribution = new long[CohortStats.HUNCH_COUNT_BOUNDS.length];
+            for (int user = 0; user < users; user += 3) {
+                for (int day = 10; day <= 100; day++) {
+                    deviceDays++;
+                    usageSum += usage[user][day];
+                    hunchedSum += hunched[user][day];
+                    percentSum += PostureStatistics.percentOfStretch(usage[user][day], hunched[user][day]);
+                    distribution[CohortStats.bucketOf(counts[user][day])]++;
+                }
+            }
+            assertEquals(100, stats.getUsers());
+            assertEquals(deviceDays, stats.getDeviceDays());
+            assertEquals(usageSum, stats.getUsageDuration());
+            assertEquals(PostureStatistics.percentOfStretch(usageSum, hunchedSum), stats.getStretchPercent(), 1e-3);
+            assertEquals(percentSum / deviceDays, stats.getAverageStretchPercent(), 1e-6);
+            assertArrayEquals(distribution, stats.getHunchCountDistribution());
+            assertEquals(13, stats.getWeeklyStretchPercent().length);
+        }
+    }
+
+    @Test
+    public void countsDaysOfEveryDeviceOfUser() throws IOException {
+        try (DayStore store = new DayStore(null)) {
+            int first = (int) FIRST.toEpochDay();
+            List<DayUpload.Day> uploaded = new ArrayList<>();
+            for (int day = 0; day < 7; day++) {
+                uploaded.add(new DayUpload.Day("A", first + day, 1000, 0, 0, 2 * day + 1));
+                uploaded.add(new DayUpload.Day("B", first + day, 1000, 1000, 1, 2 * day + 2));
+            }
+            store.accept(new DayUpload("user", uploaded));
+
+            CohortStats stats = new CohortAggregator(store, new ForkJoinPool(2)).aggregate(FIRST, FIRST.plusDays(6), null);
+            assertEquals(1, stats.getUsers());
+            assertEquals(14, stats.getDeviceDays());
+            assertEquals(50.0, stats.getAverageStretchPercent(), 1e-6);
+            assertEquals(14000, stats.getUsageDuration());
+            long[] distribution = stats.getHunchCountDistribution();
+            assertEquals(7, distribution[0]);
+            assertEquals(7, distribution[1]);
+        }
+    }
+
+    @Test
+    public void bucketsAndTrend() {
+        assertEquals(0, CohortStats.bucketOf(0));
+        assertEquals(1, CohortStats.bucketOf(2));
+        assertEquals(2, CohortStats.bucketOf(3));
+        assertEquals(6, CohortStats.bucketOf(1000));
+
+        int from = (int) FIRST.toEpochDay();
+        CohortStats stats = new CohortStats(from, from + 27);
+        assertTrue(Double.isNaN(stats.getTrendPerWeek()));
+        // Stretched 50, 60 and 70 % in weeks 0, 1 and 3, nothing in week 2
+        stats.add(0, from, 1000, 500, 0);
+        stats.add(0, from + 7, 1000, 400, 0);
+        stats.add(1, from + 21, 1000, 300, 0);
+        assertTrue(Double.isNaN(stats.getWeeklyStretchPercent()[2]));
+        assertEquals(6.43, stats.getTrendPerWeek(), 0.01);
+        assertEquals(2, stats.getUsers());
+    }
+}
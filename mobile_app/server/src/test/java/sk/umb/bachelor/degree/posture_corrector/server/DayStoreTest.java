@@ -0,0 +1,110 @@
+package sk.umb.bachelor.degree.posture_corrector.server;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class DayStoreTest {
+    private static final int DAY = (int) LocalDate.of(2024, 3, 30).toEpochDay();
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keepsDayWithHighestSeq() throws IOException {
+        try (DayStore store = new DayStore(null)) {
+            assertEquals(1, store.accept(upload("a", day("A", DAY, 1000, 5))));
+            assertEquals(0, store.accept(upload("a", day("A", DAY, 500, 4))));
+            assertEquals(0, store.accept(upload("a", day("A", DAY, 1000, 5))));
+            assertEquals(1, store.accept(upload("a", day("A", DAY, 2000, 6))));
+            // Same day of another device and of another install are separate series
+            assertEquals(1, store.accept(upload("a", day("B", DAY, 10, 1))));
+            assertEquals(1, store.accept(upload("b", day("A", DAY, 10, 1))));
+            assertEquals(3, store.getDayCount());
+            assertEquals(2, store.getInstallCount());
+
+            CohortStats stats = aggregate(store, DAY, Collections.singleton("a"));
+            assertEquals(2, stats.getDeviceDays());
+            assertEquals(1, stats.getUsers());
+            assertEquals(2010, stats.getUsageDuration());
+        }
+    }
+
+    @Test
+    public void partitionsByMonthAndReloads() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (DayStore store = new DayStore(directory)) {
+            for (int i = 0; i < 5; i++) {
+                store.accept(upload("a", day("A", DAY + i, 1000 + i, i + 1)));
+            }
+            store.accept(upload("a", day("A", DAY, 5000, 10)));
+            store.accept(upload("b", day("B", DAY, 100, 1)));
+        }
+        // March and April of the first series, March of the second one
+        assertEquals(3, dayFiles(directory).size());
+
+        try (DayStore store = new DayStore(directory)) {
+            assertEquals(6, store.getDayCount());
+            assertEquals(2, store.partitionsBetween(DAY, DAY).size());
+            // Reloaded series keep their ids, a new one gets the next
+            assertEquals(0, store.accept(upload("a", day("A", DAY, 1, 10))));
+            assertEquals(1, store.accept(upload("c", day("A", DAY, 1, 1))));
+            assertEquals(3, store.getInstallCount());
+            assertEquals(5000 + 100 + 1, aggregate(store, DAY, null).getUsageDuration());
+        }
+    }
+
+    @Test
+    public void dropsTornRecordOnOpen() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (DayStore store = new DayStore(directory)) {
+            store.accept(upload("a", day("A", DAY, 1000, 1)));
+        }
+        try (FileChannel channel = FileChannel.open(dayFiles(directory).get(0), StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+        }
+
+        try (DayStore store = new DayStore(directory)) {
+            store.accept(upload("a", day("A", DAY - 1, 2000, 2)));
+        }
+        try (DayStore store = new DayStore(directory)) {
+            assertEquals(2, store.getDayCount());
+            assertEquals(1000, aggregate(store, DAY, null).getUsageDuration());
+        }
+    }
+
+    static DayUpload upload(String install, DayUpload.Day... days) {
+        return new DayUpload(install, Arrays.asList(days));
+    }
+
+    static DayUpload.Day day(String device, int day, long usage, long seq) {
+        return new DayUpload.Day(device, day, usage, usage / 4, 2, seq);
+    }
+
+    private static CohortStats aggregate(DayStore store, int day, Set<String> installs) {
+        return new CohortAggregator(store, ForkJoinPool.commonPool())
+                .aggregate(LocalDate.ofEpochDay(day), LocalDate.ofEpochDay(day), installs);
+    }
+
+    private static List<Path> dayFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("days-")).collect(Collectors.toList());
+        }
+    }
+}
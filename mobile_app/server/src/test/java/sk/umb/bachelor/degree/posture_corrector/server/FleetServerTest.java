@@ -0,0 +1,105 @@
+package sk.umb.bachelor.degree.posture_corrector.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.ForkJoinPool;
+
+import sk.umb.bachelor.degree.posture_corrector.core.SyncBatch;
+import sk.umb.bachelor.degree.posture_corrector.core.SyncClient;
+
+import static org.junit.Assert.*;
+
+public class FleetServerTest {
+    private static final long DAY = LocalDate.of(2024, 3, 4).toEpochDay();
+    private DayStore store;
+    private FleetServer server;
+    private SyncClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        store = new DayStore(null);
+        server = new FleetServer(store, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2,
+                ForkJoinPool.commonPool());
+        client = new SyncClient(server.getUrl(FleetServer.DAYS_PATH));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        store.close();
+    }
+
+    @Test
+    public void answersCohortOfUploadedDays() throws IOException {
+        SyncBatch first = new SyncBatch("a")
+                .addDay(DAY, "A", 1000, 250, 2, 1)
+                .addDay(DAY + 1, "A", 1000, 500, 4, 2);
+        assertEquals(SyncClient.Result.ACCEPTED, client.upload(first));
+        assertEquals(SyncClient.Result.ACCEPTED, client.upload(first));
+        assertEquals(SyncClient.Result.ACCEPTED, client.upload(new SyncBatch("b\"quoted").addDay(DAY, "B", 1000, 0, 0, 1)));
+        assertEquals(3, store.getDayCount());
+
+        String all = get("/v1/cohort?from=2024-03-04&to=2024-03-10");
+        assertTrue(all, all.startsWith("{\"from\":\"2024-03-04\",\"to\":\"2024-03-10\",\"users\":2,\"deviceDays\":3,"
+                + "\"averageStretchPercent\":75.00,\"stretchPercent\":75.00,\"hunchCounts\":[{\"min\":0,\"max\":0,\"days\":1},"
+                + "{\"min\":1,\"max\":2,\"days\":1},{\"min\":3,\"max\":5,\"days\":1},"));
+        assertTrue(all, all.endsWith("\"weeklyStretchPercent\":[75.00],\"trendPerWeek\":null}"));
+
+        String cohort = get("/v1/cohort?from=2024-03-04&to=2024-03-04&install=b%22quoted");
+        assertTrue(cohort, cohort.contains("\"users\":1,\"deviceDays\":1,\"averageStretchPercent\":100.00"));
+    }
+
+    @Test
+    public void rejectsInvalidRequests() throws IOException {
+        assertEquals(400, post("{\"install\":\"a\",\"days\":[{\"date\":\"2024-02-30\",\"device\":\"A\","
+                + "\"usage\":1,\"hunched\":0,\"count\":0,\"seq\":1}]}"));
+        assertEquals(400, post("{\"install\":\"a\",\"days\":[{\"date\":\"2024-03-01\",\"device\":\"A\","
+                + "\"usage\":1,\"hunched\":2,\"count\":0,\"seq\":1}]}"));
+        assertEquals(400, post("not json"));
+        assertEquals(204, post(" { \"days\" : [ ] , \"install\" : \"a\" , \"version\" : 1 } "));
+        assertEquals(0, store.getDayCount());
+
+        assertEquals(400, status(server.getUrl("/v1/cohort?from=2024-03-10&to=2024-03-01")));
+        assertEquals(400, status(server.getUrl("/v1/cohort?from=2024-03-10")));
+    }
+
+    private String get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) server.getUrl(path).openConnection();
+        assertEquals(200, connection.getResponseCode());
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private int post(String json) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) server.getUrl(FleetServer.DAYS_PATH).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+        return connection.getResponseCode();
+    }
+
+    private static int status(URL url) throws IOException {
+        return ((HttpURLConnection) url.openConnection()).getResponseCode();
+    }
+}